@@ -0,0 +1,64 @@
+package org.janelia.saalfeldlab.paintera.benchmarks;
+
+import net.imglib2.Cursor;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+
+/**
+ * Reproducible synthetic label volumes shared by the benchmarks.
+ */
+public class SyntheticLabels
+{
+
+	/**
+	 * Jittered, roughly cubic segments of edge length {@code segmentSize}. Segment ids are in
+	 * {@code [1, maxId(dimensions, segmentSize)]}.
+	 *
+	 * @param dimensions size of the volume
+	 * @param segmentSize approximate edge length of a segment
+	 * @param seed shifts the segment boundaries
+	 * @return label volume
+	 */
+	public static ArrayImg<UnsignedLongType, LongArray> segments(
+			final long[] dimensions,
+			final int segmentSize,
+			final long seed)
+	{
+		final long[] numSegments = numSegments(dimensions, segmentSize);
+		final double shift = (seed % segmentSize + segmentSize) % segmentSize;
+		final ArrayImg<UnsignedLongType, LongArray> img = ArrayImgs.unsignedLongs(dimensions);
+		final Cursor<UnsignedLongType> c = img.localizingCursor();
+		while (c.hasNext())
+		{
+			c.fwd();
+			final double x = c.getDoublePosition(0) + shift;
+			final double y = c.getDoublePosition(1) + shift;
+			final double z = c.getDoublePosition(2) + shift;
+			final long sx = (long) Math.floor((x + 0.25 * segmentSize * Math.sin(y * 2.0 / segmentSize)) / segmentSize) + 1;
+			final long sy = (long) Math.floor((y + 0.25 * segmentSize * Math.sin(z * 2.0 / segmentSize)) / segmentSize) + 1;
+			final long sz = (long) Math.floor((z + 0.25 * segmentSize * Math.sin(x * 2.0 / segmentSize)) / segmentSize) + 1;
+			c.get().set(1 + Math.max(sx, 0) + numSegments[0] * (Math.max(sy, 0) + numSegments[1] * Math.max(sz, 0)));
+		}
+		return img;
+	}
+
+	/**
+	 * @return upper bound for the ids generated by {@link #segments(long[], int, long)}
+	 */
+	public static long maxId(final long[] dimensions, final int segmentSize)
+	{
+		final long[] numSegments = numSegments(dimensions, segmentSize);
+		return 1 + numSegments[0] * numSegments[1] * numSegments[2];
+	}
+
+	private static long[] numSegments(final long[] dimensions, final int segmentSize)
+	{
+		final long[] numSegments = new long[dimensions.length];
+		for (int d = 0; d < dimensions.length; ++d)
+			numSegments[d] = (dimensions[d] + segmentSize - 1) / segmentSize + 3;
+		return numSegments;
+	}
+
+}
@@ -0,0 +1,116 @@
+package org.janelia.saalfeldlab.paintera.control.assignment;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Merge, detach and lookup in {@link FragmentSegmentAssignmentOnlyLocal}. Fragments {@code [1, numFragments]} are
+ * grouped into consecutive segments of {@code fragmentsPerSegment} fragments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FragmentSegmentAssignmentBenchmark
+{
+
+	@Param({"1000", "100000"})
+	public int numFragments;
+
+	@Param({"10", "1000"})
+	public int fragmentsPerSegment;
+
+	private FragmentSegmentAssignmentOnlyLocal lookup;
+
+	@Setup(Level.Trial)
+	public void setup()
+	{
+		this.lookup = newAssignment();
+		mergeAll(lookup, idSupplier(numFragments));
+	}
+
+	/**
+	 * Fresh assignments for benchmarks that modify the assignment.
+	 */
+	@State(Scope.Thread)
+	public static class Modifiable
+	{
+
+		private FragmentSegmentAssignmentOnlyLocal empty;
+
+		private FragmentSegmentAssignmentOnlyLocal merged;
+
+		private LongSupplier nextId;
+
+		@Setup(Level.Invocation)
+		public void setup(final FragmentSegmentAssignmentBenchmark benchmark)
+		{
+			this.nextId = idSupplier(benchmark.numFragments);
+			this.empty = newAssignment();
+			this.merged = newAssignment();
+			benchmark.mergeAll(merged, nextId);
+		}
+	}
+
+	@Benchmark
+	public FragmentSegmentAssignmentOnlyLocal merge(final Modifiable state)
+	{
+		mergeAll(state.empty, state.nextId);
+		return state.empty;
+	}
+
+	@Benchmark
+	public FragmentSegmentAssignmentOnlyLocal detach(final Modifiable state)
+	{
+		// detach first fragment of each segment
+		for (long fragment = 1; fragment <= numFragments; fragment += fragmentsPerSegment)
+			state.merged.getDetachAction(fragment, fragment + 1).ifPresent(state.merged::apply);
+		return state.merged;
+	}
+
+	@Benchmark
+	public long getSegment()
+	{
+		long sum = 0;
+		for (long fragment = 1; fragment <= numFragments; ++fragment)
+			sum += lookup.getSegment(fragment);
+		return sum;
+	}
+
+	private void mergeAll(final FragmentSegmentAssignmentOnlyLocal assignment, final LongSupplier nextId)
+	{
+		for (long fragment = 1; fragment <= numFragments; ++fragment)
+		{
+			final long first = fragment - (fragment - 1) % fragmentsPerSegment;
+			if (fragment != first)
+				assignment.getMergeAction(fragment, first, nextId).ifPresent(assignment::apply);
+		}
+	}
+
+	private static LongSupplier idSupplier(final int numFragments)
+	{
+		final long[] next = {numFragments + 1};
+		return () -> next[0]++;
+	}
+
+	private static FragmentSegmentAssignmentOnlyLocal newAssignment()
+	{
+		return new FragmentSegmentAssignmentOnlyLocal(new FragmentSegmentAssignmentOnlyLocal.DoesNotPersist());
+	}
+
+}
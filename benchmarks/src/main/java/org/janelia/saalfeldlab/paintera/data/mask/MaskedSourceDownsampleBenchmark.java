@@ -0,0 +1,103 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.paintera.benchmarks.SyntheticLabels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MaskedSource#downsample(RandomAccessible, net.imglib2.RandomAccessibleInterval, int[])} for a single block and
+ * {@link MaskedSource#downsampleBlocks(RandomAccessible, CachedCellImg, TLongSet, int[], net.imglib2.Interval)} for all
+ * blocks of a canvas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MaskedSourceDownsampleBenchmark
+{
+
+	@Param({"32", "64"})
+	public int blockSize;
+
+	@Param({"2", "3"})
+	public int factor;
+
+	@Param({"4", "24"})
+	public int segmentSize;
+
+	private static final int NUM_BLOCKS_PER_DIMENSION = 2;
+
+	private RandomAccessible<UnsignedLongType> source;
+
+	private int[] steps;
+
+	private ArrayImg<UnsignedLongType, LongArray> block;
+
+	private CachedCellImg<UnsignedLongType, LongAccess> canvas;
+
+	private TLongSet allBlocks;
+
+	private FinalInterval canvasInterval;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup()
+	{
+		final long targetSize = NUM_BLOCKS_PER_DIMENSION * blockSize;
+		final long[] sourceDimensions = {targetSize * factor, targetSize * factor, targetSize * factor};
+		this.source = SyntheticLabels.segments(sourceDimensions, segmentSize, 0);
+		this.steps = new int[] {factor, factor, factor};
+		this.block = ArrayImgs.unsignedLongs(blockSize, blockSize, blockSize);
+
+		final long[] targetDimensions = {targetSize, targetSize, targetSize};
+		final CellLoader<UnsignedLongType> loader = img -> img.forEach(UnsignedLongType::setZero);
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options().cellDimensions(blockSize));
+		this.canvas = (CachedCellImg<UnsignedLongType, LongAccess>) factory.create(targetDimensions, new UnsignedLongType(), loader);
+		this.canvasInterval = new FinalInterval(targetDimensions);
+		this.allBlocks = new TLongHashSet();
+		for (long i = 0, numBlocks = Intervals.numElements(canvas.getCellGrid().getGridDimensions()); i < numBlocks; ++i)
+			allBlocks.add(i);
+	}
+
+	@Benchmark
+	public ArrayImg<UnsignedLongType, LongArray> downsample()
+	{
+		MaskedSource.downsample(source, block, steps);
+		return block;
+	}
+
+	@Benchmark
+	public CachedCellImg<UnsignedLongType, LongAccess> downsampleBlocks()
+	{
+		MaskedSource.downsampleBlocks(source, canvas, allBlocks, steps, canvasInterval);
+		return canvas;
+	}
+
+}
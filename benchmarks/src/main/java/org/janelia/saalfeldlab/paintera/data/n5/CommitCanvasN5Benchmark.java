@@ -0,0 +1,99 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import gnu.trove.map.TLongObjectMap;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.paintera.benchmarks.SyntheticLabels;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas.BlockDiff;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToPersistCanvas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+/**
+ * {@link CommitCanvasN5#persistCanvas(CachedCellImg, long[])} into a single scale {@code uint64} dataset. This
+ * includes reading the background blocks, creating the {@link BlockDiff block diffs} and writing the blocks. The block
+ * diff creation itself is private to {@link CommitCanvasN5} and cannot be benchmarked in isolation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CommitCanvasN5Benchmark
+{
+
+	private static final long[] DIMENSIONS = {128, 128, 128};
+
+	private static final String DATASET = "labels";
+
+	@Param({"32", "64"})
+	public int blockSize;
+
+	@Param({"0.1", "0.9"})
+	public double paintedFraction;
+
+	private N5FSWriter container;
+
+	private CommitCanvasN5 commitCanvas;
+
+	private CachedCellImg<UnsignedLongType, ?> canvas;
+
+	private long[] blocks;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		final int[] blockSize = {this.blockSize, this.blockSize, this.blockSize};
+		this.container = new N5FSWriter(Files.createTempDirectory("commit-canvas-n5-benchmark-").toString());
+		N5Utils.save(SyntheticLabels.segments(DIMENSIONS, 16, 0), container, DATASET, blockSize, new GzipCompression());
+		this.commitCanvas = new CommitCanvasN5(container, DATASET);
+
+		final long paintedId = SyntheticLabels.maxId(DIMENSIONS, 16) + 1;
+		final Random rng = new Random(100);
+		final CellLoader<UnsignedLongType> loader = img -> img.forEach(t -> t.set(rng.nextDouble() < paintedFraction ? paintedId : Label.INVALID));
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options().cellDimensions(blockSize));
+		@SuppressWarnings("unchecked")
+		final CachedCellImg<UnsignedLongType, ?> canvas = factory.create(DIMENSIONS, new UnsignedLongType(), loader);
+		this.canvas = canvas;
+		this.blocks = LongStream.range(0, Intervals.numElements(canvas.getCellGrid().getGridDimensions())).toArray();
+	}
+
+	@TearDown
+	public void tearDown() throws IOException
+	{
+		container.remove();
+	}
+
+	@Benchmark
+	public List<TLongObjectMap<BlockDiff>> persistCanvas() throws UnableToPersistCanvas
+	{
+		return commitCanvas.persistCanvas(canvas, blocks);
+	}
+
+}
@@ -0,0 +1,104 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessible;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.benchmarks.SyntheticLabels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link MarchingCubes#generateMesh()}, {@link Smooth#smooth(float[], double, int)}, {@link Normals#normals(float[], float[])}
+ * and {@link AverageNormals#averagedNormals(float[], float[])} for a single segment of a synthetic label block.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MeshBenchmark
+{
+
+	@Param({"32", "64"})
+	public int blockSize;
+
+	@Param({"1", "2"})
+	public int cubeSize;
+
+	@Param({"24"})
+	public int segmentSize;
+
+	private RandomAccessible<BoolType> mask;
+
+	private FinalInterval interval;
+
+	private float[] vertices;
+
+	private float[] normals;
+
+	@Setup
+	public void setup()
+	{
+		final long[] dimensions = {blockSize, blockSize, blockSize};
+		final ArrayImg<UnsignedLongType, LongArray> labels = SyntheticLabels.segments(dimensions, segmentSize, 0);
+		// segment at the center of the block
+		final RandomAccess<UnsignedLongType> access = labels.randomAccess();
+		access.setPosition(new long[] {blockSize / 2, blockSize / 2, blockSize / 2});
+		final long id = access.get().getIntegerLong();
+		this.mask = Views.extendZero(Converters.convert(labels, (s, t) -> t.set(s.getIntegerLong() == id), new BoolType()));
+		this.interval = new FinalInterval(dimensions);
+		this.vertices = generateMesh();
+		this.normals = new float[vertices.length];
+	}
+
+	@Benchmark
+	public float[] marchingCubes()
+	{
+		return generateMesh();
+	}
+
+	@Benchmark
+	public float[] smooth()
+	{
+		return Smooth.smooth(vertices, Smooth.DEFAULT_LAMBDA, Smooth.DEFAULT_ITERATIONS);
+	}
+
+	@Benchmark
+	public float[] normals()
+	{
+		Normals.normals(vertices, normals);
+		return normals;
+	}
+
+	@Benchmark
+	public float[] averageNormals()
+	{
+		AverageNormals.averagedNormals(vertices, normals);
+		return normals;
+	}
+
+	private float[] generateMesh()
+	{
+		return new MarchingCubes<>(mask, interval, new AffineTransform3D(), new int[] {cubeSize, cubeSize, cubeSize}, () -> false).generateMesh();
+	}
+
+}
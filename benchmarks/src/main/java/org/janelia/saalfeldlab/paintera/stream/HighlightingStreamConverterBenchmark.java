@@ -0,0 +1,90 @@
+package org.janelia.saalfeldlab.paintera.stream;
+
+import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.volatiles.VolatileUnsignedLongType;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.lock.LockedSegmentsOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HighlightingStreamConverterIntegerType#convert(net.imglib2.Volatile, ARGBType)} for a screen-sized array of
+ * label ids, with and without selected fragments and segment coloring.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class HighlightingStreamConverterBenchmark
+{
+
+	private static final int NUM_PIXELS = 1 << 16;
+
+	@Param({"100", "100000"})
+	public int numDistinctIds;
+
+	@Param({"0", "10"})
+	public int numSelectedIds;
+
+	@Param({"false", "true"})
+	public boolean colorFromSegmentId;
+
+	private VolatileUnsignedLongType[] input;
+
+	private ARGBType output;
+
+	private HighlightingStreamConverterIntegerType<UnsignedLongType, VolatileUnsignedLongType> converter;
+
+	@Setup
+	public void setup()
+	{
+		final Random rng = new Random(100);
+		this.input = new VolatileUnsignedLongType[NUM_PIXELS];
+		for (int i = 0; i < input.length; ++i)
+			input[i] = new VolatileUnsignedLongType(1 + rng.nextInt(numDistinctIds));
+		this.output = new ARGBType();
+
+		final SelectedIds selectedIds = new SelectedIds();
+		final FragmentSegmentAssignmentOnlyLocal assignment = new FragmentSegmentAssignmentOnlyLocal(new FragmentSegmentAssignmentOnlyLocal.DoesNotPersist());
+		final LockedSegmentsOnlyLocal lockedSegments = new LockedSegmentsOnlyLocal(seg -> {});
+		final ModalGoldenAngleSaturatedHighlightingARGBStream stream = new ModalGoldenAngleSaturatedHighlightingARGBStream(
+				selectedIds,
+				assignment,
+				lockedSegments);
+		this.converter = new HighlightingStreamConverterIntegerType<>(stream);
+		converter.colorFromSegmentIdProperty().set(colorFromSegmentId);
+		for (int i = 0; i < numSelectedIds; ++i)
+			selectedIds.activateAlso(1 + rng.nextInt(numDistinctIds));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(NUM_PIXELS)
+	public int convert()
+	{
+		int sum = 0;
+		for (final VolatileUnsignedLongType in : input)
+		{
+			converter.convert(in, output);
+			sum += output.get();
+		}
+		return sum;
+	}
+
+}
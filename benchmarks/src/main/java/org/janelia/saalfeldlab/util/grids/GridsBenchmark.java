@@ -0,0 +1,77 @@
+package org.janelia.saalfeldlab.util.grids;
+
+import gnu.trove.set.TLongSet;
+import net.imglib2.img.cell.CellGrid;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Grids#getRelevantBlocksInTargetGrid(long[], CellGrid, CellGrid, double[], double[])} for mapping painted
+ * blocks at full resolution into a lower resolution grid, as done when propagating canvas changes to mipmap levels.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GridsBenchmark
+{
+
+	@Param({"10", "1000", "100000"})
+	public int numSourceBlocks;
+
+	@Param({"2", "4"})
+	public int relativeScale;
+
+	private long[] sourceBlocks;
+
+	private CellGrid sourceGrid;
+
+	private CellGrid targetGrid;
+
+	private double[] scaleSourceToWorld;
+
+	private double[] scaleTargetToWorld;
+
+	@Setup
+	public void setup()
+	{
+		final long[] dimensions = {4096, 4096, 4096};
+		final int[] blockSize = {64, 64, 64};
+		this.sourceGrid = new CellGrid(dimensions, blockSize);
+		this.targetGrid = new CellGrid(new long[] {
+				dimensions[0] / relativeScale,
+				dimensions[1] / relativeScale,
+				dimensions[2] / relativeScale}, blockSize);
+		this.scaleSourceToWorld = new double[] {1.0, 1.0, 1.0};
+		this.scaleTargetToWorld = new double[] {relativeScale, relativeScale, relativeScale};
+
+		final long numBlocks = sourceGrid.getGridDimensions()[0] * sourceGrid.getGridDimensions()[1] * sourceGrid.getGridDimensions()[2];
+		final Random rng = new Random(100);
+		this.sourceBlocks = new long[numSourceBlocks];
+		// spatially coherent blocks resemble a paint stroke
+		final long start = Math.floorMod(rng.nextLong(), numBlocks);
+		for (int i = 0; i < numSourceBlocks; ++i)
+			sourceBlocks[i] = (start + i) % numBlocks;
+	}
+
+	@Benchmark
+	public TLongSet getRelevantBlocksInTargetGrid()
+	{
+		return Grids.getRelevantBlocksInTargetGrid(sourceBlocks, sourceGrid, targetGrid, scaleSourceToWorld, scaleTargetToWorld);
+	}
+
+}
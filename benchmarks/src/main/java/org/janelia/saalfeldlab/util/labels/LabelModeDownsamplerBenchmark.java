@@ -0,0 +1,95 @@
+package org.janelia.saalfeldlab.util.labels;
+
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import org.janelia.saalfeldlab.labels.downsample.WinnerTakesAll;
+import org.janelia.saalfeldlab.paintera.benchmarks.SyntheticLabels;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link LabelModeDownsampler} compared to the generic {@code IntegerType} implementations it replaces:
+ * {@link MaskedSource#downsample(net.imglib2.RandomAccessible, net.imglib2.RandomAccessibleInterval, int[])} (mask
+ * propagation) and {@link WinnerTakesAll#downsample} (commit). A segment size larger than the block creates uniform
+ * blocks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class LabelModeDownsamplerBenchmark
+{
+
+	@Param({"64"})
+	public int targetSize;
+
+	@Param({"2", "3"})
+	public int factor;
+
+	@Param({"4", "24", "1024"})
+	public int segmentSize;
+
+	private ArrayImg<UnsignedLongType, LongArray> source;
+
+	private ArrayImg<UnsignedLongType, LongArray> target;
+
+	private int[] steps;
+
+	private int[] sourceDimensions;
+
+	private int[] targetDimensions;
+
+	private LabelModeDownsampler downsampler;
+
+	@Setup
+	public void setup()
+	{
+		final int sourceSize = targetSize * factor;
+		this.source = SyntheticLabels.segments(new long[] {sourceSize, sourceSize, sourceSize}, segmentSize, 0);
+		this.target = ArrayImgs.unsignedLongs(targetSize, targetSize, targetSize);
+		this.steps = new int[] {factor, factor, factor};
+		this.sourceDimensions = new int[] {sourceSize, sourceSize, sourceSize};
+		this.targetDimensions = new int[] {targetSize, targetSize, targetSize};
+		this.downsampler = new LabelModeDownsampler(Label.INVALID, steps);
+	}
+
+	@Benchmark
+	public long[] labelModeDownsampler()
+	{
+		final long[] targetData = target.update(null).getCurrentStorageArray();
+		downsampler.downsample(source.update(null).getCurrentStorageArray(), sourceDimensions, targetData, targetDimensions);
+		return targetData;
+	}
+
+	@Benchmark
+	public ArrayImg<UnsignedLongType, LongArray> maskedSourceDownsample()
+	{
+		MaskedSource.downsample(source, target, steps);
+		return target;
+	}
+
+	@Benchmark
+	public ArrayImg<UnsignedLongType, LongArray> winnerTakesAll()
+	{
+		WinnerTakesAll.downsample(source, target, steps);
+		return target;
+	}
+
+}
@@ -188,6 +188,14 @@ public class VolatileHierarchyProjector< A extends Volatile< ? >, B extends Nume
 		return lastFrameIoNanoTime;
 	}
 
+	/**
+	 * Number of pixels that remained invalid after the last rendering pass.
+	 */
+	public int getNumInvalidPixels()
+	{
+		return numInvalidPixels.get();
+	}
+
 	@Override
 	public boolean isValid()
 	{
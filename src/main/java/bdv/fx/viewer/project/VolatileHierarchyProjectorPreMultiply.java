@@ -169,6 +169,14 @@ public class VolatileHierarchyProjectorPreMultiply<A extends Volatile<?>>
 		return lastFrameIoNanoTime;
 	}
 
+	/**
+	 * Number of pixels that remained invalid after the last rendering pass.
+	 */
+	public int getNumInvalidPixels()
+	{
+		return numInvalidPixels.get();
+	}
+
 	@Override
 	public boolean isValid()
 	{
@@ -0,0 +1,124 @@
+package bdv.fx.viewer.render;
+
+import java.util.Arrays;
+
+/**
+ * IO time budget for {@link net.imglib2.cache.iotiming.CacheIoTiming} that follows the measured IO latency.
+ * <p>
+ * The budget for the highest priority level is kept at {@code headroom} times an exponential moving average of
+ * the blocking IO time observed per frame, clamped to {@code [minBudgetNanos, maxBudgetNanos]}. Budgets for lower
+ * priority levels are scaled down proportionally to the initial budget. With fast local storage, the budget
+ * shrinks and frames rarely block on IO; with slow storage it grows up to {@code maxBudgetNanos} so that the
+ * coarsest levels can be loaded synchronously instead of showing empty blocks.
+ */
+public class AdaptiveIoBudget
+{
+
+	public static final long[] DEFAULT_BUDGET = {100L * 1000000L, 10L * 1000000L};
+
+	public static final long DEFAULT_MIN_BUDGET_NANOS = 5L * 1000000L;
+
+	public static final long DEFAULT_MAX_BUDGET_NANOS = 200L * 1000000L;
+
+	public static final double DEFAULT_HEADROOM = 2.0;
+
+	public static final double DEFAULT_SMOOTHING = 0.2;
+
+	private final double[] levelRatios;
+
+	private final long minBudgetNanos;
+
+	private final long maxBudgetNanos;
+
+	private final double headroom;
+
+	private final double smoothing;
+
+	private final long[] budget;
+
+	private double smoothedIoNanos = Double.NaN;
+
+	private boolean adaptive = true;
+
+	public AdaptiveIoBudget()
+	{
+		this(DEFAULT_BUDGET, DEFAULT_MIN_BUDGET_NANOS, DEFAULT_MAX_BUDGET_NANOS, DEFAULT_HEADROOM, DEFAULT_SMOOTHING);
+	}
+
+	/**
+	 * @param initialBudget initial budget in nanoseconds per priority level, highest priority first
+	 * @param minBudgetNanos lower bound for the budget of the highest priority level
+	 * @param maxBudgetNanos upper bound for the budget of the highest priority level
+	 * @param headroom factor applied to the smoothed IO time to obtain the budget
+	 * @param smoothing weight of the most recent measurement in the exponential moving average, in {@code (0, 1]}
+	 */
+	public AdaptiveIoBudget(
+			final long[] initialBudget,
+			final long minBudgetNanos,
+			final long maxBudgetNanos,
+			final double headroom,
+			final double smoothing)
+	{
+		if (initialBudget.length == 0 || initialBudget[0] <= 0)
+			throw new IllegalArgumentException("Initial budget must have at least one positive entry: " + Arrays.toString(initialBudget));
+		if (minBudgetNanos > maxBudgetNanos)
+			throw new IllegalArgumentException(String.format("Min budget %d larger than max budget %d", minBudgetNanos, maxBudgetNanos));
+		if (smoothing <= 0.0 || smoothing > 1.0)
+			throw new IllegalArgumentException("Smoothing must be in (0, 1]: " + smoothing);
+		this.budget = initialBudget.clone();
+		this.levelRatios = new double[initialBudget.length];
+		Arrays.setAll(this.levelRatios, d -> initialBudget[d] / (double) initialBudget[0]);
+		this.minBudgetNanos = minBudgetNanos;
+		this.maxBudgetNanos = maxBudgetNanos;
+		this.headroom = headroom;
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * Update the budget with the blocking IO time measured for a completed frame.
+	 *
+	 * @param ioNanos blocking IO time of the last frame in nanoseconds. Negative values are ignored.
+	 */
+	public synchronized void update(final long ioNanos)
+	{
+		if (ioNanos < 0)
+			return;
+		smoothedIoNanos = Double.isNaN(smoothedIoNanos)
+				? ioNanos
+				: smoothing * ioNanos + (1.0 - smoothing) * smoothedIoNanos;
+		if (!adaptive)
+			return;
+		final long top = Math.min(Math.max((long) (headroom * smoothedIoNanos), minBudgetNanos), maxBudgetNanos);
+		Arrays.setAll(budget, d -> (long) (levelRatios[d] * top));
+	}
+
+	/**
+	 * Enable or disable adaptation. If disabled, the current budget is kept fixed.
+	 */
+	public synchronized void setAdaptive(final boolean adaptive)
+	{
+		this.adaptive = adaptive;
+	}
+
+	public synchronized boolean isAdaptive()
+	{
+		return adaptive;
+	}
+
+	/**
+	 * @return copy of the current budget in nanoseconds per priority level
+	 */
+	public synchronized long[] getBudget()
+	{
+		return budget.clone();
+	}
+
+	/**
+	 * @return exponential moving average of the blocking IO time per frame, or {@link Double#NaN} if no frame has
+	 * been recorded yet.
+	 */
+	public synchronized double getSmoothedIoNanos()
+	{
+		return smoothedIoNanos;
+	}
+}
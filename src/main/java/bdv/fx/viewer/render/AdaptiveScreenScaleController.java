@@ -0,0 +1,225 @@
+package bdv.fx.viewer.render;
+
+/**
+ * Chooses the screen scales at which {@link MultiResolutionRendererGeneric} renders, based on a cost model that is
+ * learned from completed frames.
+ * <p>
+ * The model predicts the time for rendering {@code n} render target pixels of {@code s} sources as
+ * {@code n * s * nanosPerSourcePixel + ioNanos}, where both coefficients are exponential moving averages of the
+ * measured render and blocking IO time. Rendering of a new frame starts at the finest screen scale for which the
+ * predicted time stays within {@code targetNanos}. Intermediate screen scales are skipped during refinement if a
+ * finer screen scale can be rendered within {@code refinementFactor * targetNanos}.
+ * <p>
+ * Without any measurements, or if adaptation is disabled, rendering starts at the coarsest screen scale and refines
+ * one screen scale at a time. The {@link CostModel} can be stored with a project so that adaptation starts from a
+ * tuned state.
+ */
+public class AdaptiveScreenScaleController
+{
+
+	public static final long DEFAULT_TARGET_NANOS = 16L * 1000000L;
+
+	public static final double DEFAULT_REFINEMENT_FACTOR = 4.0;
+
+	public static final double DEFAULT_SMOOTHING = 0.2;
+
+	/**
+	 * Learned render and IO cost.
+	 */
+	public static class CostModel
+	{
+
+		private final double nanosPerSourcePixel;
+
+		private final double ioNanos;
+
+		/**
+		 * @param nanosPerSourcePixel render time per render target pixel and source
+		 * @param ioNanos blocking IO time per frame
+		 */
+		public CostModel(final double nanosPerSourcePixel, final double ioNanos)
+		{
+			this.nanosPerSourcePixel = nanosPerSourcePixel;
+			this.ioNanos = ioNanos;
+		}
+
+		public double getNanosPerSourcePixel()
+		{
+			return nanosPerSourcePixel;
+		}
+
+		public double getIoNanos()
+		{
+			return ioNanos;
+		}
+
+		/**
+		 * @param numPixels number of render target pixels
+		 * @param numSources number of visible sources
+		 * @return predicted render time in nanoseconds
+		 */
+		public double predictNanos(final double numPixels, final int numSources)
+		{
+			return numPixels * Math.max(numSources, 1) * nanosPerSourcePixel + ioNanos;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("{CostModel: nanosPerSourcePixel=%f ioNanos=%f}", nanosPerSourcePixel, ioNanos);
+		}
+	}
+
+	private final double smoothing;
+
+	private long targetNanos;
+
+	private double refinementFactor;
+
+	private CostModel model;
+
+	private boolean adaptive = true;
+
+	public AdaptiveScreenScaleController()
+	{
+		this(DEFAULT_TARGET_NANOS, DEFAULT_REFINEMENT_FACTOR, DEFAULT_SMOOTHING);
+	}
+
+	/**
+	 * @param targetNanos target time for the first frame after a change of the view
+	 * @param refinementFactor intermediate screen scales are skipped if a finer screen scale can be rendered within
+	 *                         {@code refinementFactor * targetNanos}
+	 * @param smoothing weight of the most recent measurement in the exponential moving average, in {@code (0, 1]}
+	 */
+	public AdaptiveScreenScaleController(final long targetNanos, final double refinementFactor, final double smoothing)
+	{
+		if (smoothing <= 0.0 || smoothing > 1.0)
+			throw new IllegalArgumentException("Smoothing must be in (0, 1]: " + smoothing);
+		setTargetNanos(targetNanos);
+		setRefinementFactor(refinementFactor);
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * Update the cost model with a completed frame.
+	 *
+	 * @param renderNanos render time of the frame, not including blocking IO
+	 * @param ioNanos blocking IO time of the frame
+	 * @param numPixels number of render target pixels in the frame
+	 * @param numSources number of sources in the frame
+	 */
+	public synchronized void update(final long renderNanos, final long ioNanos, final long numPixels, final int numSources)
+	{
+		if (renderNanos < 0 || ioNanos < 0 || numPixels <= 0)
+			return;
+		final double nanosPerSourcePixel = renderNanos / ((double) numPixels * Math.max(numSources, 1));
+		model = model == null
+				? new CostModel(nanosPerSourcePixel, ioNanos)
+				: new CostModel(
+						smoothing * nanosPerSourcePixel + (1.0 - smoothing) * model.nanosPerSourcePixel,
+						smoothing * ioNanos + (1.0 - smoothing) * model.ioNanos);
+	}
+
+	/**
+	 * @param screenScales screen scales, finest first
+	 * @param numScreenPixels number of screen pixels to be rendered
+	 * @param numSources number of visible sources
+	 * @return index of the screen scale at which to start rendering
+	 */
+	public synchronized int startIndex(final double[] screenScales, final long numScreenPixels, final int numSources)
+	{
+		final int coarsest = screenScales.length - 1;
+		if (!adaptive || model == null)
+			return coarsest;
+		return finestIndexWithin(screenScales, 0, coarsest, numScreenPixels, numSources, targetNanos, coarsest);
+	}
+
+	/**
+	 * @param screenScales screen scales, finest first
+	 * @param currentIndex index of the screen scale that was just rendered, must be positive
+	 * @param numScreenPixels number of screen pixels to be rendered
+	 * @param numSources number of visible sources
+	 * @return index of the screen scale to render next
+	 */
+	public synchronized int nextIndex(final double[] screenScales, final int currentIndex, final long numScreenPixels, final int numSources)
+	{
+		final int next = currentIndex - 1;
+		if (!adaptive || model == null || next <= 0)
+			return Math.max(next, 0);
+		return finestIndexWithin(screenScales, 0, next, numScreenPixels, numSources, (long) (refinementFactor * targetNanos), next);
+	}
+
+	private int finestIndexWithin(
+			final double[] screenScales,
+			final int finest,
+			final int coarsest,
+			final long numScreenPixels,
+			final int numSources,
+			final long budgetNanos,
+			final int fallback)
+	{
+		for (int i = finest; i <= coarsest; ++i)
+		{
+			final double numPixels = numScreenPixels * screenScales[i] * screenScales[i];
+			if (model.predictNanos(numPixels, numSources) <= budgetNanos)
+				return i;
+		}
+		return fallback;
+	}
+
+	/**
+	 * @return the learned cost model, or {@code null} if no frame has been recorded yet
+	 */
+	public synchronized CostModel getModel()
+	{
+		return model;
+	}
+
+	/**
+	 * Replace the learned cost model, e.g. with a model stored in a project.
+	 *
+	 * @param model {@code null} discards all measurements
+	 */
+	public synchronized void setModel(final CostModel model)
+	{
+		this.model = model;
+	}
+
+	/**
+	 * Enable or disable adaptation. If disabled, all screen scales are rendered from coarsest to finest. The cost
+	 * model is updated either way.
+	 */
+	public synchronized void setAdaptive(final boolean adaptive)
+	{
+		this.adaptive = adaptive;
+	}
+
+	public synchronized boolean isAdaptive()
+	{
+		return adaptive;
+	}
+
+	public synchronized void setTargetNanos(final long targetNanos)
+	{
+		if (targetNanos <= 0)
+			throw new IllegalArgumentException("Target time must be positive: " + targetNanos);
+		this.targetNanos = targetNanos;
+	}
+
+	public synchronized long getTargetNanos()
+	{
+		return targetNanos;
+	}
+
+	public synchronized void setRefinementFactor(final double refinementFactor)
+	{
+		if (refinementFactor < 1.0)
+			throw new IllegalArgumentException("Refinement factor must not be smaller than 1: " + refinementFactor);
+		this.refinementFactor = refinementFactor;
+	}
+
+	public synchronized double getRefinementFactor()
+	{
+		return refinementFactor;
+	}
+}
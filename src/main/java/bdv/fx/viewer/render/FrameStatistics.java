@@ -0,0 +1,120 @@
+package bdv.fx.viewer.render;
+
+/**
+ * Timing and quality statistics of a single frame rendered by {@link MultiResolutionRendererGeneric}.
+ */
+public class FrameStatistics
+{
+
+	private final long timestampNanos;
+
+	private final long renderNanos;
+
+	private final long ioNanos;
+
+	private final double invalidPixelFraction;
+
+	private final int screenScaleIndex;
+
+	private final double screenScale;
+
+	private final long numDroppedFrames;
+
+	private final long[] ioBudget;
+
+	/**
+	 * @param timestampNanos {@link System#nanoTime()} at which the frame was completed
+	 * @param renderNanos time spent rendering the frame, not including blocking IO
+	 * @param ioNanos time spent in blocking IO while rendering the frame
+	 * @param invalidPixelFraction fraction of pixels in the frame that could not be filled with valid data
+	 * @param screenScaleIndex index of the screen scale the frame was rendered at
+	 * @param screenScale screen scale the frame was rendered at
+	 * @param numDroppedFrames number of frames that were cancelled before completion since the renderer was created
+	 * @param ioBudget IO time budget (in nanoseconds, per priority level) that was in effect for this frame
+	 */
+	public FrameStatistics(
+			final long timestampNanos,
+			final long renderNanos,
+			final long ioNanos,
+			final double invalidPixelFraction,
+			final int screenScaleIndex,
+			final double screenScale,
+			final long numDroppedFrames,
+			final long[] ioBudget)
+	{
+		this.timestampNanos = timestampNanos;
+		this.renderNanos = renderNanos;
+		this.ioNanos = ioNanos;
+		this.invalidPixelFraction = invalidPixelFraction;
+		this.screenScaleIndex = screenScaleIndex;
+		this.screenScale = screenScale;
+		this.numDroppedFrames = numDroppedFrames;
+		this.ioBudget = ioBudget.clone();
+	}
+
+	public long getTimestampNanos()
+	{
+		return timestampNanos;
+	}
+
+	public long getRenderNanos()
+	{
+		return renderNanos;
+	}
+
+	public long getIoNanos()
+	{
+		return ioNanos;
+	}
+
+	public double getInvalidPixelFraction()
+	{
+		return invalidPixelFraction;
+	}
+
+	public int getScreenScaleIndex()
+	{
+		return screenScaleIndex;
+	}
+
+	public double getScreenScale()
+	{
+		return screenScale;
+	}
+
+	public long getNumDroppedFrames()
+	{
+		return numDroppedFrames;
+	}
+
+	public long[] getIoBudget()
+	{
+		return ioBudget.clone();
+	}
+
+	/**
+	 * @return {@code true} if all pixels of the frame were rendered from valid data.
+	 */
+	public boolean isComplete()
+	{
+		return invalidPixelFraction == 0.0;
+	}
+
+	/**
+	 * Single-line, {@code key=value} formatted representation that is suitable for structured logging.
+	 */
+	@Override
+	public String toString()
+	{
+		return String.format(
+				"timestamp=%d renderMs=%.3f ioMs=%.3f invalidFraction=%.4f screenScaleIndex=%d screenScale=%s dropped=%d ioBudgetMs=%.3f",
+				timestampNanos,
+				renderNanos * 1e-6,
+				ioNanos * 1e-6,
+				invalidPixelFraction,
+				screenScaleIndex,
+				screenScale,
+				numDroppedFrames,
+				ioBudget.length > 0 ? ioBudget[0] * 1e-6 : 0.0);
+	}
+}
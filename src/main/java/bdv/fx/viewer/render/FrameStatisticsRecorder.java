@@ -0,0 +1,111 @@
+package bdv.fx.viewer.render;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Records {@link FrameStatistics} (e.g. from {@link RenderUnit#frameStatisticsProperty()}) and summarizes them.
+ * Used for automated rendering benchmarks.
+ */
+public class FrameStatisticsRecorder implements Consumer<FrameStatistics>
+{
+
+	private final List<FrameStatistics> frames = new ArrayList<>();
+
+	@Override
+	public synchronized void accept(final FrameStatistics frameStatistics)
+	{
+		if (frameStatistics != null)
+			frames.add(frameStatistics);
+	}
+
+	public synchronized void clear()
+	{
+		frames.clear();
+	}
+
+	public synchronized List<FrameStatistics> getFrames()
+	{
+		return new ArrayList<>(frames);
+	}
+
+	public synchronized int getNumFrames()
+	{
+		return frames.size();
+	}
+
+	/**
+	 * @param percentile in {@code [0, 100]}
+	 * @return percentile of the render time of all recorded frames in nanoseconds, or {@code -1} if no frames were recorded.
+	 */
+	public long renderNanosPercentile(final double percentile)
+	{
+		return percentile(FrameStatistics::getRenderNanos, percentile);
+	}
+
+	/**
+	 * @param percentile in {@code [0, 100]}
+	 * @return percentile of the blocking IO time of all recorded frames in nanoseconds, or {@code -1} if no frames were recorded.
+	 */
+	public long ioNanosPercentile(final double percentile)
+	{
+		return percentile(FrameStatistics::getIoNanos, percentile);
+	}
+
+	/**
+	 * @return number of frames dropped through cancellation between first and last recorded frame
+	 */
+	public synchronized long getNumDroppedFrames()
+	{
+		return frames.isEmpty()
+				? 0
+				: frames.get(frames.size() - 1).getNumDroppedFrames() - frames.get(0).getNumDroppedFrames();
+	}
+
+	/**
+	 * @param startNanos {@link System#nanoTime()} reference
+	 * @return time from {@code startNanos} until the first recorded frame after {@code startNanos}, or {@code -1} if
+	 * there is no such frame.
+	 */
+	public synchronized long nanosToFirstFrame(final long startNanos)
+	{
+		for (final FrameStatistics frame : frames)
+			if (frame.getTimestampNanos() >= startNanos)
+				return frame.getTimestampNanos() - startNanos;
+		return -1;
+	}
+
+	/**
+	 * @param startNanos {@link System#nanoTime()} reference
+	 * @return time from {@code startNanos} until the first recorded frame after {@code startNanos} that was rendered at full
+	 * screen resolution with all pixels valid, or {@code -1} if there is no such frame.
+	 */
+	public synchronized long nanosToFullResolution(final long startNanos)
+	{
+		for (final FrameStatistics frame : frames)
+			if (frame.getTimestampNanos() >= startNanos && frame.getScreenScaleIndex() == 0 && frame.isComplete())
+				return frame.getTimestampNanos() - startNanos;
+		return -1;
+	}
+
+	private synchronized long percentile(final ToLongFunction<FrameStatistics> value, final double percentile)
+	{
+		if (frames.isEmpty())
+			return -1;
+		final long[] values = frames.stream().mapToLong(value).toArray();
+		Arrays.sort(values);
+		return values[percentileIndex(values.length, percentile)];
+	}
+
+	/**
+	 * Nearest-rank percentile index into a sorted array of length {@code n}.
+	 */
+	static int percentileIndex(final int n, final double percentile)
+	{
+		final int rank = (int) Math.ceil(Math.min(Math.max(percentile, 0.0), 100.0) / 100.0 * n);
+		return Math.min(Math.max(rank - 1, 0), n - 1);
+	}
+}
@@ -84,6 +84,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.ToIntFunction;
 
@@ -196,21 +197,28 @@ public class MultiResolutionRendererGeneric<T>
 	private RealInterval lastRenderTargetRealInterval;
 
 	/**
-	 * If the rendering time (in nanoseconds) for the (currently) highest scaled screen image is above this threshold,
-	 * increase the {@link #maxScreenScaleIndex index} of the highest screen scale to use. Similarly, if the rendering
-	 * time for the (currently) second-highest scaled screen image is below this threshold, decrease the {@link
-	 * #maxScreenScaleIndex index} of the highest screen scale to use.
+	 * Target rendering time (in nanoseconds) for the first screen scale of a new frame. Used as target of the default
+	 * {@link #screenScaleController}.
 	 */
 	private final long targetRenderNanos;
 
 	/**
 	 * The index of the (coarsest) screen scale with which to start rendering. Once this level is painted, rendering
-	 * proceeds to lower screen scales until index 0 (full resolution) has been reached. While rendering, the
-	 * maxScreenScaleIndex is adapted such that it is the highest index for which rendering in {@link
-	 * #targetRenderNanos} nanoseconds is still possible.
+	 * proceeds to lower screen scales until index 0 (full resolution) has been reached. For every new frame, the
+	 * maxScreenScaleIndex is chosen by the {@link #screenScaleController}.
 	 */
 	private int maxScreenScaleIndex;
 
+	/**
+	 * Chooses the screen scale at which rendering of a new frame starts and the screen scales used for refinement.
+	 */
+	private AdaptiveScreenScaleController screenScaleController = new AdaptiveScreenScaleController();
+
+	/**
+	 * Number of sources in the most recently created projector.
+	 */
+	private int numSources = 1;
+
 	/**
 	 * The index of the screen scale which should be rendered next.
 	 */
@@ -258,7 +266,27 @@ public class MultiResolutionRendererGeneric<T>
 	 */
 	private int previousTimepoint;
 
-	private long[] iobudget = new long[] {100l * 1000000l, 10l * 1000000l};
+	/**
+	 * IO time budget for each frame, adapted to the measured IO latency.
+	 */
+	private AdaptiveIoBudget ioBudget = new AdaptiveIoBudget();
+
+	/**
+	 * Per-source projectors of the {@link #projector current projector}. Used to collect {@link FrameStatistics}.
+	 */
+	private final List<VolatileProjector> currentSourceProjectors = new ArrayList<>();
+
+	/**
+	 * Number of pixels in the render target of the {@link #projector current projector}.
+	 */
+	private long currentProjectorNumPixels;
+
+	/**
+	 * Number of frames that were cancelled before rendering completed.
+	 */
+	private long numDroppedFrames;
+
+	private volatile Consumer<FrameStatistics> frameStatisticsListener = stats -> {};
 
 	private boolean prefetchCells = true;
 
@@ -334,6 +362,7 @@ public class MultiResolutionRendererGeneric<T>
 		this.wrapAsArrayImg = wrapAsArrayImg;
 
 		this.targetRenderNanos = targetRenderNanos;
+		this.screenScaleController.setTargetNanos(targetRenderNanos);
 
 		renderingMayBeCancelled = true;
 		this.numRenderingThreads = numRenderingThreads;
@@ -519,7 +548,7 @@ public class MultiResolutionRendererGeneric<T>
 				final T renderTarget = screenImages.get(currentScreenScaleIndex).get(renderId);
 				synchronized (Optional.ofNullable(synchronizationLock).orElse(this))
 				{
-					final int numSources = sacs.size();
+					numSources = sacs.size();
 					checkRenewRenderImages(numSources);
 					checkRenewMaskArrays(numSources);
 
@@ -576,11 +605,16 @@ public class MultiResolutionRendererGeneric<T>
 		final boolean success = p.map(createProjector);
 //		final long rendertime = p.getLastFrameRenderNanoTime();
 
+		final int renderedScreenScaleIndex;
+		final FrameStatistics frameStatistics;
 		synchronized (this)
 		{
+			renderedScreenScaleIndex = currentScreenScaleIndex;
 			// if rendering was not cancelled...
 			if (success)
 			{
+				frameStatistics = collectFrameStatistics(p);
+				ioBudget.update(frameStatistics.getIoNanos());
 				if (createProjector)
 				{
 					final T bi = display.setBufferedImageAndTransform(bufferedImage, currentProjectorTransform);
@@ -592,36 +626,19 @@ public class MultiResolutionRendererGeneric<T>
 							renderIdQueue.add(id);
 					}
 
-					/**
-					 * TODO: design a better algorithm for adjusting maxScreenScaleIndex or remove and always use all screen scales.
-					 *
-					 * The current heuristic does not work well in the following cases:
-					 *
-					 * 1) With vastly different screen scale values such as [1.0, 0.1], it will switch between the two scales every frame.
-					 * At screen scale 0.1 rendering is fast, and after a frame is rendered, it switches maxScreenScaleIndex to 0.
-					 * However, at screen scale 1.0 rendering is slower than targetRenderNanos, so when the next frame is rendered, it switches maxScreenScaleIndex back to 1.
-					 * This causes annoying delays because when maxScreenScaleIndex is switched to 0, renderingMayBeCancelled is in turn set to false, and the algorithm has to wait
-					 * until the current high-res frame is fully rendered.
-					 *
-					 * 2) When the user starts painting, it re-renders only the affected interval which is usually very small compared to the size of the screen.
-					 * Usually rendering is very fast in this case, and maxScreenScaleIndex is quickly changed to 0.
-					 * When the user finishes painting and starts navigating again, there may be a delay in rendering the first few frames because
-					 * it starts from the highest available resolution and then gradually decreases the resolution until the rendertime is within the targetRenderNanos threshold.
-					 */
-//					if (currentScreenScaleIndex == maxScreenScaleIndex)
-//					{
-//						if (rendertime > targetRenderNanos && maxScreenScaleIndex < screenScales.length - 1)
-//							maxScreenScaleIndex++;
-//						else if (rendertime < targetRenderNanos / 3 && maxScreenScaleIndex > 0)
-//							maxScreenScaleIndex--;
-//					}
-//					else if (currentScreenScaleIndex == maxScreenScaleIndex - 1)
-//						if (rendertime < targetRenderNanos && maxScreenScaleIndex > 0)
-//							maxScreenScaleIndex--;
 				}
 
+				if (createProjector)
+					screenScaleController.update(
+							frameStatistics.getRenderNanos(),
+							frameStatistics.getIoNanos(),
+							currentProjectorNumPixels,
+							currentSourceProjectors.size());
+
 				if (currentScreenScaleIndex > 0)
-					requestRepaint(lastRenderedScreenInterval, currentScreenScaleIndex - 1);
+					requestRepaint(
+							lastRenderedScreenInterval,
+							screenScaleController.nextIndex(screenScales, currentScreenScaleIndex, Intervals.numElements(lastRenderedScreenInterval), numSources));
 				else if (!p.isValid())
 				{
 					try
@@ -637,15 +654,107 @@ public class MultiResolutionRendererGeneric<T>
 			}
 			else
 			{
+				++numDroppedFrames;
+				frameStatistics = null;
 				// Add the requested interval back into the queue if it was not rendered
 				if (pendingRepaintRequests[currentScreenScaleIndex] == null)
 					pendingRepaintRequests[currentScreenScaleIndex] = repaintScreenInterval;
 				else
 					pendingRepaintRequests[currentScreenScaleIndex] = Intervals.union(pendingRepaintRequests[currentScreenScaleIndex], repaintScreenInterval);
 			}
+		}
+
+		if (frameStatistics != null)
+			frameStatisticsListener.accept(frameStatistics);
+
+		return success ? renderedScreenScaleIndex : -1;
+	}
 
-			return success ? currentScreenScaleIndex : -1;
+	private FrameStatistics collectFrameStatistics(final VolatileProjector p)
+	{
+		long ioNanos = 0;
+		long numInvalidPixels = 0;
+		for (final VolatileProjector sourceProjector : currentSourceProjectors)
+		{
+			ioNanos = Math.max(ioNanos, getLastFrameIoNanoTime(sourceProjector));
+			numInvalidPixels += getNumInvalidPixels(sourceProjector);
 		}
+		final long numPixels = currentProjectorNumPixels * Math.max(currentSourceProjectors.size(), 1);
+		return new FrameStatistics(
+				System.nanoTime(),
+				Math.max(p.getLastFrameRenderNanoTime(), 0),
+				ioNanos,
+				numPixels > 0 ? numInvalidPixels / (double) numPixels : 0.0,
+				currentScreenScaleIndex,
+				screenScales[currentScreenScaleIndex],
+				numDroppedFrames,
+				ioBudget.getBudget());
+	}
+
+	private static long getLastFrameIoNanoTime(final VolatileProjector p)
+	{
+		if (p instanceof VolatileHierarchyProjectorPreMultiply<?>)
+			return ((VolatileHierarchyProjectorPreMultiply<?>) p).getLastFrameIoNanoTime();
+		if (p instanceof VolatileHierarchyProjector<?, ?>)
+			return ((VolatileHierarchyProjector<?, ?>) p).getLastFrameIoNanoTime();
+		return 0;
+	}
+
+	private static int getNumInvalidPixels(final VolatileProjector p)
+	{
+		if (p instanceof VolatileHierarchyProjectorPreMultiply<?>)
+			return ((VolatileHierarchyProjectorPreMultiply<?>) p).getNumInvalidPixels();
+		if (p instanceof VolatileHierarchyProjector<?, ?>)
+			return ((VolatileHierarchyProjector<?, ?>) p).getNumInvalidPixels();
+		return 0;
+	}
+
+	/**
+	 * Set a listener that is notified with the {@link FrameStatistics} of every successfully rendered frame. The
+	 * listener is called on the painter thread.
+	 *
+	 * @param listener {@code null} removes the current listener
+	 */
+	public synchronized void setFrameStatisticsListener(final Consumer<FrameStatistics> listener)
+	{
+		this.frameStatisticsListener = Optional.ofNullable(listener).orElse(stats -> {});
+	}
+
+	/**
+	 * @return the IO time budget used for every frame. Adaptation can be switched off through {@link AdaptiveIoBudget#setAdaptive(boolean)}.
+	 */
+	public synchronized AdaptiveIoBudget getIoBudget()
+	{
+		return ioBudget;
+	}
+
+	/**
+	 * Share an IO time budget, e.g. across renderers that are re-created on resize.
+	 */
+	public synchronized void setIoBudget(final AdaptiveIoBudget ioBudget)
+	{
+		this.ioBudget = ioBudget;
+	}
+
+	/**
+	 * @return the controller that chooses the screen scales for every frame
+	 */
+	public synchronized AdaptiveScreenScaleController getScreenScaleController()
+	{
+		return screenScaleController;
+	}
+
+	/**
+	 * Share a screen scale controller, e.g. across renderers that are re-created on resize or across viewers.
+	 */
+	public synchronized void setScreenScaleController(final AdaptiveScreenScaleController screenScaleController)
+	{
+		this.screenScaleController = screenScaleController;
+	}
+
+	public synchronized long getNumDroppedFrames()
+	{
+		return numDroppedFrames;
 	}
 
 	public synchronized Interval getLastRenderedScreenInterval()
@@ -664,6 +773,8 @@ public class MultiResolutionRendererGeneric<T>
 	public synchronized void requestRepaint(final Interval interval)
 	{
 		newFrameRequest = true;
+		if (!Intervals.isEmpty(interval))
+			maxScreenScaleIndex = screenScaleController.startIndex(screenScales, Intervals.numElements(interval), numSources);
 		requestRepaint(interval, maxScreenScaleIndex);
 	}
 
@@ -713,6 +824,8 @@ public class MultiResolutionRendererGeneric<T>
 		//		CacheIoTiming.getIoTimeBudget().clear(); // clear time budget such that prefetching doesn't wait for
 		// loading blocks.
 		VolatileProjector projector;
+		currentSourceProjectors.clear();
+		currentProjectorNumPixels = Intervals.numElements(screenImage);
 		if (sacs.isEmpty())
 			projector = new EmptyProjector<>(screenImage);
 		else if (sacs.size() == 1)
@@ -732,6 +845,7 @@ public class MultiResolutionRendererGeneric<T>
 					interpolation,
 					true
 			                                       );
+			currentSourceProjectors.add(projector);
 		}
 		else
 		{
@@ -763,6 +877,7 @@ public class MultiResolutionRendererGeneric<T>
 				sources.add(sac.getSpimSource());
 				sourceImages.add(renderImage);
 			}
+			currentSourceProjectors.addAll(sourceProjectors);
 			projector = accumulateProjectorFactory.createAccumulateProjector(
 					sourceProjectors,
 					sources,
@@ -774,7 +889,7 @@ public class MultiResolutionRendererGeneric<T>
 		}
 		previousTimepoint = timepoint;
 		currentProjectorTransform.set(viewerTransform);
-		CacheIoTiming.getIoTimeBudget().reset(iobudget);
+		CacheIoTiming.getIoTimeBudget().reset(ioBudget.getBudget());
 		return projector;
 	}
 
@@ -8,6 +8,7 @@ import bdv.viewer.SourceAndConverter;
 import bdv.viewer.render.AccumulateProjectorFactory;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.ReadOnlyObjectProperty;
+import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleObjectProperty;
 import javafx.scene.image.Image;
 import net.imglib2.FinalInterval;
@@ -37,6 +38,11 @@ public class RenderUnit implements PainterThread.Paintable {
 
 	private static Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	/**
+	 * Structured stream of {@link FrameStatistics}, one line per rendered frame. Enable at debug level to record.
+	 */
+	private static final Logger FRAME_STATISTICS_LOG = LoggerFactory.getLogger(FrameStatistics.class);
+
 	private final long[] dimensions = {1, 1};
 
 	private final ObjectProperty<double[]> screenScalesProperty = new SimpleObjectProperty<>(ScreenScalesConfig.defaultScreenScalesCopy());
@@ -45,6 +51,12 @@ public class RenderUnit implements PainterThread.Paintable {
 
 	private final ObjectProperty<RenderResult> renderResultProperty = new SimpleObjectProperty<>();
 
+	private final ReadOnlyObjectWrapper<FrameStatistics> frameStatisticsProperty = new ReadOnlyObjectWrapper<>();
+
+	private final AdaptiveIoBudget ioBudget = new AdaptiveIoBudget();
+
+	private AdaptiveScreenScaleController screenScaleController;
+
 	private PainterThread painterThread;
 
 	private TransformAwareBufferedImageOverlayRendererFX renderTarget;
@@ -86,6 +98,10 @@ public class RenderUnit implements PainterThread.Paintable {
 		this.accumulateProjectorFactory = accumulateProjectorFactory;
 		this.cacheControl = cacheControl;
 		this.targetRenderNanos = targetRenderNanos;
+		this.screenScaleController = new AdaptiveScreenScaleController(
+				targetRenderNanos,
+				AdaptiveScreenScaleController.DEFAULT_REFINEMENT_FACTOR,
+				AdaptiveScreenScaleController.DEFAULT_SMOOTHING);
 		this.numRenderingThreads = numRenderingThreads;
 		this.renderingExecutorService = renderingExecutorService;
 		update();
@@ -192,6 +208,9 @@ public class RenderUnit implements PainterThread.Paintable {
 				accumulateProjectorFactory,
 				cacheControl
 		);
+		renderer.setIoBudget(ioBudget);
+		renderer.setScreenScaleController(screenScaleController);
+		renderer.setFrameStatisticsListener(this::publishFrameStatistics);
 
 		notifyUpdated();
 	}
@@ -201,6 +220,47 @@ public class RenderUnit implements PainterThread.Paintable {
 		return renderResultProperty;
 	}
 
+	/**
+	 * @return statistics of the most recently rendered frame. Updated on the painter thread.
+	 */
+	public ReadOnlyObjectProperty<FrameStatistics> frameStatisticsProperty()
+	{
+		return frameStatisticsProperty.getReadOnlyProperty();
+	}
+
+	/**
+	 * @return IO time budget shared by all frames rendered by this {@link RenderUnit}
+	 */
+	public AdaptiveIoBudget getIoBudget()
+	{
+		return ioBudget;
+	}
+
+	/**
+	 * @return controller that chooses the screen scales for every frame rendered by this {@link RenderUnit}
+	 */
+	public synchronized AdaptiveScreenScaleController getScreenScaleController()
+	{
+		return screenScaleController;
+	}
+
+	/**
+	 * Share a screen scale controller across {@link RenderUnit}s, e.g. so that all viewers learn from the same
+	 * measurements.
+	 */
+	public synchronized void setScreenScaleController(final AdaptiveScreenScaleController screenScaleController)
+	{
+		this.screenScaleController = screenScaleController;
+		if (renderer != null)
+			renderer.setScreenScaleController(screenScaleController);
+	}
+
+	private void publishFrameStatistics(final FrameStatistics frameStatistics)
+	{
+		FRAME_STATISTICS_LOG.debug("renderUnit={} {}", threadGroup.getName(), frameStatistics);
+		frameStatisticsProperty.set(frameStatistics);
+	}
+
 	public synchronized long[] getDimensions()
 	{
 		return dimensions;
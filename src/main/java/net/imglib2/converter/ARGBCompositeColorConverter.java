@@ -43,6 +43,11 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 
 	protected final double[] scaleB;
 
+	/**
+	 * Snapshot of {@link #min} that is updated on change, read for each pixel instead of the properties.
+	 */
+	protected final double[] offset;
+
 	public ARGBCompositeColorConverter(final int numChannels) {
 		this(numChannels, 0, 255);
 	}
@@ -69,6 +74,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 		this.scaleR = new double[numChannels];
 		this.scaleG = new double[numChannels];
 		this.scaleB = new double[numChannels];
+		this.offset = new double[numChannels];
 
 		Stream.of(this.min).forEach(m -> m.addListener((obs, oldv, newv) -> update()));
 		Stream.of(this.max).forEach(m -> m.addListener((obs, oldv, newv) -> update()));
@@ -138,6 +144,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 			scaleR[channel] = ARGBType.red(value) * scale * a;
 			scaleG[channel] = ARGBType.green(value) * scale * a;
 			scaleB[channel] = ARGBType.blue(value) * scale * a;
+			offset[channel] = min[channel].get();
 		}
 		LOG.debug("Updated red   scales to {}", scaleR);
 		LOG.debug("Updated green scales to {}", scaleG);
@@ -179,7 +186,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 			V input,
 			final ARGBType output,
 			final int numChannels,
-			final DoubleProperty[] min,
+			final double[] offset,
 			final double[] scaleR,
 			final double[] scaleG,
 			final double[] scaleB,
@@ -190,7 +197,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 		double bd = 0.0;
 		final RealComposite<? extends RealType<?>> c = input.get();
 		for (int channel = 0; channel < numChannels; ++channel) {
-			final double v = c.get(channel).getRealDouble() - min[channel].get();
+			final double v = c.get(channel).getRealDouble() - offset[channel];
 			rd += scaleR[channel] * v;
 			gd += scaleG[channel] * v;
 			bd += scaleB[channel] * v;
@@ -219,7 +226,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 
 		@Override
 		public void convert(final V input, final ARGBType output) {
-			ARGBCompositeColorConverter.convertInverting(input, output, numChannels, min, scaleR, scaleG, scaleB, A);
+			ARGBCompositeColorConverter.convertInverting(input, output, numChannels, offset, scaleR, scaleG, scaleB, A);
 		}
 	}
 
@@ -238,7 +245,7 @@ public abstract class ARGBCompositeColorConverter<R extends RealType<R>, C exten
 
 		@Override
 		public void convert(final V input, final ARGBType output) {
-			ARGBCompositeColorConverter.convertInverting(input, output, numChannels, min, scaleR, scaleG, scaleB, A);
+			ARGBCompositeColorConverter.convertInverting(input, output, numChannels, offset, scaleR, scaleG, scaleB, A);
 		}
 	}
 }
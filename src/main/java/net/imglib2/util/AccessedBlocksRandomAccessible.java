@@ -68,7 +68,7 @@ public class AccessedBlocksRandomAccessible<T> extends AbstractWrappedInterval<R
 		this.visitedBlocks.clear();
 	}
 
-	protected void addBlockId(final long id)
+	public void addBlockId(final long id)
 	{
 		this.visitedBlocks.add(id);
 	}
@@ -216,6 +216,7 @@ public class Paintera extends Application
 		baseView.orthogonalViews().setScreenScales(properties.screenScalesConfig.screenScalesProperty().get().getScalesCopy());
 		if (painteraArgs.wereScreenScalesProvided())
 			properties.screenScalesConfig.screenScalesProperty().set(new ScreenScalesConfig.ScreenScales(painteraArgs.screenScales()));
+		baseView.orthogonalViews().applyToAll(vp -> vp.getRenderUnit().setScreenScaleController(properties.screenScalesConfig.screenScaleController()));
 
 		paneWithStatus.navigationConfigNode().bind(properties.navigationConfig);
 		properties.navigationConfig.bindNavigationToConfig(defaultHandlers.navigation());
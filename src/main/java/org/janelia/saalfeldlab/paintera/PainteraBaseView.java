@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.paintera;
 
 import bdv.viewer.Interpolation;
+import bdv.viewer.Source;
 import bdv.viewer.SourceAndConverter;
 import bdv.viewer.ViewerOptions;
 import javafx.beans.property.ObjectProperty;
@@ -28,6 +29,7 @@ import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.cache.DiscoverableMemoryUsage;
 import org.janelia.saalfeldlab.paintera.cache.Invalidate;
 import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.janelia.saalfeldlab.paintera.cache.global.FetchScheduler;
 import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.composition.CompositeProjectorPreMultiply;
 import org.janelia.saalfeldlab.paintera.config.CoordinateConfigNode;
@@ -41,6 +43,7 @@ import org.janelia.saalfeldlab.paintera.control.actions.AllowedActions;
 import org.janelia.saalfeldlab.paintera.control.actions.AllowedActions.AllowedActionsBuilder;
 import org.janelia.saalfeldlab.paintera.data.axisorder.AxisOrder;
 import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSource;
 import org.janelia.saalfeldlab.paintera.state.ChannelSourceState;
 import org.janelia.saalfeldlab.paintera.state.GlobalTransformManager;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
@@ -134,7 +137,7 @@ public class PainteraBaseView
 
 	/**
 	 *
-	 * @param numFetcherThreads number of threads used for {@link net.imglib2.cache.queue.FetcherThreads}
+	 * @param numFetcherThreads minimum number of threads used by the {@link FetchScheduler} of the {@link GlobalCache}
 	 * @param viewerOptions options passed down to {@link OrthogonalViews viewers}
 	 */
 	public PainteraBaseView(
@@ -161,9 +164,57 @@ public class PainteraBaseView
 		this.allowedActionsProperty = new SimpleObjectProperty<>(DEFAULT_ALLOWED_ACTIONS);
 		this.vsacUpdate = change -> views.setAllSources(visibleSourcesAndConverters);
 		visibleSourcesAndConverters.addListener(vsacUpdate);
+		this.sourceInfo.currentState().addListener((obs, oldv, newv) -> boostFetchGroup(newv));
+		this.sourceInfo.removedSourcesTracker().addListener((ListChangeListener<Source<?>>) change -> {
+			while (change.next())
+				change.getAddedSubList().forEach(removed -> {
+					removeFetchGroup(removed);
+					// canvas of a removed source is discarded
+					if (removed instanceof MaskedSource<?, ?>)
+						((MaskedSource<?, ?>) removed).deleteJournal();
+				});
+		});
 		LOG.debug("Meshes group={}", viewer3D.meshesGroup());
 	}
 
+	/**
+	 * Boost loading of blocks for the current source over other sources in the {@link FetchScheduler}.
+	 */
+	private void boostFetchGroup(final SourceState<?, ?> state)
+	{
+		final FetchScheduler scheduler = this.globalCache.getFetchScheduler();
+		if (scheduler == null)
+			return;
+		scheduler.setBoosted(state == null ? null : fetchGroupKey(state.getDataSource()));
+	}
+
+	/**
+	 * Stop loading blocks for a removed source, unless other sources share its {@link FetchScheduler.Group}.
+	 */
+	private void removeFetchGroup(final Source<?> removed)
+	{
+		final FetchScheduler scheduler = this.globalCache.getFetchScheduler();
+		final String key = fetchGroupKey(removed);
+		if (scheduler == null || key == null)
+			return;
+		if (sourceInfo.trackSources().stream().map(PainteraBaseView::fetchGroupKey).anyMatch(key::equals))
+		{
+			LOG.debug("Fetch group {} of removed source {} is still in use", key, removed);
+			return;
+		}
+		scheduler.remove(key);
+	}
+
+	/**
+	 * @return key of the {@link FetchScheduler.Group} of {@code source}, {@code null} if {@code source} is not an
+	 * {@link N5DataSource}
+	 */
+	private static String fetchGroupKey(final Source<?> source)
+	{
+		final Source<?> underlying = source instanceof MaskedSource<?, ?> ? ((MaskedSource<?, ?>) source).underlyingSource() : source;
+		return underlying instanceof N5DataSource<?, ?> ? ((N5DataSource<?, ?>) underlying).fetchGroupKey() : null;
+	}
+
 	/**
 	 *
 	 * @return {@link OrthogonalViews orthogonal viewers} ui element and management
@@ -480,6 +531,7 @@ public class PainteraBaseView
 		this.meshWorkerExecutorService.shutdownNow();
 		this.paintQueue.shutdownNow();
 		this.propagationQueue.shutdownNow();
+		Optional.ofNullable(this.globalCache.getFetchScheduler()).ifPresent(FetchScheduler::close);
 		this.orthogonalViews().topLeft().viewer().stop();
 		this.orthogonalViews().topRight().viewer().stop();
 		this.orthogonalViews().bottomLeft().viewer().stop();
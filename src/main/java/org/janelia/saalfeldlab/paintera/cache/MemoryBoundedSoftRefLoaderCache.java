@@ -13,6 +13,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.function.ToLongFunction;
@@ -37,6 +38,10 @@ public class MemoryBoundedSoftRefLoaderCache<K, V, LC extends LoaderCache<K, V>
 
 	private final ToLongFunction<V> memoryUsageInBytes;
 
+	private final LongAdder numHits = new LongAdder();
+
+	private final LongAdder numLoads = new LongAdder();
+
 	private MemoryBoundedSoftRefLoaderCache(final LC cache, final long maxSizeInBytes, final ToLongFunction<V> memoryUsageInBytes) {
 		this.cache = cache;
 		this.softRefs = new SoftRefs(maxSizeInBytes);
@@ -79,21 +84,70 @@ public class MemoryBoundedSoftRefLoaderCache<K, V, LC extends LoaderCache<K, V>
 		}
 	}
 
+	/**
+	 *
+	 * @return number of requests that were served from the cache since the last {@link #resetStatistics()}
+	 */
+	public long getNumHits()
+	{
+		return numHits.sum();
+	}
+
+	/**
+	 *
+	 * @return number of requests that required a call to a {@link CacheLoader} since the last {@link #resetStatistics()}
+	 */
+	public long getNumLoads()
+	{
+		return numLoads.sum();
+	}
+
+	public void resetStatistics()
+	{
+		numHits.reset();
+		numLoads.reset();
+	}
+
 	@Override
 	public V getIfPresent(final K key) {
-		final V value = cache.getIfPresent(key);
+		final V value = present(key);
 		if (value != null)
-			softRefs.touch(key, value);
+			numHits.increment();
 		return value;
 	}
 
+	/**
+	 * Each call counts as at most one hit or one load: A value that is present counts as hit. A value that was loaded
+	 * concurrently by another call while waiting is counted only once, as load of that other call.
+	 */
 	@Override
 	public V get(final K key, final CacheLoader<? super K, ? extends V> loader) throws ExecutionException {
-		final V value = cache.get(key, loader);
+		final V present = present(key);
+		if (present != null) {
+			numHits.increment();
+			return present;
+		}
+		final boolean[] loaded = {false};
+		final V value = cache.get(key, k -> {
+			loaded[0] = true;
+			return loader.get(k);
+		});
+		if (loaded[0])
+			numLoads.increment();
 		softRefs.touch(key, value);
 		return value;
 	}
 
+	/**
+	 * @return value for {@code key} if present, without counting a hit
+	 */
+	private V present(final K key) {
+		final V value = cache.getIfPresent(key);
+		if (value != null)
+			softRefs.touch(key, value);
+		return value;
+	}
+
 	@Override
 	public void invalidateAll() {
 		softRefs.clear();
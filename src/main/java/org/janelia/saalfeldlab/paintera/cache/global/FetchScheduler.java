@@ -0,0 +1,674 @@
+package org.janelia.saalfeldlab.paintera.cache.global;
+
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * Schedules loading of cells from the fetch queues of multiple {@link Group groups} (typically one per source) onto a
+ * shared pool of fetcher threads.
+ * <ul>
+ *     <li>Each group has its own {@link BlockingFetchQueues} with mip-map level priorities. Within a group, requests
+ *     are served in the order of these queues.</li>
+ *     <li>Across groups, fetcher threads are shared in proportion to the {@link #setWeight(Object, double) weight} of
+ *     each group that has pending requests (stride scheduling). The weight of the {@link #setBoosted(Object) boosted}
+ *     group, e.g. the current source, is multiplied by {@link #setBoost(double) boost}, {@link #DEFAULT_BOOST} by
+ *     default.</li>
+ *     <li>The number of concurrent requests per {@link Backend} is limited, e.g. HDF5 is not thread-safe and is
+ *     limited to a single request at a time.</li>
+ *     <li>The number of concurrent requests overall adapts to the observed ratio of wall time and cpu time of
+ *     requests, between {@code minNumFetcherThreads} and {@code maxNumFetcherThreads}: Requests that are waiting for
+ *     high latency storage admit more concurrent requests than requests that are cpu bound.</li>
+ * </ul>
+ * Each group has a dispatcher thread that acquires a slot before it takes the next request from the queue of the
+ * group, i.e. requests that are enqueued while waiting for a slot are served by priority. Groups of sources that are
+ * removed must be {@link #remove(Object) removed} to stop their dispatcher.
+ */
+public class FetchScheduler
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final double DEFAULT_BOOST = 4.0;
+
+	private static final int ADAPT_INTERVAL = 64;
+
+	private static final double EWMA_ALPHA = 0.1;
+
+	private static final double STRIDE = 1.0;
+
+	/**
+	 * Storage backends with their default limit on concurrent requests.
+	 */
+	public enum Backend
+	{
+		FILE_SYSTEM(Integer.MAX_VALUE),
+		CLOUD(Integer.MAX_VALUE),
+		HDF5(1),
+		OTHER(Integer.MAX_VALUE);
+
+		private final int defaultConcurrencyLimit;
+
+		Backend(final int defaultConcurrencyLimit)
+		{
+			this.defaultConcurrencyLimit = defaultConcurrencyLimit;
+		}
+	}
+
+	/**
+	 * Snapshot of queue metrics of a {@link Group}.
+	 */
+	public static class Metrics
+	{
+		public final Object key;
+
+		public final Backend backend;
+
+		public final double effectiveWeight;
+
+		public final int numRunning;
+
+		public final boolean isWaiting;
+
+		public final long numCompleted;
+
+		public final long numFailed;
+
+		public final double meanLatencyMillis;
+
+		public final double meanWaitMillis;
+
+		private Metrics(
+				final Object key,
+				final Backend backend,
+				final double effectiveWeight,
+				final int numRunning,
+				final boolean isWaiting,
+				final long numCompleted,
+				final long numFailed,
+				final double meanLatencyMillis,
+				final double meanWaitMillis)
+		{
+			this.key = key;
+			this.backend = backend;
+			this.effectiveWeight = effectiveWeight;
+			this.numRunning = numRunning;
+			this.isWaiting = isWaiting;
+			this.numCompleted = numCompleted;
+			this.numFailed = numFailed;
+			this.meanLatencyMillis = meanLatencyMillis;
+			this.meanWaitMillis = meanWaitMillis;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"{%s (%s): weight=%.2f running=%d waiting=%s completed=%d failed=%d latency=%.2fms wait=%.2fms}",
+					key,
+					backend,
+					effectiveWeight,
+					numRunning,
+					isWaiting,
+					numCompleted,
+					numFailed,
+					meanLatencyMillis,
+					meanWaitMillis);
+		}
+	}
+
+	/**
+	 * Fetch queue of a single source. Pass {@link #queue()} to caches that enqueue loading requests.
+	 */
+	public class Group
+	{
+		private final Object key;
+
+		private final Backend backend;
+
+		private final BlockingFetchQueues<Callable<?>> queue;
+
+		private final Thread dispatcher;
+
+		private volatile boolean isRemoved = false;
+
+		// guarded by lock
+		private double pass = 0.0;
+
+		// guarded by lock
+		private boolean isWaiting = false;
+
+		// guarded by lock
+		private int numRunning = 0;
+
+		// guarded by lock
+		private long numCompleted = 0;
+
+		// guarded by lock
+		private long numFailed = 0;
+
+		// guarded by lock
+		private double meanLatencyNanos = 0.0;
+
+		// guarded by lock
+		private double meanWaitNanos = 0.0;
+
+		private Group(final Object key, final Backend backend)
+		{
+			this.key = key;
+			this.backend = backend;
+			this.queue = new BlockingFetchQueues<>(numPriorities);
+			this.dispatcher = new Thread(this::dispatch, String.format("fetch-dispatcher-%s", key));
+			this.dispatcher.setDaemon(true);
+		}
+
+		public Object key()
+		{
+			return this.key;
+		}
+
+		public Backend backend()
+		{
+			return this.backend;
+		}
+
+		public BlockingFetchQueues<Callable<?>> queue()
+		{
+			return this.queue;
+		}
+
+		private void dispatch()
+		{
+			try
+			{
+				while (!isRemoved)
+				{
+					// wait for requests without holding a slot
+					final Callable<?> first = queue.take();
+					acquire(this);
+					execute(first);
+					// while requests are pending, acquire a slot before taking the request with the highest priority
+					while (!isRemoved)
+					{
+						acquire(this);
+						final Callable<?> task;
+						try
+						{
+							task = queue.poll(0, TimeUnit.NANOSECONDS);
+						} catch (final InterruptedException e)
+						{
+							cancel(this);
+							throw e;
+						}
+						if (task == null)
+						{
+							cancel(this);
+							break;
+						}
+						execute(task);
+					}
+				}
+			} catch (final InterruptedException e)
+			{
+				LOG.debug("Dispatcher for {} interrupted.", key);
+			}
+			LOG.debug("Dispatcher for {} stopped.", key);
+		}
+
+		private void execute(final Callable<?> task)
+		{
+			try
+			{
+				fetcherThreads.execute(() -> run(task));
+			} catch (final RejectedExecutionException e)
+			{
+				LOG.error("Unable to submit fetch request for {}", key, e);
+				release(this, 0, 0, false);
+			}
+		}
+
+		private void run(final Callable<?> task)
+		{
+			final long start = System.nanoTime();
+			final long cpuStart = currentThreadCpuTime();
+			boolean success = false;
+			try
+			{
+				task.call();
+				success = true;
+			} catch (final InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			} catch (final Exception e)
+			{
+				LOG.debug("Fetch request for {} failed: {}", key, e.getMessage(), e);
+			} finally
+			{
+				release(this, System.nanoTime() - start, currentThreadCpuTime() - cpuStart, success);
+			}
+		}
+
+		private double effectiveWeight()
+		{
+			final double weight = weights.getOrDefault(key, 1.0);
+			return Objects.equals(key, boosted) ? boost * weight : weight;
+		}
+
+		private Metrics metrics()
+		{
+			return new Metrics(
+					key,
+					backend,
+					effectiveWeight(),
+					numRunning,
+					isWaiting,
+					numCompleted,
+					numFailed,
+					meanLatencyNanos * 1e-6,
+					meanWaitNanos * 1e-6);
+		}
+	}
+
+	private final int numPriorities;
+
+	private final int minNumFetcherThreads;
+
+	private final int maxNumFetcherThreads;
+
+	private final ExecutorService fetcherThreads;
+
+	private final Map<Object, Group> groups = new ConcurrentHashMap<>();
+
+	private final Map<Object, Double> weights = new ConcurrentHashMap<>();
+
+	private final Map<Backend, Integer> concurrencyLimits = new EnumMap<>(Backend.class);
+
+	private final Map<Backend, Integer> numRunningPerBackend = new EnumMap<>(Backend.class);
+
+	private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+	private final boolean isCpuTimeSupported = threadMXBean.isCurrentThreadCpuTimeSupported();
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Condition slotAvailable = lock.newCondition();
+
+	private volatile Object boosted = null;
+
+	private volatile double boost = DEFAULT_BOOST;
+
+	// guarded by lock
+	private int numFetcherThreads;
+
+	// guarded by lock
+	private int numRunning = 0;
+
+	// guarded by lock
+	private double meanWallToCpuRatio = 1.0;
+
+	// guarded by lock
+	private int numCompletedSinceAdapt = 0;
+
+	/**
+	 * @param numPriorities number of priorities (mip-map levels) of each {@link Group#queue()}
+	 * @param minNumFetcherThreads minimum number of concurrent requests, and initial number of concurrent requests
+	 * @param maxNumFetcherThreads maximum number of concurrent requests
+	 */
+	public FetchScheduler(final int numPriorities, final int minNumFetcherThreads, final int maxNumFetcherThreads)
+	{
+		if (minNumFetcherThreads < 1 || maxNumFetcherThreads < minNumFetcherThreads)
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of fetcher threads: min=%d max=%d",
+					minNumFetcherThreads,
+					maxNumFetcherThreads));
+		this.numPriorities = numPriorities;
+		this.minNumFetcherThreads = minNumFetcherThreads;
+		this.maxNumFetcherThreads = maxNumFetcherThreads;
+		this.numFetcherThreads = minNumFetcherThreads;
+		this.fetcherThreads = Executors.newCachedThreadPool(new NamedThreadFactory("fetcher-thread-%d", true));
+		for (final Backend backend : Backend.values())
+		{
+			this.concurrencyLimits.put(backend, backend.defaultConcurrencyLimit);
+			this.numRunningPerBackend.put(backend, 0);
+		}
+	}
+
+	/**
+	 * @param key identifies the group, e.g. container and dataset of a source
+	 * @param backend limit concurrent requests of this group according to this backend
+	 * @return existing group for {@code key} or new group if none exists
+	 */
+	public Group group(final Object key, final Backend backend)
+	{
+		final Group[] created = {null};
+		final Group group = groups.computeIfAbsent(key, k -> created[0] = new Group(k, backend));
+		if (created[0] != null)
+			created[0].dispatcher.start();
+		return group;
+	}
+
+	/**
+	 * Remove the group identified by {@code key}, e.g. after its source was removed: Pending requests of the group are
+	 * discarded and its dispatcher is stopped. Requests that are already running are completed. Caches that still
+	 * enqueue requests into the queue of a removed group are not served anymore.
+	 *
+	 * @param key identifies the group
+	 */
+	public void remove(final Object key)
+	{
+		final Group group = groups.remove(key);
+		if (group == null)
+			return;
+		LOG.debug("Removing fetch group {}", key);
+		group.isRemoved = true;
+		group.dispatcher.interrupt();
+		group.queue.clear();
+		weights.remove(key);
+		if (Objects.equals(boosted, key))
+			boosted = null;
+		// removed group does not compete for slots anymore
+		signalAll();
+	}
+
+	/**
+	 * Remove all groups and stop fetcher threads.
+	 */
+	public void close()
+	{
+		new ArrayList<>(groups.keySet()).forEach(this::remove);
+		fetcherThreads.shutdown();
+	}
+
+	public int getNumPriorities()
+	{
+		return this.numPriorities;
+	}
+
+	/**
+	 * Set relative share of fetcher threads for group identified by {@code key}. Default weight is {@code 1.0}.
+	 */
+	public void setWeight(final Object key, final double weight)
+	{
+		if (weight <= 0.0)
+			throw new IllegalArgumentException("Weight must be positive: " + weight);
+		weights.put(key, weight);
+		signalAll();
+	}
+
+	/**
+	 * Boost the share of the group identified by {@code key}, e.g. the current source. Only a single group is boosted
+	 * at any time, pass {@code null} to remove the boost.
+	 */
+	public void setBoosted(final Object key)
+	{
+		LOG.debug("Boosting fetch group {}", key);
+		this.boosted = key;
+		signalAll();
+	}
+
+	public void setBoost(final double boost)
+	{
+		if (boost < 1.0)
+			throw new IllegalArgumentException("Boost must not be less than 1: " + boost);
+		this.boost = boost;
+		signalAll();
+	}
+
+	/**
+	 * Limit the number of concurrent requests to all groups of {@code backend}.
+	 */
+	public void setConcurrencyLimit(final Backend backend, final int limit)
+	{
+		if (limit < 1)
+			throw new IllegalArgumentException("Need at least one concurrent request: " + limit);
+		lock.lock();
+		try
+		{
+			concurrencyLimits.put(backend, limit);
+			slotAvailable.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return current number of concurrent requests, adapted to the observed latency of requests
+	 */
+	public int getNumFetcherThreads()
+	{
+		lock.lock();
+		try
+		{
+			return numFetcherThreads;
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return snapshot of metrics for all groups
+	 */
+	public List<Metrics> metrics()
+	{
+		lock.lock();
+		try
+		{
+			return groups.values().stream().map(Group::metrics).collect(Collectors.toList());
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * {@link BlockingFetchQueues#clearToPrefetch() Move} pending requests of all groups to prefetch queues.
+	 */
+	public void clearToPrefetch()
+	{
+		groups.values().forEach(g -> g.queue.clearToPrefetch());
+	}
+
+	/**
+	 * {@link BlockingFetchQueues#clear() Remove} pending requests of all groups.
+	 */
+	public void clear()
+	{
+		groups.values().forEach(g -> g.queue.clear());
+	}
+
+	private void acquire(final Group group) throws InterruptedException
+	{
+		final long start = System.nanoTime();
+		lock.lock();
+		try
+		{
+			// do not let groups accumulate more credit than a single stride while idle
+			group.pass = Math.max(group.pass, minPassOfActiveGroups(group) - maxStrideOfActiveGroups(group));
+			group.isWaiting = true;
+			try
+			{
+				while (!isNext(group))
+					slotAvailable.await();
+			} finally
+			{
+				group.isWaiting = false;
+			}
+			++numRunning;
+			++group.numRunning;
+			numRunningPerBackend.merge(group.backend, 1, Integer::sum);
+			group.pass += STRIDE / group.effectiveWeight();
+			group.meanWaitNanos = ewma(group.meanWaitNanos, System.nanoTime() - start);
+			// other groups may be eligible for remaining slots
+			slotAvailable.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Release a slot that was acquired by {@code group} without running a request, e.g. because the queue of
+	 * {@code group} was cleared while waiting for the slot.
+	 */
+	private void cancel(final Group group)
+	{
+		lock.lock();
+		try
+		{
+			--numRunning;
+			--group.numRunning;
+			numRunningPerBackend.merge(group.backend, -1, Integer::sum);
+			group.pass -= STRIDE / group.effectiveWeight();
+			slotAvailable.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private void release(
+			final Group group,
+			final long wallTime,
+			final long cpuTime,
+			final boolean success)
+	{
+		lock.lock();
+		try
+		{
+			--numRunning;
+			--group.numRunning;
+			numRunningPerBackend.merge(group.backend, -1, Integer::sum);
+			if (success)
+			{
+				++group.numCompleted;
+				group.meanLatencyNanos = ewma(group.meanLatencyNanos, wallTime);
+			}
+			else
+				++group.numFailed;
+			if (isCpuTimeSupported && cpuTime > 0)
+				meanWallToCpuRatio = ewma(meanWallToCpuRatio, (double) wallTime / cpuTime);
+			if (++numCompletedSinceAdapt >= ADAPT_INTERVAL)
+			{
+				numCompletedSinceAdapt = 0;
+				adaptNumFetcherThreads();
+			}
+			slotAvailable.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Ideal number of threads for tasks that spend a fraction of their time waiting: {@code numCores * wall / cpu}.
+	 */
+	private void adaptNumFetcherThreads()
+	{
+		if (!isCpuTimeSupported)
+			return;
+		final int numCores = Runtime.getRuntime().availableProcessors();
+		final int target = (int) Math.ceil(numCores * meanWallToCpuRatio);
+		final int updated = Math.max(minNumFetcherThreads, Math.min(maxNumFetcherThreads, target));
+		if (updated != numFetcherThreads)
+		{
+			LOG.debug(
+					"Adapting number of fetcher threads from {} to {} (wall time / cpu time={})",
+					numFetcherThreads,
+					updated,
+					meanWallToCpuRatio);
+			numFetcherThreads = updated;
+		}
+	}
+
+	/**
+	 * @return {@code true} if a slot is available for {@code group} and no other group that is waiting and has
+	 * available slots for its backend comes before {@code group}.
+	 */
+	private boolean isNext(final Group group)
+	{
+		if (numRunning >= numFetcherThreads || !hasBackendSlot(group.backend))
+			return false;
+		for (final Group other : groups.values())
+		{
+			if (other == group || !other.isWaiting || !hasBackendSlot(other.backend))
+				continue;
+			if (other.pass < group.pass || other.pass == group.pass && other.effectiveWeight() > group.effectiveWeight())
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * @return minimum pass of all groups other than {@code group} that are waiting or running, {@code 0} if there
+	 * are none
+	 */
+	private double minPassOfActiveGroups(final Group group)
+	{
+		double minPass = Double.POSITIVE_INFINITY;
+		for (final Group other : groups.values())
+			if (other != group && (other.isWaiting || other.numRunning > 0))
+				minPass = Math.min(minPass, other.pass);
+		return Double.isInfinite(minPass) ? 0.0 : minPass;
+	}
+
+	/**
+	 * @return maximum stride of {@code group} and all other groups that are waiting or running
+	 */
+	private double maxStrideOfActiveGroups(final Group group)
+	{
+		double maxStride = STRIDE / group.effectiveWeight();
+		for (final Group other : groups.values())
+			if (other.isWaiting || other.numRunning > 0)
+				maxStride = Math.max(maxStride, STRIDE / other.effectiveWeight());
+		return maxStride;
+	}
+
+	private boolean hasBackendSlot(final Backend backend)
+	{
+		return numRunningPerBackend.get(backend) < concurrencyLimits.get(backend);
+	}
+
+	private void signalAll()
+	{
+		lock.lock();
+		try
+		{
+			slotAvailable.signalAll();
+		} finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private long currentThreadCpuTime()
+	{
+		return isCpuTimeSupported ? threadMXBean.getCurrentThreadCpuTime() : 0;
+	}
+
+	private static double ewma(final double mean, final double value)
+	{
+		return mean + EWMA_ALPHA * (value - mean);
+	}
+
+}
@@ -41,7 +41,6 @@ import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.cache.img.CellLoader;
 import net.imglib2.cache.img.LoadedCellCacheLoader;
 import net.imglib2.cache.queue.BlockingFetchQueues;
-import net.imglib2.cache.queue.FetcherThreads;
 import net.imglib2.cache.util.KeyBimap;
 import net.imglib2.cache.volatiles.*;
 import net.imglib2.img.NativeImg;
@@ -135,8 +134,12 @@ public class GlobalCache implements CacheControl {
 		}
 	}
 
+	private static final String DEFAULT_FETCH_GROUP = "default";
+
 	private final BlockingFetchQueues<Callable<?>> queue;
 
+	private final FetchScheduler scheduler;
+
 	private final LoaderCache<Key<?>, ?> backingCache;
 
 	private final Invalidate<Key<?>> invalidate;
@@ -144,15 +147,31 @@ public class GlobalCache implements CacheControl {
 	private final AtomicInteger nextSetupId = new AtomicInteger(0);
 
 	/**
-	 * Create a new global cache with a new fetch queue served by the specified
-	 * number of fetcher threads.
+	 * Create a new global cache with a new {@link FetchScheduler} that adapts the number of fetcher threads between
+	 * {@code numFetcherThreads} and {@code max(numFetcherThreads, 4 * availableProcessors)}.
 	 *
 	 * @param maxNumLevels      the highest occurring mipmap level plus 1.
 	 * @param numFetcherThreads how many threads should be created to load data.
 	 */
 	public GlobalCache(final int maxNumLevels, final int numFetcherThreads, LoaderCache<Key<?>, ?> backingCache, Invalidate<Key<?>> invalidate) {
-		queue = new BlockingFetchQueues<>(maxNumLevels);
-		new FetcherThreads(queue, numFetcherThreads);
+		this(
+				new FetchScheduler(
+						maxNumLevels,
+						numFetcherThreads,
+						Math.max(numFetcherThreads, 4 * Runtime.getRuntime().availableProcessors())),
+				backingCache,
+				invalidate);
+	}
+
+	/**
+	 * Create a new global cache that loads data through {@code scheduler}. Requests that are not
+	 * associated with a {@link FetchScheduler.Group} are scheduled in a shared default group.
+	 *
+	 * @param scheduler schedules asynchronous data loading jobs
+	 */
+	public GlobalCache(final FetchScheduler scheduler, LoaderCache<Key<?>, ?> backingCache, Invalidate<Key<?>> invalidate) {
+		this.scheduler = scheduler;
+		this.queue = scheduler.group(DEFAULT_FETCH_GROUP, FetchScheduler.Backend.OTHER).queue();
 		this.backingCache = backingCache;
 		this.invalidate = invalidate;
 	}
@@ -165,6 +184,7 @@ public class GlobalCache implements CacheControl {
 	 */
 	public GlobalCache(final BlockingFetchQueues<Callable<?>> queue, LoaderCache<Key<?>, ?> backingCache, Invalidate<Key<?>> invalidate) {
 		this.queue = queue;
+		this.scheduler = null;
 		this.backingCache = backingCache;
 		this.invalidate = invalidate;
 	}
@@ -176,7 +196,10 @@ public class GlobalCache implements CacheControl {
 	 */
 	@Override
 	public void prepareNextFrame() {
-		queue.clearToPrefetch();
+		if (scheduler == null)
+			queue.clearToPrefetch();
+		else
+			scheduler.clearToPrefetch();
 	}
 
 	/**
@@ -185,7 +208,10 @@ public class GlobalCache implements CacheControl {
 	 */
 	public void clearCache() {
 		backingCache.invalidateAll();
-		queue.clear();
+		if (scheduler == null)
+			queue.clear();
+		else
+			scheduler.clear();
 		backingCache.invalidateAll();
 	}
 
@@ -197,6 +223,23 @@ public class GlobalCache implements CacheControl {
 		return this.queue.getNumPriorities();
 	}
 
+	/**
+	 * @return scheduler that serves all fetch queues of this cache, {@code null} if this cache was created with an
+	 * external fetch queue
+	 */
+	public FetchScheduler getFetchScheduler() {
+		return this.scheduler;
+	}
+
+	/**
+	 * @param key identifies the group, e.g. container and dataset of a source
+	 * @param backend storage backend of the source
+	 * @return fetch group for {@code key}, {@code null} if this cache was created with an external fetch queue
+	 */
+	public FetchScheduler.Group fetchGroup(final Object key, final FetchScheduler.Backend backend) {
+		return scheduler == null ? null : scheduler.group(key, backend);
+	}
+
 	public <T extends NativeType<T>, A extends ArrayDataAccess<A>> Pair<CachedCellImg<T, A>, Invalidate<Long>> createVolatileImg(
 			final CellGrid grid,
 			final CellLoader<T> loader,
@@ -273,7 +316,6 @@ public class GlobalCache implements CacheControl {
 		return new ValuePair<>(new CachedCellImg<>(grid, fraction, cache, accessType), invalidate);
 	}
 
-	@SuppressWarnings("unchecked")
 	public <
 			T extends NativeType<T>,
 			V extends Volatile<T> & NativeType<V>, A>
@@ -281,6 +323,22 @@ public class GlobalCache implements CacheControl {
 			final CachedCellImg<T, A> img,
 			final Invalidate<Long> backingInvalidate,
 			final int priority
+	) throws InvalidAccessException {
+		return wrapAsVolatile(img, backingInvalidate, priority, null);
+	}
+
+	/**
+	 * @param fetchGroup enqueue loading requests into the queue of this group, or into the default queue if {@code null}
+	 */
+	@SuppressWarnings("unchecked")
+	public <
+			T extends NativeType<T>,
+			V extends Volatile<T> & NativeType<V>, A>
+	Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> wrapAsVolatile(
+			final CachedCellImg<T, A> img,
+			final Invalidate<Long> backingInvalidate,
+			final int priority,
+			final FetchScheduler.Group fetchGroup
 	) throws InvalidAccessException {
 		final A accessType = img.getAccessType();
 
@@ -295,7 +353,7 @@ public class GlobalCache implements CacheControl {
 				img.getCellGrid(),
 				type,
 				isDirty);
-		WeakRefVolatileCache<Long, Cell<A>> vcache = WeakRefVolatileCache.fromCacheAndInvalidate(img.getCache(), backingInvalidate, queue, createInvalid);
+		WeakRefVolatileCache<Long, Cell<A>> vcache = WeakRefVolatileCache.fromCacheAndInvalidate(img.getCache(), backingInvalidate, queueFor(fetchGroup), createInvalid);
 		final UncheckedVolatileCache<Long, Cell<A>> unchecked =
 				vcache.unchecked();
 
@@ -320,6 +378,23 @@ public class GlobalCache implements CacheControl {
 			final Function<NativeImg<V, ? extends A>, V> typeFactory,
 			final CreateInvalid<Long, Cell<A>> createInvalid,
 			final int priority
+	) throws InvalidAccessException {
+		return wrapAsVolatile(img, backingInvalidate, typeFactory, createInvalid, priority, null);
+	}
+
+	/**
+	 * @param fetchGroup enqueue loading requests into the queue of this group, or into the default queue if {@code null}
+	 */
+	public <
+			T extends NativeType<T>,
+			V extends Volatile<T> & NativeType<V>, A>
+	Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> wrapAsVolatile(
+			CachedCellImg<T, A> img,
+			final Invalidate<Long> backingInvalidate,
+			final Function<NativeImg<V, ? extends A>, V> typeFactory,
+			final CreateInvalid<Long, Cell<A>> createInvalid,
+			final int priority,
+			final FetchScheduler.Group fetchGroup
 	) throws InvalidAccessException {
 		final A accessType = img.getAccessType();
 
@@ -329,7 +404,7 @@ public class GlobalCache implements CacheControl {
 		final T type = Util.getTypeFromInterval(img);
 		final boolean isDirty = AccessFlags.ofAccess(accessType).contains(AccessFlags.DIRTY);
 
-		WeakRefVolatileCache<Long, Cell<A>> vcache = WeakRefVolatileCache.fromCacheAndInvalidate(img.getCache(), backingInvalidate, queue, createInvalid);
+		WeakRefVolatileCache<Long, Cell<A>> vcache = WeakRefVolatileCache.fromCacheAndInvalidate(img.getCache(), backingInvalidate, queueFor(fetchGroup), createInvalid);
 		final UncheckedVolatileCache<Long, Cell<A>> unchecked = vcache.unchecked();
 
 		final CacheHints cacheHints = new CacheHints(LoadingStrategy.VOLATILE, priority, true);
@@ -344,6 +419,10 @@ public class GlobalCache implements CacheControl {
 		return new ValueTriple<>(vimg, vcache, vcache);
 	}
 
+	private BlockingFetchQueues<Callable<?>> queueFor(final FetchScheduler.Group fetchGroup) {
+		return fetchGroup == null ? queue : fetchGroup.queue();
+	}
+
 	private <K> Invalidate <K> invalidateFor(int setup)
 	{
 		return new Invalidate<K>() {
@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.paintera.config;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.value.ObservableBooleanValue;
 import org.janelia.saalfeldlab.paintera.viewer3d.OrthoSliceFX;
 
@@ -52,6 +53,11 @@ public class OrthoSliceConfig
 		return this.baseConfig.showBottomLeftProperty();
 	}
 
+	public IntegerProperty textureDownsamplingFactorProperty()
+	{
+		return this.baseConfig.textureDownsamplingFactorProperty();
+	}
+
 	public void bindOrthoSlicesToConfig(
 			final OrthoSliceFX topLeft,
 			final OrthoSliceFX topRight,
@@ -64,5 +70,8 @@ public class OrthoSliceConfig
 				isTopRightVisible));
 		bottomLeft.isVisibleProperty().bind(baseConfig.showBottomLeftProperty().and(enable).and(hasSources).and(
 				isBottomLeftVisible));
+		topLeft.textureDownsamplingFactorProperty().bind(baseConfig.textureDownsamplingFactorProperty());
+		topRight.textureDownsamplingFactorProperty().bind(baseConfig.textureDownsamplingFactorProperty());
+		bottomLeft.textureDownsamplingFactorProperty().bind(baseConfig.textureDownsamplingFactorProperty());
 	}
 }
@@ -1,7 +1,9 @@
 package org.janelia.saalfeldlab.paintera.config;
 
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 
 public class OrthoSliceConfigBase
 {
@@ -14,6 +16,8 @@ public class OrthoSliceConfigBase
 
 	private final SimpleBooleanProperty showBottomLeft = new SimpleBooleanProperty(true);
 
+	private final SimpleIntegerProperty textureDownsamplingFactor = new SimpleIntegerProperty(1);
+
 	public BooleanProperty isEnabledProperty()
 	{
 		return this.enabled;
@@ -33,4 +37,9 @@ public class OrthoSliceConfigBase
 	{
 		return this.showBottomLeft;
 	}
+
+	public IntegerProperty textureDownsamplingFactorProperty()
+	{
+		return this.textureDownsamplingFactor;
+	}
 }
@@ -1,11 +1,15 @@
 package org.janelia.saalfeldlab.paintera.config;
 
+import javafx.beans.property.IntegerProperty;
 import javafx.scene.Node;
 import javafx.scene.control.CheckBox;
 import javafx.scene.control.Label;
 import javafx.scene.control.TitledPane;
+import javafx.scene.control.Tooltip;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.Priority;
+import org.janelia.saalfeldlab.fx.ui.NumberField;
+import org.janelia.saalfeldlab.fx.ui.ObjectField;
 
 public class OrthoSliceConfigNode
 {
@@ -20,6 +24,12 @@ public class OrthoSliceConfigNode
 
 	private final CheckBox showOrthoViews = new CheckBox();
 
+	private final NumberField<IntegerProperty> textureDownsamplingFactor = NumberField.intField(
+			1,
+			f -> f > 0,
+			ObjectField.SubmitOn.ENTER_PRESSED,
+			ObjectField.SubmitOn.FOCUS_LOST);
+
 	public OrthoSliceConfigNode()
 	{
 		super();
@@ -29,18 +39,26 @@ public class OrthoSliceConfigNode
 		final Label topLeftLabel    = new Label("top left");
 		final Label topRightLabel   = new Label("top right");
 		final Label bottomLeftLabel = new Label("bottom left");
+		final Label textureDownsamplingLabel = new Label("texture downsampling");
+		final Tooltip textureDownsamplingTooltip = new Tooltip("Downsample the textures of the ortho-views in the 3D viewer by this factor.");
+		textureDownsamplingLabel.setTooltip(textureDownsamplingTooltip);
+		textureDownsamplingFactor.textField().setTooltip(textureDownsamplingTooltip);
+		textureDownsamplingFactor.textField().setPrefWidth(50);
 
 		grid.add(topLeftLabel, 0, 0);
 		grid.add(topRightLabel, 0, 1);
 		grid.add(bottomLeftLabel, 0, 2);
+		grid.add(textureDownsamplingLabel, 0, 3);
 
 		grid.add(topLeftCheckBox, 1, 0);
 		grid.add(topRightCheckBox, 1, 1);
 		grid.add(bottomLeftCheckBox, 1, 2);
+		grid.add(textureDownsamplingFactor.textField(), 1, 3);
 
 		GridPane.setHgrow(topLeftLabel, Priority.ALWAYS);
 		GridPane.setHgrow(topRightLabel, Priority.ALWAYS);
 		GridPane.setHgrow(bottomLeftLabel, Priority.ALWAYS);
+		GridPane.setHgrow(textureDownsamplingLabel, Priority.ALWAYS);
 
 		contents = new TitledPane("Ortho-Views", grid);
 		contents.setGraphic(showOrthoViews);
@@ -53,6 +71,7 @@ public class OrthoSliceConfigNode
 		topLeftCheckBox.selectedProperty().bindBidirectional(config.showTopLeftProperty());
 		topRightCheckBox.selectedProperty().bindBidirectional(config.showTopRightProperty());
 		bottomLeftCheckBox.selectedProperty().bindBidirectional(config.showBottomLeftProperty());
+		textureDownsamplingFactor.valueProperty().bindBidirectional(config.textureDownsamplingFactorProperty());
 	}
 
 	public Node getContents()
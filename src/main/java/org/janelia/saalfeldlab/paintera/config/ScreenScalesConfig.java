@@ -1,6 +1,11 @@
 package org.janelia.saalfeldlab.paintera.config;
 
+import bdv.fx.viewer.render.AdaptiveScreenScaleController;
+import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleDoubleProperty;
 import javafx.beans.property.SimpleObjectProperty;
 
 import java.util.Arrays;
@@ -9,6 +14,8 @@ public class ScreenScalesConfig {
 
 	private static final double[] DEFAULT_SCREEN_SCALES = new double[] {1.0, 0.5, 0.25};
 
+	private static final double DEFAULT_TARGET_FRAME_TIME_MILLIS = AdaptiveScreenScaleController.DEFAULT_TARGET_NANOS * 1e-6;
+
 	public static class ScreenScales {
 
 		private final double[] scales;
@@ -50,6 +57,12 @@ public class ScreenScalesConfig {
 
 	private final ObjectProperty<ScreenScales> screenScales = new SimpleObjectProperty<>();
 
+	private final BooleanProperty adaptive = new SimpleBooleanProperty(true);
+
+	private final DoubleProperty targetFrameTimeMillis = new SimpleDoubleProperty(DEFAULT_TARGET_FRAME_TIME_MILLIS);
+
+	private final AdaptiveScreenScaleController screenScaleController = new AdaptiveScreenScaleController();
+
 	public ScreenScalesConfig()
 	{
 		this(DEFAULT_SCREEN_SCALES.clone());
@@ -58,6 +71,8 @@ public class ScreenScalesConfig {
 	public ScreenScalesConfig(final double... initialScales)
 	{
 		this.screenScales.set(new ScreenScales(initialScales.clone()));
+		this.adaptive.addListener((obs, oldv, newv) -> screenScaleController.setAdaptive(newv));
+		this.targetFrameTimeMillis.addListener((obs, oldv, newv) -> screenScaleController.setTargetNanos((long) (newv.doubleValue() * 1e6)));
 	}
 
 	public ObjectProperty<ScreenScales> screenScalesProperty()
@@ -65,9 +80,35 @@ public class ScreenScalesConfig {
 		return this.screenScales;
 	}
 
+	/**
+	 * @return if {@code true}, the screen scale at which rendering starts and the screen scales used for refinement
+	 * are chosen based on measured rendering performance
+	 */
+	public BooleanProperty adaptiveProperty()
+	{
+		return this.adaptive;
+	}
+
+	public DoubleProperty targetFrameTimeMillisProperty()
+	{
+		return this.targetFrameTimeMillis;
+	}
+
+	/**
+	 * @return controller that learns the rendering performance and that should be shared by all viewers. The learned
+	 * {@link AdaptiveScreenScaleController.CostModel} is stored with the project.
+	 */
+	public AdaptiveScreenScaleController screenScaleController()
+	{
+		return this.screenScaleController;
+	}
+
 	public void set(final ScreenScalesConfig that)
 	{
 		this.screenScales.set(that.screenScales.get());
+		this.adaptive.set(that.adaptive.get());
+		this.targetFrameTimeMillis.set(that.targetFrameTimeMillis.get());
+		this.screenScaleController.setModel(that.screenScaleController.getModel());
 	}
 
 	public static double[] defaultScreenScalesCopy()
@@ -79,8 +120,11 @@ public class ScreenScalesConfig {
 	public String toString()
 	{
 		return String.format(
-				"{ScreenScalesConfig: %s}",
-				this.screenScales.get() == null ? null : this.screenScales.get().toString()
+				"{ScreenScalesConfig: %s adaptive=%s targetFrameTimeMillis=%s costModel=%s}",
+				this.screenScales.get() == null ? null : this.screenScales.get().toString(),
+				this.adaptive.get(),
+				this.targetFrameTimeMillis.get(),
+				this.screenScaleController.getModel()
 		);
 	}
 
@@ -4,10 +4,12 @@ import javafx.beans.property.DoubleProperty;
 import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.ObjectProperty;
 import javafx.beans.property.SimpleObjectProperty;
+import javafx.geometry.Insets;
 import javafx.scene.Node;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
+import javafx.scene.control.CheckBox;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
@@ -17,6 +19,7 @@ import javafx.scene.control.TitledPane;
 import javafx.scene.control.Tooltip;
 import javafx.scene.layout.GridPane;
 import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
 import javafx.util.StringConverter;
 import org.janelia.saalfeldlab.fx.TitledPanes;
 import org.janelia.saalfeldlab.fx.ui.NumberField;
@@ -35,6 +38,14 @@ public class ScreenScalesConfigNode {
 
 	private final ObjectProperty<ScreenScalesConfig.ScreenScales> screenScales = new SimpleObjectProperty<>(new ScreenScalesConfig.ScreenScales(1.0, 0.5));
 
+	private final CheckBox adaptive = new CheckBox("Adaptive");
+
+	private final NumberField<DoubleProperty> targetFrameTimeMillis = NumberField.doubleField(
+			16.0,
+			t -> t > 0,
+			ObjectField.SubmitOn.ENTER_PRESSED,
+			ObjectField.SubmitOn.FOCUS_LOST);
+
 	private final Node contents;
 
 	public ScreenScalesConfigNode() {
@@ -49,6 +60,8 @@ public class ScreenScalesConfigNode {
 	public void bind(final ScreenScalesConfig config)
 	{
 		this.screenScales.bindBidirectional(config.screenScalesProperty());
+		this.adaptive.selectedProperty().bindBidirectional(config.adaptiveProperty());
+		this.targetFrameTimeMillis.valueProperty().bindBidirectional(config.targetFrameTimeMillisProperty());
 	}
 
 	private final Node createContents()
@@ -65,7 +78,20 @@ public class ScreenScalesConfigNode {
 		geometricSequenceButton.setOnAction(e -> fromGeometricSequence().showAndWait().ifPresent(screenScales::set));
 		final MenuButton setButton = new MenuButton("Set", null, geometricSequenceButton);
 
-		final TitledPane pane = TitledPanes.createCollapsed("Screen Scales", new HBox(screenScalesField.textField(), setButton));
+		adaptive.setTooltip(new Tooltip(
+				"Choose the screen scale at which rendering starts and skip intermediate screen scales based on measured rendering performance"
+		));
+		targetFrameTimeMillis.textField().setTooltip(new Tooltip("Target time for rendering the first screen scale after navigation"));
+		final GridPane adaptiveGrid = new GridPane();
+		adaptiveGrid.setHgap(5);
+		adaptiveGrid.setPadding(new Insets(5, 0, 0, 0));
+		adaptiveGrid.add(adaptive, 0, 0);
+		adaptiveGrid.add(new Label("Target frame time (ms)"), 1, 0);
+		adaptiveGrid.add(targetFrameTimeMillis.textField(), 2, 0);
+
+		final TitledPane pane = TitledPanes.createCollapsed(
+				"Screen Scales",
+				new VBox(new HBox(screenScalesField.textField(), setButton), adaptiveGrid));
 		return pane;
 	}
 
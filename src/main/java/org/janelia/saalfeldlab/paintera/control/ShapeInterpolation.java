@@ -0,0 +1,327 @@
+package org.janelia.saalfeldlab.paintera.control;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.janelia.saalfeldlab.paintera.cache.Invalidate;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccessible;
+import net.imglib2.algorithm.morphology.distance.DistanceTransform;
+import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.converter.Converters;
+import net.imglib2.converter.logical.Logical;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.FloatArray;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.type.numeric.real.FloatType;
+import net.imglib2.type.volatiles.VolatileUnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
+
+/**
+ * Interpolate a shape between two or more parallel keyframe sections. The shape is interpolated piecewise linearly
+ * between the signed distance transforms of consecutive keyframes.
+ * <p>
+ * The distance transforms of all keyframes are computed in parallel. The interpolated shape is materialized at source
+ * resolution into blocks of a {@link CachedCellImg} that are computed in parallel when the interpolation is created.
+ * Rendering and applying the interpolated shape read precomputed voxels. Blocks that are evicted from the cache are
+ * recomputed on demand.
+ */
+public class ShapeInterpolation
+{
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * A section of the shape in a plane at {@link #depth}.
+	 */
+	public static class Keyframe
+	{
+		final double depth;
+		final RandomAccessibleInterval<BoolType> section;
+
+		/**
+		 * @param depth position of the section plane along the normal axis
+		 * @param section 2D mask of the shape in the section plane, all keyframes must have the same interval
+		 */
+		public Keyframe(final double depth, final RandomAccessibleInterval<BoolType> section)
+		{
+			this.depth = depth;
+			this.section = section;
+		}
+	}
+
+	private final double[] depths;
+
+	private final float[][] distanceTransforms;
+
+	private final long[] sectionDimensions;
+
+	private final AffineTransform3D sourceToKeyframes;
+
+	private final Interval sourceInterval;
+
+	private final CachedCellImg<UnsignedByteType, ByteArray> img;
+
+	private final Invalidate<Long> invalidate;
+
+	private ShapeInterpolation(
+			final double[] depths,
+			final float[][] distanceTransforms,
+			final long[] sectionDimensions,
+			final AffineTransform3D sourceToKeyframes,
+			final Interval sourceInterval,
+			final int[] blockSize,
+			final GlobalCache globalCache)
+	{
+		this.depths = depths;
+		this.distanceTransforms = distanceTransforms;
+		this.sectionDimensions = sectionDimensions;
+		this.sourceToKeyframes = sourceToKeyframes;
+		this.sourceInterval = sourceInterval;
+		final CellGrid grid = new CellGrid(Intervals.dimensionsAsLongArray(sourceInterval), blockSize);
+		final Pair<CachedCellImg<UnsignedByteType, ByteArray>, Invalidate<Long>> imgAndInvalidate =
+				globalCache.createImg(grid, this::load, new UnsignedByteType());
+		this.img = imgAndInvalidate.getA();
+		this.invalidate = imgAndInvalidate.getB();
+	}
+
+	/**
+	 * Interpolate a shape between {@code keyframes} and materialize it in {@code sourceInterval}.
+	 *
+	 * @param keyframes at least two sections of the shape, in any order
+	 * @param sourceToKeyframes transform source coordinates into the coordinate space of the keyframes: the first two
+	 * dimensions are pixel coordinates in the keyframe sections, the third dimension is the depth
+	 * @param sourceInterval materialize interpolated shape in this interval of the source
+	 * @param blockSize block size of the materialized shape
+	 * @param globalCache cache the materialized blocks
+	 * @param executorService compute distance transforms and blocks
+	 * @return interpolated shape
+	 * @throws InterruptedException if the calling thread is interrupted, pending computations are cancelled
+	 * @throws ExecutionException if a distance transform or a block cannot be computed
+	 */
+	public static ShapeInterpolation interpolate(
+			final List<Keyframe> keyframes,
+			final AffineTransform3D sourceToKeyframes,
+			final Interval sourceInterval,
+			final int[] blockSize,
+			final GlobalCache globalCache,
+			final ExecutorService executorService) throws InterruptedException, ExecutionException
+	{
+		if (keyframes.size() < 2)
+			throw new IllegalArgumentException("Need at least two keyframes for interpolation, got " + keyframes.size());
+
+		final List<Keyframe> sortedKeyframes = new ArrayList<>(keyframes);
+		sortedKeyframes.sort(Comparator.comparingDouble(k -> k.depth));
+		final double[] depths = sortedKeyframes.stream().mapToDouble(k -> k.depth).toArray();
+		final long[] sectionDimensions = Intervals.dimensionsAsLongArray(sortedKeyframes.get(0).section);
+
+		final float[][] distanceTransforms = computeSignedDistanceTransforms(sortedKeyframes, sectionDimensions, executorService);
+
+		final ShapeInterpolation interpolation = new ShapeInterpolation(
+				depths,
+				distanceTransforms,
+				sectionDimensions,
+				sourceToKeyframes,
+				sourceInterval,
+				blockSize,
+				globalCache);
+		interpolation.materialize(executorService);
+		return interpolation;
+	}
+
+	/**
+	 * @return interval of the source that contains the interpolated shape
+	 */
+	public Interval getSourceInterval()
+	{
+		return sourceInterval;
+	}
+
+	/**
+	 * @return interpolated shape in source coordinates, {@code 1} inside and {@code 0} outside of the shape
+	 */
+	public RealRandomAccessible<UnsignedLongType> getMask()
+	{
+		final RandomAccessibleInterval<UnsignedLongType> mask = Converters.convert(
+				(RandomAccessibleInterval<UnsignedByteType>) img,
+				(in, out) -> out.set(in.get()),
+				new UnsignedLongType()
+			);
+		return Views.interpolate(
+				Views.extendZero(Views.translate(mask, Intervals.minAsLongArray(sourceInterval))),
+				new NearestNeighborInterpolatorFactory<>()
+			);
+	}
+
+	/**
+	 * @return interpolated shape in source coordinates, always valid because all blocks are precomputed
+	 */
+	public RealRandomAccessible<VolatileUnsignedLongType> getVolatileMask()
+	{
+		final RandomAccessibleInterval<VolatileUnsignedLongType> mask = Converters.convert(
+				(RandomAccessibleInterval<UnsignedByteType>) img,
+				(in, out) -> {
+					out.get().set(in.get());
+					out.setValid(true);
+				},
+				new VolatileUnsignedLongType()
+			);
+		final VolatileUnsignedLongType outside = new VolatileUnsignedLongType(0);
+		outside.setValid(true);
+		return Views.interpolate(
+				Views.extendValue(Views.translate(mask, Intervals.minAsLongArray(sourceInterval)), outside),
+				new NearestNeighborInterpolatorFactory<>()
+			);
+	}
+
+	/**
+	 * Remove the materialized blocks from the cache. Blocks that are accessed afterwards are recomputed.
+	 */
+	public void invalidateAll()
+	{
+		invalidate.invalidateAll();
+	}
+
+	private static float[][] computeSignedDistanceTransforms(
+			final List<Keyframe> keyframes,
+			final long[] sectionDimensions,
+			final ExecutorService executorService) throws InterruptedException, ExecutionException
+	{
+		// distance to the shape and distance to the background are independent and computed in separate tasks
+		final List<ArrayImg<FloatType, FloatArray>> distancesOutside = new ArrayList<>();
+		final List<ArrayImg<FloatType, FloatArray>> distancesInside = new ArrayList<>();
+		final List<Callable<Void>> tasks = new ArrayList<>();
+		for (final Keyframe keyframe : keyframes)
+		{
+			final RandomAccessibleInterval<BoolType> section = Views.zeroMin(keyframe.section);
+			final ArrayImg<FloatType, FloatArray> distanceOutside = ArrayImgs.floats(sectionDimensions);
+			final ArrayImg<FloatType, FloatArray> distanceInside = ArrayImgs.floats(sectionDimensions);
+			distancesOutside.add(distanceOutside);
+			distancesInside.add(distanceInside);
+			tasks.add(() -> {
+				DistanceTransform.binaryTransform(section, distanceOutside, DISTANCE_TYPE.EUCLIDIAN);
+				return null;
+			});
+			tasks.add(() -> {
+				DistanceTransform.binaryTransform(Logical.complement(section), distanceInside, DISTANCE_TYPE.EUCLIDIAN);
+				return null;
+			});
+		}
+		LOG.debug("Computing distance transforms of {} keyframes of size {}", keyframes.size(), sectionDimensions);
+		waitFor(executorService.invokeAll(tasks));
+
+		final float[][] distanceTransforms = new float[keyframes.size()][];
+		for (int i = 0; i < distanceTransforms.length; ++i)
+		{
+			final float[] outside = distancesOutside.get(i).update(null).getCurrentStorageArray();
+			final float[] inside = distancesInside.get(i).update(null).getCurrentStorageArray();
+			for (int k = 0; k < outside.length; ++k)
+				outside[k] = (float) (Math.sqrt(outside[k]) - Math.sqrt(inside[k]));
+			distanceTransforms[i] = outside;
+		}
+		return distanceTransforms;
+	}
+
+	private void materialize(final ExecutorService executorService) throws InterruptedException, ExecutionException
+	{
+		final CellGrid grid = img.getCellGrid();
+		final List<Callable<Void>> tasks = new ArrayList<>();
+		final long numBlocks = Intervals.numElements(grid.getGridDimensions());
+		for (long blockIndex = 0; blockIndex < numBlocks; ++blockIndex)
+		{
+			final long index = blockIndex;
+			tasks.add(() -> {
+				img.getCache().get(index);
+				return null;
+			});
+		}
+		LOG.debug("Materializing {} blocks of interpolated shape in source interval {}", tasks.size(), sourceInterval);
+		waitFor(executorService.invokeAll(tasks));
+	}
+
+	private void load(final SingleCellArrayImg<UnsignedByteType, ?> cell)
+	{
+		final long[] offset = Intervals.minAsLongArray(sourceInterval);
+		final double[] position = new double[3];
+		final double[] keyframePosition = new double[3];
+		final Cursor<UnsignedByteType> cursor = cell.localizingCursor();
+		while (cursor.hasNext())
+		{
+			final UnsignedByteType t = cursor.next();
+			for (int d = 0; d < position.length; ++d)
+				position[d] = cursor.getLongPosition(d) + offset[d];
+			sourceToKeyframes.apply(position, keyframePosition);
+			if (isInside(keyframePosition[0], keyframePosition[1], keyframePosition[2]))
+				t.set(1);
+		}
+	}
+
+	private boolean isInside(final double x, final double y, final double depth)
+	{
+		final int last = depths.length - 1;
+		if (depth < depths[0] || depth > depths[last])
+			return false;
+
+		// find consecutive keyframes at depths[k] <= depth <= depths[k + 1]
+		int k = 0;
+		while (k < last - 1 && depth > depths[k + 1])
+			++k;
+		final double distance = depths[k + 1] - depths[k];
+		final double weight = distance > 0 ? (depth - depths[k]) / distance : 0.0;
+
+		double value = 0.0;
+		if (weight < 1.0)
+			value += (1.0 - weight) * sample(distanceTransforms[k], x, y);
+		if (weight > 0.0)
+			value += weight * sample(distanceTransforms[k + 1], x, y);
+		return value <= 0;
+	}
+
+	/**
+	 * N-linear interpolation of the distance transform. Positions outside of the section are far outside of the shape.
+	 */
+	private double sample(final float[] distanceTransform, final double x, final double y)
+	{
+		final long x0 = (long) Math.floor(x);
+		final long y0 = (long) Math.floor(y);
+		final double wx = x - x0;
+		final double wy = y - y0;
+		return (1.0 - wy) * ((1.0 - wx) * get(distanceTransform, x0, y0) + wx * get(distanceTransform, x0 + 1, y0)) +
+				wy * ((1.0 - wx) * get(distanceTransform, x0, y0 + 1) + wx * get(distanceTransform, x0 + 1, y0 + 1));
+	}
+
+	private double get(final float[] distanceTransform, final long x, final long y)
+	{
+		if (x < 0 || y < 0 || x >= sectionDimensions[0] || y >= sectionDimensions[1])
+			return Float.MAX_VALUE;
+		return distanceTransform[(int) (x + y * sectionDimensions[0])];
+	}
+
+	private static void waitFor(final List<Future<Void>> futures) throws InterruptedException, ExecutionException
+	{
+		for (final Future<Void> future : futures)
+			future.get();
+	}
+}
@@ -1,7 +1,13 @@
 package org.janelia.saalfeldlab.paintera.control;
 
 import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Predicate;
 
 import org.janelia.saalfeldlab.fx.event.DelegateEventHandlers;
@@ -27,6 +33,7 @@ import org.janelia.saalfeldlab.paintera.data.mask.exception.MaskInUse;
 import org.janelia.saalfeldlab.paintera.id.IdService;
 import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
 import org.janelia.saalfeldlab.paintera.stream.HighlightingStreamConverter;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,27 +61,17 @@ import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.RealInterval;
 import net.imglib2.RealPoint;
 import net.imglib2.RealRandomAccessible;
-import net.imglib2.algorithm.morphology.distance.DistanceTransform;
-import net.imglib2.algorithm.morphology.distance.DistanceTransform.DISTANCE_TYPE;
 import net.imglib2.converter.Converters;
-import net.imglib2.converter.logical.Logical;
-import net.imglib2.img.array.ArrayImgFactory;
-import net.imglib2.interpolation.randomaccess.NLinearInterpolatorFactory;
+import net.imglib2.img.cell.CellGrid;
 import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
-import net.imglib2.loops.LoopBuilder;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.realtransform.RealViews;
 import net.imglib2.realtransform.Scale3D;
 import net.imglib2.realtransform.Translation3D;
-import net.imglib2.type.BooleanType;
-import net.imglib2.type.NativeType;
 import net.imglib2.type.label.Label;
 import net.imglib2.type.logic.BoolType;
 import net.imglib2.type.numeric.IntegerType;
-import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
-import net.imglib2.type.numeric.real.FloatType;
-import net.imglib2.type.volatiles.VolatileUnsignedLongType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.Util;
@@ -92,25 +89,6 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		Preview
 	}
 
-	public static enum ActiveSection
-	{
-		First("1"),
-		Second("2");
-
-		private final String s;
-
-		private ActiveSection(final String s)
-		{
-			this.s = s;
-		}
-
-		@Override
-		public String toString()
-		{
-			return s;
-		}
-	}
-
 	private static final class SelectedObjectInfo
 	{
 		final RealPoint sourceClickPosition;
@@ -160,6 +138,22 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 
 	private static final Predicate<UnsignedLongType> FOREGROUND_CHECK = t -> t.get() > 0;
 
+	private static final KeyCode[] SECTION_KEYS = {
+			KeyCode.DIGIT1,
+			KeyCode.DIGIT2,
+			KeyCode.DIGIT3,
+			KeyCode.DIGIT4,
+			KeyCode.DIGIT5,
+			KeyCode.DIGIT6,
+			KeyCode.DIGIT7,
+			KeyCode.DIGIT8,
+			KeyCode.DIGIT9
+	};
+
+	private static final ExecutorService INTERPOLATION_EXECUTOR = Executors.newFixedThreadPool(
+			Runtime.getRuntime().availableProcessors(),
+			new NamedThreadFactory("shape-interpolation-%d", true));
+
 	private final MaskedSource<D, ?> source;
 	private final LabelSourceState<D, ?> sourceState;
 	private final SelectedIds selectedIds;
@@ -180,15 +174,15 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 
 	private final TLongObjectMap<SelectedObjectInfo> selectedObjects = new TLongObjectHashMap<>();
 
-	private final ObjectProperty<SectionInfo> sectionInfo1 = new SimpleObjectProperty<>();
-	private final ObjectProperty<SectionInfo> sectionInfo2 = new SimpleObjectProperty<>();
+	// keyframe sections in the order of their numbers, the active section is null while it is being edited
+	private final List<SectionInfo> sectionInfos = new ArrayList<>();
 
 	private final ObjectProperty<ModeState> modeState = new SimpleObjectProperty<>();
-	private final ObjectProperty<ActiveSection> activeSection = new SimpleObjectProperty<>();
+	private final ObjectProperty<Integer> activeSection = new SimpleObjectProperty<>();
 
 	private Thread workerThread;
 	private Runnable onInterpolationFinished;
-	private Pair<RealRandomAccessible<UnsignedLongType>, RealRandomAccessible<VolatileUnsignedLongType>> interpolatedMaskImgs;
+	private ShapeInterpolation interpolation;
 
 	public ShapeInterpolationMode(
 			final MaskedSource<D, ?> source,
@@ -216,7 +210,10 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		return modeState;
 	}
 
-	public ObjectProperty<ActiveSection> activeSectionProperty()
+	/**
+	 * @return number of the section that is being edited, starting at {@code 1}, or {@code null} if no section is edited
+	 */
+	public ObjectProperty<Integer> activeSectionProperty()
 	{
 		return activeSection;
 	}
@@ -252,22 +249,20 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 						e -> isModeOn() && keyTracker.areOnlyTheseKeysDown(KeyCode.ENTER)
 					)
 			);
-		filter.addEventHandler(
-				KeyEvent.KEY_PRESSED,
-				EventFX.KEY_PRESSED(
-						"edit selection 1",
-						e -> {e.consume(); editSelection(paintera, ActiveSection.First);},
-						e -> keyTracker.areOnlyTheseKeysDown(KeyCode.DIGIT1)
-					)
-			);
-		filter.addEventHandler(
-				KeyEvent.KEY_PRESSED,
-				EventFX.KEY_PRESSED(
-						"edit selection 2",
-						e -> {e.consume(); editSelection(paintera, ActiveSection.Second);},
-						e -> keyTracker.areOnlyTheseKeysDown(KeyCode.DIGIT2)
-					)
-			);
+		for (int i = 0; i < SECTION_KEYS.length; ++i)
+		{
+			// edit an existing section or add a new section after the last one
+			final int section = i + 1;
+			final KeyCode key = SECTION_KEYS[i];
+			filter.addEventHandler(
+					KeyEvent.KEY_PRESSED,
+					EventFX.KEY_PRESSED(
+							"edit selection " + section,
+							e -> {e.consume(); editSelection(paintera, section);},
+							e -> isModeOn() && section <= sectionInfos.size() + 1 && keyTracker.areOnlyTheseKeysDown(key)
+						)
+				);
+		}
 
 		filter.addEventHandler(MouseEvent.ANY, new MouseClickFX(
 				"select object in current section",
@@ -321,7 +316,7 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		converter.setColor(newLabelId, MASK_COLOR);
 		selectedIds.activate(newLabelId);
 
-		activeSection.set(ActiveSection.First);
+		activeSection.set(1);
 		modeState.set(ModeState.Select);
 	}
 
@@ -355,15 +350,14 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 
 		currentFillValue = 0;
 		selectedObjects.clear();
-		sectionInfo1.set(null);
-		sectionInfo2.set(null);
+		sectionInfos.clear();
 		modeState.set(null);
 		activeSection.set(null);
 		mask = null;
 
 		workerThread = null;
 		onInterpolationFinished = null;
-		interpolatedMaskImgs = null;
+		interpolation = null;
 		lastSelectedId = Label.INVALID;
 		lastActiveIds = null;
 
@@ -377,11 +371,15 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 	}
 
 	private void createMask() throws MaskInUse
+	{
+		mask = source.generateMask(createMaskInfo(), FOREGROUND_CHECK);
+	}
+
+	private MaskInfo<UnsignedLongType> createMaskInfo()
 	{
 		final int time = activeViewer.getState().timepointProperty().get();
 		final int level = MASK_SCALE_LEVEL;
-		final MaskInfo<UnsignedLongType> maskInfo = new MaskInfo<>(time, level, new UnsignedLongType(newLabelId));
-		mask = source.generateMask(maskInfo, FOREGROUND_CHECK);
+		return new MaskInfo<>(time, level, new UnsignedLongType(newLabelId));
 	}
 
 	private void resetMask()
@@ -424,24 +422,28 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 
 	private void fixSelection(final PainteraBaseView paintera)
 	{
-		final ObjectProperty<SectionInfo> sectionInfoPropertyToSet = activeSection.get() == ActiveSection.First ? sectionInfo1 : sectionInfo2;
-		LOG.debug("Fix selection");
-		sectionInfoPropertyToSet.set(createSectionInfo(paintera));
+		final int sectionIndex = activeSection.get() - 1;
+		LOG.debug("Fix selection of section {}", activeSection.get());
+		final SectionInfo sectionInfo = createSectionInfo(paintera);
+		if (sectionIndex < sectionInfos.size())
+			sectionInfos.set(sectionIndex, sectionInfo);
+		else
+			sectionInfos.add(sectionInfo);
 		selectedObjects.clear();
 	}
 
 	private void advanceMode(final PainteraBaseView paintera)
 	{
-		if (sectionInfo1.get() == null || sectionInfo2.get() == null)
+		if (sectionInfos.size() < 2)
 		{
-			// let the user now select the second section
-			activeSection.set(ActiveSection.Second);
+			// let the user now select the next section
+			activeSection.set(sectionInfos.size() + 1);
 			resetMask();
 			paintera.orthogonalViews().requestRepaint();
 		}
 		else
 		{
-			// both sections are ready, run interpolation
+			// all sections are ready, run interpolation
 			activeSection.set(null);
 			modeState.set(ModeState.Interpolate);
 			onInterpolationFinished = () -> modeState.set(ModeState.Preview);
@@ -449,11 +451,11 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		}
 	}
 
-	private void editSelection(final PainteraBaseView paintera, final ActiveSection section)
+	private void editSelection(final PainteraBaseView paintera, final int section)
 	{
 		interruptInterpolation();
 
-		if (activeSection.get() == section)
+		if (Objects.equals(activeSection.get(), section))
 			return;
 
 		if (activeSection.get() != null)
@@ -463,15 +465,19 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 			fixSelection(paintera);
 		}
 
-		final ObjectProperty<SectionInfo> sectionInfoPropertyToEdit = section == ActiveSection.First ? sectionInfo1 : sectionInfo2;
-		final SectionInfo sectionInfo = sectionInfoPropertyToEdit.get();
-
-		if (sectionInfo == null)
+		if (section > sectionInfos.size())
 		{
-			advanceMode(paintera);
+			// add a new section after the last one
+			resetMask();
+			selectedObjects.clear();
+			activeSection.set(sectionInfos.size() + 1);
+			modeState.set(ModeState.Select);
+			paintera.orthogonalViews().requestRepaint();
 			return;
 		}
 
+		final SectionInfo sectionInfo = sectionInfos.get(section - 1);
+
 		resetMask();
 		try {
 			source.setMask(sectionInfo.mask, FOREGROUND_CHECK);
@@ -485,7 +491,7 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		selectedObjects.clear();
 		selectedObjects.putAll(sectionInfo.selectedObjects);
 
-		sectionInfoPropertyToEdit.set(null);
+		sectionInfos.set(section - 1, null);
 		activeSection.set(section);
 
 		modeState.set(ModeState.Select);
@@ -495,12 +501,15 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 	{
 		if (modeState.get() == ModeState.Select)
 		{
-			final boolean firstSectionReady  = sectionInfo1.get() != null || (activeSection.get() == ActiveSection.First  && !selectedObjects.isEmpty());
-			final boolean secondSectionReady = sectionInfo2.get() != null || (activeSection.get() == ActiveSection.Second && !selectedObjects.isEmpty());
-			if (!firstSectionReady || !secondSectionReady)
+			final long numFixedSections = sectionInfos.stream().filter(Objects::nonNull).count();
+			if (numFixedSections + (selectedObjects.isEmpty() ? 0 : 1) < 2)
 				return;
 
-			fixSelection(paintera);
+			// a section without selected objects is dropped
+			if (selectedObjects.isEmpty())
+				sectionInfos.removeIf(Objects::isNull);
+			else
+				fixSelection(paintera);
 			advanceMode(paintera);
 		}
 
@@ -515,12 +524,15 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 			runOnInterpolationFinished();
 		}
 
+		if (interpolation == null)
+		{
+			LOG.warn("No interpolated shape to apply");
+			return;
+		}
+
 		assert modeState.get() == ModeState.Preview;
 
-		final Interval sectionsUnionSourceInterval = Intervals.union(
-				sectionInfo1.get().sourceBoundingBox,
-				sectionInfo2.get().sourceBoundingBox
-			);
+		final Interval sectionsUnionSourceInterval = interpolation.getSourceInterval();
 		LOG.info("Applying interpolated mask using bounding box of size {}", Intervals.dimensionsAsLongArray(sectionsUnionSourceInterval));
 
 		if (Label.regular(lastSelectedId))
@@ -532,7 +544,7 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 				);
 			resetMask();
 			try {
-				source.setMask(maskInfoWithLastSelectedLabelId, interpolatedMaskImgs.getA(), interpolatedMaskImgs.getB(), FOREGROUND_CHECK);
+				source.setMask(maskInfoWithLastSelectedLabelId, interpolation.getMask(), interpolation.getVolatileMask(), FOREGROUND_CHECK);
 			} catch (final MaskInUse e) {
 				e.printStackTrace();
 			}
@@ -582,36 +594,41 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 	@SuppressWarnings("unchecked")
 	private void interpolateBetweenSections(final PainteraBaseView paintera)
 	{
+		final List<SectionInfo> sections = new ArrayList<>(sectionInfos);
+		final MaskInfo<UnsignedLongType> maskInfo = createMaskInfo();
+		final CellGrid maskGrid = source.getCellGrid(maskInfo.t, maskInfo.level);
+		final int[] blockSize = new int[maskGrid.numDimensions()];
+		maskGrid.cellDimensions(blockSize);
+
 		workerThread = new Thread(() ->
 		{
-			final SectionInfo[] sectionInfoPair = {sectionInfo1.get(), sectionInfo2.get()};
-
-			final Interval affectedUnionSourceInterval = Intervals.union(
-					sectionInfoPair[0].sourceBoundingBox,
-					sectionInfoPair[1].sourceBoundingBox
-				);
-
-			// get the two sections as 2D images
-			final Interval[] displaySectionIntervalPair = new Interval[2];
-			final RandomAccessibleInterval<UnsignedLongType>[] sectionPair = new RandomAccessibleInterval[2];
-			for (int i = 0; i < 2; ++i)
+			final Interval affectedUnionSourceInterval = sections
+					.stream()
+					.map(sectionInfo -> sectionInfo.sourceBoundingBox)
+					.reduce(Intervals::union)
+					.get();
+
+			// get all sections as 2D images
+			final Interval[] displaySectionIntervals = new Interval[sections.size()];
+			final RandomAccessibleInterval<UnsignedLongType>[] sectionImgs = new RandomAccessibleInterval[sections.size()];
+			for (int i = 0; i < sections.size(); ++i)
 			{
 				final SectionInfo newSectionInfo = new SectionInfo(
-						sectionInfoPair[i].mask,
-						sectionInfoPair[i].globalTransform,
-						sectionInfoPair[i].sourceToDisplayTransform,
+						sections.get(i).mask,
+						sections.get(i).globalTransform,
+						sections.get(i).sourceToDisplayTransform,
 						affectedUnionSourceInterval,
-						sectionInfoPair[i].selectedObjects
+						sections.get(i).selectedObjects
 					);
 				final RandomAccessibleInterval<UnsignedLongType> section = getTransformedMaskSection(newSectionInfo);
-				displaySectionIntervalPair[i] = new FinalInterval(section);
-				sectionPair[i] = Views.zeroMin(section);
+				displaySectionIntervals[i] = new FinalInterval(section);
+				sectionImgs[i] = Views.zeroMin(section);
 			}
 
-			// Narrow the bounding box of the two sections in the display space.
+			// Narrow the bounding box of all sections in the display space.
 			// The initial bounding box may be larger because of transforming the source bounding box into the display space and then taking the bounding box of that.
-			final Interval[] boundingBoxPair = new Interval[2];
-			for (int i = 0; i < 2; ++i)
+			Interval boundingBox = null;
+			for (int i = 0; i < sections.size(); ++i)
 			{
 				if (Thread.currentThread().isInterrupted())
 					return;
@@ -619,7 +636,7 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 				final long[] min = new long[2], max = new long[2], position = new long[2];
 				Arrays.fill(min, Long.MAX_VALUE);
 				Arrays.fill(max, Long.MIN_VALUE);
-				final Cursor<UnsignedLongType> cursor = Views.iterable(sectionPair[i]).localizingCursor();
+				final Cursor<UnsignedLongType> cursor = Views.iterable(sectionImgs[i]).localizingCursor();
 				while (cursor.hasNext())
 				{
 					if (FOREGROUND_CHECK.test(cursor.next()))
@@ -632,64 +649,74 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 						}
 					}
 				}
-				boundingBoxPair[i] = new FinalInterval(min, max);
+				final Interval sectionBoundingBox = new FinalInterval(min, max);
+				boundingBox = boundingBox == null ? sectionBoundingBox : Intervals.union(boundingBox, sectionBoundingBox);
 			}
-			final Interval boundingBox = Intervals.union(boundingBoxPair[0], boundingBoxPair[1]);
-			LOG.debug("Narrowed the bounding box of the selected shape in both sections from {} to {}", Intervals.dimensionsAsLongArray(sectionPair[0]), Intervals.dimensionsAsLongArray(boundingBox));
-			for (int i = 0; i < 2; ++i)
-				sectionPair[i] = Views.offsetInterval(sectionPair[i], boundingBox);
-
-			// compute distance transform on both sections
-			final RandomAccessibleInterval<FloatType>[] distanceTransformPair = new RandomAccessibleInterval[2];
-			for (int i = 0; i < 2; ++i)
-			{
-				if (Thread.currentThread().isInterrupted())
-					return;
+			LOG.debug("Narrowed the bounding box of the selected shape in all sections from {} to {}", Intervals.dimensionsAsLongArray(sectionImgs[0]), Intervals.dimensionsAsLongArray(boundingBox));
 
-				distanceTransformPair[i] = new ArrayImgFactory<>(new FloatType()).create(sectionPair[i]);
-				final RandomAccessibleInterval<BoolType> binarySection = Converters.convert(sectionPair[i], new PredicateConverter<>(FOREGROUND_CHECK), new BoolType());
-				computeSignedDistanceTransform(binarySection, distanceTransformPair[i], DISTANCE_TYPE.EUCLIDIAN);
+			final List<ShapeInterpolation.Keyframe> keyframes = new ArrayList<>();
+			for (int i = 0; i < sections.size(); ++i)
+			{
+				final RandomAccessibleInterval<BoolType> binarySection = Converters.convert(
+						Views.offsetInterval(sectionImgs[i], boundingBox),
+						new PredicateConverter<>(FOREGROUND_CHECK),
+						new BoolType()
+					);
+				keyframes.add(new ShapeInterpolation.Keyframe(getDepth(sections.get(i)), binarySection));
 			}
 
-			final double distanceBetweenSections = computeDistanceBetweenSections(sectionInfoPair[0], sectionInfoPair[1]);
-			final AffineTransform3D transformToSource = new AffineTransform3D();
-			transformToSource
-				.preConcatenate(new Translation3D(boundingBox.min(0), boundingBox.min(1), 0))
-				.preConcatenate(new Translation3D(displaySectionIntervalPair[0].min(0), displaySectionIntervalPair[0].min(1), 0))
-				.preConcatenate(sectionInfoPair[0].sourceToDisplayTransform.inverse());
-
-			final RealRandomAccessible<UnsignedLongType> interpolatedShapeMask = getInterpolatedDistanceTransformMask(
-					distanceTransformPair[0],
-					distanceTransformPair[1],
-					distanceBetweenSections,
-					new UnsignedLongType(1),
-					transformToSource
-				);
-
-			final RealRandomAccessible<VolatileUnsignedLongType> volatileInterpolatedShapeMask = getInterpolatedDistanceTransformMask(
-					distanceTransformPair[0],
-					distanceTransformPair[1],
-					distanceBetweenSections,
-					new VolatileUnsignedLongType(1),
-					transformToSource
-				);
+			// All sections are parallel. Section pixels are relative to the narrowed bounding box in the display space of the first section.
+			// The depth along the viewer axis is the same as for the sections.
+			final SectionInfo referenceSection = sections.get(0);
+			final AffineTransform3D sourceToKeyframes = referenceSection.sourceToDisplayTransform.copy()
+				.preConcatenate(new Translation3D(
+						-displaySectionIntervals[0].min(0) - boundingBox.min(0),
+						-displaySectionIntervals[0].min(1) - boundingBox.min(1),
+						0))
+				.preConcatenate(new Scale3D(1, 1, -1))
+				.preConcatenate(new Translation3D(0, 0, getDepth(referenceSection)));
+
+			final ShapeInterpolation interpolation;
+			try
+			{
+				interpolation = ShapeInterpolation.interpolate(
+						keyframes,
+						sourceToKeyframes,
+						affectedUnionSourceInterval,
+						blockSize,
+						paintera.getGlobalCache(),
+						INTERPOLATION_EXECUTOR
+					);
+			}
+			catch (final InterruptedException e)
+			{
+				LOG.debug("Shape interpolation was interrupted");
+				return;
+			}
+			catch (final ExecutionException e)
+			{
+				LOG.error("Failed to interpolate shape between {} sections", sections.size(), e);
+				return;
+			}
 
 			if (Thread.currentThread().isInterrupted())
+			{
+				interpolation.invalidateAll();
 				return;
+			}
 
 			try
 			{
 				synchronized (source)
 				{
-					final MaskInfo<UnsignedLongType> maskInfo = mask.info;
 					resetMask();
 					source.setMask(
 							maskInfo,
-							interpolatedShapeMask,
-							volatileInterpolatedShapeMask,
+							interpolation.getMask(),
+							interpolation.getVolatileMask(),
 							FOREGROUND_CHECK
 						);
-					interpolatedMaskImgs = new ValuePair<>(interpolatedShapeMask, volatileInterpolatedShapeMask);
+					this.interpolation = interpolation;
 				}
 
 				paintera.orthogonalViews().requestRepaint();
@@ -700,7 +727,7 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 			}
 
 			InvokeOnJavaFXApplicationThread.invoke(this::runOnInterpolationFinished);
-		});
+		}, "shape interpolation");
 		workerThread.start();
 	}
 
@@ -725,60 +752,11 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 			}
 		}
 		onInterpolationFinished = null;
-	}
-
-	private static <R extends RealType<R> & NativeType<R>, B extends BooleanType<B>> void computeSignedDistanceTransform(
-			final RandomAccessibleInterval<B> mask,
-			final RandomAccessibleInterval<R> target,
-			final DISTANCE_TYPE distanceType,
-			final double... weights)
-	{
-		final RandomAccessibleInterval<R> distanceOutside = target;
-		final RandomAccessibleInterval<R> distanceInside = new ArrayImgFactory<>(Util.getTypeFromInterval(target)).create(target);
-		DistanceTransform.binaryTransform(mask, distanceOutside, distanceType, weights);
-		DistanceTransform.binaryTransform(Logical.complement(mask), distanceInside, distanceType, weights);
-		LoopBuilder.setImages(distanceOutside, distanceInside, target).forEachPixel((outside, inside, result) -> {
-			switch (distanceType)
-			{
-			case EUCLIDIAN:
-				result.setReal(Math.sqrt(outside.getRealDouble()) - Math.sqrt(inside.getRealDouble()));
-				break;
-			case L1:
-				result.setReal(outside.getRealDouble() - inside.getRealDouble());
-				break;
-			}
-		});
-	}
-
-	private static <R extends RealType<R>, T extends NativeType<T> & RealType<T>> RealRandomAccessible<T> getInterpolatedDistanceTransformMask(
-			final RandomAccessibleInterval<R> dt1,
-			final RandomAccessibleInterval<R> dt2,
-			final double distance,
-			final T targetValue,
-			final AffineTransform3D transformToSource)
-	{
-		final RandomAccessibleInterval<R> distanceTransformStack = Views.stack(dt1, dt2);
-
-		final R extendValue = Util.getTypeFromInterval(distanceTransformStack).createVariable();
-		extendValue.setReal(extendValue.getMaxValue());
-		final RealRandomAccessible<R> interpolatedDistanceTransform = Views.interpolate(
-				Views.extendValue(distanceTransformStack, extendValue),
-				new NLinearInterpolatorFactory<>()
-			);
-
-		final RealRandomAccessible<R> scaledInterpolatedDistanceTransform = RealViews.affineReal(
-				interpolatedDistanceTransform,
-				new Scale3D(1, 1, -distance)
-			);
-
-		final T emptyValue = targetValue.createVariable();
-		final RealRandomAccessible<T> interpolatedShape = Converters.convert(
-				scaledInterpolatedDistanceTransform,
-				(in, out) -> out.set(in.getRealDouble() <= 0 ? targetValue : emptyValue),
-				emptyValue.createVariable()
-			);
-
-		return RealViews.affineReal(interpolatedShape, transformToSource);
+		if (interpolation != null)
+		{
+			interpolation.invalidateAll();
+			interpolation = null;
+		}
 	}
 
 	private RandomAccessibleInterval<UnsignedLongType> getTransformedMaskSection(final SectionInfo sectionInfo)
@@ -799,12 +777,17 @@ public class ShapeInterpolationMode<D extends IntegerType<D>>
 		return RealViews.affine(interpolatedMask, transform);
 	}
 
-	private static double computeDistanceBetweenSections(final SectionInfo s1, final SectionInfo s2)
+	/**
+	 * Returns the position of the section plane along the viewer axis. All sections have the same orientation.
+	 *
+	 * @param sectionInfo
+	 * @return
+	 */
+	private static double getDepth(final SectionInfo sectionInfo)
 	{
-		final double[] pos1 = new double[3], pos2 = new double[3];
-		s1.sourceToDisplayTransform.apply(pos1, pos1);
-		s2.sourceToDisplayTransform.apply(pos2, pos2);
-		return pos2[2] - pos1[2]; // We care only about the shift between the sections (Z distance in the viewer)
+		final double[] position = new double[3];
+		sectionInfo.sourceToDisplayTransform.apply(position, position);
+		return position[2];
 	}
 
 	private void selectObject(final PainteraBaseView paintera, final double x, final double y, final boolean deactivateOthers)
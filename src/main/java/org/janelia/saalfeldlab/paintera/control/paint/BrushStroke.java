@@ -0,0 +1,428 @@
+package org.janelia.saalfeldlab.paintera.control.paint;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+import bdv.util.Affine3DHelpers;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.AccessedBlocksRandomAccessible;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Rasterize brush strokes into a label canvas. A stroke is the volume swept by the brush along a polyline of viewer
+ * positions: the union of elliptic capsules around each segment in the viewer plane, extruded by {@code zRange} along
+ * the viewer axis. All voxels of the canvas with their center inside this volume are painted.
+ * <p>
+ * The volume is convex for each segment and, thus, intersects each row of voxels along the first label axis in a
+ * single span, which is computed in closed form and filled at once. Spans are filled block by block: if the canvas is
+ * a cell image with {@link LongAccess}, spans are written directly into the cell data and each cell is registered
+ * with an {@link AccessedBlocksRandomAccessible} canvas at most once per segment.
+ */
+public class BrushStroke
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final AffineTransform3D labelToViewerTransform;
+
+	private final double radiusX;
+
+	private final double radiusY;
+
+	private final double zRange;
+
+	// viewer coordinates of label position (0, 0, 0) and label unit steps
+	private final double[] origin = new double[3];
+
+	private final double[] stepX = new double[3];
+
+	private final double[] stepY = new double[3];
+
+	private final double[] stepZ = new double[3];
+
+	/**
+	 * @param labelToViewerTransform transform from label to viewer coordinates
+	 * @param radiusX radius of the brush along the viewer x axis, in viewer coordinates
+	 * @param radiusY radius of the brush along the viewer y axis, in viewer coordinates
+	 * @param zRange paint voxels within {@code zRange} of the viewer plane, in viewer coordinates
+	 */
+	public BrushStroke(
+			final AffineTransform3D labelToViewerTransform,
+			final double radiusX,
+			final double radiusY,
+			final double zRange)
+	{
+		this.labelToViewerTransform = labelToViewerTransform.copy();
+		this.radiusX = radiusX;
+		this.radiusY = radiusY;
+		this.zRange = zRange;
+		this.labelToViewerTransform.apply(origin, origin);
+		for (int d = 0; d < 3; ++d)
+		{
+			stepX[d] = this.labelToViewerTransform.get(d, 0);
+			stepY[d] = this.labelToViewerTransform.get(d, 1);
+			stepZ[d] = this.labelToViewerTransform.get(d, 2);
+		}
+	}
+
+	/**
+	 * Create a stroke for a brush with the same extent as {@link Paint2D#paint}: the brush radius and depth are
+	 * extended by half the projected voxel size.
+	 *
+	 * @param labelToViewerTransform transform from label to viewer coordinates
+	 * @param globalToViewerTransform transform from global to viewer coordinates
+	 * @param labelToGlobalTransform transform from label to global coordinates
+	 * @param radius brush radius in global coordinates
+	 * @param brushDepth brush depth in voxels
+	 * @return stroke for the brush
+	 */
+	public static BrushStroke forBrush(
+			final AffineTransform3D labelToViewerTransform,
+			final AffineTransform3D globalToViewerTransform,
+			final AffineTransform3D labelToGlobalTransform,
+			final double radius,
+			final double brushDepth)
+	{
+		final AffineTransform3D labelToGlobalTransformWithoutTranslation = labelToGlobalTransform.copy();
+		labelToGlobalTransformWithoutTranslation.setTranslation(0.0, 0.0, 0.0);
+		final double[] projections = PaintUtils.maximumVoxelDiagonalLengthPerDimension(
+				labelToGlobalTransformWithoutTranslation,
+				globalToViewerTransform);
+		final double factor = 0.5;
+		final double viewerRadius = Affine3DHelpers.extractScale(globalToViewerTransform, 0) * radius;
+		return new BrushStroke(
+				labelToViewerTransform,
+				factor * projections[0] + viewerRadius,
+				factor * projections[1] + viewerRadius,
+				(factor + brushDepth - 1) * projections[2]);
+	}
+
+	/**
+	 * Paint the volume swept by the brush along a polyline of viewer positions.
+	 *
+	 * @param labels paint into this canvas
+	 * @param fillLabel paint this label
+	 * @param polyline viewer positions {@code {x, y}}, a single position paints the brush at that position
+	 * @return bounding box of all painted voxels in label coordinates, {@code null} if no voxel was painted
+	 */
+	public Interval paint(
+			final RandomAccessibleInterval<UnsignedLongType> labels,
+			final long fillLabel,
+			final double[]... polyline)
+	{
+		Interval painted = null;
+		// a segment includes the brush at both of its end points
+		for (int i = polyline.length > 1 ? 1 : 0; i < polyline.length; ++i)
+		{
+			final double[] from = polyline[Math.max(i - 1, 0)];
+			final double[] to = polyline[i];
+			if (i > 1 && from[0] == to[0] && from[1] == to[1])
+				continue;
+			final Interval paintedSegment = paintSegment(labels, fillLabel, from, to);
+			if (paintedSegment != null)
+				painted = painted == null ? paintedSegment : Intervals.union(painted, paintedSegment);
+		}
+		return painted;
+	}
+
+	/**
+	 * @param labelInterval interval in label coordinates
+	 * @return bounding box of {@code labelInterval} in viewer coordinates, including the voxel extents
+	 */
+	public Interval viewerBoundingBox(final Interval labelInterval)
+	{
+		final double[] min = new double[3];
+		final double[] max = new double[3];
+		Arrays.setAll(min, d -> labelInterval.min(d) - 0.5);
+		Arrays.setAll(max, d -> labelInterval.max(d) + 0.5);
+		return boundingBox(min, max, labelToViewerTransform, false);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Interval paintSegment(
+			final RandomAccessibleInterval<UnsignedLongType> labels,
+			final long fillLabel,
+			final double[] from,
+			final double[] to)
+	{
+		final double[] viewerMin = {Math.min(from[0], to[0]) - radiusX, Math.min(from[1], to[1]) - radiusY, -zRange};
+		final double[] viewerMax = {Math.max(from[0], to[0]) + radiusX, Math.max(from[1], to[1]) + radiusY, +zRange};
+		final Interval box = Intervals.intersect(boundingBox(viewerMin, viewerMax, labelToViewerTransform, true), labels);
+		if (Intervals.isEmpty(box))
+			return null;
+
+		final Capsule capsule = new Capsule(from, to);
+		final AccessedBlocksRandomAccessible<UnsignedLongType> tracker = labels instanceof AccessedBlocksRandomAccessible<?>
+		                                                                 ? (AccessedBlocksRandomAccessible<UnsignedLongType>) labels
+		                                                                 : null;
+		final RandomAccessibleInterval<UnsignedLongType> target = tracker == null ? labels : tracker.getSource();
+		final CellGrid grid = target instanceof AbstractCellImg<?, ?, ?, ?>
+		                      ? ((AbstractCellImg<?, ?, ?, ?>) target).getCellGrid()
+		                      : new CellGrid(Intervals.dimensionsAsLongArray(target), Intervals.dimensionsAsIntArray(target));
+		final RandomAccess<? extends Cell<?>> cells = target instanceof AbstractCellImg<?, ?, ?, ?>
+		                                              ? ((AbstractCellImg<?, ?, ?, ?>) target).getCells().randomAccess()
+		                                              : null;
+		final RandomAccess<UnsignedLongType> access = target.randomAccess();
+
+		final long[] paintedMin = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+		final long[] paintedMax = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+		final long[] gridMin = new long[3];
+		final long[] gridMax = new long[3];
+		for (int d = 0; d < 3; ++d)
+		{
+			gridMin[d] = (box.min(d) - target.min(d)) / grid.cellDimension(d);
+			gridMax[d] = (box.max(d) - target.min(d)) / grid.cellDimension(d);
+		}
+		final long[] gridPosition = gridMin.clone();
+		final long[] cellMin = new long[3];
+		final int[] cellDimensions = new int[3];
+		final long[] min = new long[3];
+		final long[] max = new long[3];
+		final double[] span = new double[2];
+		final double[] rowOrigin = new double[3];
+		int numCells = 0;
+		while (gridPosition[2] <= gridMax[2])
+		{
+			grid.getCellDimensions(gridPosition, cellMin, cellDimensions);
+			for (int d = 0; d < 3; ++d)
+			{
+				min[d] = Math.max(box.min(d), cellMin[d] + target.min(d));
+				max[d] = Math.min(box.max(d), cellMin[d] + target.min(d) + cellDimensions[d] - 1);
+			}
+
+			final LongAccess cellData;
+			if (cells != null)
+			{
+				cells.setPosition(gridPosition);
+				final Object data = cells.get().getData();
+				cellData = data instanceof LongAccess ? (LongAccess) data : null;
+			}
+			else
+				cellData = null;
+
+			boolean isCellPainted = false;
+			for (long z = min[2]; z <= max[2]; ++z)
+			{
+				for (long y = min[1]; y <= max[1]; ++y)
+				{
+					for (int d = 0; d < 3; ++d)
+						rowOrigin[d] = origin[d] + y * stepY[d] + z * stepZ[d];
+					if (!capsule.span(rowOrigin, stepX, span))
+						continue;
+					final long spanMin = Math.max(min[0], (long) Math.ceil(span[0]));
+					final long spanMax = Math.min(max[0], (long) Math.floor(span[1]));
+					if (spanMin > spanMax)
+						continue;
+
+					if (cellData != null)
+					{
+						final long rowOffset = (y - cellMin[1] - target.min(1)) * cellDimensions[0] +
+								(z - cellMin[2] - target.min(2)) * cellDimensions[0] * cellDimensions[1] -
+								cellMin[0] - target.min(0);
+						for (long x = spanMin; x <= spanMax; ++x)
+							cellData.setValue((int) (rowOffset + x), fillLabel);
+					}
+					else
+					{
+						access.setPosition(spanMin, 0);
+						access.setPosition(y, 1);
+						access.setPosition(z, 2);
+						for (long x = spanMin; x <= spanMax; ++x, access.fwd(0))
+							access.get().set(fillLabel);
+					}
+
+					isCellPainted = true;
+					paintedMin[0] = Math.min(paintedMin[0], spanMin);
+					paintedMax[0] = Math.max(paintedMax[0], spanMax);
+					paintedMin[1] = Math.min(paintedMin[1], y);
+					paintedMax[1] = Math.max(paintedMax[1], y);
+					paintedMin[2] = Math.min(paintedMin[2], z);
+					paintedMax[2] = Math.max(paintedMax[2], z);
+				}
+			}
+
+			if (isCellPainted)
+			{
+				++numCells;
+				if (tracker != null)
+					tracker.addBlockId(IntervalIndexer.positionToIndex(gridPosition, grid.getGridDimensions()));
+			}
+
+			for (int d = 0; d < 3 && ++gridPosition[d] > gridMax[d] && d < 2; ++d)
+				gridPosition[d] = gridMin[d];
+		}
+
+		LOG.debug("Painted segment {} -> {} into {} cells: {} {}", from, to, numCells, paintedMin, paintedMax);
+		return numCells == 0 ? null : new FinalInterval(paintedMin, paintedMax);
+	}
+
+	private static Interval boundingBox(
+			final double[] min,
+			final double[] max,
+			final AffineTransform3D transform,
+			final boolean inverse)
+	{
+		final long[] boundingBoxMin = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+		final long[] boundingBoxMax = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+		final double[] corner = new double[3];
+		for (int c = 0; c < 8; ++c)
+		{
+			for (int d = 0; d < 3; ++d)
+				corner[d] = (c & 1 << d) == 0 ? min[d] : max[d];
+			if (inverse)
+				transform.applyInverse(corner, corner);
+			else
+				transform.apply(corner, corner);
+			for (int d = 0; d < 3; ++d)
+			{
+				boundingBoxMin[d] = Math.min(boundingBoxMin[d], (long) Math.floor(corner[d]));
+				boundingBoxMax[d] = Math.max(boundingBoxMax[d], (long) Math.ceil(corner[d]));
+			}
+		}
+		return new FinalInterval(boundingBoxMin, boundingBoxMax);
+	}
+
+	/**
+	 * Volume swept by the brush along a single segment. Viewer x and y are scaled by the brush radii such that the
+	 * cross section is a capsule of radius {@code 1} around the segment from {@code a} to {@code b}.
+	 */
+	private class Capsule
+	{
+
+		private final double ax;
+
+		private final double ay;
+
+		private final double length;
+
+		// unit direction and normal of the segment, arbitrary if the segment has length zero
+		private final double ux;
+
+		private final double uy;
+
+		Capsule(final double[] from, final double[] to)
+		{
+			this.ax = from[0] / radiusX;
+			this.ay = from[1] / radiusY;
+			final double dx = to[0] / radiusX - ax;
+			final double dy = to[1] / radiusY - ay;
+			this.length = Math.sqrt(dx * dx + dy * dy);
+			this.ux = length > 0 ? dx / length : 1.0;
+			this.uy = length > 0 ? dy / length : 0.0;
+		}
+
+		/**
+		 * Intersect the line {@code p + s * dp}, in viewer coordinates, with this volume.
+		 *
+		 * @param span {@code [sMin, sMax]} of the intersection
+		 * @return {@code false} if the intersection is empty
+		 */
+		boolean span(final double[] p, final double[] dp, final double[] span)
+		{
+			// slab around the viewer plane
+			if (!linear(p[2], dp[2], -zRange, zRange, span))
+				return false;
+			final double slabMin = span[0];
+			final double slabMax = span[1];
+
+			// cross section is convex: intersection is the hull of the intersections with the discs around the end
+			// points and with the rectangle between them
+			final double px = p[0] / radiusX - ax;
+			final double py = p[1] / radiusY - ay;
+			final double dx = dp[0] / radiusX;
+			final double dy = dp[1] / radiusY;
+			double sMin = Double.POSITIVE_INFINITY;
+			double sMax = Double.NEGATIVE_INFINITY;
+			if (disc(px, py, dx, dy, span))
+			{
+				sMin = Math.min(sMin, span[0]);
+				sMax = Math.max(sMax, span[1]);
+			}
+			if (length > 0)
+			{
+				if (disc(px - ux * length, py - uy * length, dx, dy, span))
+				{
+					sMin = Math.min(sMin, span[0]);
+					sMax = Math.max(sMax, span[1]);
+				}
+				if (rectangle(px, py, dx, dy, span))
+				{
+					sMin = Math.min(sMin, span[0]);
+					sMax = Math.max(sMax, span[1]);
+				}
+			}
+
+			span[0] = Math.max(sMin, slabMin);
+			span[1] = Math.min(sMax, slabMax);
+			return span[0] <= span[1];
+		}
+
+		private boolean rectangle(final double px, final double py, final double dx, final double dy, final double[] span)
+		{
+			if (!linear(px * ux + py * uy, dx * ux + dy * uy, 0.0, length, span))
+				return false;
+			final double alongMin = span[0];
+			final double alongMax = span[1];
+			if (!linear(py * ux - px * uy, dy * ux - dx * uy, -1.0, 1.0, span))
+				return false;
+			span[0] = Math.max(span[0], alongMin);
+			span[1] = Math.min(span[1], alongMax);
+			return span[0] <= span[1];
+		}
+
+	}
+
+	/**
+	 * Solve {@code |p + s * dp| <= 1} for {@code s} in two dimensions.
+	 */
+	private static boolean disc(final double px, final double py, final double dx, final double dy, final double[] span)
+	{
+		final double a = dx * dx + dy * dy;
+		final double b = px * dx + py * dy;
+		final double c = px * px + py * py - 1.0;
+		if (a == 0.0)
+		{
+			span[0] = Double.NEGATIVE_INFINITY;
+			span[1] = Double.POSITIVE_INFINITY;
+			return c <= 0.0;
+		}
+		final double discriminant = b * b - a * c;
+		if (discriminant < 0.0)
+			return false;
+		final double root = Math.sqrt(discriminant);
+		span[0] = (-b - root) / a;
+		span[1] = (-b + root) / a;
+		return true;
+	}
+
+	/**
+	 * Solve {@code min <= p + s * dp <= max} for {@code s}.
+	 */
+	private static boolean linear(final double p, final double dp, final double min, final double max, final double[] span)
+	{
+		if (dp == 0.0)
+		{
+			span[0] = Double.NEGATIVE_INFINITY;
+			span[1] = Double.POSITIVE_INFINITY;
+			return p >= min && p <= max;
+		}
+		final double s1 = (min - p) / dp;
+		final double s2 = (max - p) / dp;
+		span[0] = Math.min(s1, s2);
+		span[1] = Math.max(s1, s2);
+		return true;
+	}
+
+}
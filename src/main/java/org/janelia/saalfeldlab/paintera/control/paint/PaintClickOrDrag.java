@@ -2,7 +2,6 @@ package org.janelia.saalfeldlab.paintera.control.paint;
 
 import bdv.fx.viewer.ViewerPanelFX;
 import bdv.fx.viewer.ViewerState;
-import bdv.util.Affine3DHelpers;
 import bdv.viewer.Source;
 import javafx.event.EventHandler;
 import javafx.event.EventType;
@@ -11,11 +10,8 @@ import javafx.scene.input.MouseEvent;
 import net.imglib2.Interval;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.realtransform.AffineTransform3D;
-import net.imglib2.type.label.Label;
 import net.imglib2.type.numeric.integer.UnsignedLongType;
 import net.imglib2.util.Intervals;
-import net.imglib2.util.LinAlgHelpers;
-import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.fx.event.InstallAndRemove;
 import org.janelia.saalfeldlab.fx.ui.Exceptions;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
@@ -178,7 +174,7 @@ public class PaintClickOrDrag implements InstallAndRemove<Node> {
 					this.interval = null;
 					this.paintIntoThis = source;
 					position.update(event);
-					paint(position.x, position.y);
+					paint(new double[] {position.x, position.y});
 				}
 				// TODO should this be more specific? I think that we should never enter a painting state
 				// TODO when an exception occurs
@@ -206,30 +202,13 @@ public class PaintClickOrDrag implements InstallAndRemove<Node> {
 					double x = event.getX();
 					double y = event.getY();
 					if (x != this.position.x || y != this.position.y) {
-						final double[] p1 = new double[] {position.x, position.y};
-
 						LOG.debug("Drag: paint at screen=({},{}) / start={}", x, y, position);
 
-						final double[] d = new double[] {x, y};
-
-						LinAlgHelpers.subtract(d, p1, d);
-
-						final double l = LinAlgHelpers.length(d);
-						LinAlgHelpers.normalize(d);
-
-						LOG.debug("Number of paintings triggered {}", l + 1);
-
 						final long t0 = System.currentTimeMillis();
-						for (int i = 0; i < l; ++i)
-						{
-							paint(p1[0], p1[1]);
-							LinAlgHelpers.add(p1, d, p1);
-						}
-						paint(x, y);
+						paint(new double[] {position.x, position.y}, new double[] {x, y});
 						final long t1 = System.currentTimeMillis();
 						LOG.debug(
-								"Painting {} times with radius {} took a total of {}ms",
-								l + 1,
+								"Painting stroke with radius {} took {}ms",
 								brushRadius.getAsDouble(),
 								t1 - t0
 						);
@@ -309,10 +288,15 @@ public class PaintClickOrDrag implements InstallAndRemove<Node> {
 		return getIsPainting() && this.mask != null ? this.mask.mask : null;
 	}
 
-	private synchronized void paint(final double viewerX, final double viewerY)
+	/**
+	 * Paint the volume swept by the brush along {@code polyline}.
+	 *
+	 * @param polyline viewer positions {@code {x, y}}
+	 */
+	private synchronized void paint(final double[]... polyline)
 	{
 
-		LOG.debug( "At {} {}", viewerX, viewerY );
+		LOG.debug( "At {}", (Object) polyline );
 
 		if (!this.isPainting) {
 			LOG.debug("Not currently activated for painting, returning without action");
@@ -324,33 +308,26 @@ public class PaintClickOrDrag implements InstallAndRemove<Node> {
 			LOG.debug("Current mask is null, returning without action");
 			return;
 		}
-		final double radius = brushRadius.getAsDouble();
-		final Interval trackedInterval = Paint2D.paint(
-				Views.extendValue(mask, new UnsignedLongType(Label.INVALID)),
-				this.fillLabel,
-				viewerX,
-				viewerY,
-				radius,
-				brushDepth.getAsDouble(),
+		final BrushStroke stroke = BrushStroke.forBrush(
 				labelToViewerTransform,
 				globalToViewerTransform,
-				labelToGlobalTransform);
+				labelToGlobalTransform,
+				brushRadius.getAsDouble(),
+				brushDepth.getAsDouble());
+		final Interval paintedInterval = stroke.paint(mask, this.fillLabel, polyline);
+		if (paintedInterval == null) {
+			LOG.debug("Stroke did not paint any voxels");
+			return;
+		}
 		this.interval = this.interval == null
-				? trackedInterval
-				: Intervals.union(trackedInterval, this.interval);
-		++this.fillLabel;
-
-		final double viewerRadius = Affine3DHelpers.extractScale(globalToViewerTransform, 0) * radius;
-		final long[] viewerMin = {
-				(long) Math.floor(viewerX - viewerRadius),
-				(long) Math.floor(viewerY - viewerRadius)
-		};
-		final long[] viewerMax = {
-				(long) Math.ceil(viewerX + viewerRadius),
-				(long) Math.ceil(viewerY + viewerRadius)
-		};
+				? paintedInterval
+				: Intervals.union(paintedInterval, this.interval);
+
+		final Interval viewerInterval = stroke.viewerBoundingBox(paintedInterval);
+		final long[] viewerMin = {viewerInterval.min(0), viewerInterval.min(1)};
+		final long[] viewerMax = {viewerInterval.max(0), viewerInterval.max(1)};
 
-		LOG.debug("Painted sphere with radius {} at ({}, {}): ({} {})", viewerRadius, viewerX, viewerY, viewerMin, viewerMax);
+		LOG.debug("Painted {} {} in label space, repaint ({} {})", Intervals.minAsLongArray(paintedInterval), Intervals.maxAsLongArray(paintedInterval), viewerMin, viewerMax);
 
 		this.viewer.requestRepaint(viewerMin, viewerMax);
 
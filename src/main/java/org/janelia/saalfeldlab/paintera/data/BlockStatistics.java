@@ -0,0 +1,327 @@
+package org.janelia.saalfeldlab.paintera.data;
+
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.UncheckedCache;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Pair;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.cache.Invalidate;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Predicate;
+
+/**
+ * Minimum, maximum, and histogram of each block of a scalar image, computed lazily and cached in {@link GlobalCache}.
+ * <p>
+ * Blocks are the cells of the image if it is an {@link AbstractCellImg}, e.g. as opened by
+ * {@link org.janelia.saalfeldlab.util.n5.N5Data#openRaw}, and the whole image otherwise. A block is summarized when it
+ * is first requested. The block is read through the image, i.e. cells of a {@link CachedCellImg} that are already
+ * loaded are not loaded again. Blocks can be summarized in the background with {@link #request(long)}, e.g. while
+ * rendering, where summarizing a block must not delay the frame.
+ *
+ * @param <T> data type
+ */
+public class BlockStatistics<T extends RealType<T>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int DEFAULT_NUM_BINS = 256;
+
+	private static final ExecutorService SUMMARIZERS = Executors.newFixedThreadPool(
+			Math.max(Runtime.getRuntime().availableProcessors() / 2, 1),
+			new NamedThreadFactory("block-statistics-%d", true));
+
+	/**
+	 * Predicate on values that can be evaluated for a range of values at once.
+	 */
+	public interface RangePredicate<T> extends Predicate<T>
+	{
+
+		/**
+		 * @return {@code true} if all values in {@code [min, max]} satisfy this predicate
+		 */
+		boolean acceptsAll(double min, double max);
+
+		/**
+		 * @return {@code true} if no value in {@code [min, max]} satisfies this predicate
+		 */
+		boolean rejectsAll(double min, double max);
+
+	}
+
+	/**
+	 * Summary of a single block.
+	 */
+	public static class Summary
+	{
+
+		/**
+		 * Smallest value that is not {@code NaN}, {@link Double#POSITIVE_INFINITY} if there is no such value.
+		 */
+		public final double min;
+
+		/**
+		 * Largest value that is not {@code NaN}, {@link Double#NEGATIVE_INFINITY} if there is no such value.
+		 */
+		public final double max;
+
+		/**
+		 * {@code true} if the block contains {@code NaN}.
+		 */
+		public final boolean hasNaN;
+
+		private final long[] histogram;
+
+		private Summary(final double min, final double max, final boolean hasNaN, final long[] histogram)
+		{
+			this.min = min;
+			this.max = max;
+			this.hasNaN = hasNaN;
+			this.histogram = histogram;
+		}
+
+		/**
+		 * @return {@link Boolean#TRUE} if all values of the block satisfy {@code predicate}, {@link Boolean#FALSE} if
+		 * no value satisfies {@code predicate}, {@code null} if the predicate needs to be evaluated for each value
+		 */
+		public Boolean test(final RangePredicate<?> predicate)
+		{
+			if (predicate.rejectsAll(min, max))
+				return Boolean.FALSE;
+			// NaN never satisfies a range predicate
+			if (!hasNaN && predicate.acceptsAll(min, max))
+				return Boolean.TRUE;
+			return null;
+		}
+
+		/**
+		 * @return number of values in each bin, {@code NaN} is not counted
+		 */
+		public long[] histogram()
+		{
+			return histogram.clone();
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("{min=%s, max=%s, hasNaN=%s}", min, max, hasNaN);
+		}
+
+	}
+
+	private final RandomAccessibleInterval<T> data;
+
+	private final CellGrid grid;
+
+	private final double histogramMin;
+
+	private final double histogramMax;
+
+	private final int numBins;
+
+	private final Cache<Long, Summary> cache;
+
+	private final UncheckedCache<Long, Summary> uncheckedCache;
+
+	private final Invalidate<Long> invalidate;
+
+	private final Set<Long> requested = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * @param data summarize blocks of this image
+	 * @param histogramMin lower bound of first histogram bin, smaller values are counted in the first bin
+	 * @param histogramMax upper bound of last histogram bin, larger values are counted in the last bin
+	 * @param numBins number of histogram bins
+	 * @param globalCache cache summaries in a sub-cache of this cache
+	 */
+	public BlockStatistics(
+			final RandomAccessibleInterval<T> data,
+			final double histogramMin,
+			final double histogramMax,
+			final int numBins,
+			final GlobalCache globalCache)
+	{
+		if (numBins < 1)
+			throw new IllegalArgumentException("Need at least one histogram bin: " + numBins);
+		if (!(histogramMax > histogramMin))
+			throw new IllegalArgumentException("Empty histogram range: [" + histogramMin + ", " + histogramMax + "]");
+		this.data = data;
+		this.grid = data instanceof AbstractCellImg<?, ?, ?, ?>
+		            ? ((AbstractCellImg<?, ?, ?, ?>) data).getCellGrid()
+		            : new CellGrid(
+				            Intervals.dimensionsAsLongArray(data),
+				            Arrays.stream(Intervals.dimensionsAsLongArray(data)).mapToInt(l -> (int) l).toArray()
+		            );
+		this.histogramMin = histogramMin;
+		this.histogramMax = histogramMax;
+		this.numBins = numBins;
+		final Pair<Cache<Long, Summary>, Invalidate<Long>> cacheAndInvalidate = globalCache.createNewCache(this::summarize);
+		this.cache = cacheAndInvalidate.getA();
+		this.uncheckedCache = this.cache.unchecked();
+		this.invalidate = cacheAndInvalidate.getB();
+	}
+
+	/**
+	 * @param source summarize all mipmap levels of this source at time point {@code 0}
+	 * @param histogramMin lower bound of first histogram bin
+	 * @param histogramMax upper bound of last histogram bin
+	 * @param numBins number of histogram bins
+	 * @param globalCache cache summaries in sub-caches of this cache
+	 * @return statistics for each mipmap level
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends RealType<T>> BlockStatistics<T>[] forSource(
+			final DataSource<T, ?> source,
+			final double histogramMin,
+			final double histogramMax,
+			final int numBins,
+			final GlobalCache globalCache)
+	{
+		final BlockStatistics<T>[] statistics = new BlockStatistics[source.getNumMipmapLevels()];
+		Arrays.setAll(statistics, level -> new BlockStatistics<>(source.getDataSource(0, level), histogramMin, histogramMax, numBins, globalCache));
+		return statistics;
+	}
+
+	public CellGrid getGrid()
+	{
+		return grid;
+	}
+
+	public double getHistogramMin()
+	{
+		return histogramMin;
+	}
+
+	public double getHistogramMax()
+	{
+		return histogramMax;
+	}
+
+	public int getNumBins()
+	{
+		return numBins;
+	}
+
+	/**
+	 * @param index flat index of block in {@link #getGrid() grid}
+	 * @return summary of block, computed if necessary
+	 */
+	public Summary get(final long index)
+	{
+		return uncheckedCache.get(index);
+	}
+
+	/**
+	 * @param index flat index of block in {@link #getGrid() grid}
+	 * @return summary of block, or {@code null} if it has not been computed yet
+	 */
+	public Summary getIfPresent(final long index)
+	{
+		return cache.getIfPresent(index);
+	}
+
+	/**
+	 * Summarize block in the background if it has not been summarized yet. Returns immediately, the summary is
+	 * available through {@link #getIfPresent(long)} once it is computed. Repeated requests for a block that is being
+	 * summarized are ignored.
+	 *
+	 * @param index flat index of block in {@link #getGrid() grid}
+	 */
+	public void request(final long index)
+	{
+		if (!requested.add(index))
+			return;
+		SUMMARIZERS.execute(() -> {
+			try
+			{
+				get(index);
+			} catch (final RuntimeException e)
+			{
+				LOG.debug("Unable to summarize block {} with grid {}: {}", index, grid, e.getMessage(), e);
+			} finally
+			{
+				requested.remove(index);
+			}
+		});
+	}
+
+	/**
+	 * Sum the histograms of all blocks. This reads all blocks that have not been summarized yet, e.g. use the
+	 * statistics of a low resolution mipmap level to get the distribution of values of a large image.
+	 *
+	 * @return number of values in each bin, {@code NaN} is not counted
+	 */
+	public long[] histogram()
+	{
+		final long[] histogram = new long[numBins];
+		final long numBlocks = Intervals.numElements(grid.getGridDimensions());
+		for (long index = 0; index < numBlocks; ++index)
+		{
+			final long[] blockHistogram = get(index).histogram;
+			for (int bin = 0; bin < numBins; ++bin)
+				histogram[bin] += blockHistogram[bin];
+		}
+		return histogram;
+	}
+
+	/**
+	 * @return lower bound of {@code bin}
+	 */
+	public double binMin(final int bin)
+	{
+		return histogramMin + bin * (histogramMax - histogramMin) / numBins;
+	}
+
+	public void invalidateAll()
+	{
+		invalidate.invalidateAll();
+	}
+
+	private Summary summarize(final Long index)
+	{
+		final long[] min = new long[grid.numDimensions()];
+		final int[] dimensions = new int[grid.numDimensions()];
+		grid.getCellDimensions(index, min, dimensions);
+		final long[] max = new long[min.length];
+		Arrays.setAll(max, d -> min[d] + dimensions[d] - 1);
+
+		double blockMin = Double.POSITIVE_INFINITY;
+		double blockMax = Double.NEGATIVE_INFINITY;
+		boolean hasNaN = false;
+		final long[] histogram = new long[numBins];
+		final double binsPerValue = numBins / (histogramMax - histogramMin);
+		for (final T t : Views.flatIterable(Views.interval(data, min, max)))
+		{
+			final double value = t.getRealDouble();
+			if (Double.isNaN(value))
+			{
+				hasNaN = true;
+				continue;
+			}
+			blockMin = Math.min(value, blockMin);
+			blockMax = Math.max(value, blockMax);
+			final int bin = (int) ((value - histogramMin) * binsPerValue);
+			++histogram[Math.min(Math.max(bin, 0), numBins - 1)];
+		}
+		final Summary summary = new Summary(blockMin, blockMax, hasNaN, histogram);
+		LOG.trace("Summarized block {} with grid {}: {}", index, grid, summary);
+		return summary;
+	}
+
+}
@@ -0,0 +1,160 @@
+package org.janelia.saalfeldlab.paintera.data;
+
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import net.imglib2.AbstractWrappedInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.AbstractConvertedRandomAccess;
+import net.imglib2.converter.Converter;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.IntervalIndexer;
+
+/**
+ * Evaluate a {@link BlockStatistics.RangePredicate} voxel by voxel only in blocks that are neither entirely accepted nor
+ * entirely rejected according to their {@link BlockStatistics.Summary}. Voxels of all other blocks resolve to a
+ * constant without accessing the underlying image, i.e. these blocks do not need to be loaded.
+ * <p>
+ * Blocks that have not been summarized yet are evaluated voxel by voxel. Such a block is summarized in the background,
+ * see {@link BlockStatistics#request(long)}, as soon as a voxel of the block is accessed and {@code isLoaded} holds for
+ * the voxel. Accessing a voxel never waits for a summary, the summary is used once the block is accessed again.
+ *
+ * @param <S> source type
+ * @param <U> target type
+ */
+public class BlockwisePredicateRandomAccessibleInterval<S, U>
+		extends AbstractWrappedInterval<RandomAccessibleInterval<S>>
+		implements RandomAccessibleInterval<U>
+{
+
+	private final BlockStatistics<?> statistics;
+
+	private final BlockStatistics.RangePredicate<?> predicate;
+
+	private final Predicate<S> isLoaded;
+
+	private final Converter<S, U> converter;
+
+	private final BiConsumer<U, Boolean> setResolved;
+
+	private final Supplier<U> targetSupplier;
+
+	/**
+	 * @param source evaluate {@code converter} on this image
+	 * @param statistics summaries of blocks of {@code source}
+	 * @param predicate range predicate that is evaluated by {@code converter}
+	 * @param isLoaded {@code true} if block of voxel is loaded and can be summarized without delay
+	 * @param converter evaluate predicate voxel by voxel
+	 * @param setResolved set target for blocks that are entirely accepted or rejected
+	 * @param targetSupplier create target
+	 */
+	public BlockwisePredicateRandomAccessibleInterval(
+			final RandomAccessibleInterval<S> source,
+			final BlockStatistics<?> statistics,
+			final BlockStatistics.RangePredicate<?> predicate,
+			final Predicate<S> isLoaded,
+			final Converter<S, U> converter,
+			final BiConsumer<U, Boolean> setResolved,
+			final Supplier<U> targetSupplier)
+	{
+		super(source);
+		this.statistics = statistics;
+		this.predicate = predicate;
+		this.isLoaded = isLoaded;
+		this.converter = converter;
+		this.setResolved = setResolved;
+		this.targetSupplier = targetSupplier;
+	}
+
+	@Override
+	public RandomAccess<U> randomAccess()
+	{
+		return new BlockwiseRandomAccess(sourceInterval.randomAccess());
+	}
+
+	@Override
+	public RandomAccess<U> randomAccess(final Interval interval)
+	{
+		return new BlockwiseRandomAccess(sourceInterval.randomAccess(interval));
+	}
+
+	private class BlockwiseRandomAccess extends AbstractConvertedRandomAccess<S, U>
+	{
+
+		private final CellGrid grid = statistics.getGrid();
+
+		private final long[] gridDimensions = grid.getGridDimensions();
+
+		private final long[] gridPosition = new long[grid.numDimensions()];
+
+		private final U target = targetSupplier.get();
+
+		private long index = -1;
+
+		private BlockStatistics.Summary summary = null;
+
+		private boolean isRequested = false;
+
+		private BlockwiseRandomAccess(final RandomAccess<S> source)
+		{
+			super(source);
+		}
+
+		@Override
+		public U get()
+		{
+			final long index = blockIndex();
+			if (index != this.index)
+			{
+				this.index = index;
+				this.summary = index < 0 ? null : statistics.getIfPresent(index);
+				this.isRequested = false;
+			}
+
+			if (summary != null)
+			{
+				final Boolean resolved = summary.test(predicate);
+				if (resolved != null)
+				{
+					setResolved.accept(target, resolved);
+					return target;
+				}
+			}
+
+			final S s = source.get();
+			if (summary == null && !isRequested && index >= 0 && isLoaded.test(s))
+			{
+				statistics.request(index);
+				isRequested = true;
+			}
+			converter.convert(s, target);
+			return target;
+		}
+
+		@Override
+		public BlockwiseRandomAccess copy()
+		{
+			return new BlockwiseRandomAccess(source.copyRandomAccess());
+		}
+
+		/**
+		 * @return flat index of block that contains the current position, {@code -1} if outside of image
+		 */
+		private long blockIndex()
+		{
+			for (int d = 0; d < gridPosition.length; ++d)
+			{
+				final long position = source.getLongPosition(d);
+				if (position < 0 || position >= grid.imgDimension(d))
+					return -1;
+				gridPosition[d] = position / grid.cellDimension(d);
+			}
+			return IntervalIndexer.positionToIndex(gridPosition, gridDimensions);
+		}
+
+	}
+
+}
@@ -1,8 +1,10 @@
 package org.janelia.saalfeldlab.paintera.data;
 
 import java.lang.invoke.MethodHandles;
+import java.util.Optional;
 import java.util.function.Predicate;
 
+import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
 import net.imglib2.converter.Converter;
 import net.imglib2.type.BooleanType;
@@ -14,11 +16,32 @@ public class PredicateDataSource<D, T extends Volatile<D>, P extends Predicate<D
 		extends ConvertedDataSource<D, T, BoolType, Volatile<BoolType>>
 {
 
+	private final DataSource<D, T> source;
+
 	private final P predicate;
 
+	private final BlockStatistics<?>[] statistics;
+
+	public PredicateDataSource(
+			final DataSource<D, T> source,
+			final P predicate,
+			final String name)
+	{
+		this(source, predicate, null, name);
+	}
+
+	/**
+	 * @param source evaluate {@code predicate} on this source
+	 * @param predicate predicate
+	 * @param statistics block statistics for each mipmap level of {@code source}. If not {@code null} and
+	 * {@code predicate} is a {@link BlockStatistics.RangePredicate}, {@code predicate} is evaluated only for voxels
+	 * of blocks that are neither entirely accepted nor entirely rejected.
+	 * @param name name
+	 */
 	public PredicateDataSource(
 			final DataSource<D, T> source,
 			final P predicate,
+			final BlockStatistics<?>[] statistics,
 			final String name)
 	{
 		super(
@@ -31,7 +54,9 @@ public class PredicateDataSource<D, T extends Volatile<D>, P extends Predicate<D
 				Interpolations.nearestNeighbor(),
 				name
 		     );
+		this.source = source;
 		this.predicate = predicate;
+		this.statistics = predicate instanceof BlockStatistics.RangePredicate<?> ? statistics : null;
 	}
 
 	public P getPredicate()
@@ -39,6 +64,60 @@ public class PredicateDataSource<D, T extends Volatile<D>, P extends Predicate<D
 		return predicate;
 	}
 
+	/**
+	 * @param level mipmap level
+	 * @return block statistics of the underlying source at {@code level}, if available
+	 */
+	public Optional<BlockStatistics<?>> getStatistics(final int level)
+	{
+		return Optional.ofNullable(statistics).map(s -> s[level]);
+	}
+
+	@Override
+	public RandomAccessibleInterval<BoolType> getDataSource(final int t, final int level)
+	{
+		if (statistics == null)
+			return super.getDataSource(t, level);
+		return new BlockwisePredicateRandomAccessibleInterval<>(
+				source.getDataSource(t, level),
+				statistics[level],
+				(BlockStatistics.RangePredicate<?>) predicate,
+				d -> true,
+				new PredicateConverter<>(predicate),
+				(b, value) -> b.set(value),
+				() -> new BoolType(false));
+	}
+
+	@Override
+	public RandomAccessibleInterval<Volatile<BoolType>> getSource(final int t, final int level)
+	{
+		if (statistics == null)
+			return super.getSource(t, level);
+		return new BlockwisePredicateRandomAccessibleInterval<>(
+				source.getSource(t, level),
+				statistics[level],
+				(BlockStatistics.RangePredicate<?>) predicate,
+				Volatile::isValid,
+				new VolatilePredicateConverter<>(predicate),
+				(v, value) -> {
+					v.setValid(true);
+					v.get().set(value);
+				},
+				() -> new Volatile<>(new BoolType(false), true));
+	}
+
+	/**
+	 * Invalidate the underlying source and the block statistics of all mipmap levels, e.g. after the data changed.
+	 */
+	@Override
+	public void invalidateAll()
+	{
+		super.invalidateAll();
+		if (statistics != null)
+			for (final BlockStatistics<?> s : statistics)
+				s.invalidateAll();
+	}
+
 	public static class PredicateConverter<T, B extends BooleanType<B>> implements Converter<T, B>
 	{
 		private final Predicate<T> predicate;
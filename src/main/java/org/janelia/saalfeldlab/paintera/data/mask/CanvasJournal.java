@@ -0,0 +1,513 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Append-only journal of masks applied to the canvas of a {@link MaskedSource}. The canvas lives in temporary
+ * directories and is lost if Paintera exits without committing it. {@link MaskedSource#replayJournal(CanvasJournal)
+ * Replaying} the journal re-applies all masks that were applied since the last successful commit.
+ * <p>
+ * Each entry stores the mipmap level, the painted label, the painted interval and the mask within that interval with
+ * one bit per voxel, compressed with deflate and guarded by a CRC32 checksum. Entries are compressed and written on a
+ * dedicated thread and the journal is synced to the storage device at most every {@code syncIntervalMillis}, i.e. a
+ * crash loses at most the masks applied within that interval. An incomplete or corrupt entry at the end of the journal
+ * (e.g. after a crash while writing) is discarded when the journal is opened.
+ */
+public class CanvasJournal implements Closeable
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final long DEFAULT_SYNC_INTERVAL_MILLIS = 1000;
+
+	private static final int MAGIC = 0x504A4E4C;
+
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_SIZE = 2 * Integer.BYTES;
+
+	private static final int ENTRY_HEADER_SIZE = 2 * Integer.BYTES;
+
+	/**
+	 * A mask applied to the canvas.
+	 */
+	public static class Entry
+	{
+
+		public final int level;
+
+		public final long value;
+
+		public final Interval interval;
+
+		private final long[] bits;
+
+		private Entry(final int level, final long value, final Interval interval, final long[] bits)
+		{
+			this.level = level;
+			this.value = value;
+			this.interval = interval;
+			this.bits = bits;
+		}
+
+		/**
+		 * @return {@code 1} for painted voxels and {@code 0} otherwise, defined on {@link #interval}
+		 */
+		public RandomAccessibleInterval<UnsignedLongType> mask()
+		{
+			final ArrayImg<BitType, LongArray> img = ArrayImgs.bits(new LongArray(bits), Intervals.dimensionsAsLongArray(interval));
+			return Converters.convert(
+					(RandomAccessibleInterval<BitType>) Views.translate(img, Intervals.minAsLongArray(interval)),
+					(s, t) -> t.set(s.get() ? 1 : 0),
+					new UnsignedLongType());
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format(
+					"{level=%d, value=%d, min=%s, max=%s}",
+					level,
+					value,
+					Intervals.minAsLongArray(interval),
+					Intervals.maxAsLongArray(interval));
+		}
+	}
+
+	/**
+	 * Read entries of a journal.
+	 */
+	public static class Reader implements Closeable
+	{
+
+		private final Path path;
+
+		private final DataInputStream in;
+
+		private long position = HEADER_SIZE;
+
+		private Reader(final Path path, final DataInputStream in)
+		{
+			this.path = path;
+			this.in = in;
+		}
+
+		/**
+		 * @return next entry, {@code null} if all entries were read
+		 * @throws IOException if the entry cannot be read
+		 */
+		public Entry next() throws IOException
+		{
+			final byte[] payload = readPayload(in, Files.size(path) - position);
+			if (payload == null)
+				return null;
+			position += ENTRY_HEADER_SIZE + payload.length;
+			return readEntry(new InflaterInputStream(new ByteArrayInputStream(payload)));
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	private final Path path;
+
+	private final FileChannel channel;
+
+	private final long syncIntervalMillis;
+
+	private final ScheduledExecutorService writer;
+
+	private boolean isDirty = false;
+
+	private boolean isSyncScheduled = false;
+
+	private CanvasJournal(final Path path, final FileChannel channel, final long syncIntervalMillis)
+	{
+		this.path = path;
+		this.channel = channel;
+		this.syncIntervalMillis = syncIntervalMillis;
+		this.writer = Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("canvas-journal-%d", true));
+	}
+
+	/**
+	 * @param path journal file, created if it does not exist
+	 * @return journal synced every {@link #DEFAULT_SYNC_INTERVAL_MILLIS}
+	 * @throws IOException if {@code path} cannot be opened or is not a journal
+	 */
+	public static CanvasJournal open(final Path path) throws IOException
+	{
+		return open(path, DEFAULT_SYNC_INTERVAL_MILLIS);
+	}
+
+	/**
+	 * @param path journal file, created if it does not exist
+	 * @param syncIntervalMillis sync appended entries to the storage device at most every {@code syncIntervalMillis}
+	 * @return journal
+	 * @throws IOException if {@code path} cannot be opened or is not a journal
+	 */
+	public static CanvasJournal open(final Path path, final long syncIntervalMillis) throws IOException
+	{
+		Files.createDirectories(path.toAbsolutePath().getParent());
+		final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try
+		{
+			if (channel.size() == 0)
+			{
+				final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putInt(FORMAT_VERSION);
+				header.flip();
+				writeFully(channel, header, 0);
+				channel.force(true);
+			}
+			else
+			{
+				final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+				while (header.hasRemaining())
+					if (channel.read(header, header.position()) < 0)
+						throw new IOException("Not a canvas journal: " + path);
+				header.flip();
+				if (header.getInt() != MAGIC)
+					throw new IOException("Not a canvas journal: " + path);
+				final int version = header.getInt();
+				if (version != FORMAT_VERSION)
+					throw new IOException(String.format("Unsupported canvas journal version %d in %s", version, path));
+				// new entries must not be appended after an incomplete or corrupt entry, e.g. after a crash while writing
+				final long validSize = validSize(path);
+				if (validSize < channel.size())
+				{
+					LOG.warn("Discarding {} bytes of incomplete or corrupt entries at the end of canvas journal {}", channel.size() - validSize, path);
+					channel.truncate(validSize);
+					channel.force(true);
+				}
+			}
+			channel.position(channel.size());
+		} catch (final IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+		return new CanvasJournal(path, channel, syncIntervalMillis);
+	}
+
+	public Path getPath()
+	{
+		return path;
+	}
+
+	/**
+	 * Append a mask to the journal. The mask is copied before this method returns, compression and writing happen
+	 * asynchronously.
+	 *
+	 * @param level mipmap level of the mask
+	 * @param value painted label
+	 * @param interval painted interval at {@code level}
+	 * @param mask {@code true} for painted voxels, must be defined on {@code interval}
+	 */
+	public <B extends BooleanType<B>> void append(
+			final int level,
+			final long value,
+			final Interval interval,
+			final RandomAccessible<B> mask)
+	{
+		final ArrayImg<BitType, LongArray> bits = ArrayImgs.bits(Intervals.dimensionsAsLongArray(interval));
+		final Iterator<B> source = Views.flatIterable(Views.interval(mask, interval)).iterator();
+		for (final BitType b : bits)
+			b.set(source.next().get());
+		final Interval copy = new FinalInterval(interval);
+		execute(() -> {
+			try
+			{
+				appendEntry(level, value, copy, bits.update(null).getCurrentStorageArray());
+			} catch (final IOException e)
+			{
+				LOG.error("Unable to append mask at level {} with value {} to canvas journal {}", level, value, path, e);
+			}
+		});
+	}
+
+	/**
+	 * Remove all entries, e.g. after the canvas was committed or discarded. Entries that are appended after this call
+	 * are retained.
+	 */
+	public void truncate()
+	{
+		execute(() -> {
+			try
+			{
+				channel.truncate(HEADER_SIZE);
+				channel.position(HEADER_SIZE);
+				channel.force(true);
+				isDirty = false;
+				LOG.debug("Truncated canvas journal {}", path);
+			} catch (final IOException e)
+			{
+				LOG.error("Unable to truncate canvas journal {}", path, e);
+			}
+		});
+	}
+
+	/**
+	 * Wait until all appended entries are written and synced to the storage device.
+	 *
+	 * @throws IOException if the journal cannot be synced
+	 */
+	public void sync() throws IOException
+	{
+		try
+		{
+			writer.submit(() -> {
+				syncIfDirty();
+				return null;
+			}).get();
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (final ExecutionException e)
+		{
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+	}
+
+	/**
+	 * Read all entries in the order in which they were appended. Entries that are appended while reading may or may
+	 * not be returned by the reader.
+	 *
+	 * @return reader that must be closed
+	 * @throws IOException if the journal cannot be synced or opened for reading
+	 */
+	public Reader read() throws IOException
+	{
+		sync();
+		final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+		try
+		{
+			in.skipBytes(HEADER_SIZE);
+		} catch (final IOException e)
+		{
+			in.close();
+			throw e;
+		}
+		return new Reader(path, in);
+	}
+
+	/**
+	 * Write and sync all appended entries and close the journal. The journal file is retained. Closing a closed journal
+	 * has no effect.
+	 *
+	 * @throws IOException if the journal cannot be synced or closed
+	 */
+	@Override
+	public synchronized void close() throws IOException
+	{
+		if (writer.isShutdown())
+			return;
+		try
+		{
+			sync();
+		} finally
+		{
+			writer.shutdown();
+			channel.close();
+		}
+	}
+
+	/**
+	 * Close the journal and delete the journal file.
+	 *
+	 * @throws IOException if the journal cannot be closed or deleted
+	 */
+	public void delete() throws IOException
+	{
+		close();
+		Files.deleteIfExists(path);
+	}
+
+	/**
+	 * Run {@code task} on the writer thread, unless the journal is closed, e.g. because its source was removed.
+	 */
+	private void execute(final Runnable task)
+	{
+		try
+		{
+			writer.execute(task);
+		} catch (final RejectedExecutionException e)
+		{
+			LOG.debug("Canvas journal {} is closed", path);
+		}
+	}
+
+	private void appendEntry(final int level, final long value, final Interval interval, final long[] bits) throws IOException
+	{
+		final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+		try (final DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(payload)))
+		{
+			out.writeInt(level);
+			out.writeLong(value);
+			out.writeInt(interval.numDimensions());
+			for (int d = 0; d < interval.numDimensions(); ++d)
+			{
+				out.writeLong(interval.min(d));
+				out.writeLong(interval.max(d));
+			}
+			out.writeInt(bits.length);
+			for (final long word : bits)
+				out.writeLong(word);
+		}
+		final byte[] bytes = payload.toByteArray();
+		final CRC32 crc = new CRC32();
+		crc.update(bytes);
+		final ByteBuffer buffer = ByteBuffer.allocate(ENTRY_HEADER_SIZE + bytes.length);
+		buffer.putInt(bytes.length).putInt((int) crc.getValue()).put(bytes).flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		isDirty = true;
+		// batch syncs: all entries appended until the scheduled sync are synced together
+		if (!isSyncScheduled)
+		{
+			isSyncScheduled = true;
+			writer.schedule(() -> {
+				isSyncScheduled = false;
+				try
+				{
+					syncIfDirty();
+				} catch (final IOException e)
+				{
+					LOG.error("Unable to sync canvas journal {}", path, e);
+				}
+			}, syncIntervalMillis, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	private void syncIfDirty() throws IOException
+	{
+		if (isDirty)
+		{
+			channel.force(false);
+			isDirty = false;
+		}
+	}
+
+	/**
+	 * @return size of the journal up to the first incomplete or corrupt entry
+	 */
+	private static long validSize(final Path path) throws IOException
+	{
+		final long size = Files.size(path);
+		long validSize = HEADER_SIZE;
+		try (final DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path))))
+		{
+			in.skipBytes(HEADER_SIZE);
+			for (byte[] payload; (payload = readPayload(in, size - validSize)) != null; )
+				validSize += ENTRY_HEADER_SIZE + payload.length;
+		} catch (final IOException e)
+		{
+			LOG.debug("Corrupt entry at offset {} of canvas journal {}", validSize, path, e);
+		}
+		return validSize;
+	}
+
+	/**
+	 * @param remaining number of bytes left in the journal, including the header of the next entry
+	 * @return payload of the next entry, {@code null} at the end of the journal
+	 * @throws IOException if the entry is incomplete or corrupt
+	 */
+	private static byte[] readPayload(final DataInputStream in, final long remaining) throws IOException
+	{
+		final int length;
+		try
+		{
+			length = in.readInt();
+		} catch (final EOFException e)
+		{
+			return null;
+		}
+		final int checksum = in.readInt();
+		// do not allocate for a corrupt length
+		if (length < 0 || length > remaining - ENTRY_HEADER_SIZE)
+			throw new IOException(String.format("Invalid entry length %d with %d bytes remaining", length, remaining));
+		final byte[] payload = new byte[length];
+		in.readFully(payload);
+		final CRC32 crc = new CRC32();
+		crc.update(payload);
+		if ((int) crc.getValue() != checksum)
+			throw new IOException("Checksum mismatch");
+		return payload;
+	}
+
+	private static Entry readEntry(final InputStream is) throws IOException
+	{
+		try (final DataInputStream in = new DataInputStream(is))
+		{
+			final int level = in.readInt();
+			final long value = in.readLong();
+			final int numDimensions = in.readInt();
+			if (numDimensions < 0)
+				throw new IOException("Invalid number of dimensions " + numDimensions);
+			final long[] min = new long[numDimensions];
+			final long[] max = new long[numDimensions];
+			for (int d = 0; d < numDimensions; ++d)
+			{
+				min[d] = in.readLong();
+				max[d] = in.readLong();
+			}
+			final long numWords = (Intervals.numElements(new FinalInterval(min, max)) + 63) / 64;
+			final int length = in.readInt();
+			if (length != numWords)
+				throw new IOException(String.format("Invalid mask length %d, expected %d", length, numWords));
+			final long[] bits = new long[length];
+			for (int i = 0; i < bits.length; ++i)
+				bits[i] = in.readLong();
+			return new Entry(level, value, new FinalInterval(min, max), bits);
+		}
+	}
+
+	private static void writeFully(final FileChannel channel, final ByteBuffer buffer, final long position) throws IOException
+	{
+		for (long p = position; buffer.hasRemaining(); )
+			p += channel.write(buffer, p);
+	}
+
+}
@@ -1,5 +1,6 @@
 package org.janelia.saalfeldlab.paintera.data.mask;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -10,7 +11,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
 import java.util.stream.DoubleStream;
@@ -29,6 +33,8 @@ import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToPersistCanvas;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToUpdateLabelBlockLookup;
 import org.janelia.saalfeldlab.paintera.data.n5.BlockSpec;
 import org.janelia.saalfeldlab.paintera.ui.PainteraAlerts;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.janelia.saalfeldlab.util.labels.LabelModeDownsampler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -79,6 +85,7 @@ import net.imglib2.converter.Converters;
 import net.imglib2.converter.TypeIdentity;
 import net.imglib2.img.basictypeaccess.LongAccess;
 import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
 import net.imglib2.interpolation.randomaccess.NearestNeighborInterpolatorFactory;
 import net.imglib2.outofbounds.RealOutOfBoundsConstantValueFactory;
@@ -144,6 +151,14 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	private final UnsignedLongType INVALID = new UnsignedLongType(Label.INVALID);
 
+	/**
+	 * Shared by all {@link MaskedSource}s for block-level parallelism while propagating masks into mipmap levels.
+	 * Mask applications are still serialized through the {@code propagationExecutor} of each source.
+	 */
+	private static final ExecutorService PROPAGATION_WORKERS = Executors.newFixedThreadPool(
+			Math.max(Runtime.getRuntime().availableProcessors() - 1, 1),
+			new NamedThreadFactory("masked-source-propagation-%d", true));
+
 	private final DataSource<D, T> source;
 
 	private final CachedCellImg<UnsignedLongType, LongAccess>[] dataCanvases;
@@ -191,6 +206,8 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	private final BooleanProperty showCanvasOverBackground = new SimpleBooleanProperty(this, "show canvas", true);
 
+	private volatile CanvasJournal journal = null;
+
 	public MaskedSource(
 			final DataSource<D, T> source,
 			final int[][] blockSizes,
@@ -419,44 +436,42 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			grid.cellDimensions(blockSize);
 
 			final TLongSet affectedBlocks = affectedBlocks(mask.mask, canvas.getCellGrid(), paintedInterval);
+			final RandomAccessible<BitType> painted = Converters.convert(
+					Views.extendZero(mask.mask),
+					(s, t) -> t.set(acceptAsPainted.test(s)),
+					new BitType());
 
-			paintAffectedPixels(
-					affectedBlocks,
-					Converters.convert(
-							Views.extendZero(mask.mask),
-							(s, t) -> t.set(acceptAsPainted.test(s)),
-							new BitType()),
-					canvas,
-					maskInfo.value,
-					canvas.getCellGrid(),
-					paintedInterval);
+			paintIntoCanvas(painted, affectedBlocks, maskInfo.level, maskInfo.value, paintedInterval);
+
+			final CanvasJournal journal = this.journal;
+			final Interval journaledInterval = Intervals.intersect(canvas, paintedInterval);
+			if (journal != null && !Intervals.isEmpty(journaledInterval))
+				journal.append(maskInfo.level, maskInfo.value.getIntegerLong(), journaledInterval, painted);
 
 			synchronized (this)
 			{
 				this.currentMask = null;
 			}
 
-			final TLongSet paintedBlocksAtHighestResolution = this.scaleBlocksToLevel(
-					affectedBlocks,
-					maskInfo.level,
-					0);
-
-			this.affectedBlocksByLabel[maskInfo.level].computeIfAbsent(
-					maskInfo.value.getIntegerLong(),
-					key -> new TLongHashSet()
-			                                                          ).addAll(affectedBlocks);
-			LOG.debug("Added affected block: {}", affectedBlocksByLabel[maskInfo.level]);
-			this.affectedBlocks.addAll(paintedBlocksAtHighestResolution);
-
 			propagationExecutor.submit(() -> {
-				propagateMask(
-						mask.mask,
-						affectedBlocks,
-						maskInfo.level,
-						maskInfo.value,
-						paintedInterval,
-						acceptAsPainted
-					);
+				try
+				{
+					propagateMask(
+							mask.mask,
+							affectedBlocks,
+							maskInfo.level,
+							maskInfo.value,
+							paintedInterval,
+							acceptAsPainted
+						);
+				} catch (final InterruptedException e)
+				{
+					LOG.warn("Interrupted while propagating mask to all mipmap levels", e);
+					Thread.currentThread().interrupt();
+				} catch (final ExecutionException e)
+				{
+					LOG.error("Unable to propagate mask to all mipmap levels", e);
+				}
 				setMasksConstant();
 				synchronized (this)
 				{
@@ -469,6 +484,131 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	}
 
+	/**
+	 * Paint {@code painted} into the canvas at {@code level} and record the affected blocks. Does not propagate into
+	 * other mipmap levels.
+	 */
+	private void paintIntoCanvas(
+			final RandomAccessible<BitType> painted,
+			final TLongSet affectedBlocks,
+			final int level,
+			final UnsignedLongType value,
+			final Interval paintedInterval)
+	{
+		final CachedCellImg<UnsignedLongType, ?> canvas = dataCanvases[level];
+		paintAffectedPixels(
+				affectedBlocks,
+				painted,
+				canvas,
+				value,
+				canvas.getCellGrid(),
+				paintedInterval);
+
+		final TLongSet paintedBlocksAtHighestResolution = this.scaleBlocksToLevel(
+				affectedBlocks,
+				level,
+				0);
+
+		this.affectedBlocksByLabel[level].computeIfAbsent(
+				value.getIntegerLong(),
+				key -> new TLongHashSet()
+		                                                  ).addAll(affectedBlocks);
+		LOG.debug("Added affected block: {}", affectedBlocksByLabel[level]);
+		this.affectedBlocks.addAll(paintedBlocksAtHighestResolution);
+	}
+
+	/**
+	 * Record all masks that are applied from now on in {@code journal}. The journal is truncated when the canvas is
+	 * committed or discarded.
+	 *
+	 * @param journal record masks in this journal, or {@code null} to stop recording
+	 */
+	public void setJournal(final CanvasJournal journal)
+	{
+		this.journal = journal;
+	}
+
+	public CanvasJournal getJournal()
+	{
+		return this.journal;
+	}
+
+	/**
+	 * Stop recording masks and delete the journal, e.g. when this source is removed and its canvas is discarded.
+	 */
+	public void deleteJournal()
+	{
+		final CanvasJournal journal = this.journal;
+		this.journal = null;
+		if (journal == null)
+			return;
+		try
+		{
+			journal.delete();
+			LOG.debug("Deleted canvas journal {}", journal.getPath());
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to delete canvas journal {}", journal.getPath(), e);
+		}
+	}
+
+	/**
+	 * Apply all masks recorded in {@code journal} to the canvas and propagate them to all mipmap levels, e.g. to
+	 * restore the canvas after Paintera was closed without committing it. Blocks until all masks are applied.
+	 *
+	 * @param journal masks to apply
+	 * @return number of masks applied
+	 * @throws MaskInUse if a mask is currently being created, applied, or the canvas is being committed
+	 * @throws IOException if {@code journal} cannot be read
+	 */
+	public int replayJournal(final CanvasJournal journal) throws MaskInUse, IOException, InterruptedException, ExecutionException
+	{
+		synchronized (this)
+		{
+			final boolean canReplay = !this.isCreatingMask && this.currentMask == null && !this.isApplyingMask.get() && !this.isPersisting;
+			if (!canReplay)
+				throw new MaskInUse("Busy, cannot replay canvas journal.");
+			this.isApplyingMask.set(true);
+		}
+		int numEntries = 0;
+		try (final CanvasJournal.Reader reader = journal.read())
+		{
+			for (CanvasJournal.Entry entry; (entry = reader.next()) != null; ++numEntries)
+			{
+				LOG.debug("Replaying canvas journal entry {}", entry);
+				final Predicate<UnsignedLongType> isPainted = t -> t.getIntegerLong() > 0;
+				final RandomAccessibleInterval<UnsignedLongType> mask = entry.mask();
+				final UnsignedLongType value = new UnsignedLongType(entry.value);
+				setMasks(
+						mask,
+						Converters.convert(mask, (s, t) -> {
+							t.setValid(true);
+							t.get().set(s);
+						}, new VolatileUnsignedLongType()),
+						entry.level,
+						value,
+						isPainted);
+				final TLongSet affectedBlocks = affectedBlocks(dataCanvases[entry.level].getCellGrid(), entry.interval);
+				paintIntoCanvas(
+						Converters.convert(Views.extendZero(mask), (s, t) -> t.set(isPainted.test(s)), new BitType()),
+						affectedBlocks,
+						entry.level,
+						value,
+						entry.interval);
+				propagateMask(mask, affectedBlocks, entry.level, value, entry.interval, isPainted);
+			}
+		} finally
+		{
+			setMasksConstant();
+			synchronized (this)
+			{
+				this.isApplyingMask.set(false);
+			}
+		}
+		LOG.info("Replayed {} masks from canvas journal {}", numEntries, journal.getPath());
+		return numEntries;
+	}
+
 	private void setMasksConstant()
 	{
 		for (int level = 0; level < getNumMipmapLevels(); ++level)
@@ -793,10 +933,39 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			final int[] steps,
 			final Interval interval)
 	{
-		final BlockSpec blockSpec = new BlockSpec(img.getCellGrid());
+		downsampleBlockTasks(source, img, affectedBlocks, steps, interval).forEach(Runnable::run);
+	}
+
+	/**
+	 * Downsample affected blocks of img in parallel. Blocks are independent of each other and each block is processed
+	 * as a separate task on {@code executor}. Returns once all blocks are downsampled.
+	 * @param source
+	 * @param img
+	 * @param affectedBlocks
+	 * @param steps
+	 * @param interval
+	 * @param executor must not be the executor this method is called from, to avoid dead locks.
+	 */
+	public static void downsampleBlocks(
+			final RandomAccessible<UnsignedLongType> source,
+			final CachedCellImg<UnsignedLongType, LongAccess> img,
+			final TLongSet affectedBlocks,
+			final int[] steps,
+			final Interval interval,
+			final ExecutorService executor) throws InterruptedException, ExecutionException
+	{
+		waitFor(submitAll(executor, downsampleBlockTasks(source, img, affectedBlocks, steps, interval)));
+	}
 
-		final long[] intersectedCellMin = new long[blockSpec.grid.numDimensions()];
-		final long[] intersectedCellMax = new long[blockSpec.grid.numDimensions()];
+	private static List<Runnable> downsampleBlockTasks(
+			final RandomAccessible<UnsignedLongType> source,
+			final CachedCellImg<UnsignedLongType, LongAccess> img,
+			final TLongSet affectedBlocks,
+			final int[] steps,
+			final Interval interval)
+	{
+		final BlockSpec blockSpec = new BlockSpec(img.getCellGrid());
+		final List<Runnable> tasks = new ArrayList<>();
 
 		LOG.debug("Initializing affected blocks: {}", affectedBlocks);
 		for (final TLongIterator it = affectedBlocks.iterator(); it.hasNext(); )
@@ -804,17 +973,86 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 			final long blockId = it.next();
 			blockSpec.fromLinearIndex(blockId);
 
-			Arrays.setAll(intersectedCellMin, d -> blockSpec.min[d]);
-			Arrays.setAll(intersectedCellMax, d -> blockSpec.max[d]);
+			final long[] intersectedCellMin = blockSpec.min.clone();
+			final long[] intersectedCellMax = blockSpec.max.clone();
 
 			intersect(intersectedCellMin, intersectedCellMax, interval);
 
 			if (isNonEmpty(intersectedCellMin, intersectedCellMax))
 			{
-				LOG.trace("Downsampling for intersected min/max: {} {}", intersectedCellMin, intersectedCellMax);
-				downsample(source, Views.interval(img, intersectedCellMin, intersectedCellMax), steps);
+				final long[] cellPosition = blockSpec.pos.clone();
+				tasks.add(() -> {
+					LOG.trace("Downsampling for intersected min/max: {} {}", intersectedCellMin, intersectedCellMax);
+					downsampleIntoCell(source, img, cellPosition, intersectedCellMin, intersectedCellMax, steps);
+				});
 			}
 		}
+		return tasks;
+	}
+
+	/**
+	 * Mode downsampling of {@code source} into {@code [min, max]}, which must be contained in the cell at
+	 * {@code cellPosition} of {@code img}. The relevant part of {@code source} is copied into a {@code long[]} first,
+	 * downsampled with a {@link LabelModeDownsampler}, and the result is written directly into the {@link LongAccess}
+	 * of the cell, avoiding per-voxel type access.
+	 */
+	private static void downsampleIntoCell(
+			final RandomAccessible<UnsignedLongType> source,
+			final CachedCellImg<UnsignedLongType, LongAccess> img,
+			final long[] cellPosition,
+			final long[] min,
+			final long[] max,
+			final int[] steps)
+	{
+		final int n = min.length;
+		final long[] sourceMin = new long[n];
+		final long[] sourceMax = new long[n];
+		Arrays.setAll(sourceMin, d -> min[d] * steps[d]);
+		Arrays.setAll(sourceMax, d -> (max[d] + 1) * steps[d] - 1);
+		final long[] sourceData = new long[(int) Intervals.numElements(new FinalInterval(sourceMin, sourceMax))];
+		int index = 0;
+		for (final UnsignedLongType t : Views.flatIterable(Views.interval(source, sourceMin, sourceMax)))
+			sourceData[index++] = t.getIntegerLong();
+
+		final int[] targetDimensions = new int[n];
+		Arrays.setAll(targetDimensions, d -> (int) (max[d] - min[d] + 1));
+		final int[] sourceDimensions = new int[n];
+		Arrays.setAll(sourceDimensions, d -> targetDimensions[d] * steps[d]);
+		final long[] targetData = new long[(int) Intervals.numElements(targetDimensions)];
+		new LabelModeDownsampler(Label.INVALID, steps).downsample(sourceData, sourceDimensions, targetData, targetDimensions);
+
+		final RandomAccess<? extends Cell<LongAccess>> cellAccess = img.getCells().randomAccess();
+		cellAccess.setPosition(cellPosition);
+		final Cell<LongAccess> cell = cellAccess.get();
+		final long[] cellMin = new long[n];
+		final long[] cellDimensions = new long[n];
+		cell.min(cellMin);
+		cell.dimensions(cellDimensions);
+
+		final LongAccess cellData = cell.getData();
+		final int[] targetPosition = new int[n];
+		final long[] cellLocalPosition = new long[n];
+		for (int t = 0; t < targetData.length; ++t)
+		{
+			Arrays.setAll(cellLocalPosition, d -> min[d] + targetPosition[d] - cellMin[d]);
+			cellData.setValue((int) IntervalIndexer.positionToIndex(cellLocalPosition, cellDimensions), targetData[t]);
+			for (int d = 0; d < n && ++targetPosition[d] == targetDimensions[d]; ++d)
+				targetPosition[d] = 0;
+		}
+	}
+
+	private static List<Future<?>> submitAll(final ExecutorService executor, final List<Runnable> tasks)
+	{
+		final List<Future<?>> futures = new ArrayList<>();
+		for (final Runnable task : tasks)
+			futures.add(executor.submit(task));
+		return futures;
+	}
+
+	private static void waitFor(final List<Future<?>> futures) throws InterruptedException, ExecutionException
+	{
+		for (final Future<?> future : futures)
+			future.get();
 	}
 
 	/**
@@ -890,15 +1128,69 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 				TLongHashSet::new);
 	}
 
+	/**
+	 * @return blocks at {@code level} that have been modified with any label
+	 */
+	public TLongSet getModifiedBlocks(final int level)
+	{
+		final TLongSet modifiedBlocks = new TLongHashSet();
+		this.affectedBlocksByLabel[level].values().forEach(modifiedBlocks::addAll);
+		return modifiedBlocks;
+	}
+
+	/**
+	 * Propagate a mask painted at {@code paintedLevel} to all other mipmap levels. Upsampling into higher resolution
+	 * levels only depends on the mask and all blocks of all of these levels are processed concurrently. Downsampling
+	 * into lower resolution levels depends on the next higher resolution level: levels are processed one after the other
+	 * with all blocks of a level in parallel, concurrently with upsampling.
+	 */
 	private void propagateMask(
 			final RandomAccessibleInterval<UnsignedLongType> mask,
 			final TLongSet paintedBlocksAtPaintedScale,
 			final int paintedLevel,
 			final UnsignedLongType label,
 			final Interval intervalAtPaintedScale,
-			final Predicate<UnsignedLongType> isPaintedForeground)
+			final Predicate<UnsignedLongType> isPaintedForeground) throws InterruptedException, ExecutionException
 	{
 
+		final List<Future<?>> upsampling = new ArrayList<>();
+		for (int level = paintedLevel - 1; level >= 0; --level)
+		{
+			LOG.debug("Upsampling for level={}", level);
+			final TLongSet affectedBlocksAtLowerLevel              = this.scaleBlocksToLevel(
+					paintedBlocksAtPaintedScale,
+					paintedLevel,
+					level
+			                                                                                );
+			this.affectedBlocksByLabel[level].computeIfAbsent(label.getIntegerLong(), key -> new TLongHashSet())
+					.addAll(
+					affectedBlocksAtLowerLevel);
+
+			final Interval paintedIntervalAtTargetLevel = scaleIntervalToLevel(
+					intervalAtPaintedScale,
+					paintedLevel,
+					level
+			                                                                  );
+
+			final RealRandomAccessible<UnsignedLongType> scaledMask = this.dMasks[level];
+			final int                                    levelAsFinal = level;
+			final List<Runnable>                         tasks        = new ArrayList<>();
+			for (final TLongIterator blockIterator = affectedBlocksAtLowerLevel.iterator(); blockIterator.hasNext(); )
+			{
+				final long blockId = blockIterator.next();
+				tasks.add(() -> upsampleBlock(
+						mask,
+						scaledMask,
+						blockId,
+						levelAsFinal,
+						paintedLevel,
+						label,
+						paintedIntervalAtTargetLevel,
+						isPaintedForeground));
+			}
+			upsampling.addAll(submitAll(PROPAGATION_WORKERS, tasks));
+		}
+
 		for (int level = paintedLevel + 1; level < getNumMipmapLevels(); ++level)
 		{
 			final int                                         levelAsFinal          = level;
@@ -946,127 +1238,104 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 					atHigherLevel,
 					affectedBlocksAtHigherLevel,
 					steps,
-					intervalAtHigherLevel);
+					intervalAtHigherLevel,
+					PROPAGATION_WORKERS);
 			LOG.debug("Downsampled level {}", level);
 		}
 
-		for (int level = paintedLevel - 1; level >= 0; --level)
-		{
-			LOG.debug("Upsampling for level={}", level);
-			final TLongSet affectedBlocksAtLowerLevel              = this.scaleBlocksToLevel(
-					paintedBlocksAtPaintedScale,
-					paintedLevel,
-					level
-			                                                                                );
-			final double[] currentRelativeScaleFromTargetToPainted = DataSource.getRelativeScales(
-					this,
-					0,
-					level,
-					paintedLevel
-			                                                                                     );
-			this.affectedBlocksByLabel[level].computeIfAbsent(label.getIntegerLong(), key -> new TLongHashSet())
-					.addAll(
-					affectedBlocksAtLowerLevel);
-
-			final Interval paintedIntervalAtTargetLevel = scaleIntervalToLevel(
-					intervalAtPaintedScale,
-					paintedLevel,
-					level
-			                                                                  );
+		waitFor(upsampling);
+	}
 
-			// upsample
-			final CachedCellImg<UnsignedLongType, LongAccess> canvasAtTargetLevel = dataCanvases[level];
-			final CellGrid                                    gridAtTargetLevel   = canvasAtTargetLevel.getCellGrid();
-			final int[]                                       blockSize           = new int[gridAtTargetLevel
-					.numDimensions()];
-			gridAtTargetLevel.cellDimensions(blockSize);
+	private void upsampleBlock(
+			final RandomAccessibleInterval<UnsignedLongType> mask,
+			final RealRandomAccessible<UnsignedLongType> scaledMask,
+			final long blockId,
+			final int level,
+			final int paintedLevel,
+			final UnsignedLongType label,
+			final Interval paintedIntervalAtTargetLevel,
+			final Predicate<UnsignedLongType> isPaintedForeground)
+	{
+		final CachedCellImg<UnsignedLongType, LongAccess> canvasAtTargetLevel = dataCanvases[level];
+		final CellGrid                                    gridAtTargetLevel   = canvasAtTargetLevel.getCellGrid();
+		final int[]                                       blockSize           = new int[gridAtTargetLevel
+				.numDimensions()];
+		gridAtTargetLevel.cellDimensions(blockSize);
+
+		final long[]                                 cellPosTarget  = new long[gridAtTargetLevel.numDimensions()];
+		final long[]                                 minTarget      = new long[gridAtTargetLevel.numDimensions()];
+		final long[]                                 maxTarget      = new long[gridAtTargetLevel.numDimensions()];
+		final long[]                                 stopTarget     = new long[gridAtTargetLevel.numDimensions()];
+		final long[]                                 minPainted     = new long[minTarget.length];
+		final long[]                                 maxPainted     = new long[minTarget.length];
+
+		gridAtTargetLevel.getCellGridPositionFlat(blockId, cellPosTarget);
+		Arrays.setAll(
+				minTarget,
+				d -> Math.min(cellPosTarget[d] * blockSize[d], gridAtTargetLevel.imgDimension(d) - 1)
+		             );
+		Arrays.setAll(
+				maxTarget,
+				d -> Math.min(minTarget[d] + blockSize[d], gridAtTargetLevel.imgDimension(d)) - 1
+		             );
+		Arrays.setAll(stopTarget, d -> maxTarget[d] + 1);
+		this.scalePositionToLevel(minTarget, level, paintedLevel, minPainted);
+		this.scalePositionToLevel(stopTarget, level, paintedLevel, maxPainted);
+		Arrays.setAll(minPainted, d -> Math.min(Math.max(minPainted[d], mask.min(d)), mask.max(d)));
+		Arrays.setAll(maxPainted, d -> Math.min(Math.max(maxPainted[d] - 1, mask.min(d)), mask.max(d)));
+
+		final long[] intersectionMin = minTarget.clone();
+		final long[] intersectionMax = maxTarget.clone();
+
+		intersect(intersectionMin, intersectionMax, paintedIntervalAtTargetLevel);
+
+		if (!isNonEmpty(intersectionMin, intersectionMax))
+			return;
 
-			final long[]                                 cellPosTarget  = new long[gridAtTargetLevel.numDimensions()];
-			final long[]                                 minTarget      = new long[gridAtTargetLevel.numDimensions()];
-			final long[]                                 maxTarget      = new long[gridAtTargetLevel.numDimensions()];
-			final long[]                                 stopTarget     = new long[gridAtTargetLevel.numDimensions()];
-			final long[]                                 minPainted     = new long[minTarget.length];
-			final long[]                                 maxPainted     = new long[minTarget.length];
+		LOG.debug("Intersected min={} max={}", intersectionMin, intersectionMax);
 
-			final RealRandomAccessible<UnsignedLongType> scaledMask = this.dMasks[level];
+		LOG.debug(
+				"Upsampling block: level={}, block min (target)={}, block max (target)={}, block min={}, " +
+						"block max={}, mask min={}, mask max={}",
+				level,
+				minTarget,
+				maxTarget,
+				minPainted,
+				maxPainted,
+				Intervals.minAsLongArray(mask),
+				Intervals.maxAsLongArray(mask)
+		         );
 
-			for (final TLongIterator blockIterator = affectedBlocksAtLowerLevel.iterator(); blockIterator.hasNext(); )
-			{
-				final long blockId = blockIterator.next();
-				gridAtTargetLevel.getCellGridPositionFlat(blockId, cellPosTarget);
-				Arrays.setAll(
-						minTarget,
-						d -> Math.min(cellPosTarget[d] * blockSize[d], gridAtTargetLevel.imgDimension(d) - 1)
-				             );
-				Arrays.setAll(
-						maxTarget,
-						d -> Math.min(minTarget[d] + blockSize[d], gridAtTargetLevel.imgDimension(d)) - 1
-				             );
-				Arrays.setAll(stopTarget, d -> maxTarget[d] + 1);
-				this.scalePositionToLevel(minTarget, level, paintedLevel, minPainted);
-				this.scalePositionToLevel(stopTarget, level, paintedLevel, maxPainted);
-				Arrays.setAll(minPainted, d -> Math.min(Math.max(minPainted[d], mask.min(d)), mask.max(d)));
-				Arrays.setAll(maxPainted, d -> Math.min(Math.max(maxPainted[d] - 1, mask.min(d)), mask.max(d)));
-
-				final long[] intersectionMin = minTarget.clone();
-				final long[] intersectionMax = maxTarget.clone();
-
-				intersect(intersectionMin, intersectionMax, paintedIntervalAtTargetLevel);
-
-				if (isNonEmpty(intersectionMin, intersectionMax))
-				{
+		final IntervalView<BoolType> relevantBlockAtPaintedResolution = Views.interval(
+				Converters.convert(mask, (s, t) -> t.set(isPaintedForeground.test(s)), new BoolType()),
+				minPainted,
+				maxPainted
+		                                                                              );
 
-					LOG.debug("Intersected min={} max={}", intersectionMin, intersectionMax);
-
-					LOG.debug(
-							"Upsampling block: level={}, block min (target)={}, block max (target)={}, block min={}, " +
-									"block max={}, scale={}, mask min={}, mask max={}",
-							level,
-							minTarget,
-							maxTarget,
-							minPainted,
-							maxPainted,
-							currentRelativeScaleFromTargetToPainted,
-							Intervals.minAsLongArray(mask),
-							Intervals.maxAsLongArray(mask)
-					         );
-
-					final IntervalView<BoolType> relevantBlockAtPaintedResolution = Views.interval(
-							Converters.convert(mask, (s, t) -> t.set(isPaintedForeground.test(s)), new BoolType()),
-							minPainted,
-							maxPainted
-					                                                                              );
-
-					if (Intervals.numElements(relevantBlockAtPaintedResolution) == 0)
-					{
-						continue;
-					}
+		if (Intervals.numElements(relevantBlockAtPaintedResolution) == 0)
+			return;
 
-					LOG.debug(
-							"Upsampling for level {} and intersected intervals ({} {})",
-							level,
-							intersectionMin,
-							intersectionMax
-					         );
-					final Interval                 interval     = new FinalInterval(intersectionMin, intersectionMax);
-					final Cursor<UnsignedLongType> canvasCursor = Views.flatIterable(Views.interval(
-							canvasAtTargetLevel,
-							interval
-					                                                                               )).cursor();
-					final Cursor<UnsignedLongType> maskCursor   = Views.flatIterable(Views.interval(Views.raster(
-							scaledMask), interval)).cursor();
-					while (maskCursor.hasNext())
-					{
-						canvasCursor.fwd();
-						final boolean wasPainted = isPaintedForeground.test(maskCursor.next());
-						if (wasPainted)
-						{
-							canvasCursor.get().set(label);
-						}
-					}
-				}
+		LOG.debug(
+				"Upsampling for level {} and intersected intervals ({} {})",
+				level,
+				intersectionMin,
+				intersectionMax
+		         );
+		final Interval                 interval     = new FinalInterval(intersectionMin, intersectionMax);
+		final Cursor<UnsignedLongType> canvasCursor = Views.flatIterable(Views.interval(
+				canvasAtTargetLevel,
+				interval
+		                                                                               )).cursor();
+		final Cursor<UnsignedLongType> maskCursor   = Views.flatIterable(Views.interval(Views.raster(
+				scaledMask), interval)).cursor();
+		while (maskCursor.hasNext())
+		{
+			canvasCursor.fwd();
+			final boolean wasPainted = isPaintedForeground.test(maskCursor.next());
+			if (wasPainted)
+			{
+				canvasCursor.get().set(label);
 			}
-
 		}
 	}
 
@@ -1259,6 +1528,7 @@ public class MaskedSource<D extends Type<D>, T extends Type<T>> implements DataS
 
 	private void clearCanvases()
 	{
+		Optional.ofNullable(this.journal).ifPresent(CanvasJournal::truncate);
 		this.cacheDirectory.set(this.nextCacheDirectory.get());
 		this.affectedBlocks.clear();
 		Arrays.stream(this.affectedBlocksByLabel).forEach(Map::clear);
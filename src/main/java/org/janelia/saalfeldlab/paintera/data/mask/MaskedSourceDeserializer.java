@@ -1,10 +1,14 @@
 package org.janelia.saalfeldlab.paintera.data.mask;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.lang.reflect.Type;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.function.IntFunction;
 import java.util.function.Supplier;
@@ -16,6 +20,7 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.mask.exception.MaskInUse;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas;
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer;
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer.Arguments;
@@ -110,6 +115,10 @@ public class MaskedSourceDeserializer implements JsonDeserializer<MaskedSource<?
 						                                                     ))
 						.orElseGet(() -> new Map[] {});
 				returnVal.affectBlocks(blocks, blocksById);
+				restoreCanvas(returnVal, Optional
+						.ofNullable(map.get(MaskedSourceSerializer.CANVAS_JOURNAL_KEY))
+						.map(JsonElement::getAsString)
+						.orElse(null));
 			}
 
 			return returnVal;
@@ -120,6 +129,60 @@ public class MaskedSourceDeserializer implements JsonDeserializer<MaskedSource<?
 		}
 	}
 
+	/**
+	 * Replay the canvas journal of the project, if any, and record further masks in that journal. If the journal named
+	 * in the project does not exist, it is created. If there is no journal or it cannot be replayed, masks are recorded
+	 * in a new journal.
+	 */
+	private void restoreCanvas(final MaskedSource<?, ?> source, final String journalName)
+	{
+		final String projectDirectory = currentProjectDirectory.get();
+		if (journalName == null)
+		{
+			Masks.journalCanvas(source, projectDirectory);
+			return;
+		}
+		final Path journalPath = Masks.canvasJournalPath(projectDirectory, journalName);
+		if (!Files.exists(journalPath))
+		{
+			Masks.journalCanvas(source, projectDirectory, journalName);
+			return;
+		}
+
+		CanvasJournal journal = null;
+		try
+		{
+			journal = CanvasJournal.open(journalPath);
+			final int numMasks = source.replayJournal(journal);
+			LOG.info("Restored {} unsaved masks of source {} from canvas journal {}", numMasks, source, journalPath);
+			source.setJournal(journal);
+		} catch (final IOException | MaskInUse | ExecutionException e)
+		{
+			LOG.error("Unable to restore canvas from journal {}, keeping it for manual recovery", journalPath, e);
+			closeQuietly(journal);
+			Masks.journalCanvas(source, projectDirectory);
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			LOG.error("Interrupted while restoring canvas from journal {}, keeping it for manual recovery", journalPath, e);
+			closeQuietly(journal);
+			Masks.journalCanvas(source, projectDirectory);
+		}
+	}
+
+	private static void closeQuietly(final CanvasJournal journal)
+	{
+		if (journal == null)
+			return;
+		try
+		{
+			journal.close();
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to close canvas journal {}", journal.getPath(), e);
+		}
+	}
+
 	@Plugin(type = StatefulSerializer.DeserializerFactory.class)
 	public static class Factory implements StatefulSerializer.DeserializerFactory<MaskedSource<?, ?>, MaskedSourceDeserializer>
 	{
@@ -1,8 +1,11 @@
 package org.janelia.saalfeldlab.paintera.data.mask;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.ExecutorService;
 import java.util.function.BiConsumer;
 import java.util.function.Supplier;
@@ -29,6 +32,8 @@ public class Masks
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final String CANVASES_DIRECTORY = "canvases";
+
 	@SuppressWarnings({"unchecked", "rawtypes"})
 	public static <D, T> DataSource<D, T> mask(
 			final DataSource<D, T> source,
@@ -242,7 +247,52 @@ public class Masks
 
 	public static Supplier<String> canvasTmpDirDirectorySupplier(final String root)
 	{
-		return new TmpDirectoryCreator(Paths.get(root, "canvases"), "canvas-");
+		return new TmpDirectoryCreator(Paths.get(root, CANVASES_DIRECTORY), "canvas-");
+	}
+
+	/**
+	 * @param root project directory
+	 * @param journalName file name of journal
+	 * @return path of canvas journal {@code journalName} in project directory {@code root}
+	 */
+	public static Path canvasJournalPath(final String root, final String journalName)
+	{
+		return Paths.get(root, CANVASES_DIRECTORY, journalName);
+	}
+
+	/**
+	 * Record masks applied to {@code source} in a new {@link CanvasJournal} in project directory {@code root}, if
+	 * {@code source} is a {@link MaskedSource}.
+	 *
+	 * @param source record masks applied to this source
+	 * @param root project directory
+	 */
+	public static void journalCanvas(final DataSource<?, ?> source, final String root)
+	{
+		journalCanvas(source, root, "journal-" + UUID.randomUUID() + ".bin");
+	}
+
+	/**
+	 * Record masks applied to {@code source} in {@link CanvasJournal} {@code journalName} in project directory
+	 * {@code root}, if {@code source} is a {@link MaskedSource}. The journal is created if it does not exist.
+	 *
+	 * @param source record masks applied to this source
+	 * @param root project directory
+	 * @param journalName file name of journal, e.g. the journal named in the project
+	 */
+	public static void journalCanvas(final DataSource<?, ?> source, final String root, final String journalName)
+	{
+		if (!(source instanceof MaskedSource<?, ?>))
+			return;
+		final Path path = canvasJournalPath(root, journalName);
+		try
+		{
+			((MaskedSource<?, ?>) source).setJournal(CanvasJournal.open(path));
+			LOG.debug("Recording canvas of source {} in journal {}", source, path);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to create canvas journal {}: Painted labels cannot be restored if Paintera exits without committing them.", path, e);
+		}
 	}
 
 }
@@ -0,0 +1,15 @@
+package org.janelia.saalfeldlab.paintera.data.mask.persist;
+
+import org.janelia.saalfeldlab.paintera.exception.PainteraException;
+
+/**
+ * Voxels painted in a canvas were modified by a concurrent commit, e.g. from another Paintera instance.
+ */
+public class ConcurrentCommitConflict extends PainteraException {
+
+	public ConcurrentCommitConflict(String message)
+	{
+		super(message);
+	}
+
+}
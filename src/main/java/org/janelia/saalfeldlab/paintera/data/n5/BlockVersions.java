@@ -0,0 +1,287 @@
+package org.janelia.saalfeldlab.paintera.data.n5;
+
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.util.n5.CachedN5Reader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Version counters for the blocks of an N5 dataset, used to detect concurrent writes to the same block.
+ * <p>
+ * For containers on the local file system, the version of block {@code x/y/z} is stored in file {@code x/y/.z.version}
+ * inside the dataset directory and a block is {@link #lock(long[]) locked} by holding an exclusive lock on that file.
+ * The lock only excludes other writers that use {@link BlockVersions}, e.g. other Paintera instances committing into
+ * the same dataset. For other containers, all blocks are at version {@code 0} and locks are no-ops.
+ */
+public class BlockVersions
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * Returned by {@link #version(long[])} if the version cannot be read. Versions of {@link #lock(long[]) locked} blocks
+	 * are never {@link #UNKNOWN}.
+	 */
+	public static final long UNKNOWN = -1;
+
+	private static final String VERSION_FILE_PREFIX = ".";
+
+	private static final String VERSION_FILE_SUFFIX = ".version";
+
+	// file locks are held per JVM, writers within this JVM are synchronized first. Entries are removed when the last
+	// writer that holds or waits for the lock releases it, so the map only holds blocks that are being written.
+	private static final Map<Path, VersionFileLock> VERSION_FILE_LOCKS = new ConcurrentHashMap<>();
+
+	private static class VersionFileLock
+	{
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		/**
+		 * Number of writers that hold or wait for {@link #lock}, only modified while mapped in {@link #VERSION_FILE_LOCKS}.
+		 */
+		private int numUsers = 0;
+
+	}
+
+	/**
+	 * Exclusive lock on a single block. Closing the lock releases it.
+	 */
+	public static class Lock implements AutoCloseable
+	{
+
+		private final Path versionFile;
+
+		private final FileChannel channel;
+
+		private final FileLock fileLock;
+
+		private long version;
+
+		private Lock(final Path versionFile, final FileChannel channel, final FileLock fileLock, final long version)
+		{
+			this.versionFile = versionFile;
+			this.channel = channel;
+			this.fileLock = fileLock;
+			this.version = version;
+		}
+
+		/**
+		 * @return version of the block at the time the lock was acquired, or after the last {@link #increment()}
+		 */
+		public long version()
+		{
+			return version;
+		}
+
+		/**
+		 * Record that the block was written while holding this lock.
+		 *
+		 * @throws IOException if the new version cannot be written
+		 */
+		public void increment() throws IOException
+		{
+			if (channel != null)
+				writeVersion(channel, version + 1);
+			++version;
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			try
+			{
+				if (fileLock != null)
+					fileLock.release();
+			} finally
+			{
+				try
+				{
+					if (channel != null)
+						channel.close();
+				} finally
+				{
+					if (versionFile != null)
+						unlock(versionFile);
+				}
+			}
+		}
+	}
+
+	private final Path datasetPath;
+
+	private BlockVersions(final Path datasetPath)
+	{
+		this.datasetPath = datasetPath;
+	}
+
+	/**
+	 * @param reader container
+	 * @param dataset dataset
+	 * @return block versions of {@code dataset}, all blocks are at version {@code 0} if {@code reader} is not on the
+	 * local file system
+	 */
+	public static BlockVersions of(final N5Reader reader, final String dataset)
+	{
+		final N5Reader uncached = CachedN5Reader.unwrap(reader);
+		if (uncached instanceof N5FSReader)
+		{
+			try
+			{
+				return new BlockVersions(Paths.get(new N5FSMeta((N5FSReader) uncached, dataset).basePath(), dataset));
+			} catch (final ReflectionException e)
+			{
+				LOG.warn("Unable to determine base path of {}, cannot detect concurrent writes to dataset {}", reader, dataset, e);
+			}
+		}
+		else
+			LOG.debug("Container {} is not on the local file system, cannot detect concurrent writes to dataset {}", reader, dataset);
+		return new BlockVersions(null);
+	}
+
+	/**
+	 * Read the version of a block without locking it.
+	 *
+	 * @param gridPosition position of block in cell grid
+	 * @return version of the block, {@code 0} if it has never been written with {@link BlockVersions}, {@link #UNKNOWN}
+	 * if the version cannot be read, e.g. because file locks are mandatory on this platform and another writer holds the
+	 * lock
+	 */
+	public long version(final long[] gridPosition)
+	{
+		if (datasetPath == null)
+			return 0;
+		final Path versionFile = versionFile(gridPosition);
+		try (final FileChannel channel = FileChannel.open(versionFile, StandardOpenOption.READ))
+		{
+			return readVersion(channel);
+		} catch (final NoSuchFileException e)
+		{
+			return 0;
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to read block version from {}", versionFile, e);
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 * Lock a block for writing. Blocks until no other writer holds the lock.
+	 *
+	 * @param gridPosition position of block in cell grid
+	 * @return lock that must be {@link Lock#close() closed} after writing the block
+	 * @throws IOException if the version file cannot be created or locked
+	 */
+	public Lock lock(final long[] gridPosition) throws IOException
+	{
+		if (datasetPath == null)
+			return new Lock(null, null, null, 0);
+
+		final Path versionFile = versionFile(gridPosition);
+		lock(versionFile);
+		FileChannel channel = null;
+		try
+		{
+			Files.createDirectories(versionFile.getParent());
+			channel = FileChannel.open(versionFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+			final FileLock fileLock = channel.lock();
+			return new Lock(versionFile, channel, fileLock, readVersion(channel));
+		} catch (final IOException | RuntimeException e)
+		{
+			try
+			{
+				if (channel != null)
+					channel.close();
+			} finally
+			{
+				unlock(versionFile);
+			}
+			throw e;
+		}
+	}
+
+	private static void lock(final Path versionFile)
+	{
+		final VersionFileLock lock = VERSION_FILE_LOCKS.compute(versionFile, (path, existing) -> {
+			final VersionFileLock l = existing == null ? new VersionFileLock() : existing;
+			++l.numUsers;
+			return l;
+		});
+		lock.lock.lock();
+	}
+
+	private static void unlock(final Path versionFile)
+	{
+		VERSION_FILE_LOCKS.computeIfPresent(versionFile, (path, lock) -> {
+			lock.lock.unlock();
+			return --lock.numUsers == 0 ? null : lock;
+		});
+	}
+
+	/**
+	 * Intended for tests only.
+	 *
+	 * @return {@code true} if a thread of this JVM is waiting to {@link #lock(long[]) lock} the block
+	 */
+	boolean hasQueuedWriters(final long[] gridPosition)
+	{
+		final VersionFileLock lock = datasetPath == null ? null : VERSION_FILE_LOCKS.get(versionFile(gridPosition));
+		return lock != null && lock.lock.hasQueuedThreads();
+	}
+
+	/**
+	 * Intended for tests only.
+	 *
+	 * @return number of blocks that are locked or waited for by threads of this JVM
+	 */
+	static int numLockedBlocks()
+	{
+		return VERSION_FILE_LOCKS.size();
+	}
+
+	private Path versionFile(final long[] gridPosition)
+	{
+		Path path = datasetPath;
+		for (int d = 0; d < gridPosition.length - 1; ++d)
+			path = path.resolve(Long.toString(gridPosition[d]));
+		return path
+				.resolve(VERSION_FILE_PREFIX + gridPosition[gridPosition.length - 1] + VERSION_FILE_SUFFIX)
+				.toAbsolutePath()
+				.normalize();
+	}
+
+	private static long readVersion(final FileChannel channel) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer, buffer.position()) < 0)
+				return 0;
+		buffer.flip();
+		return buffer.getLong();
+	}
+
+	private static void writeVersion(final FileChannel channel, final long version) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		buffer.putLong(version).flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer, buffer.position());
+		channel.force(false);
+	}
+
+}
@@ -8,9 +8,9 @@ import gnu.trove.set.TLongSet;
 import gnu.trove.set.hash.TLongHashSet;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
+import net.imglib2.RandomAccess;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.cache.img.CachedCellImg;
-import net.imglib2.converter.Converters;
 import net.imglib2.img.array.ArrayImg;
 import net.imglib2.img.array.ArrayImgFactory;
 import net.imglib2.img.cell.CellGrid;
@@ -30,7 +30,6 @@ import net.imglib2.util.Util;
 import net.imglib2.view.IntervalView;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookup;
-import org.janelia.saalfeldlab.labels.downsample.WinnerTakesAll;
 import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
 import org.janelia.saalfeldlab.n5.DataBlock;
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
@@ -38,11 +37,14 @@ import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.ConcurrentCommitConflict;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToPersistCanvas;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToUpdateLabelBlockLookup;
 import org.janelia.saalfeldlab.paintera.exception.PainteraException;
+import org.janelia.saalfeldlab.util.labels.LabelModeDownsampler;
 import org.janelia.saalfeldlab.util.math.ArrayMath;
+import org.janelia.saalfeldlab.util.n5.CachedN5Writer;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -50,19 +52,33 @@ import pl.touk.throwing.ThrowingSupplier;
 
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Array;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.function.IntPredicate;
 import java.util.function.Supplier;
 
+/**
+ * Commit canvas into N5 datasets.
+ * <p>
+ * Multiple users may commit into the same dataset concurrently: All blocks at the highest resolution are locked and
+ * their {@link BlockVersions versions} are compared with the versions read before locking, before any block is written.
+ * If a block was modified by a concurrent commit in the meantime, the canvas is merged into the modified block, unless
+ * any of the voxels painted in the canvas were modified, in which case the commit fails with a
+ * {@link ConcurrentCommitConflict} and no block is written. Blocks of lower resolution levels are downsampled while
+ * holding the lock of the target block.
+ */
 public class CommitCanvasN5 implements PersistCanvas
 {
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	private final N5Writer n5;
+	private final CachedN5Writer n5;
 
 	private final String dataset;
 
@@ -74,8 +90,10 @@ public class CommitCanvasN5 implements PersistCanvas
 
 	public CommitCanvasN5(final N5Writer n5, final String dataset) throws IOException {
 		super();
-		this.n5 = n5;
+		// meta data of all levels is queried at every commit
+		this.n5 = CachedN5Writer.cached(n5);
 		this.dataset = dataset;
+		prewarmMetaData();
 		this.isPainteraDataset = N5Helpers.isPainteraDataset(this.n5, this.dataset);
 		final String volumetricDataGroup = this.isPainteraDataset ? this.dataset + "/data" : this.dataset;
 		this.isMultiscale = N5Helpers.isMultiScale(this.n5, volumetricDataGroup);
@@ -86,6 +104,23 @@ public class CommitCanvasN5 implements PersistCanvas
 				false);
 	}
 
+	/**
+	 * Drop all cached meta data and re-read the meta data of {@link #dataset}. Other processes may have modified the
+	 * container since the last commit, e.g. added scale levels or changed attributes, so this is called at the start of
+	 * every commit. {@link #updateLabelBlockLookup(List)} uses the meta data read by the preceding
+	 * {@link #persistCanvas(CachedCellImg, long[])}.
+	 */
+	private void prewarmMetaData() throws IOException
+	{
+		this.n5.invalidateAll();
+		try {
+			this.n5.prewarm(dataset);
+		} catch (final InterruptedException e) {
+			LOG.debug("Interrupted while prewarming meta data cache for dataset {}", dataset);
+			Thread.currentThread().interrupt();
+		}
+	}
+
 	public final N5Writer n5()
 	{
 		return this.n5;
@@ -209,6 +244,8 @@ public class CommitCanvasN5 implements PersistCanvas
 		LOG.debug("Affected blocks in grid {}: {}", canvas.getCellGrid(), blocks);
 		try
 		{
+			prewarmMetaData();
+
 			final String dataset = isPainteraDataset ? this.dataset + "/data" : this.dataset;
 
 			final CellGrid canvasGrid = canvas.getCellGrid();
@@ -432,9 +469,21 @@ public class CommitCanvasN5 implements PersistCanvas
 	) throws IOException {
 		final I i = Util.getTypeFromInterval(data).createVariable();
 		i.setInteger(Label.OUTSIDE);
-		final RandomAccessibleInterval<I> input = Views.isZeroMin(data) ? data : Views.zeroMin(data);
 		final RandomAccessibleInterval<I> output = new ArrayImgFactory<>(i).create(size);
-		WinnerTakesAll.downsample(input, output, relativeFactors);
+
+		final long[] inputData = new long[(int) Intervals.numElements(data)];
+		int index = 0;
+		for (final I t : Views.flatIterable(data))
+			inputData[index++] = t.getIntegerLong();
+		final long[] outputData = new long[(int) Intervals.numElements(size)];
+		new LabelModeDownsampler(Label.OUTSIDE, relativeFactors).downsample(
+				inputData,
+				Intervals.dimensionsAsIntArray(data),
+				outputData,
+				size);
+		index = 0;
+		for (final I t : Views.flatIterable(output))
+			t.setInteger(outputData[index++]);
 
 		final RandomAccessibleInterval<I> previousContents = Views.offsetInterval(N5Utils.<I>open(n5, dataset), blockInterval);
 		final BlockDiff blockDiff = createBlockDiffInteger(previousContents, output);
@@ -612,16 +661,24 @@ public class CommitCanvasN5 implements PersistCanvas
 			final long[] blocks,
 			final DatasetSpec datasetSpec,
 			final BlockSpec blockSpec,
-			TLongObjectHashMap<BlockDiff> blockDiff) throws IOException {
-		final RandomAccessibleInterval<LabelMultisetType> highestResolutionData = LabelUtils.openVolatile(datasetSpec.container, datasetSpec.dataset);
-		for (final long blockId : blocks) {
-			blockSpec.fromLinearIndex(blockId);
-			final IntervalView<Pair<LabelMultisetType, UnsignedLongType>> backgroundWithCanvas = Views.interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
-			final int numElements = (int) Intervals.numElements(backgroundWithCanvas);
-			final byte[] byteData = LabelUtils.serializeLabelMultisetTypes(new BackgroundCanvasIterable(Views.flatIterable(backgroundWithCanvas)), numElements);
-			final ByteArrayDataBlock dataBlock = new ByteArrayDataBlock(Intervals.dimensionsAsIntArray(backgroundWithCanvas), blockSpec.pos, byteData);
-			datasetSpec.container.writeBlock(datasetSpec.dataset, datasetSpec.attributes, dataBlock);
-			blockDiff.put(blockId, createBlockDiffFromCanvas(backgroundWithCanvas));
+			TLongObjectHashMap<BlockDiff> blockDiff) throws IOException, ConcurrentCommitConflict {
+		final long[] sortedBlocks = sorted(blocks);
+		final BlockVersions.Lock[] locks = lockAllOrFail(canvas, sortedBlocks, datasetSpec, blockSpec, CommitCanvasN5::isModifiedLabelMultisetType);
+		try {
+			// opened after locking, includes all concurrent commits
+			final RandomAccessibleInterval<LabelMultisetType> highestResolutionData = LabelUtils.openVolatile(datasetSpec.container, datasetSpec.dataset);
+			for (int k = 0; k < sortedBlocks.length; ++k) {
+				blockSpec.fromLinearIndex(sortedBlocks[k]);
+				final IntervalView<Pair<LabelMultisetType, UnsignedLongType>> backgroundWithCanvas = Views.interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
+				final int numElements = (int) Intervals.numElements(backgroundWithCanvas);
+				final byte[] byteData = LabelUtils.serializeLabelMultisetTypes(new BackgroundCanvasIterable(Views.flatIterable(backgroundWithCanvas)), numElements);
+				final ByteArrayDataBlock dataBlock = new ByteArrayDataBlock(Intervals.dimensionsAsIntArray(backgroundWithCanvas), blockSpec.pos, byteData);
+				datasetSpec.container.writeBlock(datasetSpec.dataset, datasetSpec.attributes, dataBlock);
+				locks[k].increment();
+				blockDiff.put(sortedBlocks[k], createBlockDiffFromCanvas(backgroundWithCanvas));
+			}
+		} finally {
+			unlockAll(locks);
 		}
 	}
 
@@ -631,16 +688,219 @@ public class CommitCanvasN5 implements PersistCanvas
 			final long[] blocks,
 			final DatasetSpec datasetSpec,
 			final BlockSpec blockSpec,
-			final TLongObjectHashMap<BlockDiff> blockDiff) throws IOException {
-		final RandomAccessibleInterval<I> highestResolutionData = N5Utils.open(datasetSpec.container, datasetSpec.dataset);
-		final I i = Util.getTypeFromInterval(highestResolutionData).createVariable();
-		for (final long blockId : blocks) {
-			blockSpec.fromLinearIndex(blockId);
-			final RandomAccessibleInterval<Pair<I, UnsignedLongType>> backgroundWithCanvas = Views.interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
-			final RandomAccessibleInterval<I> mergedData = Converters.convert(backgroundWithCanvas, (s, t) -> pickFirstIfSecondIsInvalid(s.getA(), s.getB(), t), i.createVariable());
-			N5Utils.saveBlock(mergedData, datasetSpec.container, datasetSpec.dataset, datasetSpec.attributes, blockSpec.pos);
-			blockDiff.put(blockId, createBlockDiffFromCanvasIntegerType(Views.iterable(backgroundWithCanvas)));
+			final TLongObjectHashMap<BlockDiff> blockDiff) throws IOException, ConcurrentCommitConflict {
+		final long[] sortedBlocks = sorted(blocks);
+		final BlockVersions.Lock[] locks = lockAllOrFail(canvas, sortedBlocks, datasetSpec, blockSpec, CommitCanvasN5::isModifiedIntegerType);
+		try {
+			// opened after locking, includes all concurrent commits
+			final RandomAccessibleInterval<I> highestResolutionData = N5Utils.open(datasetSpec.container, datasetSpec.dataset);
+			final I i = Util.getTypeFromInterval(highestResolutionData).createVariable();
+			for (int k = 0; k < sortedBlocks.length; ++k) {
+				blockSpec.fromLinearIndex(sortedBlocks[k]);
+				final RandomAccessibleInterval<Pair<I, UnsignedLongType>> backgroundWithCanvas = Views.interval(Views.pair(highestResolutionData, canvas), blockSpec.asInterval());
+				final RandomAccessibleInterval<I> mergedData = mergeCanvasIntoBackground(backgroundWithCanvas, i);
+				N5Utils.saveBlock(mergedData, datasetSpec.container, datasetSpec.dataset, datasetSpec.attributes, blockSpec.pos);
+				locks[k].increment();
+				blockDiff.put(sortedBlocks[k], createBlockDiffFromCanvasIntegerType(Views.iterable(backgroundWithCanvas)));
+			}
+		} finally {
+			unlockAll(locks);
+		}
+	}
+
+	/**
+	 * Voxels that differ between two versions of a block.
+	 */
+	private interface ModifiedVoxels
+	{
+		/**
+		 * @return flat index predicate that holds for voxels that differ between {@code expected} and {@code current}
+		 */
+		IntPredicate isModified(DataBlock<?> expected, DataBlock<?> current, int numElements);
+	}
+
+	/**
+	 * Lock all {@code blocks} and check for conflicting concurrent commits before any block is written, i.e. either all
+	 * blocks can be written or none. Versions and contents of all blocks are read before locking. Blocks are locked in
+	 * ascending order to avoid dead locks between concurrent commits. A block whose version changed in the meantime was
+	 * modified by a concurrent commit: the commit fails with {@link ConcurrentCommitConflict} if any painted voxel of the
+	 * block was modified, otherwise the canvas is merged into the current contents when the block is written.
+	 * <p>
+	 * One version file is open per block until the locks are released with {@link #unlockAll(BlockVersions.Lock[])}.
+	 *
+	 * @param sortedBlocks linear indices of blocks in ascending order
+	 * @return lock for each block in {@code sortedBlocks}
+	 */
+	private static BlockVersions.Lock[] lockAllOrFail(
+			final RandomAccessibleInterval<UnsignedLongType> canvas,
+			final long[] sortedBlocks,
+			final DatasetSpec datasetSpec,
+			final BlockSpec blockSpec,
+			final ModifiedVoxels modifiedVoxels) throws IOException, ConcurrentCommitConflict {
+		final BlockVersions versions = BlockVersions.of(datasetSpec.container, datasetSpec.dataset);
+		final long[] expectedVersions = new long[sortedBlocks.length];
+		final DataBlock<?>[] expectedBlocks = new DataBlock<?>[sortedBlocks.length];
+		for (int k = 0; k < sortedBlocks.length; ++k) {
+			blockSpec.fromLinearIndex(sortedBlocks[k]);
+			// read version before contents: a concurrent write in between is detected as a version change
+			expectedVersions[k] = versions.version(blockSpec.pos);
+			expectedBlocks[k] = datasetSpec.container.readBlock(datasetSpec.dataset, datasetSpec.attributes, blockSpec.pos);
+		}
+
+		final BlockVersions.Lock[] locks = new BlockVersions.Lock[sortedBlocks.length];
+		try {
+			for (int k = 0; k < sortedBlocks.length; ++k) {
+				blockSpec.fromLinearIndex(sortedBlocks[k]);
+				locks[k] = versions.lock(blockSpec.pos);
+				if (locks[k].version() == expectedVersions[k])
+					continue;
+				final DataBlock<?> currentBlock = datasetSpec.container.readBlock(datasetSpec.dataset, datasetSpec.attributes, blockSpec.pos);
+				if (Objects.deepEquals(dataOrNull(expectedBlocks[k]), dataOrNull(currentBlock)))
+					continue;
+				final Interval interval = blockSpec.asInterval();
+				failOnConflict(
+						Views.interval(canvas, interval),
+						modifiedVoxels.isModified(expectedBlocks[k], currentBlock, (int) Intervals.numElements(interval)),
+						datasetSpec.dataset,
+						blockSpec.pos);
+				LOG.debug("Merging canvas into concurrently modified block {} of dataset {}", blockSpec.pos, datasetSpec.dataset);
+			}
+			return locks;
+		} catch (final IOException | ConcurrentCommitConflict | RuntimeException e) {
+			try {
+				unlockAll(locks);
+			} catch (final IOException suppressed) {
+				e.addSuppressed(suppressed);
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * Release all locks, including locks that fail to release.
+	 *
+	 * @param locks {@code null} entries are ignored
+	 * @throws IOException if any lock cannot be released
+	 */
+	private static void unlockAll(final BlockVersions.Lock[] locks) throws IOException {
+		IOException exception = null;
+		for (final BlockVersions.Lock lock : locks) {
+			if (lock == null)
+				continue;
+			try {
+				lock.close();
+			} catch (final IOException e) {
+				if (exception == null)
+					exception = e;
+				else
+					exception.addSuppressed(e);
+			}
 		}
+		if (exception != null)
+			throw exception;
+	}
+
+	private static long[] sorted(final long[] blocks) {
+		final long[] sorted = blocks.clone();
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+	private static <I extends IntegerType<I> & NativeType<I>> RandomAccessibleInterval<I> mergeCanvasIntoBackground(
+			final RandomAccessibleInterval<Pair<I, UnsignedLongType>> backgroundWithCanvas,
+			final I i)
+	{
+		final ArrayImg<I, ?> mergedData = new ArrayImgFactory<>(i).create(backgroundWithCanvas);
+		final Iterator<Pair<I, UnsignedLongType>> source = Views.flatIterable(backgroundWithCanvas).iterator();
+		for (final I t : mergedData)
+		{
+			final Pair<I, UnsignedLongType> s = source.next();
+			pickFirstIfSecondIsInvalid(s.getA(), s.getB(), t);
+		}
+		return mergedData;
+	}
+
+	/**
+	 * Fail if any voxel that is painted in {@code canvasBlock} was modified by a concurrent commit. Voxels that were
+	 * not painted in {@code canvasBlock} are merged.
+	 *
+	 * @param canvasBlock canvas restricted to the block
+	 * @param isModified flat index (in {@link Views#flatIterable(RandomAccessibleInterval) flat iteration order}) of voxels
+	 *                      modified by the concurrent commit
+	 */
+	private static void failOnConflict(
+			final RandomAccessibleInterval<UnsignedLongType> canvasBlock,
+			final IntPredicate isModified,
+			final String dataset,
+			final long[] gridPosition) throws ConcurrentCommitConflict
+	{
+		long numConflicts = 0;
+		int index = 0;
+		for (final UnsignedLongType c : Views.flatIterable(canvasBlock))
+		{
+			if (c.getIntegerLong() != Label.INVALID && isModified.test(index))
+				++numConflicts;
+			++index;
+		}
+		if (numConflicts > 0)
+			throw new ConcurrentCommitConflict(String.format(
+					"%d painted voxels in block %s of dataset %s were modified by a concurrent commit. Commit again to overwrite them.",
+					numConflicts,
+					Arrays.toString(gridPosition),
+					dataset));
+	}
+
+	private static IntPredicate isModifiedIntegerType(final DataBlock<?> expected, final DataBlock<?> current, final int numElements)
+	{
+		// blocks that do not exist are read as zeros
+		final Object expectedData = Optional.ofNullable(dataOrNull(expected)).orElseGet(() -> new long[numElements]);
+		final Object currentData = Optional.ofNullable(dataOrNull(current)).orElseGet(() -> new long[numElements]);
+		// block changed size: consider all voxels modified
+		if (Array.getLength(expectedData) != numElements || Array.getLength(currentData) != numElements)
+			return index -> true;
+		return index -> Array.getLong(expectedData, index) != Array.getLong(currentData, index);
+	}
+
+	private static IntPredicate isModifiedLabelMultisetType(final DataBlock<?> expected, final DataBlock<?> current, final int numElements)
+	{
+		final Object expectedData = dataOrNull(expected);
+		final Object currentData = dataOrNull(current);
+		// block was created or removed: consider all voxels modified
+		if (!(expectedData instanceof byte[] && currentData instanceof byte[]))
+			return index -> true;
+		final RandomAccess<LabelMultisetType> expectedAccess = labelMultisetImg(LabelUtils.fromBytes((byte[]) expectedData, numElements), numElements).randomAccess();
+		final RandomAccess<LabelMultisetType> currentAccess = labelMultisetImg(LabelUtils.fromBytes((byte[]) currentData, numElements), numElements).randomAccess();
+		return index -> {
+			expectedAccess.setPosition(index, 0);
+			currentAccess.setPosition(index, 0);
+			return !sameEntries(expectedAccess.get(), currentAccess.get());
+		};
+	}
+
+	private static ArrayImg<LabelMultisetType, VolatileLabelMultisetArray> labelMultisetImg(final VolatileLabelMultisetArray access, final int numElements)
+	{
+		final ArrayImg<LabelMultisetType, VolatileLabelMultisetArray> img = new ArrayImg<>(access, new long[]{numElements}, new LabelMultisetType().getEntitiesPerPixel());
+		img.setLinkedType(new LabelMultisetType(img));
+		return img;
+	}
+
+	private static boolean sameEntries(final LabelMultisetType first, final LabelMultisetType second)
+	{
+		if (first.entrySet().size() != second.entrySet().size())
+			return false;
+		for (final Iterator<Entry<Label>> firstIterator = first.entrySet().iterator(), secondIterator = second.entrySet().iterator(); firstIterator.hasNext();)
+		{
+			final Entry<Label> firstEntry = firstIterator.next();
+			final Entry<Label> secondEntry = secondIterator.next();
+			if (firstEntry.getElement().id() != secondEntry.getElement().id() || firstEntry.getCount() != secondEntry.getCount())
+				return false;
+		}
+		return true;
+	}
+
+	private static Object dataOrNull(final DataBlock<?> block)
+	{
+		return block == null ? null : block.getData();
 	}
 
 	private static void downsampleAndWriteBlocksLabelMultisetType(
@@ -657,6 +917,7 @@ public class CommitCanvasN5 implements PersistCanvas
 			) throws IOException {
 
 		final CachedCellImg<LabelMultisetType, VolatileLabelMultisetArray> previousData = LabelUtils.openVolatile(n5, previousDataset.dataset);
+		final BlockVersions versions = BlockVersions.of(n5, targetDataset.dataset);
 
 		for (final long targetBlock : affectedBlocks)
 		{
@@ -680,23 +941,29 @@ public class CommitCanvasN5 implements PersistCanvas
 			ArrayMath.add3(blockMax, -1, blockMax);
 			ArrayMath.minOf3(blockMax, blockMin, blockMax);
 
-			LOG.trace("Reading old access at position {} and size {}. ({} {})", blockSpec.pos, size, blockSpec.min, blockSpec.max);
-			final DataBlock<?> block = n5.readBlock(targetDataset.dataset, targetDataset.attributes, blockSpec.pos);
-			VolatileLabelMultisetArray oldAccess = block != null && block.getData() instanceof byte[]
-					? LabelUtils.fromBytes(
-						(byte[]) block.getData(),
-						(int) Intervals.numElements(size))
-					: null;
-
-			VolatileLabelMultisetArray newAccess = downsampleVolatileLabelMultisetArrayAndSerialize(
-					n5,
-					targetDataset.dataset,
-					targetDataset.attributes,
-					Views.interval(previousData, previousRelevantIntervalMin, previousRelevantIntervalMax),
-					relativeFactors,
-					targetMaxNumEntries,
-					size,
-					blockSpec.pos);
+			// concurrent commits may downsample into the same block: read the previous level only while holding the lock
+			final VolatileLabelMultisetArray oldAccess;
+			final VolatileLabelMultisetArray newAccess;
+			try (final BlockVersions.Lock lock = versions.lock(blockSpec.pos)) {
+				LOG.trace("Reading old access at position {} and size {}. ({} {})", blockSpec.pos, size, blockSpec.min, blockSpec.max);
+				final DataBlock<?> block = n5.readBlock(targetDataset.dataset, targetDataset.attributes, blockSpec.pos);
+				oldAccess = block != null && block.getData() instanceof byte[]
+						? LabelUtils.fromBytes(
+							(byte[]) block.getData(),
+							(int) Intervals.numElements(size))
+						: null;
+
+				newAccess = downsampleVolatileLabelMultisetArrayAndSerialize(
+						n5,
+						targetDataset.dataset,
+						targetDataset.attributes,
+						Views.interval(previousData, previousRelevantIntervalMin, previousRelevantIntervalMax),
+						relativeFactors,
+						targetMaxNumEntries,
+						size,
+						blockSpec.pos);
+				lock.increment();
+			}
 			final int numElements = (int) Intervals.numElements(size);
 			blockDiffsAt.put(
 					targetBlock,
@@ -719,6 +986,7 @@ public class CommitCanvasN5 implements PersistCanvas
 	) throws IOException {
 
 		final RandomAccessibleInterval<I> previousData = N5Utils.open(n5, previousDataset.dataset);
+		final BlockVersions versions = BlockVersions.of(n5, targetDataset.dataset);
 
 		for (final long targetBlock : affectedBlocks)
 		{
@@ -745,15 +1013,20 @@ public class CommitCanvasN5 implements PersistCanvas
 
 			LOG.trace("Reading old access at position {} and size {}. ({} {})", blockSpec.pos, size, blockSpec.min, blockSpec.max);
 
-			final BlockDiff blockDiff = downsampleIntegerTypeAndSerialize(
-					n5,
-					targetDataset.dataset,
-					targetDataset.attributes,
-					Views.interval(previousData, previousRelevantIntervalMin, previousRelevantIntervalMax),
-					relativeFactors,
-					size,
-					targetInterval,
-					blockSpec.pos);
+			// concurrent commits may downsample into the same block: read the previous level only while holding the lock
+			final BlockDiff blockDiff;
+			try (final BlockVersions.Lock lock = versions.lock(blockSpec.pos)) {
+				blockDiff = downsampleIntegerTypeAndSerialize(
+						n5,
+						targetDataset.dataset,
+						targetDataset.attributes,
+						Views.interval(previousData, previousRelevantIntervalMin, previousRelevantIntervalMax),
+						relativeFactors,
+						size,
+						targetInterval,
+						blockSpec.pos);
+				lock.increment();
+			}
 			blockDiffsAt.put(targetBlock, blockDiff);
 		}
 	}
@@ -1,5 +1,6 @@
 package org.janelia.saalfeldlab.paintera.data.n5;
 
+import bdv.util.volatiles.VolatileTypeMatcher;
 import bdv.viewer.Interpolation;
 import com.google.gson.annotations.Expose;
 import mpicbg.spim.data.sequence.VoxelDimensions;
@@ -22,13 +23,13 @@ import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.volatiles.AbstractVolatileRealType;
-import net.imglib2.util.Intervals;
 import net.imglib2.util.Util;
 import net.imglib2.view.Views;
 import net.imglib2.view.composite.CompositeIntervalView;
 import net.imglib2.view.composite.RealComposite;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.n5.CachedN5Reader;
 import org.janelia.saalfeldlab.util.n5.ImagesWithInvalidate;
 import org.janelia.saalfeldlab.util.n5.N5Data;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
@@ -46,8 +47,6 @@ import java.util.Arrays;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.IntFunction;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
@@ -87,14 +86,10 @@ public class N5ChannelDataSource<
 
 	private final Function<Interpolation,  InterpolatorFactory<RealComposite<T>, RandomAccessible<RealComposite<T>>>> viewerInterpolation;
 
+	// all channels of a voxel are stored in the same cell, i.e. they are either all valid or all invalid
 	private final Converter<RealComposite<T>, VolatileWithSet<RealComposite<T>>> viewerConverter = (source, target ) -> {
 		target.setT(source);
-		boolean isValid = true;
-		int numChannels = (int) this.numChannels();
-		// TODO exchange this with only check for first index if block size == num channels
-		for (int i = 0; i < numChannels && isValid; ++i)
-			isValid &= source.get(i).isValid();
-		target.setValid(isValid);
+		target.setValid(source.get(0).isValid());
 	};
 
 	/**
@@ -123,26 +118,29 @@ public class N5ChannelDataSource<
 			final long[] channels) throws
 			IOException, DataTypeNotSupported {
 
+		final N5Reader reader = CachedN5Reader.cached(meta.reader());
+		this.meta = meta;
+		this.channelDimension = channelDimension;
+		this.name = name;
+		this.channels = channels == null ? range((int) getNumChannels(reader, meta.dataset(), channelDimension)) : channels;
+		this.numChannels = this.channels.length;
+
 		final ImagesWithInvalidate<D, T>[] data = getData(
-				meta.reader(),
+				reader,
 				meta.dataset(),
 				transform,
 				globalCache,
-				priority);
+				priority,
+				channelDimension,
+				this.channels);
 		final RandomAccessibleIntervalDataSource.DataWithInvalidate<D, T> dataWithInvalidate = RandomAccessibleIntervalDataSource.asDataWithInvalidate(data);
-		this.meta = meta;
-		this.channelDimension = channelDimension;
-		this.name = name;
 		this.transforms = dataWithInvalidate.transforms;
 		this.invaldiateAll = dataWithInvalidate.invalidateAll;
 
-		this.channels = channels == null ? range((int) dataWithInvalidate.data[0].dimension(channelDimension)) : channels;
-		this.numChannels = this.channels.length;
-
-		this.intervals = dataWithInvalidate.data;
+		this.intervals = Stream.of(dataWithInvalidate.data).map(N5ChannelDataSource::spatialInterval).toArray(Interval[]::new);
 		extension.setValid(true);
-		this.data = collapseDimension(dataWithInvalidate.data, this.channelDimension, this.channels, dataExtension);
-		this.viewerData = collapseDimension(dataWithInvalidate.viewData, this.channelDimension, this.channels, extension);
+		this.data = collapseChannels(dataWithInvalidate.data, this.numChannels, dataExtension);
+		this.viewerData = collapseChannels(dataWithInvalidate.viewData, this.numChannels, extension);
 
 		this.interpolation = ipol -> new NearestNeighborInterpolatorFactory<>();
 		this.viewerInterpolation = ipol -> Interpolation.NLINEAR.equals(ipol) ? new NLinearInterpolatorFactory<>() : new NearestNeighborInterpolatorFactory<>();
@@ -211,6 +209,7 @@ public class N5ChannelDataSource<
 		);
 	}
 
+	@SuppressWarnings("unchecked")
 	public static <
 			D extends NativeType<D> & RealType<D>,
 			T extends AbstractVolatileRealType<D, T> & NativeType<T>> N5ChannelDataSource<D, T> extended(
@@ -226,15 +225,10 @@ public class N5ChannelDataSource<
 			final Consumer<D> extendData,
 			final Consumer<T> extendViewer) throws IOException, DataTypeNotSupported {
 
-		final ImagesWithInvalidate<D, T>[] data = getData(
-				meta.reader(),
-				meta.dataset(),
-				transform,
-				globalCache,
-				priority);
-		D d = Util.getTypeFromInterval(data[0].data).createVariable();
-		T t = Util.getTypeFromInterval(data[0].vdata).createVariable();
-		long numChannels = data[0].data.dimension(channelDimension);
+		final N5Reader reader = CachedN5Reader.cached(meta.reader());
+		D d = N5Types.type(N5Types.getDataType(reader, meta.dataset()));
+		T t = (T) VolatileTypeMatcher.getVolatileTypeForType(d).createVariable();
+		long numChannels = getNumChannels(reader, meta.dataset(), channelDimension);
 
 		LOG.debug("Channel dimension {} has {} channels", channelDimension, numChannels);
 		extendData.accept(d);
@@ -293,6 +287,7 @@ public class N5ChannelDataSource<
 		);
 	}
 
+	@SuppressWarnings("unchecked")
 	public static <
 			D extends NativeType<D> & RealType<D>,
 			T extends AbstractVolatileRealType<D, T> & NativeType<T>> N5ChannelDataSource<D, T> extended(
@@ -306,15 +301,10 @@ public class N5ChannelDataSource<
 			final Consumer<D> extendData,
 			final Consumer<T> extendViewer) throws IOException, DataTypeNotSupported {
 
-		final ImagesWithInvalidate<D, T>[] data = getData(
-				meta.reader(),
-				meta.dataset(),
-				transform,
-				globalCache,
-				priority);
-		D d = Util.getTypeFromInterval(data[0].data).createVariable();
-		T t = Util.getTypeFromInterval(data[0].vdata).createVariable();
-		long numChannels = data[0].data.dimension(channelDimension);
+		final N5Reader reader = CachedN5Reader.cached(meta.reader());
+		D d = N5Types.type(N5Types.getDataType(reader, meta.dataset()));
+		T t = (T) VolatileTypeMatcher.getVolatileTypeForType(d).createVariable();
+		long numChannels = getNumChannels(reader, meta.dataset(), channelDimension);
 
 		LOG.debug("Channel dimension {} has {} channels", channelDimension, numChannels);
 		extendData.accept(d);
@@ -420,7 +410,9 @@ public class N5ChannelDataSource<
 			final String dataset,
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
-			final int priority) throws IOException, DataTypeNotSupported
+			final int priority,
+			final int channelDimension,
+			final long[] channels) throws IOException, DataTypeNotSupported
 	{
 		if (N5Helpers.isPainteraDataset(reader, dataset))
 		{
@@ -429,7 +421,9 @@ public class N5ChannelDataSource<
 					dataset + "/" + N5Helpers.PAINTERA_DATA_DATASET,
 					transform,
 					globalCache,
-					priority);
+					priority,
+					channelDimension,
+					channels);
 		}
 		final boolean isMultiscale = N5Helpers.isMultiScale(reader, dataset);
 		final boolean isLabelMultiset = N5Types.isLabelMultisetType(reader, dataset, isMultiscale);
@@ -437,13 +431,23 @@ public class N5ChannelDataSource<
 			throw new DataTypeNotSupported("Label multiset data not supported!");
 
 		return isMultiscale
-				? N5Data.openRawMultiscale(reader, dataset, transform, globalCache, priority)
-				: new ImagesWithInvalidate[] {N5Data.openRaw(
+				? N5Data.openRawChannelInterleavedMultiscale(reader, dataset, transform, globalCache, priority, channelDimension, channels)
+				: new ImagesWithInvalidate[] {N5Data.openRawChannelInterleaved(
 				reader,
 				dataset,
 				transform,
 				globalCache,
-				priority)};
+				priority,
+				channelDimension,
+				channels)};
+	}
+
+	private static long getNumChannels(
+			final N5Reader reader,
+			final String dataset,
+			final int channelDimension) throws IOException
+	{
+		return N5Helpers.getDatasetAttributes(reader, dataset).getDimensions()[channelDimension];
 	}
 
 	private static <D extends NativeType<D> & RealType<D>, T extends RealType<D>> RealComposite<D>  createExtension(
@@ -499,39 +503,38 @@ public class N5ChannelDataSource<
 		return createExtension(extension.get(0).createVariable(), t, converter, size, extension::get);
 	}
 
-	private static <T extends RealType<T>> RandomAccessible<RealComposite<T>>[] collapseDimension(
-			final RandomAccessibleInterval<T>[] rais,
-			final int dimension,
-			final long[] channels,
+	private static <T extends RealType<T>> RandomAccessible<RealComposite<T>>[] collapseChannels(
+			final RandomAccessibleInterval<T>[] interleaved,
+			final long numChannels,
 			final T extension
 	)
 	{
-		return Stream.of(rais).map(rai -> collapseDimension(rai, dimension, channels, extension)).toArray(RandomAccessible[]::new);
+		return Stream.of(interleaved).map(rai -> collapseChannels(rai, numChannels, extension)).toArray(RandomAccessible[]::new);
 	}
 
-	private static <T extends RealType<T>> RandomAccessible<RealComposite<T>>  collapseDimension(
-			final RandomAccessibleInterval<T> rai,
-			final int dimension,
-			final long[] channels,
+	/**
+	 * Collapse the channels of a channel-interleaved image into a {@link RealComposite}. Channels are the first dimension
+	 * of the image and all channels of a voxel are stored in the same cell, i.e. accessing all channels of a voxel moves
+	 * the underlying cell access along the fastest varying dimension within a single cell.
+	 */
+	private static <T extends RealType<T>> RandomAccessible<RealComposite<T>> collapseChannels(
+			final RandomAccessibleInterval<T> interleaved,
+			final long numChannels,
 			final T extension
 	)
 	{
-		final int lastDim = rai.numDimensions() - 1;
-		final int numChannels = (int) rai.dimension(dimension);
-
-		long[] min = Intervals.minAsLongArray(rai);
-		long[] max = Intervals.maxAsLongArray(rai);
-
-		assert LongStream.of(channels).filter(c -> c > max[dimension] && c < min[dimension]).count() == 0;
-
-		final RandomAccessibleInterval<T> relevantRai = isFullRange(channels, numChannels)
-				? rai
-				: Views.stack(LongStream.of(channels).mapToObj(channel -> Views.hyperSlice(rai, dimension, channel)).collect(Collectors.toList()));
+		final int lastDim = interleaved.numDimensions() - 1;
+		final RandomAccessible<T> ra = Views.extendValue(Views.moveAxis(interleaved, 0, lastDim), extension);
+		return Views.collapseReal(ra, (int) numChannels);
+	}
 
-		final RandomAccessible<T> ra = Views.extendValue(lastDim == dimension
-				? relevantRai
-				: Views.moveAxis(relevantRai, dimension, lastDim), extension);
-		return Views.collapseReal(ra, numChannels);
+	private static Interval spatialInterval(final Interval interleaved)
+	{
+		final long[] min = new long[interleaved.numDimensions() - 1];
+		final long[] max = new long[min.length];
+		Arrays.setAll(min, d -> interleaved.min(d + 1));
+		Arrays.setAll(max, d -> interleaved.max(d + 1));
+		return new FinalInterval(min, max);
 	}
 
 	private static long[] getChannels(final long min, final long max, boolean revertChannelOrder) {
@@ -541,17 +544,6 @@ public class N5ChannelDataSource<
 			return LongStream.rangeClosed(min, max).toArray();
 	}
 
-	private static boolean isFullRange(final long[] channels, final int dim) {
-		if (channels.length != dim)
-			return false;
-
-		for (int n = 0; n < dim; ++n)
-			if (channels[n] != n)
-				return false;
-
-		return true;
-	}
-
 	private static long[] range(final int stop) {
 		long[] range = new long[stop];
 		Arrays.setAll(range, d -> d);
@@ -15,9 +15,11 @@ import net.imglib2.type.NativeType;
 import net.imglib2.type.numeric.RealType;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.n5.CachedN5Reader;
 import org.janelia.saalfeldlab.util.n5.ImagesWithInvalidate;
 import org.janelia.saalfeldlab.util.n5.N5Data;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.janelia.saalfeldlab.paintera.cache.global.FetchScheduler;
 import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
 import org.janelia.saalfeldlab.util.n5.N5Types;
@@ -56,7 +58,7 @@ public class N5DataSource<D extends NativeType<D>, T extends Volatile<D> & Nativ
 			final Function<Interpolation, InterpolatorFactory<T, RandomAccessible<T>>> interpolation) throws
 			IOException {
 		super(
-				RandomAccessibleIntervalDataSource.asDataWithInvalidate((ImagesWithInvalidate<D, T>[])getData(meta.writer(), meta.dataset(), transform, globalCache, priority)),
+				RandomAccessibleIntervalDataSource.asDataWithInvalidate((ImagesWithInvalidate<D, T>[])getData(CachedN5Reader.cached(meta.writer()), meta.dataset(), transform, globalCache, priority)),
 				dataInterpolation,
 				interpolation,
 				name
@@ -85,6 +87,14 @@ public class N5DataSource<D extends NativeType<D>, T extends Volatile<D> & Nativ
 		return meta.dataset();
 	}
 
+	/**
+	 * @return key of the {@link FetchScheduler.Group fetch group} that loads blocks of this source
+	 */
+	public String fetchGroupKey()
+	{
+		return meta.toString();
+	}
+
 	private static <T extends NativeType<T>> Function<Interpolation, InterpolatorFactory<T, RandomAccessible<T>>>
 	interpolation(final N5Reader n5, final String dataset)
 	throws IOException
@@ -110,10 +120,26 @@ public class N5DataSource<D extends NativeType<D>, T extends Volatile<D> & Nativ
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
 			final int priority) throws IOException
+	{
+		final FetchScheduler.Group fetchGroup = globalCache.fetchGroup(
+				N5Data.fetchGroupKey(reader, dataset),
+				N5Data.fetchBackend(reader));
+		return getData(reader, dataset, transform, globalCache, priority, fetchGroup);
+	}
+
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private static <D extends NativeType<D>, T extends Volatile<D> & NativeType<T>>
+	ImagesWithInvalidate<D, T>[] getData(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final FetchScheduler.Group fetchGroup) throws IOException
 	{
 		if (N5Helpers.isPainteraDataset(reader, dataset))
 		{
-			return getData(reader, dataset + "/" + N5Helpers.PAINTERA_DATA_DATASET, transform, globalCache, priority);
+			return getData(reader, dataset + "/" + N5Helpers.PAINTERA_DATA_DATASET, transform, globalCache, priority, fetchGroup);
 		}
 		final boolean isMultiscale = N5Helpers.isMultiScale(reader, dataset);
 		final boolean isLabelMultiset = N5Types.isLabelMultisetType(reader, dataset, isMultiscale);
@@ -121,24 +147,26 @@ public class N5DataSource<D extends NativeType<D>, T extends Volatile<D> & Nativ
 		if (isLabelMultiset)
 		{
 			return isMultiscale
-			       ? (ImagesWithInvalidate[]) N5Data.openLabelMultisetMultiscale(reader, dataset, transform, globalCache, priority)
+			       ? (ImagesWithInvalidate[]) N5Data.openLabelMultisetMultiscale(reader, dataset, transform, globalCache, priority, fetchGroup)
 			       : new ImagesWithInvalidate[] {N5Data.openLabelMultiset(
 					       reader,
 					       dataset,
 					       transform,
 					       globalCache,
-					       priority)};
+					       priority,
+					       fetchGroup)};
 		}
 		else
 		{
 			return isMultiscale
-			       ? N5Data.openRawMultiscale(reader, dataset, transform, globalCache, priority)
+			       ? N5Data.openRawMultiscale(reader, dataset, transform, globalCache, priority, fetchGroup)
 			       : new ImagesWithInvalidate[] {N5Data.openRaw(
 					       reader,
 					       dataset,
 					       transform,
 					       globalCache,
-					       priority)};
+					       priority,
+					       fetchGroup)};
 		}
 	}
 }
@@ -8,6 +8,7 @@ import org.janelia.saalfeldlab.n5.N5FSReader;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
+import org.janelia.saalfeldlab.util.n5.CachedN5Reader;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -29,9 +30,11 @@ public interface N5Meta
 
 	static N5Meta fromReader(final N5Reader reader, final String dataset) throws ReflectionException
 	{
-		if (reader instanceof N5FSReader) { return new N5FSMeta((N5FSReader) reader, dataset); }
+		final N5Reader uncached = CachedN5Reader.unwrap(reader);
 
-		if (reader instanceof N5HDF5Reader) { return new N5HDF5Meta((N5HDF5Reader) reader, dataset); }
+		if (uncached instanceof N5FSReader) { return new N5FSMeta((N5FSReader) uncached, dataset); }
+
+		if (uncached instanceof N5HDF5Reader) { return new N5HDF5Meta((N5HDF5Reader) uncached, dataset); }
 
 		LOG.debug("Cannot create meta for reader of type {}", reader.getClass().getName());
 
@@ -1,25 +1,103 @@
 package org.janelia.saalfeldlab.paintera.id;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.LongStream;
 
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
+import org.janelia.saalfeldlab.util.n5.CachedN5Reader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * {@link IdService} that persists the highest id in use in attribute {@code "maxId"} of an N5 dataset.
+ * <p>
+ * Ids are reserved in blocks of {@code reservationSize} ids: Reserving a block updates {@code "maxId"} to the end of
+ * the block and ids are handed out from the current block without locking and without accessing the container. Ids
+ * that were reserved but not handed out before the service is discarded are not re-used.
+ * <p>
+ * Multiple services (e.g. multiple Paintera instances) may share the same dataset: For containers on the local file
+ * system, blocks are reserved while holding an exclusive lock on a reservation file inside the dataset. Other
+ * containers do not provide an atomic compare-and-set: Reservations are synchronized between services of the same
+ * container within this JVM only and a reservation fails if {@code "maxId"} cannot be read back after writing it. Such
+ * datasets must not be shared by multiple Paintera instances.
+ */
 public class N5IdService implements IdService
 {
 
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int DEFAULT_RESERVATION_SIZE = 10_000;
+
+	private static final String MAX_ID_KEY = "maxId";
+
+	private static final String RESERVATION_FILE = ".maxIdReservation";
+
+	private static final Map<Path, Object> RESERVATION_FILE_MONITORS = new ConcurrentHashMap<>();
+
+	/**
+	 * Ids {@code <= end} that are greater than {@code last} can be handed out.
+	 */
+	private static final class Block
+	{
+		private final AtomicLong last;
+
+		private final long end;
+
+		private Block(final long last, final long end)
+		{
+			this.last = new AtomicLong(last);
+			this.end = end;
+		}
+
+		private long lastHandedOut()
+		{
+			return Math.min(last.get(), end);
+		}
+	}
+
 	private final N5Writer n5;
 
 	private final String dataset;
 
-	private long next;
+	private final int reservationSize;
+
+	private volatile Block block;
+
+	public N5IdService(final N5Writer n5, final String dataset, final long maxId)
+	{
+		this(n5, dataset, maxId, DEFAULT_RESERVATION_SIZE);
+	}
 
-	public N5IdService(final N5Writer n5, final String dataset, final long next)
+	/**
+	 * @param n5 container
+	 * @param dataset dataset
+	 * @param maxId highest id in use
+	 * @param reservationSize reserve this many ids at a time
+	 */
+	public N5IdService(final N5Writer n5, final String dataset, final long maxId, final int reservationSize)
 	{
 		super();
+		if (reservationSize < 1)
+			throw new IllegalArgumentException("Need to reserve at least one id at a time: " + reservationSize);
 		this.n5 = n5;
 		this.dataset = dataset;
-		this.next = next;
+		this.reservationSize = reservationSize;
+		// nothing reserved yet
+		this.block = new Block(maxId, maxId);
 	}
 
 	public N5Writer getWriter() {
@@ -31,48 +109,150 @@ public class N5IdService implements IdService
 	}
 
 	@Override
-	public synchronized void invalidate(final long id)
+	public void invalidate(final long id)
+	{
+		while (true)
+		{
+			final Block current = this.block;
+			if (id <= current.lastHandedOut())
+				return;
+			if (id <= current.end)
+			{
+				current.last.accumulateAndGet(id, IdService::max);
+				return;
+			}
+			reserve(current, id, 1);
+		}
+	}
+
+	@Override
+	public long next()
 	{
-		final long oldNext = next;
-		next = IdService.max(next, id + 1);
-		if (next != oldNext)
+		while (true)
 		{
-			serializeMaxId();
+			final Block current = this.block;
+			final long id = current.last.incrementAndGet();
+			if (id <= current.end)
+				return id;
+			reserve(current, current.end, 1);
 		}
 	}
 
 	@Override
-	public synchronized long next()
+	public long[] next(final int n)
 	{
-		++next;
-		serializeMaxId();
-		return next;
+		while (true)
+		{
+			final Block current = this.block;
+			final long first = current.last.getAndAdd(n) + 1;
+			if (first + n - 1 <= current.end)
+				return LongStream.range(first, first + n).toArray();
+			reserve(current, current.end, n);
+		}
 	}
 
 	@Override
-	public synchronized long[] next(final int n)
+	public boolean isInvalidated(final long id)
 	{
-		final long[] ids = LongStream.range(next, next + n).toArray();
-		next += n;
-		serializeMaxId();
-		return ids;
+		return id <= block.lastHandedOut();
 	}
 
-	private void serializeMaxId()
+	/**
+	 * Replace {@code expected} with a new block that holds at least {@code minSize} ids greater than {@code minId},
+	 * unless another thread has replaced it already.
+	 */
+	private synchronized void reserve(final Block expected, final long minId, final int minSize)
 	{
+		if (this.block != expected)
+			return;
+		final int size = Math.max(reservationSize, minSize);
 		try
 		{
-			n5.setAttribute(dataset, "maxId", next);
+			final Optional<Path> reservationFile = reservationFile();
+			final long last = reservationFile.isPresent()
+					? reserveWithLock(reservationFile.get(), minId, size)
+					: reserveWithoutLock(minId, size);
+			LOG.debug("Reserved ids ({}, {}] in dataset {} of {}", last, last + size, dataset, n5);
+			this.block = new Block(last, last + size);
 		} catch (final IOException e)
 		{
 			throw new RuntimeException(e);
 		}
 	}
 
-	@Override
-	public boolean isInvalidated(final long id)
+	/**
+	 * @return last id before the reserved block
+	 */
+	private long reserveWithLock(final Path reservationFile, final long minId, final int size) throws IOException
 	{
-		return id < next;
+		// file locks are held per JVM, synchronize services within this JVM first
+		synchronized (RESERVATION_FILE_MONITORS.computeIfAbsent(reservationFile.toAbsolutePath().normalize(), p -> new Object()))
+		{
+			try (
+					final FileChannel channel = FileChannel.open(reservationFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+					final FileLock lock = channel.lock())
+			{
+				final long last = IdService.max(readMaxId(), minId);
+				n5.setAttribute(dataset, MAX_ID_KEY, last + size);
+				return last;
+			}
+		}
+	}
+
+	/**
+	 * Reserve without a lock that is visible to other processes. Services that share the container within this JVM
+	 * are synchronized on the container.
+	 *
+	 * @return last id before the reserved block
+	 * @throws IOException if {@code "maxId"} was modified concurrently
+	 */
+	private long reserveWithoutLock(final long minId, final int size) throws IOException
+	{
+		final N5Reader uncached = uncached();
+		synchronized (uncached)
+		{
+			final long last = IdService.max(readMaxId(), minId);
+			n5.setAttribute(dataset, MAX_ID_KEY, last + size);
+			final long maxId = readMaxId();
+			if (maxId != last + size)
+				throw new IOException(String.format(
+						"Concurrent id reservation in dataset %s of %s: expected %s to be %d but found %d",
+						dataset,
+						n5,
+						MAX_ID_KEY,
+						last + size,
+						maxId));
+			return last;
+		}
+	}
+
+	private long readMaxId() throws IOException
+	{
+		final Long maxId = uncached().getAttribute(dataset, MAX_ID_KEY, Long.class);
+		return maxId == null ? 0 : maxId;
+	}
+
+	/**
+	 * Read reservations of other services from the container, not from cache.
+	 */
+	private N5Reader uncached()
+	{
+		return CachedN5Reader.unwrap(n5);
+	}
+
+	private Optional<Path> reservationFile()
+	{
+		final N5Reader uncached = uncached();
+		if (!(uncached instanceof N5FSReader))
+			return Optional.empty();
+		try
+		{
+			return Optional.of(Paths.get(new N5FSMeta((N5FSReader) uncached, dataset).basePath(), dataset, RESERVATION_FILE));
+		} catch (final ReflectionException e)
+		{
+			LOG.debug("Unable to determine base path of {}, reserving ids without lock", n5, e);
+			return Optional.empty();
+		}
 	}
 
 }
@@ -0,0 +1,316 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import javafx.scene.paint.PhongMaterial;
+import javafx.scene.shape.CullFace;
+import javafx.scene.shape.DrawMode;
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import javafx.scene.shape.VertexFormat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Merge the meshes of many blocks into few {@link MeshView mesh views}. Vertices and normals of blocks are appended to
+ * staging buffers that are taken from a shared pool. A {@link MeshView} is created from the staging buffers, off the
+ * JavaFX application thread, when the buffers are full or on {@link #flush()}. Blocks that have been pending for
+ * longer than {@link #MAX_PENDING_NANOS} are emitted when blocks are added, or by {@link #flushExpired(long)}, which
+ * {@link MeshUploadScheduler} calls on a worker thread once it detects expired blocks in a pulse, i.e. blocks are shown
+ * after a short delay even if no more blocks are added. The buffers are returned to the pool right after, because {@link TriangleMesh} holds a copy of the
+ * data.
+ * <p>
+ * Blocks are added concurrently by mesh generation workers.
+ *
+ * @param <K> key type, each merged {@link MeshView} is emitted with the key of the first block that it contains. The
+ * keys of all other blocks in the view are not emitted, so consumers must not look up or remove views by the key of a
+ * block.
+ */
+public class MeshBatcher<K>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * Capacity of staging buffers in number of floats, i.e. three floats per vertex.
+	 */
+	public static final int BUFFER_CAPACITY = 3 * (1 << 17);
+
+	private static final int MAX_POOLED_BUFFERS = 2 * Runtime.getRuntime().availableProcessors();
+
+	private static final long MAX_PENDING_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+	private static final Queue<float[]> POOL = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * Face indices are the same for any mesh with one normal per vertex and a single texture coordinate: vertex
+	 * {@code k} uses point {@code k}, normal {@code k}, and texture coordinate {@code 0}. All meshes share a prefix of
+	 * this array.
+	 */
+	private static volatile int[] faces = new int[0];
+
+	private static class Pending<K>
+	{
+
+		private final K firstKey;
+
+		private final float[] vertices;
+
+		private final float[] normals;
+
+		private final int size;
+
+		private Pending(final K firstKey, final float[] vertices, final float[] normals, final int size)
+		{
+			this.firstKey = firstKey;
+			this.vertices = vertices;
+			this.normals = normals;
+			this.size = size;
+		}
+
+	}
+
+	private final BiConsumer<K, MeshView> emit;
+
+	private final Consumer<MeshBatcher<K>> flushWhenExpired;
+
+	private K firstKey = null;
+
+	private float[] vertices = null;
+
+	private float[] normals = null;
+
+	private int size = 0;
+
+	private long firstPendingTime = 0;
+
+	/**
+	 * Flush expired blocks in the pulses of the shared {@link MeshUploadScheduler}.
+	 *
+	 * @param emit called with each merged {@link MeshView}
+	 */
+	public MeshBatcher(final BiConsumer<K, MeshView> emit)
+	{
+		this(emit, MeshUploadScheduler.getInstance()::flushWhenExpired);
+	}
+
+	/**
+	 * @param emit called with each merged {@link MeshView}
+	 * @param flushWhenExpired called when this batcher starts to collect blocks, must call {@link #flushExpired(long)}
+	 * until it returns {@code false}
+	 */
+	public MeshBatcher(final BiConsumer<K, MeshView> emit, final Consumer<MeshBatcher<K>> flushWhenExpired)
+	{
+		this.emit = emit;
+		this.flushWhenExpired = flushWhenExpired;
+	}
+
+	/**
+	 * Append mesh of a block.
+	 *
+	 * @param key key of block
+	 * @param vertices three floats per vertex, three vertices per triangle
+	 * @param normals three floats per vertex
+	 */
+	public void add(final K key, final float[] vertices, final float[] normals)
+	{
+		if (vertices.length == 0)
+			return;
+
+		if (vertices.length > BUFFER_CAPACITY)
+		{
+			LOG.debug("Mesh for {} with {} vertices exceeds buffer capacity, emitting unmerged", key, vertices.length / 3);
+			emit.accept(key, makeMeshView(vertices, normals, vertices.length));
+			return;
+		}
+
+		final Pending<K> full;
+		final Pending<K> expired;
+		final boolean isStarted;
+		synchronized (this)
+		{
+			full = this.vertices != null && size + vertices.length > BUFFER_CAPACITY ? takePending() : null;
+			isStarted = this.vertices == null;
+			if (isStarted)
+			{
+				this.vertices = acquire();
+				this.normals = acquire();
+				this.firstKey = key;
+				this.firstPendingTime = System.nanoTime();
+			}
+			System.arraycopy(vertices, 0, this.vertices, size, vertices.length);
+			System.arraycopy(normals, 0, this.normals, size, normals.length);
+			size += vertices.length;
+			expired = isExpired(System.nanoTime()) ? takePending() : null;
+		}
+		// register after the blocks are pending so that they are seen by flushExpired
+		if (isStarted && expired == null)
+			flushWhenExpired.accept(this);
+		emit(full);
+		emit(expired);
+	}
+
+	/**
+	 * Emit all pending blocks if they have been pending for longer than {@link #MAX_PENDING_NANOS}.
+	 *
+	 * @param now current time as returned by {@link System#nanoTime()}
+	 * @return {@code true} if blocks are still pending, i.e. {@code flushExpired} needs to be called again
+	 */
+	public boolean flushExpired(final long now)
+	{
+		final Pending<K> expired;
+		synchronized (this)
+		{
+			if (this.vertices == null)
+				return false;
+			if (!isExpired(now))
+				return true;
+			expired = takePending();
+		}
+		emit(expired);
+		return false;
+	}
+
+	/**
+	 * @param now current time as returned by {@link System#nanoTime()}
+	 * @return {@code true} if blocks are pending that have not been pending for longer than {@link #MAX_PENDING_NANOS}
+	 * at {@code now}, i.e. {@link #flushExpired(long)} would not emit anything
+	 */
+	public synchronized boolean isWaiting(final long now)
+	{
+		return this.vertices != null && !isExpired(now);
+	}
+
+	/**
+	 * @return {@code true} if blocks are pending
+	 */
+	public synchronized boolean hasPending()
+	{
+		return this.vertices != null;
+	}
+
+	/**
+	 * Emit all pending blocks.
+	 */
+	public void flush()
+	{
+		final Pending<K> pending;
+		synchronized (this)
+		{
+			pending = this.vertices == null ? null : takePending();
+		}
+		emit(pending);
+	}
+
+	/**
+	 * Drop all pending blocks.
+	 */
+	public synchronized void discard()
+	{
+		if (this.vertices != null)
+		{
+			release(this.vertices);
+			release(this.normals);
+		}
+		reset();
+	}
+
+	/**
+	 * @param vertices three floats per vertex, three vertices per triangle
+	 * @param normals three floats per vertex
+	 * @param length use only the first {@code length} floats of {@code vertices} and {@code normals}
+	 * @return {@link MeshView} with the default mesh material and settings
+	 */
+	public static MeshView makeMeshView(final float[] vertices, final float[] normals, final int length)
+	{
+		final TriangleMesh mesh = new TriangleMesh();
+		mesh.getPoints().setAll(vertices, 0, length);
+		mesh.getNormals().setAll(normals, 0, length);
+		mesh.getTexCoords().setAll(0, 0);
+		mesh.setVertexFormat(VertexFormat.POINT_NORMAL_TEXCOORD);
+		mesh.getFaces().setAll(faces(length), 0, length);
+		final PhongMaterial material = Meshes.painteraPhongMaterial();
+		final MeshView mv = new MeshView(mesh);
+		mv.setOpacity(1.0);
+		mv.setCullFace(CullFace.FRONT);
+		mv.setMaterial(material);
+		mv.setDrawMode(DrawMode.FILL);
+		return mv;
+	}
+
+	private boolean isExpired(final long now)
+	{
+		return now - firstPendingTime > MAX_PENDING_NANOS;
+	}
+
+	private Pending<K> takePending()
+	{
+		final Pending<K> pending = new Pending<>(firstKey, vertices, normals, size);
+		reset();
+		return pending;
+	}
+
+	private void emit(final Pending<K> pending)
+	{
+		if (pending == null)
+			return;
+		LOG.trace("Merging {} vertices starting with block {}", pending.size / 3, pending.firstKey);
+		final MeshView mv = makeMeshView(pending.vertices, pending.normals, pending.size);
+		release(pending.vertices);
+		release(pending.normals);
+		emit.accept(pending.firstKey, mv);
+	}
+
+	private void reset()
+	{
+		this.vertices = null;
+		this.normals = null;
+		this.firstKey = null;
+		this.size = 0;
+	}
+
+	/**
+	 * @return face indices for at least {@code length / 3} vertices
+	 */
+	private static int[] faces(final int length)
+	{
+		int[] faces = MeshBatcher.faces;
+		if (faces.length >= length)
+			return faces;
+		synchronized (MeshBatcher.class)
+		{
+			faces = MeshBatcher.faces;
+			if (faces.length < length)
+			{
+				faces = new int[Math.max(length, BUFFER_CAPACITY)];
+				for (int i = 0, k = 0; i < faces.length; i += 3, ++k)
+				{
+					faces[i + 0] = k;
+					faces[i + 1] = k;
+					faces[i + 2] = 0;
+				}
+				MeshBatcher.faces = faces;
+			}
+			return faces;
+		}
+	}
+
+	private static float[] acquire()
+	{
+		final float[] buffer = POOL.poll();
+		return buffer == null ? new float[BUFFER_CAPACITY] : buffer;
+	}
+
+	private static void release(final float[] buffer)
+	{
+		// size of the pool is not tracked exactly, it only needs to be bounded
+		if (POOL.size() < MAX_POOLED_BUFFERS)
+			POOL.offer(buffer);
+	}
+
+}
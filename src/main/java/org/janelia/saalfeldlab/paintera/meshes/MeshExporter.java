@@ -1,106 +1,263 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
-import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import net.imglib2.Interval;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import org.janelia.saalfeldlab.util.HashWrapper;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Export meshes of segments to files. The mesh of each block is written to the output of its segment as soon as it
+ * is generated, i.e. meshes of segments are never materialized as a whole. Blocks of many segments are generated
+ * concurrently on a worker {@link Executor}. At most {@link #MAX_PENDING_BLOCKS} blocks are generated or waiting to
+ * be written at any time, which bounds memory use and the number of open outputs independently of the number of
+ * segments.
+ *
+ * @param <T> type of segment id
+ */
 public abstract class MeshExporter<T>
 {
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	protected int numberOfFaces = 0;
+	public static final int MAX_PENDING_BLOCKS = 4 * Runtime.getRuntime().availableProcessors();
 
+	/**
+	 * Run exports off the JavaFX application thread.
+	 */
+	public static final ThreadFactory EXPORT_THREADS = new NamedThreadFactory("mesh-export-%d", true);
+
+	/**
+	 * Output for the mesh of a single segment. Blocks are written in the order in which they are generated, calls to
+	 * {@link #write(float[], float[])} are never concurrent.
+	 */
+	protected interface Sink extends Closeable
+	{
+		/**
+		 * @param vertices three floats per vertex, three vertices per triangle
+		 * @param normals three floats per vertex
+		 * @throws IOException if writing fails
+		 */
+		void write(float[] vertices, float[] normals) throws IOException;
+	}
+
+	/**
+	 * @param path output path without file extension
+	 * @param id segment id
+	 * @return output for the mesh of {@code id}
+	 * @throws IOException if the output cannot be created
+	 */
+	protected abstract Sink open(String path, String id) throws IOException;
+
+	private class Export
+	{
+
+		private final String path;
+
+		private final String id;
+
+		private final AtomicInteger remainingBlocks;
+
+		private Sink sink = null;
+
+		private boolean failed = false;
+
+		private Export(final String path, final String id, final int numBlocks)
+		{
+			this.path = path;
+			this.id = id;
+			this.remainingBlocks = new AtomicInteger(numBlocks);
+		}
+
+		private synchronized void write(final Pair<float[], float[]> verticesAndNormals)
+		{
+			if (failed)
+				return;
+			assert verticesAndNormals.getA().length == verticesAndNormals.getB().length : "Vertices and normals " +
+					"must have the same size.";
+			try
+			{
+				if (sink == null)
+					sink = open(path, id);
+				sink.write(verticesAndNormals.getA(), verticesAndNormals.getB());
+			} catch (final IOException e)
+			{
+				fail(e);
+			}
+		}
+
+		private synchronized void fail(final Exception e)
+		{
+			if (!failed)
+				LOG.warn("Unable to export mesh for id {} to {}: {}", id, path, e.getMessage(), e);
+			failed = true;
+		}
+
+		private void blockDone()
+		{
+			if (remainingBlocks.decrementAndGet() > 0)
+				return;
+			synchronized (this)
+			{
+				try
+				{
+					if (sink != null)
+						sink.close();
+				} catch (final IOException e)
+				{
+					fail(e);
+				}
+				sink = null;
+			}
+			LOG.debug("Finished export of id {} to {}", id, path);
+		}
+
+	}
+
+	/**
+	 * Export meshes one block at a time on the calling thread.
+	 */
 	public void exportMesh(
 			final Function<T, Interval[]>[][] blockListCaches,
 			final Function<ShapeKey<T>, Pair<float[], float[]>>[][] meshCaches,
 			final T[] ids,
 			final int scale,
 			final String[] paths)
+	{
+		exportMesh(blockListCaches, meshCaches, ids, scale, paths, Runnable::run);
+	}
+
+	/**
+	 * Export meshes of multiple segments concurrently. Returns when all meshes are written.
+	 *
+	 * @param blockListCaches blocks for each segment and scale level
+	 * @param meshCaches block meshes for each segment and scale level
+	 * @param ids segment ids
+	 * @param scale scale level
+	 * @param paths output path without file extension for each segment
+	 * @param workers generate and write block meshes on these workers
+	 */
+	public void exportMesh(
+			final Function<T, Interval[]>[][] blockListCaches,
+			final Function<ShapeKey<T>, Pair<float[], float[]>>[][] meshCaches,
+			final T[] ids,
+			final int scale,
+			final String[] paths,
+			final Executor workers)
 	{
 		assert ids.length == paths.length;
-		for (int i = 0; i < ids.length; i++)
+		final Semaphore pendingBlocks = new Semaphore(MAX_PENDING_BLOCKS);
+		try
 		{
-			numberOfFaces = 0;
-			exportMesh(blockListCaches[i], meshCaches[i], ids[i], scale, paths[i]);
+			for (int i = 0; i < ids.length; i++)
+			{
+				final Function<ShapeKey<T>, Pair<float[], float[]>> meshCache = meshCaches[i][scale];
+				final Interval[] blocks = blocks(blockListCaches[i][scale], ids[i]);
+				LOG.debug("Exporting {} blocks for id {} to {}", blocks.length, ids[i], paths[i]);
+				final Export export = new Export(paths[i], ids[i].toString(), blocks.length);
+				for (final Interval block : blocks)
+				{
+					// ignoring simplification iterations parameter
+					// TODO consider smoothing parameters
+					final ShapeKey<T> key = new ShapeKey<>(
+							ids[i],
+							scale,
+							0,
+							0,
+							0,
+							Intervals.minAsLongArray(block),
+							Intervals.maxAsLongArray(block)
+					);
+					pendingBlocks.acquire();
+					try
+					{
+						workers.execute(() -> {
+							try
+							{
+								final Pair<float[], float[]> verticesAndNormals = meshCache.apply(key);
+								if (verticesAndNormals != null)
+									export.write(verticesAndNormals);
+							} catch (final RuntimeException e)
+							{
+								export.fail(e);
+							} finally
+							{
+								export.blockDone();
+								pendingBlocks.release();
+							}
+						});
+					} catch (final RuntimeException e)
+					{
+						pendingBlocks.release();
+						throw e;
+					}
+				}
+			}
+			// wait for all pending blocks
+			pendingBlocks.acquire(MAX_PENDING_BLOCKS);
+		} catch (final InterruptedException e)
+		{
+			LOG.warn("Interrupted while exporting meshes, exported meshes are incomplete");
+			Thread.currentThread().interrupt();
 		}
 	}
 
+	/**
+	 * Export mesh of a single segment one block at a time on the calling thread.
+	 */
 	public void exportMesh(
 			final Function<T, Interval[]>[] blockListCache,
 			final Function<ShapeKey<T>, Pair<float[], float[]>>[] meshCache,
 			final T id,
 			final int scaleIndex,
 			final String path)
+	{
+		exportMesh(blockListCache, meshCache, id, scaleIndex, path, Runnable::run);
+	}
+
+	/**
+	 * Export mesh of a single segment. Returns when the mesh is written.
+	 */
+	@SuppressWarnings("unchecked")
+	public void exportMesh(
+			final Function<T, Interval[]>[] blockListCache,
+			final Function<ShapeKey<T>, Pair<float[], float[]>>[] meshCache,
+			final T id,
+			final int scaleIndex,
+			final String path,
+			final Executor workers)
+	{
+		exportMesh(
+				new Function[][] {blockListCache},
+				new Function[][] {meshCache},
+				(T[]) new Object[] {id},
+				scaleIndex,
+				new String[] {path},
+				workers);
+	}
+
+	private static <T> Interval[] blocks(final Function<T, Interval[]> blockListCache, final T id)
 	{
 		// all blocks from id
 		final Set<HashWrapper<Interval>> blockSet = new HashSet<>();
-
 		Arrays
-				.stream(blockListCache[scaleIndex].apply(id))
+				.stream(blockListCache.apply(id))
 				.map(HashWrapper::interval)
 				.forEach(blockSet::add);
-
-		final Interval[] blocks = blockSet.stream().map(HashWrapper::getData).toArray(Interval[]::new);
-
-		// generate keys from blocks, scaleIndex, and id
-		final List<ShapeKey<T>> keys = new ArrayList<>();
-		for (final Interval block : blocks)
-		{
-			// ignoring simplification iterations parameter
-			// TODO consider smoothing parameters
-			keys.add(new ShapeKey<>(
-					id,
-					scaleIndex,
-					0,
-					0,
-					0,
-					Intervals.minAsLongArray(block),
-					Intervals.maxAsLongArray(block)
-			));
-		}
-
-		for (final ShapeKey<T> key : keys)
-		{
-			Pair<float[], float[]> verticesAndNormals;
-			try
-			{
-				verticesAndNormals = meshCache[scaleIndex].apply(key);
-				assert verticesAndNormals.getA().length == verticesAndNormals.getB().length : "Vertices and normals " +
-						"must have the same size.";
-				save(
-						path,
-						id.toString(),
-						verticesAndNormals.getA(),
-						verticesAndNormals.getB(),
-						hasFaces(numberOfFaces)
-				    );
-				numberOfFaces += verticesAndNormals.getA().length / 3;
-			} catch (final RuntimeException e)
-			{
-				LOG.warn("{} : {}", e.getClass(), e.getMessage());
-				e.printStackTrace();
-				throw e;
-			}
-		}
-
-	}
-
-	protected abstract void save(String path, String id, float[] vertices, float[] normals, boolean append);
-
-	public static boolean hasFaces(final int numberOfFaces)
-	{
-		return numberOfFaces > 0;
+		return blockSet.stream().map(HashWrapper::getData).toArray(Interval[]::new);
 	}
 
 }
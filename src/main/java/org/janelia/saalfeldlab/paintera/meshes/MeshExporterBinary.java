@@ -2,49 +2,77 @@ package org.janelia.saalfeldlab.paintera.meshes;
 
 import java.io.BufferedOutputStream;
 import java.io.DataOutputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.invoke.MethodHandles;
-
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 
+/**
+ * Export meshes as raw big endian floats, three vertices per triangle in {@code .vertices} and one normal per vertex
+ * in {@code .normals}. Triangles are written as generated, vertices are not shared between triangles.
+ *
+ * @param <T> type of segment id
+ */
 public class MeshExporterBinary<T> extends MeshExporter<T>
 {
-	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+	private static final int BUFFER_SIZE = 1 << 16;
 
-	@Override
-	protected void save(final String path, final String id, final float[] vertices, final float[] normals, final
-	boolean append)
+	private static class BinarySink implements Sink
 	{
-		save(path + ".vertices", vertices, append);
-		save(path + ".normals", normals, append);
-	}
 
-	private void save(final String path, final float[] info, final boolean append)
-	{
-		try
+		private final DataOutputStream vertices;
+
+		private final DataOutputStream normals;
+
+		private BinarySink(final DataOutputStream vertices, final DataOutputStream normals)
+		{
+			this.vertices = vertices;
+			this.normals = normals;
+		}
+
+		@Override
+		public void write(final float[] vertices, final float[] normals) throws IOException
+		{
+			write(this.vertices, vertices);
+			write(this.normals, normals);
+		}
+
+		@Override
+		public void close() throws IOException
 		{
-			final DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
-					path,
-					append
-			)));
 			try
 			{
-				for (int i = 0; i < info.length; i++)
-				{
-					stream.writeFloat(info[i]);
-				}
-				stream.close();
-			} catch (final IOException e)
+				vertices.close();
+			} finally
+			{
+				normals.close();
+			}
+		}
+
+		private static void write(final DataOutputStream stream, final float[] info) throws IOException
+		{
+			for (int i = 0; i < info.length; i++)
 			{
-				LOG.warn("Couldn't write data to the file {}: {}", path, e.getMessage());
+				stream.writeFloat(info[i]);
 			}
-		} catch (final FileNotFoundException e)
+		}
+	}
+
+	@Override
+	protected Sink open(final String path, final String id) throws IOException
+	{
+		final DataOutputStream vertices = open(path + ".vertices");
+		try
+		{
+			return new BinarySink(vertices, open(path + ".normals"));
+		} catch (final IOException e)
 		{
-			LOG.warn("Couldn't find file {}: {}", path, e.getMessage());
+			vertices.close();
+			throw e;
 		}
 	}
 
+	private static DataOutputStream open(final String path) throws IOException
+	{
+		return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(path), BUFFER_SIZE));
+	}
+
 }
@@ -1,77 +1,88 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Export meshes as Wavefront OBJ. Vertices that are shared between triangles, within a block or across the seams of
+ * neighboring blocks, are written only once, see {@link VertexIndex}.
+ *
+ * @param <T> type of segment id
+ */
 public class MeshExporterObj<T> extends MeshExporter<T>
 {
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
-	@Override
-	protected void save(String path, final String id, final float[] vertices, final float[] normals, final boolean
-			append)
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private static class ObjSink implements Sink
 	{
-		path = path + ".obj";
-		try
-		{
-			final FileWriter    writer    = new FileWriter(path, append);
-			final float[]       texCoords = new float[] {0.0f, 0.0f};
-			final StringBuilder sb        = new StringBuilder();
 
-			if (!append)
-			{
-				sb.append("# id: ").append(id).append("\n");
-			}
+		private final Writer writer;
 
-			final int numVertices = vertices.length;
-			for (int k = 0; k < numVertices; k += 3)
-			{
-				sb.append("\nv ").append(vertices[k + 0]).append(" ").append(vertices[k + 1]).append(" ").append(
-						vertices[k + 2]);
-			}
+		private final VertexIndex vertexIndex = new VertexIndex();
 
-			sb.append("\n");
-			final int numNormals = normals.length;
-			for (int k = 0; k < numNormals; k += 3)
-			{
-				sb.append("\nvn ").append(normals[k + 0]).append(" ").append(normals[k + 1]).append(" ").append
-						(normals[k + 2]);
-			}
+		private final int[] triangle = new int[3];
 
-			sb.append("\n");
-			final int numTexCoords = texCoords.length;
-			for (int k = 0; k < numTexCoords; k += 2)
-			{
-				sb.append("\nvt ").append(texCoords[k + 0]).append(" ").append(texCoords[k + 1]);
-			}
+		private ObjSink(final Writer writer, final String id) throws IOException
+		{
+			this.writer = writer;
+			writer.append("# id: ").append(id).append("\n");
+			writer.append("\nvt 0.0 0.0\n");
+		}
 
-			sb.append("\n");
-			for (int k = 0; k < numVertices / 3; k += 3)
+		@Override
+		public void write(final float[] vertices, final float[] normals) throws IOException
+		{
+			for (int k = 0; k < vertices.length; k += 9)
 			{
-				sb.append("\nf ").append(k + numberOfFaces + 1).append("/").append(1).append("/").append(k +
-						numberOfFaces + 1)
-						.append(" ").append(k + numberOfFaces + 2).append("/").append(1).append("/").append(k +
-						numberOfFaces + 2)
-						.append(" ").append(k + numberOfFaces + 3).append("/").append(1).append("/").append(k +
-						numberOfFaces + 3);
+				for (int v = 0, i = k; v < 3; ++v, i += 3)
+				{
+					final int size = vertexIndex.size();
+					triangle[v] = vertexIndex.indexOf(vertices[i], vertices[i + 1], vertices[i + 2]) + 1;
+					if (triangle[v] > size)
+					{
+						writer.append("v ").append(Float.toString(vertices[i + 0])).append(' ').append(Float.toString(vertices[i + 1])).append(' ').append(Float.toString(vertices[i + 2])).append('\n');
+						writer.append("vn ").append(Float.toString(normals[i + 0])).append(' ').append(Float.toString(normals[i + 1])).append(' ').append(Float.toString(normals[i + 2])).append('\n');
+					}
+				}
+				// triangles may degenerate if vertices are identical
+				if (triangle[0] == triangle[1] || triangle[1] == triangle[2] || triangle[0] == triangle[2])
+					continue;
+				writer.append("f ");
+				for (int v = 0; v < 3; ++v)
+					writer.append(Integer.toString(triangle[v])).append("/1/").append(Integer.toString(triangle[v])).append(v < 2 ? ' ' : '\n');
 			}
+		}
 
-			try
-			{
-				writer.append(sb.toString());
-				writer.close();
-			} catch (final IOException e)
-			{
-				LOG.warn("Couldn't write data to the file {}: {}", path, e.getMessage());
-			}
+		@Override
+		public void close() throws IOException
+		{
+			LOG.debug("Wrote {} unique vertices", vertexIndex.size());
+			writer.close();
+		}
+	}
 
+	@Override
+	protected Sink open(final String path, final String id) throws IOException
+	{
+		final Writer writer = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(Paths.get(path + ".obj")), StandardCharsets.UTF_8), BUFFER_SIZE);
+		try
+		{
+			return new ObjSink(writer, id);
 		} catch (final IOException e)
 		{
-			LOG.warn("Couldn't open the file {}: {}", path, e.getMessage());
+			writer.close();
+			throw e;
 		}
 	}
 }
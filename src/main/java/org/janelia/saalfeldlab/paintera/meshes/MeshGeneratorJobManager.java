@@ -1,12 +1,8 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
 import javafx.collections.ObservableMap;
-import javafx.scene.paint.PhongMaterial;
-import javafx.scene.shape.CullFace;
-import javafx.scene.shape.DrawMode;
 import javafx.scene.shape.MeshView;
 import javafx.scene.shape.TriangleMesh;
-import javafx.scene.shape.VertexFormat;
 import net.imglib2.Interval;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
@@ -94,7 +90,7 @@ public class MeshGeneratorJobManager<T>
 
 		private final InterruptibleFunction<ShapeKey<T>, Pair<float[], float[]>> getMesh;
 
-		private boolean isInterrupted = false;
+		private volatile boolean isInterrupted = false;
 
 		private final IntConsumer setNumberOfTasks;
 
@@ -104,6 +100,8 @@ public class MeshGeneratorJobManager<T>
 
 		private final List<ShapeKey<T>> keys = new ArrayList<>();
 
+		private final MeshBatcher<ShapeKey<T>> batcher = new MeshBatcher<>(this::upload);
+
 		public ManagementTask(
 				final T identifier,
 				final int scaleIndex,
@@ -250,14 +248,10 @@ public class MeshGeneratorJobManager<T>
 									if (!isInterrupted)
 									{
 										final Pair<float[], float[]> verticesAndNormals = getMesh.apply(key);
-										final MeshView               mv                 = makeMeshView(verticesAndNormals);
 										LOG.debug("Found {}/3 vertices and {}/3 normals", verticesAndNormals.getA().length, verticesAndNormals.getB().length);
-										synchronized (meshes)
+										if (!isInterrupted)
 										{
-											if (!isInterrupted)
-											{
-												meshes.put(key, mv);
-											}
+											batcher.add(key, verticesAndNormals.getA(), verticesAndNormals.getB());
 										}
 									}
 								} catch (final RuntimeException e)
@@ -303,6 +297,7 @@ public class MeshGeneratorJobManager<T>
 						else
 						{
 							countDownOnMeshes.await();
+							batcher.flush();
 						}
 					} catch (final InterruptedException e)
 					{
@@ -326,6 +321,7 @@ public class MeshGeneratorJobManager<T>
 					if (this.isInterrupted)
 					{
 						LOG.debug("Was interrupted, removing all meshes");
+						batcher.discard();
 						synchronized (meshes)
 						{
 							meshes.clear();
@@ -339,37 +335,26 @@ public class MeshGeneratorJobManager<T>
 
 		}
 
-	}
-
-	private static MeshView makeMeshView(final Pair<float[], float[]> verticesAndNormals)
-	{
-		final float[]      vertices = verticesAndNormals.getA();
-		final float[]      normals  = verticesAndNormals.getB();
-		final TriangleMesh mesh     = new TriangleMesh();
-		mesh.getPoints().addAll(vertices);
-		mesh.getNormals().addAll(normals);
-		mesh.getTexCoords().addAll(0, 0);
-		mesh.setVertexFormat(VertexFormat.POINT_NORMAL_TEXCOORD);
-		final int[] faceIndices = new int[vertices.length];
-		for (int i = 0, k = 0; i < faceIndices.length; i += 3, ++k)
+		/**
+		 * Add merged mesh to {@link #meshes} on the JavaFX application thread, rate-limited by
+		 * {@link MeshUploadScheduler}. Merged meshes are stored under the key of their first block, see
+		 * {@link MeshBatcher}. This is fine because {@link #meshes} is only ever cleared as a whole and iterated by
+		 * {@link MeshGenerator}, views are never looked up or removed by the key of a block.
+		 */
+		private void upload(final ShapeKey<T> key, final MeshView mv)
 		{
-			faceIndices[i + 0] = k;
-			faceIndices[i + 1] = k;
-			faceIndices[i + 2] = 0;
+			final long numVertices = ((TriangleMesh) mv.getMesh()).getPoints().size() / 3;
+			MeshUploadScheduler.getInstance().submit(() -> {
+				synchronized (meshes)
+				{
+					if (!isInterrupted)
+					{
+						meshes.put(key, mv);
+					}
+				}
+			}, numVertices);
 		}
-		mesh.getFaces().addAll(faceIndices);
-		final PhongMaterial material = Meshes.painteraPhongMaterial();
-		//						material.diffuseColorProperty().bind( color );
-		final MeshView mv = new MeshView(mesh);
-		mv.setOpacity(1.0);
-		//						synchronized ( this.isVisible )
-		//						{
-		//							mv.visibleProperty().bind( this.isVisible );
-		//						}
-		mv.setCullFace(CullFace.FRONT);
-		mv.setMaterial(material);
-		mv.setDrawMode(DrawMode.FILL);
-		return mv;
+
 	}
 
 }
@@ -1,6 +1,7 @@
 package org.janelia.saalfeldlab.paintera.meshes;
 
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.DoubleProperty;
@@ -40,6 +41,11 @@ public interface MeshManager<N, T>
 
 	ManagedMeshSettings managedMeshSettings();
 
+	/**
+	 * @return workers that generate meshes
+	 */
+	ExecutorService workers();
+
 	default void invalidateMeshCaches() {}
 
 }
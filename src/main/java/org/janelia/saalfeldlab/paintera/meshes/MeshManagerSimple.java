@@ -244,4 +244,10 @@ public class MeshManagerSimple<N, T> implements MeshManager<N, T>
 		throw new UnsupportedOperationException("not implemented yet");
 	}
 
+	@Override
+	public ExecutorService workers()
+	{
+		return this.workers;
+	}
+
 }
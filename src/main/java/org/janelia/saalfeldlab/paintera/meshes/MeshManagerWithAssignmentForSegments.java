@@ -339,6 +339,12 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		return this.meshSettings;
 	}
 
+	@Override
+	public ExecutorService workers()
+	{
+		return this.workers;
+	}
+
 	@Override
 	public void invalidateMeshCaches()
 	{
@@ -377,11 +383,12 @@ public class MeshManagerWithAssignmentForSegments implements MeshManager<Long, T
 		final D d = dataSource.getDataType();
 		final Function<TLongHashSet, Converter<D, BoolType>> segmentMaskGenerator = SegmentMaskGenerators.forType(d);
 
+		// precomputed meshes are loaded before stored meshes, only generated meshes are stored on disk
 		final Pair<InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, Invalidate<ShapeKey<TLongHashSet>>>[] meshCaches = CacheUtils
 				.segmentMeshCacheLoaders(
 						dataSource,
 						segmentMaskGenerator,
-						makeCache);
+						CacheUtils.persistSegmentMeshes(dataSource, CacheUtils.precomputedSegmentMeshes(dataSource, makeCache)));
 
 		final MeshManagerWithAssignmentForSegments manager = new MeshManagerWithAssignmentForSegments(
 				dataSource,
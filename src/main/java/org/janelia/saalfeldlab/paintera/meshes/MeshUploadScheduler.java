@@ -0,0 +1,183 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Apply mesh uploads, i.e. scene graph updates, on the JavaFX application thread with a limited budget per pulse.
+ * Uploads are queued from any thread and applied in submission order. In each pulse, uploads are applied until either
+ * the time budget or the vertex budget is exhausted, but at least one upload is applied per pulse. The remaining
+ * uploads are deferred to the next pulse so that rendering and user interaction are not blocked by segments with
+ * many blocks.
+ * <p>
+ * Each pulse also checks {@link MeshBatcher mesh batchers} for blocks that have been pending for too long, see
+ * {@link #flushWhenExpired(MeshBatcher)}. Expired blocks are merged into a {@link javafx.scene.shape.MeshView} on a
+ * worker thread, only the finished view is handed to the JavaFX application thread.
+ */
+public class MeshUploadScheduler
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final long DEFAULT_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(4);
+
+	private static final long DEFAULT_VERTEX_BUDGET = 1 << 19;
+
+	private static final ExecutorService FLUSH_WORKERS = Executors.newFixedThreadPool(
+			2,
+			new NamedThreadFactory("mesh-batch-flush-%d", true));
+
+	private static final MeshUploadScheduler INSTANCE = new MeshUploadScheduler(DEFAULT_TIME_BUDGET_NANOS, DEFAULT_VERTEX_BUDGET);
+
+	private static class Upload
+	{
+
+		private final Runnable apply;
+
+		private final long numVertices;
+
+		private Upload(final Runnable apply, final long numVertices)
+		{
+			this.apply = apply;
+			this.numVertices = numVertices;
+		}
+
+	}
+
+	private final long timeBudgetNanos;
+
+	private final long vertexBudget;
+
+	private final Queue<Upload> uploads = new ConcurrentLinkedQueue<>();
+
+	private final Set<MeshBatcher<?>> batchers = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean isRunning = new AtomicBoolean(false);
+
+	private final AnimationTimer timer = new AnimationTimer()
+	{
+		@Override
+		public void handle(final long now)
+		{
+			applyPending();
+		}
+	};
+
+	/**
+	 * @param timeBudgetNanos apply uploads for at most this long per pulse
+	 * @param vertexBudget apply uploads with at most this many vertices per pulse
+	 */
+	public MeshUploadScheduler(final long timeBudgetNanos, final long vertexBudget)
+	{
+		this.timeBudgetNanos = timeBudgetNanos;
+		this.vertexBudget = vertexBudget;
+	}
+
+	/**
+	 * @return scheduler that is shared by all meshes
+	 */
+	public static MeshUploadScheduler getInstance()
+	{
+		return INSTANCE;
+	}
+
+	/**
+	 * @param apply update scene graph, run on the JavaFX application thread
+	 * @param numVertices number of vertices that are added to the scene by {@code apply}
+	 */
+	public void submit(final Runnable apply, final long numVertices)
+	{
+		uploads.add(new Upload(apply, numVertices));
+		if (isRunning.compareAndSet(false, true))
+			Platform.runLater(timer::start);
+	}
+
+	/**
+	 * Check {@code batcher} for expired blocks in each pulse and call {@link MeshBatcher#flushExpired(long)} on a
+	 * worker thread once they expired, until {@code batcher} has no pending blocks.
+	 *
+	 * @param batcher flush blocks of this batcher when they expire
+	 */
+	public void flushWhenExpired(final MeshBatcher<?> batcher)
+	{
+		batchers.add(batcher);
+		if (isRunning.compareAndSet(false, true))
+			Platform.runLater(timer::start);
+	}
+
+	/**
+	 * @return number of uploads that have not been applied yet
+	 */
+	public int numPending()
+	{
+		return uploads.size();
+	}
+
+	private void applyPending()
+	{
+		final long start = System.nanoTime();
+		flushExpired(start);
+		long numVertices = 0;
+		int numApplied = 0;
+		for (Upload upload = uploads.peek(); upload != null; upload = uploads.peek())
+		{
+			if (numApplied > 0 && (numVertices + upload.numVertices > vertexBudget || System.nanoTime() - start > timeBudgetNanos))
+				break;
+			uploads.poll();
+			try
+			{
+				upload.apply.run();
+			} catch (final RuntimeException e)
+			{
+				LOG.warn("Unable to apply mesh upload: {}", e.getMessage(), e);
+			}
+			numVertices += upload.numVertices;
+			++numApplied;
+		}
+		LOG.trace("Applied {} uploads with {} vertices in {}ns, {} pending", numApplied, numVertices, System.nanoTime() - start, uploads.size());
+
+		if (isIdle())
+		{
+			// stop the timer to avoid requesting pulses while idle, restart if uploads were submitted concurrently
+			isRunning.set(false);
+			timer.stop();
+			if (!isIdle() && isRunning.compareAndSet(false, true))
+				timer.start();
+		}
+	}
+
+	private void flushExpired(final long now)
+	{
+		for (final MeshBatcher<?> batcher : batchers)
+		{
+			if (batcher.isWaiting(now))
+				continue;
+			// merging the blocks into a mesh view is expensive, only the finished view is submitted as an upload
+			batchers.remove(batcher);
+			FLUSH_WORKERS.execute(() -> {
+				// blocks may have been added after flushExpired, re-register unless the batcher registered itself already
+				if (batcher.flushExpired(now) || batcher.hasPending())
+					flushWhenExpired(batcher);
+			});
+		}
+	}
+
+	private boolean isIdle()
+	{
+		return uploads.isEmpty() && batchers.isEmpty();
+	}
+
+}
@@ -0,0 +1,96 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import java.util.Arrays;
+
+/**
+ * Assign consecutive indices to unique vertices. Vertices are compared by the exact bit patterns of their coordinates,
+ * which identifies vertices that are shared between triangles: marching cubes generates identical coordinates for the
+ * same vertex in all triangles that contain it, including triangles of neighboring blocks. Coordinates are stored in a
+ * single array and looked up through an open addressing hash table of indices, which needs between 20 and 40 bytes
+ * per unique vertex.
+ */
+public class VertexIndex
+{
+
+	private static final int EMPTY = -1;
+
+	private float[] coordinates = new float[3 * 1024];
+
+	private int[] table = emptyTable(2048);
+
+	private int size = 0;
+
+	/**
+	 * @return number of unique vertices
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * @return index of vertex {@code (x, y, z)}, assigns the next index, {@link #size()}, if the vertex has not been
+	 * seen before
+	 */
+	public int indexOf(final float x, final float y, final float z)
+	{
+		if (2 * size >= table.length)
+			rehash(2 * table.length);
+
+		final int mask = table.length - 1;
+		for (int slot = hash(x, y, z) & mask; ; slot = (slot + 1) & mask)
+		{
+			final int index = table[slot];
+			if (index == EMPTY)
+			{
+				if (3 * size >= coordinates.length)
+					coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+				coordinates[3 * size + 0] = x;
+				coordinates[3 * size + 1] = y;
+				coordinates[3 * size + 2] = z;
+				table[slot] = size;
+				return size++;
+			}
+			if (equals(index, x, y, z))
+				return index;
+		}
+	}
+
+	private boolean equals(final int index, final float x, final float y, final float z)
+	{
+		return Float.floatToIntBits(coordinates[3 * index + 0]) == Float.floatToIntBits(x) &&
+				Float.floatToIntBits(coordinates[3 * index + 1]) == Float.floatToIntBits(y) &&
+				Float.floatToIntBits(coordinates[3 * index + 2]) == Float.floatToIntBits(z);
+	}
+
+	private void rehash(final int capacity)
+	{
+		table = emptyTable(capacity);
+		final int mask = capacity - 1;
+		for (int index = 0; index < size; ++index)
+		{
+			int slot = hash(coordinates[3 * index + 0], coordinates[3 * index + 1], coordinates[3 * index + 2]) & mask;
+			while (table[slot] != EMPTY)
+				slot = (slot + 1) & mask;
+			table[slot] = index;
+		}
+	}
+
+	private static int[] emptyTable(final int capacity)
+	{
+		final int[] table = new int[capacity];
+		Arrays.fill(table, EMPTY);
+		return table;
+	}
+
+	private static int hash(final float x, final float y, final float z)
+	{
+		int h = Float.floatToIntBits(x);
+		h = 31 * h + Float.floatToIntBits(y);
+		h = 31 * h + Float.floatToIntBits(z);
+		// spread bits, coordinates of neighboring vertices differ mostly in low mantissa bits
+		h *= 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+}
@@ -1,6 +1,8 @@
 package org.janelia.saalfeldlab.paintera.meshes.cache;
 
+import java.io.IOException;
 import java.lang.invoke.MethodHandles;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -27,12 +29,19 @@ import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.util.ValuePair;
 import org.janelia.saalfeldlab.paintera.cache.Invalidate;
+import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.n5.BlockVersions;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5Meta;
 import org.janelia.saalfeldlab.paintera.meshes.Interruptible;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunctionAndCache;
 import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
 import org.janelia.saalfeldlab.util.HashWrapper;
+import org.janelia.saalfeldlab.util.PainteraCache;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.touk.throwing.ThrowingFunction;
@@ -358,6 +367,94 @@ public class CacheUtils
 
 	}
 
+	/**
+	 * Store segment meshes of {@code source} on disk, if {@code source} is backed by an N5 container on the local file
+	 * system, see {@link PersistentMeshCacheLoader} and {@link N5MeshFingerprint}. Each source stores its meshes in its
+	 * own directory in the {@link PainteraCache}, which is not cleaned up when the source is removed.
+	 *
+	 * @param source
+	 * @param makeCache
+	 * 		Build a {@link Cache} from a {@link CacheLoader}
+	 *
+	 * @return {@code makeCache} with {@link PersistentMeshCacheLoader} wrapped around each {@link CacheLoader}, or
+	 * {@code makeCache} if meshes of {@code source} cannot be stored on disk.
+	 */
+	public static <C> Function<CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, C> persistSegmentMeshes(
+			final DataSource<?, ?> source,
+			final Function<CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, C> makeCache)
+	{
+		final N5MeshFingerprint<TLongHashSet> fingerprint;
+		try
+		{
+			fingerprint = N5MeshFingerprint.forSource(source);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to determine datasets of source {}, meshes will not be stored on disk", source, e);
+			return makeCache;
+		}
+		if (fingerprint == null)
+		{
+			LOG.debug("Source {} is not backed by an N5 container on the local file system, meshes will not be stored on disk", source);
+			return makeCache;
+		}
+		final Path directory = PainteraCache.getCacheFile(
+				PersistentMeshCacheLoader.class,
+				PersistentMeshCacheLoader.directoryName(N5MeshFingerprint.sourceIdentifier(source)));
+		LOG.debug("Storing meshes of source {} in {}", source, directory);
+		return loader -> makeCache.apply(new PersistentMeshCacheLoader<>(loader, directory, TLongHashSet::toArray, fingerprint));
+	}
+
+	/**
+	 * Load segment meshes of {@code source} from {@link PrecomputedMeshes}, if {@code source} is backed by an N5
+	 * container that holds precomputed meshes in group {@link N5Helpers#PRECOMPUTED_MESHES} of the dataset, see
+	 * {@link PrecomputedMeshCacheLoader}.
+	 *
+	 * @param source
+	 * @param makeCache
+	 * 		Build a {@link Cache} from a {@link CacheLoader}
+	 *
+	 * @return {@code makeCache} with {@link PrecomputedMeshCacheLoader} wrapped around each {@link CacheLoader}, or
+	 * {@code makeCache} if there are no precomputed meshes for {@code source}.
+	 */
+	public static <C> Function<CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, C> precomputedSegmentMeshes(
+			final DataSource<?, ?> source,
+			final Function<CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, C> makeCache)
+	{
+		final MaskedSource<?, ?> maskedSource = source instanceof MaskedSource<?, ?> ? (MaskedSource<?, ?>) source : null;
+		final DataSource<?, ?> underlying = maskedSource == null ? source : maskedSource.underlyingSource();
+		if (!(underlying instanceof N5DataSource<?, ?>))
+			return makeCache;
+
+		final N5Meta meta = ((N5DataSource<?, ?>) underlying).meta();
+		final String group = meta.dataset() + "/" + N5Helpers.PRECOMPUTED_MESHES;
+		final PrecomputedMeshes meshes;
+		final BlockVersions[] labelVersions;
+		try
+		{
+			final N5Reader reader = meta.reader();
+			if (!PrecomputedMeshes.exists(reader, group))
+				return makeCache;
+			meshes = new PrecomputedMeshes(reader, group);
+			labelVersions = Arrays
+					.stream(N5Helpers.scaleLevelDatasets(reader, meta.dataset()))
+					.map(dataset -> BlockVersions.of(reader, dataset))
+					.toArray(BlockVersions[]::new);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to open precomputed meshes in {}, meshes will be generated: {}", group, e.getMessage());
+			return makeCache;
+		}
+
+		final AffineTransform3D[] transforms = new AffineTransform3D[source.getNumMipmapLevels()];
+		for (int level = 0; level < transforms.length; ++level)
+		{
+			transforms[level] = new AffineTransform3D();
+			source.getSourceTransform(0, level, transforms[level]);
+		}
+		LOG.debug("Loading meshes of source {} from precomputed meshes in {}", source, group);
+		return loader -> makeCache.apply(new PrecomputedMeshCacheLoader(loader, meshes, labelVersions, transforms, maskedSource));
+	}
+
 	/**
 	 * Utility method that wraps {@link Cache#get(Object)} as {@link Function}, catches any {@link Exception}, and
 	 * re-throws as {@link RuntimeException}
@@ -0,0 +1,220 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import net.imglib2.realtransform.AffineTransform3D;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.n5.BlockVersions;
+import org.janelia.saalfeldlab.paintera.data.n5.N5DataSource;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link PersistentMeshCacheLoader.ContentFingerprint} for label data stored in N5 containers on the local file
+ * system. The fingerprint of a mesh is computed from the {@link BlockVersions version}, size, and modification time of
+ * all blocks of the dataset that the mesh is generated from, and from the source transform. Blocks that are written
+ * by a commit change their version, meshes that contain those blocks are re-generated when requested.
+ * <p>
+ * While the source has uncommitted changes in its canvas, no fingerprint is available and meshes are not stored.
+ *
+ * @param <K> type of shape id
+ */
+public class N5MeshFingerprint<K> implements PersistentMeshCacheLoader.ContentFingerprint<K>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final Path[] datasetPaths;
+
+	private final DatasetAttributes[] attributes;
+
+	private final BlockVersions[] versions;
+
+	private final double[][] transforms;
+
+	private final MaskedSource<?, ?> maskedSource;
+
+	private N5MeshFingerprint(
+			final Path[] datasetPaths,
+			final DatasetAttributes[] attributes,
+			final BlockVersions[] versions,
+			final double[][] transforms,
+			final MaskedSource<?, ?> maskedSource)
+	{
+		this.datasetPaths = datasetPaths;
+		this.attributes = attributes;
+		this.versions = versions;
+		this.transforms = transforms;
+		this.maskedSource = maskedSource;
+	}
+
+	/**
+	 * @param source {@link N5DataSource} or {@link MaskedSource} on top of {@link N5DataSource}
+	 * @param <K> type of shape id
+	 * @return fingerprint for meshes of {@code source}, or {@code null} if {@code source} is not backed by an N5
+	 * container on the local file system
+	 * @throws IOException if the datasets of {@code source} cannot be listed
+	 */
+	public static <K> N5MeshFingerprint<K> forSource(final DataSource<?, ?> source) throws IOException
+	{
+		final MaskedSource<?, ?> maskedSource = source instanceof MaskedSource<?, ?> ? (MaskedSource<?, ?>) source : null;
+		final DataSource<?, ?> underlying = maskedSource == null ? source : maskedSource.underlyingSource();
+		if (!(underlying instanceof N5DataSource<?, ?>) || !(((N5DataSource<?, ?>) underlying).meta() instanceof N5FSMeta))
+			return null;
+
+		final N5FSMeta meta = (N5FSMeta) ((N5DataSource<?, ?>) underlying).meta();
+		final N5Reader reader = meta.reader();
+		final String[] levelDatasets = N5Helpers.scaleLevelDatasets(reader, meta.dataset());
+
+		final int numLevels = source.getNumMipmapLevels();
+		if (levelDatasets.length != numLevels)
+		{
+			LOG.debug("Number of datasets in {} does not match number of levels of source {}", meta.dataset(), source);
+			return null;
+		}
+
+		final Path[] datasetPaths = new Path[numLevels];
+		final DatasetAttributes[] attributes = new DatasetAttributes[numLevels];
+		final BlockVersions[] versions = new BlockVersions[numLevels];
+		final double[][] transforms = new double[numLevels][];
+		for (int level = 0; level < numLevels; ++level)
+		{
+			final String dataset = levelDatasets[level];
+			datasetPaths[level] = Paths.get(meta.basePath(), dataset);
+			attributes[level] = reader.getDatasetAttributes(dataset);
+			versions[level] = BlockVersions.of(reader, dataset);
+			final AffineTransform3D transform = new AffineTransform3D();
+			source.getSourceTransform(0, level, transform);
+			transforms[level] = transform.getRowPackedCopy();
+		}
+		return new N5MeshFingerprint<>(datasetPaths, attributes, versions, transforms, maskedSource);
+	}
+
+	/**
+	 * @param source {@link N5DataSource} or {@link MaskedSource} on top of {@link N5DataSource}
+	 * @return identifier of the container and dataset of {@code source}, or {@code null} if {@code source} is not
+	 * backed by an N5 container on the local file system
+	 */
+	public static String sourceIdentifier(final DataSource<?, ?> source)
+	{
+		final DataSource<?, ?> underlying = source instanceof MaskedSource<?, ?> ? ((MaskedSource<?, ?>) source).underlyingSource() : source;
+		if (!(underlying instanceof N5DataSource<?, ?>) || !(((N5DataSource<?, ?>) underlying).meta() instanceof N5FSMeta))
+			return null;
+		final N5FSMeta meta = (N5FSMeta) ((N5DataSource<?, ?>) underlying).meta();
+		return Paths.get(meta.basePath()).toAbsolutePath().normalize() + "?" + meta.dataset();
+	}
+
+	@Override
+	public byte[] fingerprint(final ShapeKey<K> key) throws IOException
+	{
+		final int level = key.scaleIndex();
+		if (level < 0 || level >= attributes.length)
+			return null;
+
+		if (maskedSource != null && maskedSource.getAffectedBlocks().length > 0)
+			return null;
+
+		final long[] dimensions = attributes[level].getDimensions();
+		final int[] blockSize = attributes[level].getBlockSize();
+		final long[] keyMin = key.min();
+		final long[] keyMax = key.max();
+		if (keyMin.length != dimensions.length)
+			return null;
+
+		// marching cubes reads one voxel beyond the interval of the key
+		final int n = dimensions.length;
+		final long[] minBlock = new long[n];
+		final long[] maxBlock = new long[n];
+		for (int d = 0; d < n; ++d)
+		{
+			minBlock[d] = Math.max(keyMin[d] - 1, 0) / blockSize[d];
+			maxBlock[d] = Math.min(keyMax[d] + 1, dimensions[d] - 1) / blockSize[d];
+			if (maxBlock[d] < minBlock[d])
+				return null;
+		}
+
+		final MessageDigest digest = sha256();
+		final ByteBuffer buffer = ByteBuffer.allocate(3 * Long.BYTES);
+		for (final double t : transforms[level])
+			update(digest, buffer, Double.doubleToLongBits(t));
+
+		final long[] position = minBlock.clone();
+		while (true)
+		{
+			final long version = versions[level].version(position);
+			if (version == BlockVersions.UNKNOWN)
+				return null;
+			update(digest, buffer, version, blockFileStats(datasetPaths[level], position));
+			int d = 0;
+			for (; d < n; ++d)
+			{
+				if (++position[d] <= maxBlock[d])
+					break;
+				position[d] = minBlock[d];
+			}
+			if (d == n)
+				break;
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * @return size and modification time of block file, or {@code -1} if the block does not exist
+	 */
+	private static long[] blockFileStats(final Path datasetPath, final long[] gridPosition) throws IOException
+	{
+		Path path = datasetPath;
+		for (final long p : gridPosition)
+			path = path.resolve(Long.toString(p));
+		try
+		{
+			final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+			return new long[] {attributes.size(), attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)};
+		} catch (final NoSuchFileException e)
+		{
+			return new long[] {-1, -1};
+		}
+	}
+
+	private static void update(final MessageDigest digest, final ByteBuffer buffer, final long value)
+	{
+		buffer.clear();
+		buffer.putLong(value);
+		digest.update(buffer.array(), 0, Long.BYTES);
+	}
+
+	private static void update(final MessageDigest digest, final ByteBuffer buffer, final long version, final long[] stats)
+	{
+		buffer.clear();
+		buffer.putLong(version).putLong(stats[0]).putLong(stats[1]);
+		digest.update(buffer.array(), 0, 3 * Long.BYTES);
+	}
+
+	private static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+}
@@ -0,0 +1,287 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/**
+ * {@link CacheLoader} that stores meshes generated by a delegate {@link CacheLoader} on disk and loads them from disk
+ * when the same {@link ShapeKey} is requested again, e.g. after re-opening a project or after switching back to a scale
+ * level. Each mesh is stored in a single file that is named after a hash of the {@link ShapeKey}. Along with the
+ * mesh, each file stores a {@link ContentFingerprint fingerprint} of the data that the mesh was generated from. A
+ * stored mesh is only used if its fingerprint matches the current fingerprint of the data, otherwise the mesh is
+ * generated again and the file is replaced. Meshes are not stored if the fingerprint changes while the mesh is
+ * generated.
+ * <p>
+ * Stored meshes are never deleted: files of outdated meshes are only replaced when the same {@link ShapeKey} is
+ * requested again, and files for shape ids that are not requested anymore, or for sources that were removed, remain
+ * in {@code directory}. The directory grows without bound and can be deleted at any time when Paintera is not
+ * running, e.g. to reclaim disk space.
+ * <p>
+ * File format (big endian): magic number, format version, fingerprint length in bytes, fingerprint, number of floats
+ * {@code n}, {@code n} vertex coordinates, {@code n} normal coordinates.
+ *
+ * @param <K> type of shape id
+ */
+public class PersistentMeshCacheLoader<K> implements CacheLoader<ShapeKey<K>, Pair<float[], float[]>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final int MAGIC = 0x504d5348;
+
+	/**
+	 * Increment when the file format or the mesh generation changes in a way that invalidates stored meshes.
+	 */
+	private static final int FORMAT_VERSION = 1;
+
+	private static final int HEADER_BYTES = 3 * Integer.BYTES;
+
+	/**
+	 * Fingerprint of the data that a mesh is generated from.
+	 *
+	 * @param <K> type of shape id
+	 */
+	public interface ContentFingerprint<K>
+	{
+		/**
+		 * @param key mesh key
+		 * @return fingerprint of the data that the mesh for {@code key} is generated from, or {@code null} if the
+		 * data cannot be fingerprinted, e.g. because it has uncommitted changes. Meshes are neither loaded from nor
+		 * stored to disk for {@code null} fingerprints.
+		 * @throws IOException if the data cannot be read
+		 */
+		byte[] fingerprint(ShapeKey<K> key) throws IOException;
+	}
+
+	private final CacheLoader<ShapeKey<K>, Pair<float[], float[]>> delegate;
+
+	private final Path directory;
+
+	private final Function<K, long[]> ids;
+
+	private final ContentFingerprint<K> fingerprint;
+
+	/**
+	 * @param delegate generate meshes that are not on disk
+	 * @param directory store meshes in this directory
+	 * @param ids fragment ids of a shape id, in any order
+	 * @param fingerprint fingerprint of the data that a mesh is generated from
+	 */
+	public PersistentMeshCacheLoader(
+			final CacheLoader<ShapeKey<K>, Pair<float[], float[]>> delegate,
+			final Path directory,
+			final Function<K, long[]> ids,
+			final ContentFingerprint<K> fingerprint)
+	{
+		this.delegate = delegate;
+		this.directory = directory;
+		this.ids = ids;
+		this.fingerprint = fingerprint;
+	}
+
+	@Override
+	public Pair<float[], float[]> get(final ShapeKey<K> key) throws Exception
+	{
+		final byte[] currentFingerprint;
+		try
+		{
+			currentFingerprint = fingerprint.fingerprint(key);
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to fingerprint data for {}, not using stored mesh", key, e);
+			return delegate.get(key);
+		}
+
+		if (currentFingerprint == null)
+			return delegate.get(key);
+
+		final Path file = file(key);
+		final Pair<float[], float[]> stored = read(file, currentFingerprint);
+		if (stored != null)
+		{
+			LOG.trace("Loaded mesh for {} from {}", key, file);
+			return stored;
+		}
+
+		final Pair<float[], float[]> mesh = delegate.get(key);
+		// interrupted mesh generation returns null, never store those
+		if (mesh != null && isUnchanged(key, currentFingerprint))
+			write(file, currentFingerprint, mesh);
+		return mesh;
+	}
+
+	/**
+	 * The data may change while a mesh is generated, e.g. when the user paints. A mesh is only stored if the
+	 * fingerprint after generation matches the fingerprint before generation, otherwise the mesh may have been
+	 * generated from data that does not match the stored fingerprint.
+	 *
+	 * @return {@code true} if the fingerprint for {@code key} still equals {@code expectedFingerprint}
+	 */
+	private boolean isUnchanged(final ShapeKey<K> key, final byte[] expectedFingerprint)
+	{
+		try
+		{
+			if (Arrays.equals(fingerprint.fingerprint(key), expectedFingerprint))
+				return true;
+			LOG.debug("Data changed while generating mesh for {}, not storing mesh", key);
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to fingerprint data for {}, not storing mesh", key, e);
+		}
+		return false;
+	}
+
+	/**
+	 * @param key mesh key
+	 * @return file that stores the mesh for {@code key}
+	 */
+	public Path file(final ShapeKey<K> key)
+	{
+		final long[] sortedIds = ids.apply(key.shapeId()).clone();
+		Arrays.sort(sortedIds);
+		final long[] min = key.min();
+		final long[] max = key.max();
+		final ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES * (sortedIds.length + min.length + max.length + 6));
+		buffer.putLong(FORMAT_VERSION);
+		buffer.putLong(key.scaleIndex());
+		buffer.putLong(key.simplificationIterations());
+		buffer.putLong(Double.doubleToLongBits(key.smoothingLambda()));
+		buffer.putLong(key.smoothingIterations());
+		buffer.putLong(sortedIds.length);
+		for (final long id : sortedIds)
+			buffer.putLong(id);
+		for (final long m : min)
+			buffer.putLong(m);
+		for (final long m : max)
+			buffer.putLong(m);
+		final String name = toHex(sha256().digest(buffer.array()));
+		return directory.resolve(name.substring(0, 2)).resolve(name);
+	}
+
+	/**
+	 * @param sourceIdentifier identifies the source of the meshes, e.g. path of container and dataset
+	 * @return directory name for {@code sourceIdentifier} that is safe to use on any file system
+	 */
+	public static String directoryName(final String sourceIdentifier)
+	{
+		return toHex(sha256().digest(sourceIdentifier.getBytes(StandardCharsets.UTF_8)));
+	}
+
+	private static Pair<float[], float[]> read(final Path file, final byte[] expectedFingerprint)
+	{
+		final ByteBuffer buffer;
+		try
+		{
+			buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+		} catch (final NoSuchFileException e)
+		{
+			return null;
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to read stored mesh from {}", file, e);
+			return null;
+		}
+
+		if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION)
+		{
+			LOG.debug("Ignoring {}: not a stored mesh or unsupported format", file);
+			return null;
+		}
+
+		final int fingerprintLength = buffer.getInt();
+		if (fingerprintLength != expectedFingerprint.length || buffer.remaining() < fingerprintLength + Integer.BYTES)
+			return null;
+		final byte[] storedFingerprint = new byte[fingerprintLength];
+		buffer.get(storedFingerprint);
+		if (!Arrays.equals(storedFingerprint, expectedFingerprint))
+		{
+			LOG.trace("Stored mesh in {} is outdated", file);
+			return null;
+		}
+
+		final int numFloats = buffer.getInt();
+		if (numFloats < 0 || buffer.remaining() != 2L * numFloats * Float.BYTES)
+		{
+			LOG.debug("Ignoring {}: unexpected size", file);
+			return null;
+		}
+		final float[] vertices = new float[numFloats];
+		final float[] normals = new float[numFloats];
+		buffer.asFloatBuffer().get(vertices).get(normals);
+		return new ValuePair<>(vertices, normals);
+	}
+
+	private static void write(final Path file, final byte[] fingerprint, final Pair<float[], float[]> mesh)
+	{
+		final float[] vertices = mesh.getA();
+		final float[] normals = mesh.getB();
+		final ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + fingerprint.length + Integer.BYTES + 2 * vertices.length * Float.BYTES);
+		buffer.putInt(MAGIC);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putInt(fingerprint.length);
+		buffer.put(fingerprint);
+		buffer.putInt(vertices.length);
+		buffer.asFloatBuffer().put(vertices).put(normals);
+
+		// write to temporary file first so that concurrent readers never see partially written meshes
+		Path tmp = null;
+		try
+		{
+			Files.createDirectories(file.getParent());
+			tmp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			Files.write(tmp, buffer.array());
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			LOG.trace("Stored mesh in {}", file);
+		} catch (final IOException e)
+		{
+			LOG.debug("Unable to store mesh in {}", file, e);
+			if (tmp != null)
+			{
+				try
+				{
+					Files.deleteIfExists(tmp);
+				} catch (final IOException ignored)
+				{
+				}
+			}
+		}
+	}
+
+	private static MessageDigest sha256()
+	{
+		try
+		{
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e)
+		{
+			// every Java platform is required to support SHA-256
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String toHex(final byte[] bytes)
+	{
+		final StringBuilder sb = new StringBuilder(2 * bytes.length);
+		for (final byte b : bytes)
+			sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+		return sb.toString();
+	}
+
+}
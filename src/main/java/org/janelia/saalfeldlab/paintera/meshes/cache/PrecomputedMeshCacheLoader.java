@@ -0,0 +1,168 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
+import org.janelia.saalfeldlab.paintera.data.n5.BlockVersions;
+import org.janelia.saalfeldlab.paintera.meshes.AverageNormals;
+import org.janelia.saalfeldlab.paintera.meshes.Normals;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.janelia.saalfeldlab.paintera.meshes.Smooth;
+import org.janelia.saalfeldlab.util.grids.Grids;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * {@link CacheLoader} that loads segment meshes from {@link PrecomputedMeshes} and merges the meshes of all fragments
+ * of the segment. Meshes are generated by a delegate {@link CacheLoader} instead if
+ * <ul>
+ *     <li>no precomputed meshes exist for the scale level or block of the requested mesh,</li>
+ *     <li>the requested mesh is not aligned with the blocks of the precomputed meshes,</li>
+ *     <li>the canvas has uncommitted changes within the block, or</li>
+ *     <li>the label block has been committed after the meshes were precomputed, as detected by its
+ *     {@link BlockVersions version}.</li>
+ * </ul>
+ * Smoothing settings of the requested mesh are applied to precomputed meshes in the same way as to generated meshes.
+ */
+public class PrecomputedMeshCacheLoader implements CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>> delegate;
+
+	private final PrecomputedMeshes meshes;
+
+	private final BlockVersions[] labelVersions;
+
+	private final AffineTransform3D[] transforms;
+
+	private final MaskedSource<?, ?> maskedSource;
+
+	/**
+	 * @param delegate generate meshes that cannot be loaded from {@code meshes}
+	 * @param meshes precomputed meshes
+	 * @param labelVersions versions of label blocks for each scale level
+	 * @param transforms source transform for each scale level
+	 * @param maskedSource check for uncommitted changes in this source, may be {@code null}
+	 */
+	public PrecomputedMeshCacheLoader(
+			final CacheLoader<ShapeKey<TLongHashSet>, Pair<float[], float[]>> delegate,
+			final PrecomputedMeshes meshes,
+			final BlockVersions[] labelVersions,
+			final AffineTransform3D[] transforms,
+			final MaskedSource<?, ?> maskedSource)
+	{
+		this.delegate = delegate;
+		this.meshes = meshes;
+		this.labelVersions = labelVersions;
+		this.transforms = transforms;
+		this.maskedSource = maskedSource;
+	}
+
+	@Override
+	public Pair<float[], float[]> get(final ShapeKey<TLongHashSet> key) throws Exception
+	{
+		final long[] gridPosition = precomputedBlock(key);
+		if (gridPosition == null || isModified(key))
+			return delegate.get(key);
+
+		final int level = key.scaleIndex();
+		final PrecomputedMeshes.Block block;
+		try
+		{
+			block = meshes.read(level, gridPosition);
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to read precomputed meshes for {}, generating mesh instead: {}", key, e.getMessage());
+			return delegate.get(key);
+		}
+
+		if (block == null || block.sourceVersion() != labelVersions[level].version(gridPosition))
+		{
+			LOG.debug("No up-to-date precomputed meshes for {}, generating mesh instead", key);
+			return delegate.get(key);
+		}
+
+		final float[] mesh = block.vertices(key.shapeId());
+		final double[] p = new double[3];
+		for (int i = 0; i < mesh.length; i += 3)
+		{
+			p[0] = mesh[i + 0];
+			p[1] = mesh[i + 1];
+			p[2] = mesh[i + 2];
+			transforms[level].apply(p, p);
+			mesh[i + 0] = (float) p[0];
+			mesh[i + 1] = (float) p[1];
+			mesh[i + 2] = (float) p[2];
+		}
+
+		final float[] normals = new float[mesh.length];
+		if (key.smoothingIterations() > 0)
+		{
+			final float[] smoothMesh = Smooth.smooth(mesh, key.smoothingLambda(), key.smoothingIterations());
+			System.arraycopy(smoothMesh, 0, mesh, 0, mesh.length);
+		}
+		Normals.normals(mesh, normals);
+		AverageNormals.averagedNormals(mesh, normals);
+
+		for (int i = 0; i < normals.length; ++i)
+		{
+			normals[i] *= -1;
+		}
+		return new ValuePair<>(mesh, normals);
+	}
+
+	/**
+	 * @return position of the precomputed block that matches the interval of {@code key} exactly, or {@code null}
+	 */
+	private long[] precomputedBlock(final ShapeKey<TLongHashSet> key)
+	{
+		final int level = key.scaleIndex();
+		if (level < 0 || level >= meshes.numLevels() || level >= labelVersions.length)
+			return null;
+
+		final long[] dimensions = meshes.attributes(level).getDimensions();
+		final int[] blockSize = meshes.attributes(level).getBlockSize();
+		final long[] min = key.min();
+		final long[] max = key.max();
+		if (min.length != dimensions.length)
+			return null;
+
+		final long[] gridPosition = new long[min.length];
+		for (int d = 0; d < min.length; ++d)
+		{
+			if (min[d] % blockSize[d] != 0 || max[d] != Math.min(min[d] + blockSize[d], dimensions[d]) - 1)
+				return null;
+			gridPosition[d] = min[d] / blockSize[d];
+		}
+		return gridPosition;
+	}
+
+	/**
+	 * @return {@code true} if the canvas has uncommitted changes within the interval of {@code key}. Painting any label,
+	 * not only fragments of {@code key}, may remove voxels from the fragments of {@code key}.
+	 */
+	private boolean isModified(final ShapeKey<TLongHashSet> key)
+	{
+		if (maskedSource == null || maskedSource.getAffectedBlocks().length == 0)
+			return false;
+
+		final int level = key.scaleIndex();
+		final CellGrid grid = maskedSource.getCellGrid(0, level);
+		final TLongSet modifiedBlocks = maskedSource.getModifiedBlocks(level);
+		for (final long block : Grids.getIntersectingBlocks(key.min(), key.max(), grid))
+			if (modifiedBlocks.contains(block))
+				return true;
+		return false;
+	}
+
+}
@@ -0,0 +1,276 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.set.TLongSet;
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Meshes that were generated offline, e.g. by a batch pipeline, and stored in an N5 group. The group contains one
+ * dataset per scale level, {@code s0}, {@code s1}, ..., with the same dimensions and block size as the label data at
+ * that scale level. Each block of such a dataset is a variable length {@link DataType#INT8} block that holds the
+ * meshes of all fragments within the corresponding block of the label data, i.e. all meshes of a block are read with
+ * a single N5 read. The meshes of a segment are merged from the meshes of its fragments.
+ * <p>
+ * Block format (big endian):
+ * <ol>
+ *     <li>{@code int} format version</li>
+ *     <li>{@code long} {@link org.janelia.saalfeldlab.paintera.data.n5.BlockVersions version} of the label block that
+ *     the meshes were generated from, {@code 0} if the label block has never been written by Paintera</li>
+ *     <li>{@code int} number of fragments {@code n}</li>
+ *     <li>{@code long[n]} fragment ids in ascending order</li>
+ *     <li>{@code int[n + 1]} offsets of the meshes of each fragment into the vertex array, in number of floats</li>
+ *     <li>{@code float[]} vertices, three floats per vertex, three vertices per triangle, in voxel coordinates of the
+ *     scale level</li>
+ * </ol>
+ */
+public class PrecomputedMeshes
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final int FORMAT_VERSION = 1;
+
+	/**
+	 * Meshes of all fragments in a single block.
+	 */
+	public static class Block
+	{
+
+		private final long sourceVersion;
+
+		private final long[] ids;
+
+		private final int[] offsets;
+
+		private final FloatBuffer vertices;
+
+		private Block(final long sourceVersion, final long[] ids, final int[] offsets, final FloatBuffer vertices)
+		{
+			this.sourceVersion = sourceVersion;
+			this.ids = ids;
+			this.offsets = offsets;
+			this.vertices = vertices;
+		}
+
+		/**
+		 * @return version of the label block that the meshes were generated from
+		 */
+		public long sourceVersion()
+		{
+			return sourceVersion;
+		}
+
+		/**
+		 * @param fragments merge meshes of these fragments, fragments that are not in this block are ignored
+		 * @return concatenated vertices of all {@code fragments} in this block
+		 */
+		public float[] vertices(final TLongSet fragments)
+		{
+			final int[] indices;
+			// look up whichever is smaller: fragments in this block or requested fragments
+			if (fragments.size() < ids.length)
+				indices = Arrays.stream(fragments.toArray()).mapToInt(id -> Arrays.binarySearch(ids, id)).filter(i -> i >= 0).sorted().toArray();
+			else
+				indices = IntStream.range(0, ids.length).filter(i -> fragments.contains(ids[i])).toArray();
+
+			int size = 0;
+			for (final int i : indices)
+				size += offsets[i + 1] - offsets[i];
+			final float[] merged = new float[size];
+			for (int i = 0, offset = 0; i < indices.length; ++i)
+			{
+				final int index = indices[i];
+				final int length = offsets[index + 1] - offsets[index];
+				((FloatBuffer) vertices.duplicate().position(offsets[index])).get(merged, offset, length);
+				offset += length;
+			}
+			return merged;
+		}
+
+	}
+
+	private final N5Reader reader;
+
+	private final String[] datasets;
+
+	private final DatasetAttributes[] attributes;
+
+	/**
+	 * @param reader container
+	 * @param group contains one dataset per scale level
+	 * @throws IOException if the datasets cannot be listed
+	 */
+	public PrecomputedMeshes(final N5Reader reader, final String group) throws IOException
+	{
+		this.reader = reader;
+		this.datasets = Arrays
+				.stream(N5Helpers.listAndSortScaleDatasets(reader, group))
+				.map(s -> group + "/" + s)
+				.toArray(String[]::new);
+		this.attributes = new DatasetAttributes[datasets.length];
+		for (int level = 0; level < datasets.length; ++level)
+			this.attributes[level] = reader.getDatasetAttributes(datasets[level]);
+		LOG.debug("Found precomputed meshes for {} scale levels in {}", datasets.length, group);
+	}
+
+	public int numLevels()
+	{
+		return datasets.length;
+	}
+
+	public DatasetAttributes attributes(final int level)
+	{
+		return attributes[level];
+	}
+
+	/**
+	 * @param level scale level
+	 * @param gridPosition position of block in cell grid
+	 * @return meshes of all fragments in block, or {@code null} if the block does not exist
+	 * @throws IOException if the block cannot be read or is malformed
+	 */
+	public Block read(final int level, final long[] gridPosition) throws IOException
+	{
+		final DataBlock<?> block = reader.readBlock(datasets[level], attributes[level], gridPosition);
+		if (block == null)
+			return null;
+
+		final ByteBuffer buffer = block.toByteBuffer();
+		if (buffer.remaining() < Integer.BYTES + Long.BYTES + Integer.BYTES)
+			throw malformed(level, gridPosition, "header too short: " + buffer.remaining() + " bytes");
+		final int version = buffer.getInt();
+		if (version != FORMAT_VERSION)
+			throw new IOException(String.format(
+					"Unsupported format version %d of block %s in %s",
+					version,
+					Arrays.toString(gridPosition),
+					datasets[level]));
+		final long sourceVersion = buffer.getLong();
+		final int numFragments = buffer.getInt();
+		if (numFragments < 0)
+			throw malformed(level, gridPosition, "negative number of fragments " + numFragments);
+		if (buffer.remaining() < numFragments * (long) Long.BYTES + (numFragments + 1L) * Integer.BYTES)
+			throw malformed(level, gridPosition, "too short for " + numFragments + " fragments");
+		final long[] ids = new long[numFragments];
+		final int[] offsets = new int[numFragments + 1];
+		buffer.asLongBuffer().get(ids);
+		buffer.position(buffer.position() + numFragments * Long.BYTES);
+		buffer.asIntBuffer().get(offsets);
+		buffer.position(buffer.position() + offsets.length * Integer.BYTES);
+		for (int i = 1; i < numFragments; ++i)
+			if (ids[i] <= ids[i - 1])
+				throw malformed(level, gridPosition, "fragment ids not in ascending order");
+		if (offsets[0] != 0)
+			throw malformed(level, gridPosition, "first offset is " + offsets[0]);
+		for (int i = 0; i < numFragments; ++i)
+			if (offsets[i + 1] < offsets[i])
+				throw malformed(level, gridPosition, "decreasing offsets");
+		final FloatBuffer vertices = buffer.asFloatBuffer();
+		if (vertices.remaining() != offsets[numFragments])
+			throw new IOException(String.format(
+					"Unexpected number of vertices in block %s in %s: %d",
+					Arrays.toString(gridPosition),
+					datasets[level],
+					vertices.remaining()));
+		return new Block(sourceVersion, ids, offsets, vertices);
+	}
+
+	private IOException malformed(final int level, final long[] gridPosition, final String reason)
+	{
+		return new IOException(String.format("Malformed block %s in %s: %s", Arrays.toString(gridPosition), datasets[level], reason));
+	}
+
+	/**
+	 * @param reader container
+	 * @param group group
+	 * @return {@code true} if {@code group} contains precomputed meshes for at least one scale level
+	 * @throws IOException if {@code group} cannot be listed
+	 */
+	public static boolean exists(final N5Reader reader, final String group) throws IOException
+	{
+		return reader.exists(group) && N5Helpers.listAndSortScaleDatasets(reader, group).length > 0;
+	}
+
+	/**
+	 * Create the dataset of a scale level.
+	 *
+	 * @param writer container
+	 * @param group group
+	 * @param level scale level
+	 * @param dimensions dimensions of label data at {@code level}
+	 * @param blockSize block size of label data at {@code level}
+	 * @throws IOException if the dataset cannot be created
+	 */
+	public static void createLevel(
+			final N5Writer writer,
+			final String group,
+			final int level,
+			final long[] dimensions,
+			final int[] blockSize) throws IOException
+	{
+		writer.createDataset(group + "/s" + level, new DatasetAttributes(dimensions, blockSize, DataType.INT8, new GzipCompression()));
+	}
+
+	/**
+	 * Write the meshes of all fragments in a block.
+	 *
+	 * @param writer container
+	 * @param group group
+	 * @param level scale level
+	 * @param gridPosition position of block in cell grid
+	 * @param sourceVersion version of the label block that the meshes were generated from
+	 * @param meshes vertices of each fragment in voxel coordinates of {@code level}
+	 * @throws IOException if the block cannot be written
+	 */
+	public static void write(
+			final N5Writer writer,
+			final String group,
+			final int level,
+			final long[] gridPosition,
+			final long sourceVersion,
+			final TLongObjectMap<float[]> meshes) throws IOException
+	{
+		final String dataset = group + "/s" + level;
+		final DatasetAttributes attributes = writer.getDatasetAttributes(dataset);
+		final long[] ids = meshes.keys();
+		Arrays.sort(ids);
+		final int[] offsets = new int[ids.length + 1];
+		for (int i = 0; i < ids.length; ++i)
+			offsets[i + 1] = offsets[i] + meshes.get(ids[i]).length;
+
+		final ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES + Long.BYTES + Integer.BYTES + ids.length * Long.BYTES + offsets.length * Integer.BYTES + offsets[ids.length] * Float.BYTES);
+		buffer.putInt(FORMAT_VERSION);
+		buffer.putLong(sourceVersion);
+		buffer.putInt(ids.length);
+		for (final long id : ids)
+			buffer.putLong(id);
+		for (final int offset : offsets)
+			buffer.putInt(offset);
+		final FloatBuffer vertices = buffer.asFloatBuffer();
+		for (final long id : ids)
+			vertices.put(meshes.get(id));
+
+		final long[] dimensions = attributes.getDimensions();
+		final int[] blockSize = attributes.getBlockSize();
+		final int[] size = new int[blockSize.length];
+		Arrays.setAll(size, d -> (int) Math.min(blockSize[d], dimensions[d] - gridPosition[d] * blockSize[d]));
+		writer.writeBlock(dataset, attributes, new ByteArrayDataBlock(size, gridPosition, buffer.array()));
+	}
+
+}
@@ -203,6 +203,7 @@ public class Properties implements TransformListener<AffineTransform3D>
 					properties.orthoSliceConfig.showTopLeftProperty().set(conf.showTopLeftProperty().get());
 					properties.orthoSliceConfig.showTopRightProperty().set(conf.showTopRightProperty().get());
 					properties.orthoSliceConfig.showBottomLeftProperty().set(conf.showBottomLeftProperty().get());
+					properties.orthoSliceConfig.textureDownsamplingFactorProperty().set(conf.textureDownsamplingFactorProperty().get());
 				});
 		Optional
 				.ofNullable(serializedProperties.get(NAVIGATION_CONFIG_KEY))
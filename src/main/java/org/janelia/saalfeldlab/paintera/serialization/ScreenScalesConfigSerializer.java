@@ -7,6 +7,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import bdv.fx.viewer.render.AdaptiveScreenScaleController;
 import org.janelia.saalfeldlab.paintera.config.ScreenScalesConfig;
 import org.scijava.plugin.Plugin;
 import org.slf4j.Logger;
@@ -23,6 +24,16 @@ public class ScreenScalesConfigSerializer implements PainteraSerialization.Paint
 
 	public static final String SCALES_KEY = "scales";
 
+	public static final String ADAPTIVE_KEY = "adaptive";
+
+	public static final String TARGET_FRAME_TIME_MILLIS_KEY = "targetFrameTimeMillis";
+
+	public static final String COST_MODEL_KEY = "costModel";
+
+	public static final String NANOS_PER_SOURCE_PIXEL_KEY = "nanosPerSourcePixel";
+
+	public static final String IO_NANOS_KEY = "ioNanos";
+
 	@Override
 	public ScreenScalesConfig deserialize(
 			JsonElement jsonElement,
@@ -41,6 +52,23 @@ public class ScreenScalesConfigSerializer implements PainteraSerialization.Paint
 				.map(el -> (double[]) jsonDeserializationContext.deserialize(el, double[].class))
 				.map(ScreenScalesConfig.ScreenScales::new)
 				.ifPresent(config.screenScalesProperty()::set);
+		Optional
+				.ofNullable(obj.get(ADAPTIVE_KEY))
+				.map(JsonElement::getAsBoolean)
+				.ifPresent(config.adaptiveProperty()::set);
+		Optional
+				.ofNullable(obj.get(TARGET_FRAME_TIME_MILLIS_KEY))
+				.map(JsonElement::getAsDouble)
+				.ifPresent(config.targetFrameTimeMillisProperty()::set);
+		Optional
+				.ofNullable(obj.get(COST_MODEL_KEY))
+				.filter(JsonElement::isJsonObject)
+				.map(JsonElement::getAsJsonObject)
+				.filter(model -> model.has(NANOS_PER_SOURCE_PIXEL_KEY) && model.has(IO_NANOS_KEY))
+				.map(model -> new AdaptiveScreenScaleController.CostModel(
+						model.get(NANOS_PER_SOURCE_PIXEL_KEY).getAsDouble(),
+						model.get(IO_NANOS_KEY).getAsDouble()))
+				.ifPresent(config.screenScaleController()::setModel);
 		return config;
 	}
 
@@ -52,6 +80,16 @@ public class ScreenScalesConfigSerializer implements PainteraSerialization.Paint
 				.ofNullable(screenScalesConfig.screenScalesProperty().get())
 				.map(scales -> scales.getScalesCopy())
 				.ifPresent(scales -> obj.add(SCALES_KEY, jsonSerializationContext.serialize(scales)));
+		obj.addProperty(ADAPTIVE_KEY, screenScalesConfig.adaptiveProperty().get());
+		obj.addProperty(TARGET_FRAME_TIME_MILLIS_KEY, screenScalesConfig.targetFrameTimeMillisProperty().get());
+		Optional
+				.ofNullable(screenScalesConfig.screenScaleController().getModel())
+				.ifPresent(model -> {
+					final JsonObject modelObj = new JsonObject();
+					modelObj.addProperty(NANOS_PER_SOURCE_PIXEL_KEY, model.getNanosPerSourcePixel());
+					modelObj.addProperty(IO_NANOS_KEY, model.getIoNanos());
+					obj.add(COST_MODEL_KEY, modelObj);
+				});
 		return obj;
 	}
 
@@ -12,6 +12,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParseException;
 import net.imglib2.type.numeric.ARGBType;
 import org.ejml.factory.DecompositionFactory;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.serialization.PainteraSerialization;
 import org.janelia.saalfeldlab.paintera.serialization.SerializationHelpers;
 import org.janelia.saalfeldlab.paintera.serialization.StatefulSerializer;
@@ -31,10 +32,18 @@ public class ThresholdingSourceStateDeserializer implements JsonDeserializer<Thr
 
 	private final IntFunction<SourceState<?, ?>> dependsOn;
 
+	private final GlobalCache globalCache;
+
 	public ThresholdingSourceStateDeserializer(final IntFunction<SourceState<?, ?>> dependsOn)
+	{
+		this(dependsOn, null);
+	}
+
+	public ThresholdingSourceStateDeserializer(final IntFunction<SourceState<?, ?>> dependsOn, final GlobalCache globalCache)
 	{
 		super();
 		this.dependsOn = dependsOn;
+		this.globalCache = globalCache;
 	}
 
 	@Plugin(type = StatefulSerializer.DeserializerFactory.class)
@@ -49,7 +58,7 @@ public class ThresholdingSourceStateDeserializer implements JsonDeserializer<Thr
 				final Supplier<String> projectDirectory,
 				final IntFunction<SourceState<?, ?>> dependencyFromIndex)
 		{
-			return new ThresholdingSourceStateDeserializer(dependencyFromIndex);
+			return new ThresholdingSourceStateDeserializer(dependencyFromIndex, arguments.globalCache);
 		}
 
 		@Override
@@ -84,7 +93,8 @@ public class ThresholdingSourceStateDeserializer implements JsonDeserializer<Thr
 
 		final ThresholdingSourceState<?, ?> state = new ThresholdingSourceState(
 				map.get(ThresholdingSourceStateSerializer.NAME_KEY).getAsString(),
-				(RawSourceState) dependsOnState
+				(RawSourceState) dependsOnState,
+				globalCache
 		);
 
 		final JsonObject converterMap = map.get(ThresholdingSourceStateSerializer.CONVERTER_KEY).getAsJsonObject();
@@ -0,0 +1,402 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.IterableInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.Cache;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.SingleCellArrayImg;
+import net.imglib2.cache.volatiles.VolatileCache;
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
+import net.imglib2.img.cell.AbstractCellImg;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.BooleanType;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.label.LabelMultisetType;
+import net.imglib2.type.label.LabelMultisetType.Entry;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.volatiles.VolatileUnsignedByteType;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.util.Pair;
+import net.imglib2.util.Triple;
+import net.imglib2.util.Util;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.cache.Invalidate;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.janelia.saalfeldlab.paintera.cache.global.InvalidAccessException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongConsumer;
+import java.util.function.Predicate;
+
+/**
+ * Intersection of a thresholded source with the selected fragments of a label source that is updated incrementally
+ * when the threshold or the selection change.
+ * <p>
+ * A cell of the intersection contains all thresholded voxels of the cell that are connected (6-neighborhood, within the
+ * cell) to a thresholded voxel that contains a selected fragment. For each cell, the thresholded voxels, the label ids
+ * that occur in the cell, and the voxels that contain a selected fragment are cached separately:
+ * <ul>
+ *     <li>A change of the threshold only invalidates the thresholded voxels.</li>
+ *     <li>A change of the selection only invalidates the selected voxels of cells that contain a fragment that was
+ *     added to or removed from the selection.</li>
+ *     <li>Cells that do not contain any selected fragment are empty for any threshold and are never invalidated when
+ *     the threshold changes.</li>
+ * </ul>
+ *
+ * @param <D> label type
+ * @param <B> thresholded type
+ */
+public class IncrementalLabelIntersection<D extends IntegerType<D>, B extends BooleanType<B>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * Bit set without any set bits.
+	 */
+	private static final long[] EMPTY = new long[0];
+
+	private class Level
+	{
+
+		private final CellGrid grid;
+
+		private final RandomAccessible<B> thresholded;
+
+		private final RandomAccessibleInterval<D> labels;
+
+		private final Cache<Long, long[]> thresholdedVoxels;
+
+		private final Invalidate<Long> invalidateThresholdedVoxels;
+
+		private final Cache<Long, long[]> labelIds;
+
+		private final Invalidate<Long> invalidateLabelIds;
+
+		private final Cache<Long, long[]> selectedVoxels;
+
+		private final Invalidate<Long> invalidateSelectedVoxels;
+
+		private final CachedCellImg<UnsignedByteType, VolatileByteArray> data;
+
+		private final RandomAccessibleInterval<VolatileUnsignedByteType> volatileData;
+
+		/**
+		 * Invalidates both {@link #data} and {@link #volatileData}.
+		 */
+		private final Invalidate<Long> invalidateIntersection;
+
+		private Level(
+				final RandomAccessibleInterval<B> thresholded,
+				final RandomAccessibleInterval<D> labels,
+				final GlobalCache globalCache,
+				final int priority) throws InvalidAccessException
+		{
+			this.grid = labels instanceof AbstractCellImg<?, ?, ?, ?>
+			            ? ((AbstractCellImg<?, ?, ?, ?>) labels).getCellGrid()
+			            : new CellGrid(
+					            Intervals.dimensionsAsLongArray(labels),
+					            Arrays.stream(Intervals.dimensionsAsLongArray(labels)).mapToInt(l -> (int) l).toArray()
+			            );
+			final B extension = Util.getTypeFromInterval(thresholded).createVariable();
+			extension.set(false);
+			this.thresholded = Views.extendValue(thresholded, extension);
+			this.labels = labels;
+
+			final Pair<Cache<Long, long[]>, Invalidate<Long>> thresholdedVoxels = globalCache.createNewCache(this::loadThresholdedVoxels);
+			this.thresholdedVoxels = thresholdedVoxels.getA();
+			this.invalidateThresholdedVoxels = thresholdedVoxels.getB();
+
+			final Pair<Cache<Long, long[]>, Invalidate<Long>> labelIds = globalCache.createNewCache(this::loadLabelIds);
+			this.labelIds = labelIds.getA();
+			this.invalidateLabelIds = labelIds.getB();
+
+			final Pair<Cache<Long, long[]>, Invalidate<Long>> selectedVoxels = globalCache.createNewCache(this::loadSelectedVoxels);
+			this.selectedVoxels = selectedVoxels.getA();
+			this.invalidateSelectedVoxels = selectedVoxels.getB();
+
+			final Pair<CachedCellImg<UnsignedByteType, VolatileByteArray>, Invalidate<Long>> dataAndInvalidate =
+					globalCache.createVolatileImg(grid, this::loadIntersection, new UnsignedByteType());
+			final Triple<RandomAccessibleInterval<VolatileUnsignedByteType>, VolatileCache<Long, Cell<VolatileByteArray>>, Invalidate<Long>> volatileDataAndInvalidate =
+					globalCache.wrapAsVolatile(dataAndInvalidate.getA(), dataAndInvalidate.getB(), priority);
+			this.data = dataAndInvalidate.getA();
+			this.volatileData = volatileDataAndInvalidate.getA();
+			this.invalidateIntersection = volatileDataAndInvalidate.getC();
+		}
+
+		private long[] loadThresholdedVoxels(final Long index)
+		{
+			return bits(Views.flatIterable(Views.interval(thresholded, cellInterval(grid, index))), BooleanType::get);
+		}
+
+		private long[] loadLabelIds(final Long index)
+		{
+			final TLongHashSet ids = new TLongHashSet();
+			for (final D label : Views.flatIterable(Views.interval(labels, cellInterval(grid, index))))
+				forEachId(label, ids::add);
+			return ids.toArray();
+		}
+
+		private long[] loadSelectedVoxels(final Long index)
+		{
+			final TLongSet selection = IncrementalLabelIntersection.this.selection;
+			return bits(Views.flatIterable(Views.interval(labels, cellInterval(grid, index))), label -> containsAny(label, selection));
+		}
+
+		private void loadIntersection(final SingleCellArrayImg<UnsignedByteType, ?> cell) throws ExecutionException
+		{
+			final long[] cellPosition = new long[grid.numDimensions()];
+			grid.getCellPosition(Intervals.minAsLongArray(cell), cellPosition);
+			final long index = IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions());
+
+			// cells are zero initialized
+			if (!containsAny(labelIds.get(index), selection))
+				return;
+			final long[] selected = selectedVoxels.get(index);
+			if (selected.length == 0)
+				return;
+			final long[] thresholded = thresholdedVoxels.get(index);
+			if (thresholded.length == 0)
+				return;
+
+			LOG.trace("Computing intersection for cell {} with grid {}", index, grid);
+			final long[] intersection = LabelIntersectionCellLoader.fillConnected(Intervals.dimensionsAsIntArray(cell), thresholded, selected);
+			final Cursor<UnsignedByteType> cursor = cell.cursor();
+			for (int i = 0; cursor.hasNext(); ++i)
+				cursor.next().set(LabelIntersectionCellLoader.isSet(intersection, i) ? 1 : 0);
+		}
+
+		/**
+		 * @return {@code true} if any cell touched by {@code interval} contains one of {@code ids} or has not been
+		 * inspected yet
+		 */
+		private boolean mayContainAny(final Interval interval, final TLongSet ids)
+		{
+			final long[] cellMin = new long[grid.numDimensions()];
+			final long[] cellMax = new long[grid.numDimensions()];
+			for (int d = 0; d < cellMin.length; ++d)
+			{
+				cellMin[d] = Math.max(interval.min(d), 0) / grid.cellDimension(d);
+				cellMax[d] = Math.min(interval.max(d), grid.imgDimension(d) - 1) / grid.cellDimension(d);
+				if (cellMin[d] > cellMax[d])
+					return false;
+			}
+			final long[] gridDimensions = grid.getGridDimensions();
+			final long[] cellPosition = cellMin.clone();
+			for (int d = 0; d < cellPosition.length; )
+			{
+				if (mayContainAny(IntervalIndexer.positionToIndex(cellPosition, gridDimensions), ids))
+					return true;
+				for (d = 0; d < cellPosition.length; ++d)
+				{
+					if (++cellPosition[d] <= cellMax[d])
+						break;
+					cellPosition[d] = cellMin[d];
+				}
+			}
+			return false;
+		}
+
+		private boolean mayContainAny(final long index, final TLongSet ids)
+		{
+			final long[] labelIds = this.labelIds.getIfPresent(index);
+			return labelIds == null || containsAny(labelIds, ids);
+		}
+
+	}
+
+	private final List<Level> levels;
+
+	private volatile TLongSet selection;
+
+	/**
+	 * @param thresholded thresholded source for each mipmap level
+	 * @param labels label source for each mipmap level, with the same dimensions as {@code thresholded}
+	 * @param selection initially selected fragments
+	 * @param globalCache create caches for intermediate results and the intersection
+	 * @param priority priority of volatile intersection
+	 * @throws InvalidAccessException if the intersection cannot be wrapped as volatile
+	 */
+	public IncrementalLabelIntersection(
+			final RandomAccessibleInterval<B>[] thresholded,
+			final RandomAccessibleInterval<D>[] labels,
+			final long[] selection,
+			final GlobalCache globalCache,
+			final int priority) throws InvalidAccessException
+	{
+		if (thresholded.length != labels.length)
+			throw new IllegalArgumentException("Incompatible number of mipmap levels: " + thresholded.length + " " + labels.length);
+		this.selection = new TLongHashSet(selection);
+		final List<Level> levels = new ArrayList<>();
+		for (int level = 0; level < labels.length; ++level)
+			levels.add(new Level(thresholded[level], labels[level], globalCache, priority));
+		this.levels = Collections.unmodifiableList(levels);
+	}
+
+	public int getNumMipmapLevels()
+	{
+		return levels.size();
+	}
+
+	public CellGrid getGrid(final int level)
+	{
+		return levels.get(level).grid;
+	}
+
+	public RandomAccessibleInterval<UnsignedByteType> getData(final int level)
+	{
+		return levels.get(level).data;
+	}
+
+	public RandomAccessibleInterval<VolatileUnsignedByteType> getVolatileData(final int level)
+	{
+		return levels.get(level).volatileData;
+	}
+
+	/**
+	 * Update the intersection after the threshold changed. Cells that cannot contain any selected fragments are not
+	 * invalidated.
+	 */
+	public void thresholdChanged()
+	{
+		final TLongSet selection = this.selection;
+		for (final Level level : levels)
+		{
+			level.invalidateThresholdedVoxels.invalidateAll();
+			final int numInvalidated = level.invalidateIntersection.invalidateMatching(index -> level.mayContainAny(index, selection)).size();
+			LOG.debug("Invalidated {} cells of intersection with grid {} after threshold change", numInvalidated, level.grid);
+		}
+	}
+
+	/**
+	 * Update the intersection after the selection changed. Only cells that contain fragments that were added to or
+	 * removed from the selection are invalidated.
+	 *
+	 * @param selection selected fragments
+	 */
+	public void selectionChanged(final long[] selection)
+	{
+		final TLongSet newSelection = new TLongHashSet(selection);
+		final TLongSet oldSelection = this.selection;
+		final TLongSet changed = new TLongHashSet(newSelection);
+		changed.removeAll(oldSelection);
+		oldSelection.forEach(id -> {
+			if (!newSelection.contains(id))
+				changed.add(id);
+			return true;
+		});
+		this.selection = newSelection;
+		if (changed.isEmpty())
+			return;
+
+		for (final Level level : levels)
+		{
+			final Predicate<Long> isAffected = index -> level.mayContainAny(index, changed);
+			level.invalidateSelectedVoxels.invalidateMatching(isAffected);
+			final int numInvalidated = level.invalidateIntersection.invalidateMatching(isAffected).size();
+			LOG.debug("Invalidated {} cells of intersection with grid {} after selection change", numInvalidated, level.grid);
+		}
+	}
+
+	/**
+	 * @param level mipmap level
+	 * @param interval interval at {@code level}
+	 * @param ids fragments
+	 * @return {@code false} if the intersection is provably empty in {@code interval} whenever none of {@code ids}
+	 * are selected, i.e. {@code interval} does not contain any of {@code ids}
+	 */
+	public boolean mayContainAny(final int level, final Interval interval, final TLongSet ids)
+	{
+		return levels.get(level).mayContainAny(interval, ids);
+	}
+
+	/**
+	 * Invalidate all cached results, e.g. after the label source changed.
+	 */
+	public void invalidateAll()
+	{
+		for (final Level level : levels)
+		{
+			level.invalidateThresholdedVoxels.invalidateAll();
+			level.invalidateLabelIds.invalidateAll();
+			level.invalidateSelectedVoxels.invalidateAll();
+			level.invalidateIntersection.invalidateAll();
+		}
+	}
+
+	/**
+	 * @return bit set in flat iteration order, {@link #EMPTY} if no bit is set
+	 */
+	private static <T> long[] bits(final IterableInterval<T> voxels, final Predicate<T> isSet)
+	{
+		final long[] bits = new long[(int) ((voxels.size() + 63) / 64)];
+		boolean isEmpty = true;
+		int index = 0;
+		for (final T t : voxels)
+		{
+			if (isSet.test(t))
+			{
+				bits[index >>> 6] |= 1L << index;
+				isEmpty = false;
+			}
+			++index;
+		}
+		return isEmpty ? EMPTY : bits;
+	}
+
+	private static Interval cellInterval(final CellGrid grid, final long index)
+	{
+		final long[] min = new long[grid.numDimensions()];
+		final int[] dimensions = new int[grid.numDimensions()];
+		grid.getCellDimensions(index, min, dimensions);
+		final long[] max = new long[min.length];
+		Arrays.setAll(max, d -> min[d] + dimensions[d] - 1);
+		return new FinalInterval(min, max);
+	}
+
+	private static <D extends IntegerType<D>> void forEachId(final D label, final LongConsumer action)
+	{
+		if (label instanceof LabelMultisetType)
+			for (final Entry<Label> entry : ((LabelMultisetType) label).entrySet())
+				action.accept(entry.getElement().id());
+		else
+			action.accept(label.getIntegerLong());
+	}
+
+	private static <D extends IntegerType<D>> boolean containsAny(final D label, final TLongSet ids)
+	{
+		if (label instanceof LabelMultisetType)
+		{
+			for (final Entry<Label> entry : ((LabelMultisetType) label).entrySet())
+				if (ids.contains(entry.getElement().id()))
+					return true;
+			return false;
+		}
+		return ids.contains(label.getIntegerLong());
+	}
+
+	private static boolean containsAny(final long[] labelIds, final TLongSet ids)
+	{
+		for (final long id : labelIds)
+			if (ids.contains(id))
+				return true;
+		return false;
+	}
+
+}
@@ -9,32 +9,18 @@ import javafx.scene.Group;
 import javafx.scene.paint.Color;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
-import net.imglib2.cache.UncheckedCache;
-import net.imglib2.cache.img.CachedCellImg;
-import net.imglib2.cache.volatiles.VolatileCache;
 import net.imglib2.converter.ARGBColorConverter;
-import net.imglib2.img.basictypeaccess.volatiles.array.VolatileByteArray;
-import net.imglib2.img.cell.AbstractCellImg;
-import net.imglib2.img.cell.Cell;
-import net.imglib2.img.cell.CellGrid;
 import net.imglib2.realtransform.AffineTransform3D;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.Type;
-import net.imglib2.type.label.Label;
-import net.imglib2.type.label.LabelMultisetType;
-import net.imglib2.type.label.LabelMultisetType.Entry;
 import net.imglib2.type.numeric.ARGBType;
 import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.integer.UnsignedByteType;
 import net.imglib2.type.volatiles.VolatileUnsignedByteType;
 import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
-import net.imglib2.util.Triple;
-import net.imglib2.util.Util;
 import net.imglib2.util.ValueTriple;
-import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.paintera.cache.Invalidate;
-import org.janelia.saalfeldlab.paintera.cache.InvalidateAll;
 import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.cache.global.InvalidAccessException;
 import org.janelia.saalfeldlab.paintera.composition.Composite;
@@ -45,8 +31,6 @@ import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.Interpolations;
 import org.janelia.saalfeldlab.paintera.data.RandomAccessibleIntervalDataSource;
-import org.janelia.saalfeldlab.paintera.data.axisorder.AxisOrder;
-import org.janelia.saalfeldlab.paintera.data.axisorder.AxisOrderNotSupported;
 import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunctionAndCache;
 import org.janelia.saalfeldlab.paintera.meshes.MeshManager;
@@ -56,14 +40,12 @@ import org.janelia.saalfeldlab.paintera.meshes.cache.CacheUtils;
 import org.janelia.saalfeldlab.util.Colors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import tmp.bdv.img.cache.VolatileCachedCellImg;
 
 import java.lang.invoke.MethodHandles;
 import java.util.Arrays;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
-import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 public class IntersectingSourceState
@@ -76,6 +58,8 @@ public class IntersectingSourceState
 
 	private final MeshManagerSimple<TLongHashSet, TLongHashSet> meshManager;
 
+	private final IncrementalLabelIntersection<?, ?> intersection;
+
 	public <D extends IntegerType<D>, T extends Type<T>, B extends BooleanType<B>> IntersectingSourceState(
 			final ThresholdingSourceState<?, ?> thresholded,
 			final LabelSourceState<D, T> labels,
@@ -86,9 +70,31 @@ public class IntersectingSourceState
 			final Group meshesGroup,
 			final ExecutorService manager,
 			final ExecutorService workers) throws InvalidAccessException {
+		this(
+				thresholded,
+				labels,
+				makeIntersection(thresholded, labels, globalCache, priority),
+				composite,
+				name,
+				globalCache,
+				meshesGroup,
+				manager,
+				workers);
+	}
+
+	private <D extends IntegerType<D>, T extends Type<T>> IntersectingSourceState(
+			final ThresholdingSourceState<?, ?> thresholded,
+			final LabelSourceState<D, T> labels,
+			final IncrementalLabelIntersection<D, ?> intersection,
+			final Composite<ARGBType, ARGBType> composite,
+			final String name,
+			final GlobalCache globalCache,
+			final Group meshesGroup,
+			final ExecutorService manager,
+			final ExecutorService workers) {
 		// TODO use better converter
 		super(
-				makeIntersect(thresholded, labels, globalCache, priority, name),
+				makeIntersect(thresholded, intersection, name),
 				new ARGBColorConverter.Imp0<>(0, 1),
 				composite,
 				name,
@@ -96,6 +102,7 @@ public class IntersectingSourceState
 				thresholded,
 				labels
 		     );
+		this.intersection = intersection;
 		final DataSource<UnsignedByteType, VolatileUnsignedByteType> source = getDataSource();
 
 		this.axisOrderProperty().bindBidirectional(thresholded.axisOrderProperty());
@@ -148,45 +155,40 @@ public class IntersectingSourceState
 		this.meshManager.smoothingIterationsProperty().bind(meshManager.smoothingIterationsProperty());
 		this.meshManager.smoothingLambdaProperty().bind(meshManager.smoothingLambdaProperty());
 
-		thresholded.getThreshold().minValue().addListener((obs, oldv, newv) -> {
-			Arrays.stream(meshCaches).map(Pair::getB).forEach(InvalidateAll::invalidateAll);
-			update(source, fragmentsInSelectedSegments);
-		});
-		thresholded.getThreshold().maxValue().addListener((obs, oldv, newv) -> {
-			Arrays.stream(meshCaches).map(Pair::getB).forEach(InvalidateAll::invalidateAll);
-			update(source, fragmentsInSelectedSegments);
-		});
+		thresholded.getThreshold().minValue().addListener((obs, oldv, newv) -> thresholdChanged(meshCaches, fragmentsInSelectedSegments));
+		thresholded.getThreshold().maxValue().addListener((obs, oldv, newv) -> thresholdChanged(meshCaches, fragmentsInSelectedSegments));
 
 		//		selectedIds.addListener( obs -> update( source, fragmentsInSelectedSegments ) );
 		//		assignment.addListener( obs -> update( source, fragmentsInSelectedSegments ) );
-		fragmentsInSelectedSegments.addListener(obs -> update(source, fragmentsInSelectedSegments));
+		fragmentsInSelectedSegments.addListener(obs -> {
+			intersection.selectionChanged(fragmentsInSelectedSegments.getFragments());
+			updateMeshes(fragmentsInSelectedSegments);
+		});
 	}
 
-	private void update(
-			final DataSource<?, ?> source,
+	/**
+	 * Only invalidate cells and meshes of blocks that contain selected fragments: The intersection is empty everywhere
+	 * else, independent of the threshold.
+	 */
+	private void thresholdChanged(
+			final Pair<InterruptibleFunctionAndCache<ShapeKey<TLongHashSet>, Pair<float[], float[]>>, Invalidate<ShapeKey<TLongHashSet>>>[] meshCaches,
 			final FragmentsInSelectedSegments fragmentsInSelectedSegments)
 	{
-		for (int level = 0; level < source.getNumMipmapLevels(); ++level)
+		intersection.thresholdChanged();
+		for (int level = 0; level < meshCaches.length; ++level)
 		{
-			final DataSource<?, ?>            dsource = source instanceof MaskedSource<?, ?>
-			                                            ? ((MaskedSource<?, ?>) source).underlyingSource()
-			                                            : source;
-			final RandomAccessibleInterval<?> data    = dsource.getDataSource(0, level);
-			if (data instanceof CachedCellImg<?, ?>)
-			{
-				LOG.debug("Invalidating: data type={}", data.getClass().getName());
-				((CachedCellImg<?, ?>) data).getCache().invalidateAll();
-			}
-
-			final RandomAccessibleInterval<?> vdata = dsource.getSource(0, level);
-			if (vdata instanceof VolatileCachedCellImg)
-			{
-				LOG.debug("Invalidating: vdata type={}", vdata.getClass().getName());
-				((VolatileCachedCellImg<?, ?>) vdata).getInvalidateAll().run();
-			}
-
+			final int fLevel = level;
+			// marching cubes reads one voxel beyond the block
+			meshCaches[level].getB().invalidateMatching(key -> intersection.mayContainAny(
+					fLevel,
+					Intervals.expand(key.interval(), 1),
+					key.shapeId()));
 		}
+		updateMeshes(fragmentsInSelectedSegments);
+	}
 
+	private void updateMeshes(final FragmentsInSelectedSegments fragmentsInSelectedSegments)
+	{
 		this.meshManager.removeAllMeshes();
 		if (Optional.ofNullable(fragmentsInSelectedSegments.getFragments()).map(sel -> sel.length).orElse(0) > 0)
 		{
@@ -200,12 +202,11 @@ public class IntersectingSourceState
 	}
 
 	private static <D extends IntegerType<D>, T extends Type<T>, B extends BooleanType<B>>
-	DataSource<UnsignedByteType, VolatileUnsignedByteType> makeIntersect(
+	IncrementalLabelIntersection<D, B> makeIntersection(
 			final SourceState<B, Volatile<B>> thresholded,
 			final LabelSourceState<D, T> labels,
 			final GlobalCache globalCache,
-			final int priority,
-			final String name) throws InvalidAccessException {
+			final int priority) throws InvalidAccessException {
 		LOG.debug(
 				"Number of mipmap labels: thresholded={} labels={}",
 				thresholded.getDataSource().getNumMipmapLevels(),
@@ -216,28 +217,15 @@ public class IntersectingSourceState
 			throw new RuntimeException("Incompatible sources (num mip map levels )");
 		}
 
-		final AffineTransform3D[]                                  transforms = new AffineTransform3D[thresholded.getDataSource().getNumMipmapLevels()];
-		final RandomAccessibleInterval<UnsignedByteType>[]         data       = new RandomAccessibleInterval[transforms.length];
-		final RandomAccessibleInterval<VolatileUnsignedByteType>[] vdata      = new RandomAccessibleInterval[transforms.length];
-		final Invalidate<Long>[] invalidate                                   = new Invalidate[transforms.length];
-		final Invalidate<Long>[] vinvalidate                                  = new Invalidate[transforms.length];
+		final RandomAccessibleInterval<B>[] thresh = new RandomAccessibleInterval[thresholded.getDataSource().getNumMipmapLevels()];
+		final RandomAccessibleInterval<D>[] label  = new RandomAccessibleInterval[thresh.length];
 
-		final SelectedIds                    selectedIds                 = labels.selectedIds();
-		final FragmentSegmentAssignmentState assignment                  = labels.assignment();
-		final SelectedSegments               selectedSegments            = new SelectedSegments(
-				selectedIds,
-				assignment
-		);
-		final FragmentsInSelectedSegments    fragmentsInSelectedSegments = new FragmentsInSelectedSegments(
-				selectedSegments,
-				assignment
-		);
+		final DataSource<D, T> labelsSource = labels.getDataSource() instanceof MaskedSource<?, ?>
+		                                      ? ((MaskedSource<D, T>) labels.getDataSource()).underlyingSource()
+		                                      : labels.getDataSource();
 
-		for (int level = 0; level < thresholded.getDataSource().getNumMipmapLevels(); ++level)
+		for (int level = 0; level < thresh.length; ++level)
 		{
-			final DataSource<D, T> labelsSource = labels.getDataSource() instanceof MaskedSource<?, ?>
-			                                      ? ((MaskedSource<D, T>) labels.getDataSource()).underlyingSource()
-			                                      : labels.getDataSource();
 			final AffineTransform3D tf1 = new AffineTransform3D();
 			final AffineTransform3D tf2 = new AffineTransform3D();
 			thresholded.getDataSource().getSourceTransform(0, level, tf1);
@@ -247,68 +235,50 @@ public class IntersectingSourceState
 				throw new RuntimeException("Incompatible sources ( transforms )");
 			}
 
-			final RandomAccessibleInterval<B> thresh = thresholded.getDataSource().getDataSource(0, level);
-			final RandomAccessibleInterval<D> label  = labelsSource.getDataSource(0, level);
+			thresh[level] = thresholded.getDataSource().getDataSource(0, level);
+			label[level] = labelsSource.getDataSource(0, level);
+		}
+
+		final SelectedIds                    selectedIds                 = labels.selectedIds();
+		final FragmentSegmentAssignmentState assignment                  = labels.assignment();
+		final FragmentsInSelectedSegments    fragmentsInSelectedSegments = new FragmentsInSelectedSegments(
+				new SelectedSegments(selectedIds, assignment),
+				assignment
+		);
 
-			final CellGrid grid = label instanceof AbstractCellImg<?, ?, ?, ?>
-			                      ? ((AbstractCellImg<?, ?, ?, ?>) label).getCellGrid()
-			                      : new CellGrid(
-					                      Intervals.dimensionsAsLongArray(label),
-					                      Arrays.stream(Intervals.dimensionsAsLongArray(label)).mapToInt(l -> (int) l)
-							                      .toArray()
-			                      );
+		return new IncrementalLabelIntersection<>(
+				thresh,
+				label,
+				Optional.ofNullable(fragmentsInSelectedSegments.getFragments()).orElseGet(() -> new long[0]),
+				globalCache,
+				priority);
+	}
 
-			final B extension = Util.getTypeFromInterval(thresh);
-			extension.set(false);
-			final LabelIntersectionCellLoader<D, B> loader = new LabelIntersectionCellLoader<>(
-					label,
-					Views.extendValue(thresh, extension),
-					checkForType(labelsSource.getDataType(), fragmentsInSelectedSegments),
-					BooleanType::get,
-					extension::copy
-			);
+	private static DataSource<UnsignedByteType, VolatileUnsignedByteType> makeIntersect(
+			final SourceState<?, ?> thresholded,
+			final IncrementalLabelIntersection<?, ?> intersection,
+			final String name) {
 
-			LOG.debug("Making intersect for level={} with grid={}", level, grid);
+		final AffineTransform3D[]                                  transforms = new AffineTransform3D[intersection.getNumMipmapLevels()];
+		final RandomAccessibleInterval<UnsignedByteType>[]         data       = new RandomAccessibleInterval[transforms.length];
+		final RandomAccessibleInterval<VolatileUnsignedByteType>[] vdata      = new RandomAccessibleInterval[transforms.length];
 
-			final Pair<CachedCellImg<UnsignedByteType, VolatileByteArray>, Invalidate<Long>> imgAndInvalidate =
-					globalCache.createVolatileImg(grid, loader, new UnsignedByteType());
-			final Triple<RandomAccessibleInterval<VolatileUnsignedByteType>, VolatileCache<Long, Cell<VolatileByteArray>>, Invalidate<Long>> vimgAndInvalidate =
-					globalCache.wrapAsVolatile(imgAndInvalidate.getA(), imgAndInvalidate.getB(), priority);
-			data[level] = imgAndInvalidate.getA();
-			vdata[level] = vimgAndInvalidate.getA();
-			invalidate[level] = imgAndInvalidate.getB();
-			vinvalidate[level] = vimgAndInvalidate.getC();
-			transforms[level] = tf1;
+		for (int level = 0; level < transforms.length; ++level)
+		{
+			LOG.debug("Making intersect for level={} with grid={}", level, intersection.getGrid(level));
+			transforms[level] = new AffineTransform3D();
+			thresholded.getDataSource().getSourceTransform(0, level, transforms[level]);
+			data[level] = intersection.getData(level);
+			vdata[level] = intersection.getVolatileData(level);
 		}
 
 		return new RandomAccessibleIntervalDataSource<>(
 				new ValueTriple<>(data, vdata, transforms),
-				() -> {Stream.of(invalidate).forEach(InvalidateAll::invalidateAll); Stream.of(vinvalidate).forEach(InvalidateAll::invalidateAll);},
+				intersection::invalidateAll,
 				Interpolations.nearestNeighbor(),
 				Interpolations.nearestNeighbor(),
 				name
 		);
 	}
 
-	private static <T> Predicate<T> checkForType(final T t, final FragmentsInSelectedSegments fragmentsInSelectedSegments)
-	{
-		if (t instanceof LabelMultisetType)
-		{
-			return (Predicate<T>) checkForLabelMultisetType(fragmentsInSelectedSegments);
-		}
-
-		return null;
-	}
-
-	private static final Predicate<LabelMultisetType> checkForLabelMultisetType(final FragmentsInSelectedSegments fragmentsInSelectedSegments)
-	{
-		return lmt -> {
-			for (final Entry<Label> entry : lmt.entrySet())
-			{
-				if (fragmentsInSelectedSegments.contains(entry.getElement().id())) { return true; }
-			}
-			return false;
-		};
-	}
-
 }
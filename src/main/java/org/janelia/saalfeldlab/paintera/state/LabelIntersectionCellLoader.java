@@ -1,87 +1,93 @@
 package org.janelia.saalfeldlab.paintera.state;
 
-import java.lang.invoke.MethodHandles;
-import java.util.function.Predicate;
-import java.util.function.Supplier;
+import gnu.trove.stack.array.TIntArrayStack;
 
-import net.imglib2.Cursor;
-import net.imglib2.RandomAccessible;
-import net.imglib2.algorithm.fill.FloodFill;
-import net.imglib2.algorithm.neighborhood.DiamondShape;
-import net.imglib2.cache.img.CellLoader;
-import net.imglib2.cache.img.SingleCellArrayImg;
-import net.imglib2.type.numeric.integer.UnsignedByteType;
-import net.imglib2.util.Intervals;
-import net.imglib2.view.IntervalView;
-import net.imglib2.view.Views;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import tmp.net.imglib2.outofbounds.OutOfBoundsConstantValueFactory;
-
-public class LabelIntersectionCellLoader<T, U> implements CellLoader<UnsignedByteType>
+/**
+ * Fill the intersection of a label source with a mask on bit sets of a single cell, see
+ * {@link IncrementalLabelIntersection}: A cell of the intersection contains all voxels of the mask that are connected
+ * (6-neighborhood) to a seed voxel within the same cell. Connectivity is not evaluated across cell borders.
+ */
+public class LabelIntersectionCellLoader
 {
 
-	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
-
-	private final RandomAccessible<T> data1;
-
-	private final RandomAccessible<U> data2;
-
-	private final Predicate<T> check1;
+	/**
+	 * Set all voxels of {@code mask} that are connected (6-neighborhood) to a voxel in {@code mask} and {@code seeds}.
+	 * Voxels are filled span by span along the first dimension.
+	 *
+	 * @param dimensions dimensions of the block
+	 * @param mask bit set in flat iteration order
+	 * @param seeds bit set in flat iteration order
+	 * @return bit set of filled voxels in flat iteration order
+	 */
+	static long[] fillConnected(final int[] dimensions, final long[] mask, final long[] seeds)
+	{
+		final int[] strides = strides(dimensions);
+		final int rowLength = dimensions[0];
+		final long[] filled = new long[mask.length];
+		final TIntArrayStack stack = new TIntArrayStack();
+		final int numWords = Math.min(mask.length, seeds.length);
+		for (int w = 0; w < numWords; ++w)
+		{
+			for (long candidates = seeds[w] & mask[w]; candidates != 0; candidates = seeds[w] & mask[w] & ~filled[w])
+			{
+				stack.push((w << 6) + Long.numberOfTrailingZeros(candidates));
+				while (stack.size() > 0)
+				{
+					final int index = stack.pop();
+					if (isSet(filled, index))
+						continue;
 
-	private final Predicate<U> check2;
+					final int rowStart = index - index % rowLength;
+					final int rowEnd = rowStart + rowLength - 1;
+					int spanStart = index;
+					while (spanStart > rowStart && isSet(mask, spanStart - 1))
+						--spanStart;
+					int spanEnd = index;
+					while (spanEnd < rowEnd && isSet(mask, spanEnd + 1))
+						++spanEnd;
+					for (int i = spanStart; i <= spanEnd; ++i)
+						filled[i >>> 6] |= 1L << i;
 
-	private final Supplier<U> extension;
+					for (int d = 1; d < dimensions.length; ++d)
+					{
+						final int position = index / strides[d] % dimensions[d];
+						if (position > 0)
+							pushSpans(spanStart - strides[d], spanEnd - strides[d], mask, filled, stack);
+						if (position < dimensions[d] - 1)
+							pushSpans(spanStart + strides[d], spanEnd + strides[d], mask, filled, stack);
+					}
+				}
+			}
+		}
+		return filled;
+	}
 
-	public LabelIntersectionCellLoader(
-			final RandomAccessible<T> data1,
-			final RandomAccessible<U> data2,
-			final Predicate<T> check1,
-			final Predicate<U> check2,
-			final Supplier<U> extension)
+	/**
+	 * Push one voxel for each span of unfilled voxels of {@code mask} in {@code [start, end]}.
+	 */
+	private static void pushSpans(final int start, final int end, final long[] mask, final long[] filled, final TIntArrayStack stack)
 	{
-		super();
-		this.data1 = data1;
-		this.data2 = data2;
-		this.check1 = check1;
-		this.check2 = check2;
-		this.extension = extension;
+		boolean isInSpan = false;
+		for (int i = start; i <= end; ++i)
+		{
+			final boolean isFillable = isSet(mask, i) && !isSet(filled, i);
+			if (isFillable && !isInSpan)
+				stack.push(i);
+			isInSpan = isFillable;
+		}
 	}
 
-	@Override
-	public void load(final SingleCellArrayImg<UnsignedByteType, ?> cell) throws Exception
+	static boolean isSet(final long[] bits, final int index)
 	{
-		LOG.debug(
-				"Populating cell {} {} {}",
-				Intervals.minAsLongArray(cell),
-				Intervals.maxAsLongArray(cell),
-				cell.size()
-		         );
-		final IntervalView<U> label2Interval        = Views.interval(data2, cell);
-		final Cursor<T> label1Cursor                = Views.flatIterable(Views.interval(data1, cell)).cursor();
-		final Cursor<U> label2Cursor                = Views.flatIterable(label2Interval).cursor();
-		final Cursor<UnsignedByteType> targetCursor = cell.localizingCursor();
+		return (index >>> 6) < bits.length && (bits[index >>> 6] & 1L << index) != 0;
+	}
 
-		//		cell.forEach( UnsignedByteType::setZero );
-		while (targetCursor.hasNext())
-		{
-			final UnsignedByteType targetType = targetCursor.next();
-			final T                label1Type = label1Cursor.next();
-			final U                label2Type = label2Cursor.next();
-			if (targetType.get() == 0)
-			{
-				if (check1.test(label1Type) && check2.test(label2Type))
-				{
-					FloodFill.fill(
-							Views.extend(label2Interval, new OutOfBoundsConstantValueFactory<>(extension)),
-							Views.extendValue(cell, new UnsignedByteType(1)),
-							targetCursor,
-							new UnsignedByteType(1),
-							new DiamondShape(1),
-							(s, t) -> check2.test(s) && t.get() == 0
-					              );
-				}
-			}
-		}
+	private static int[] strides(final int[] dimensions)
+	{
+		final int[] strides = new int[dimensions.length];
+		strides[0] = 1;
+		for (int d = 1; d < dimensions.length; ++d)
+			strides[d] = strides[d - 1] * dimensions[d - 1];
+		return strides;
 	}
 }
@@ -53,7 +53,6 @@ import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaYCbCr;
 import org.janelia.saalfeldlab.paintera.composition.Composite;
 import org.janelia.saalfeldlab.paintera.control.ShapeInterpolationMode;
-import org.janelia.saalfeldlab.paintera.control.ShapeInterpolationMode.ActiveSection;
 import org.janelia.saalfeldlab.paintera.control.ShapeInterpolationMode.ModeState;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
@@ -640,7 +639,7 @@ public class LabelSourceState<D extends IntegerType<D>, T>
 			final InvalidationListener shapeInterpolationModeStatusUpdater = obs -> {
 				InvokeOnJavaFXApplicationThread.invoke(() -> {
 					final ModeState modeState = this.shapeInterpolationMode.modeStateProperty().get();
-					final ActiveSection activeSection = this.shapeInterpolationMode.activeSectionProperty().get();
+					final Integer activeSection = this.shapeInterpolationMode.activeSectionProperty().get();
 					if (modeState != null) {
 						switch (modeState) {
 							case Select:
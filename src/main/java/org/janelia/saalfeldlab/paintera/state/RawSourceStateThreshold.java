@@ -115,7 +115,7 @@ public class RawSourceStateThreshold<D extends RealType<D>, T extends AbstractVo
 
 				final Optional<ButtonType> buttonType = dialog.showAndWait();
 				if (buttonType.filter(ButtonType.OK::equals).isPresent()) {
-					final ThresholdingSourceState<D, T> thresholdedState = new ThresholdingSourceState<>(targetName.getText(), toBeThresholded);
+					final ThresholdingSourceState<D, T> thresholdedState = new ThresholdingSourceState<>(targetName.getText(), toBeThresholded, pbv.getGlobalCache());
 					LOG.debug("Foreground color is {}", foregroundColorPicker.getValue());
 					thresholdedState.colorProperty().set(foregroundColorPicker.getValue());
 					LOG.debug("Background color is {}", backgroundColorPicker.getValue());
@@ -1,7 +1,7 @@
 package org.janelia.saalfeldlab.paintera.state;
 
 import java.lang.invoke.MethodHandles;
-import java.util.function.Predicate;
+import java.util.Optional;
 
 import javafx.beans.binding.Bindings;
 import javafx.beans.property.BooleanProperty;
@@ -17,10 +17,13 @@ import net.imglib2.converter.Converter;
 import net.imglib2.type.BooleanType;
 import net.imglib2.type.logic.BoolType;
 import net.imglib2.type.numeric.ARGBType;
+import net.imglib2.type.numeric.IntegerType;
 import net.imglib2.type.numeric.RealType;
 import net.imglib2.type.volatiles.AbstractVolatileRealType;
 import org.janelia.saalfeldlab.paintera.PainteraBaseView;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaAdd;
+import org.janelia.saalfeldlab.paintera.data.BlockStatistics;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
 import org.janelia.saalfeldlab.paintera.data.PredicateDataSource;
 import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.Threshold;
@@ -60,9 +63,23 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 	public ThresholdingSourceState(
 			final String name,
 			final RawSourceState<D, T> toBeThresholded)
+	{
+		this(name, toBeThresholded, null);
+	}
+
+	/**
+	 * @param name name
+	 * @param toBeThresholded threshold this source
+	 * @param globalCache if not {@code null}, cache per-block statistics of {@code toBeThresholded} in this cache: blocks
+	 * that are entirely inside or outside of the threshold are not evaluated voxel by voxel.
+	 */
+	public ThresholdingSourceState(
+			final String name,
+			final RawSourceState<D, T> toBeThresholded,
+			final GlobalCache globalCache)
 	{
 		super(
-				threshold(toBeThresholded.getDataSource(), name),
+				threshold(toBeThresholded, name, globalCache),
 				new VolatileMaskConverter<>(),
 				new ARGBCompositeAlphaAdd(),
 				name,
@@ -87,12 +104,47 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 		return this.threshold;
 	}
 
+	/**
+	 * @return statistics of the lowest resolution mipmap level of the thresholded source, e.g. to show a
+	 * {@link BlockStatistics#histogram() histogram} without reading the full resolution data
+	 */
+	public Optional<BlockStatistics<?>> getHistogramStatistics()
+	{
+		return getDataSource().getStatistics(getDataSource().getNumMipmapLevels() - 1);
+	}
+
 	private static <D extends RealType<D>, T extends AbstractVolatileRealType<D, T>> PredicateDataSource<D, T,
 			Threshold<D>> threshold(
-			final DataSource<D, T> source,
-			final String name)
+			final RawSourceState<D, T> toBeThresholded,
+			final String name,
+			final GlobalCache globalCache)
+	{
+		final DataSource<D, T> source = toBeThresholded.getDataSource();
+		if (globalCache == null)
+			return new PredicateDataSource<>(source, new Threshold<>(), name);
+
+		final double[] histogramRange = histogramRange(toBeThresholded);
+		LOG.debug("Collecting block statistics for {} with histogram range {}", name, histogramRange);
+		final BlockStatistics<D>[] statistics = BlockStatistics.forSource(
+				source,
+				histogramRange[0],
+				histogramRange[1],
+				BlockStatistics.DEFAULT_NUM_BINS,
+				globalCache);
+		return new PredicateDataSource<>(source, new Threshold<>(), statistics, name);
+	}
+
+	/**
+	 * Full value range for integer types with at most 16 bits, contrast range of {@code source} otherwise.
+	 */
+	private static <D extends RealType<D>> double[] histogramRange(final RawSourceState<D, ?> source)
 	{
-		return new PredicateDataSource<>(source, new Threshold<>(), name);
+		final D type = source.getDataSource().getDataType();
+		if (type instanceof IntegerType<?> && type.getBitsPerPixel() <= 16)
+			return new double[] {type.getMinValue(), type.getMaxValue() + 1};
+		final double min = Math.min(source.converter().getMin(), source.converter().getMax());
+		final double max = Math.max(source.converter().getMin(), source.converter().getMax());
+		return new double[] {min, max > min ? max : min + 1};
 	}
 
 	public ObjectProperty<Color> colorProperty()
@@ -170,7 +222,7 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 		}
 	}
 
-	public static class Threshold<T extends RealType<T>> implements Predicate<T>
+	public static class Threshold<T extends RealType<T>> implements BlockStatistics.RangePredicate<T>
 	{
 
 		private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
@@ -199,6 +251,18 @@ public class ThresholdingSourceState<D extends RealType<D>, T extends AbstractVo
 			return isWithinMinMax;
 		}
 
+		@Override
+		public boolean acceptsAll(final double min, final double max)
+		{
+			return min > this.min && max < this.max;
+		}
+
+		@Override
+		public boolean rejectsAll(final double min, final double max)
+		{
+			return max <= this.min || min >= this.max;
+		}
+
 		private void update()
 		{
 			final double m = this.minSupplier.get();
@@ -91,6 +91,7 @@ public class CreateDatasetHandler
 					canvasDirUpdater,
 					commitCanvas,
 					pbv.getMeshWorkerExecutorService());
+			Masks.journalCanvas(maskedSource, projecDirectory);
 
 			final IdService                      idService      = N5Helpers.idService(meta.writer(), group, 1);
 			final SelectedIds                    selectedIds    = new SelectedIds();
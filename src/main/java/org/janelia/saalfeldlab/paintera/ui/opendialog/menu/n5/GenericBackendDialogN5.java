@@ -93,6 +93,8 @@ import org.janelia.saalfeldlab.paintera.ui.opendialog.DatasetInfo;
 import org.janelia.saalfeldlab.paintera.ui.opendialog.meta.ChannelInformation;
 import org.janelia.saalfeldlab.util.MakeUnchecked;
 import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.janelia.saalfeldlab.util.n5.CachedN5Writer;
+import org.janelia.saalfeldlab.util.n5.DatasetDiscovery;
 import org.janelia.saalfeldlab.util.n5.N5Data;
 import org.janelia.saalfeldlab.util.n5.N5Helpers;
 import org.janelia.saalfeldlab.util.n5.N5Types;
@@ -113,7 +115,6 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.IntFunction;
 import java.util.function.LongConsumer;
 import java.util.function.Supplier;
@@ -136,14 +137,16 @@ public class GenericBackendDialogN5 implements Closeable
 
 	private final SimpleObjectProperty<Supplier<N5Writer>> n5Supplier = new SimpleObjectProperty<>(() -> null);
 
+	// discovery and dataset info query the same meta data over and over
 	private final ObjectBinding<N5Writer> n5 = Bindings.createObjectBinding(() -> Optional
 			.ofNullable(n5Supplier.get())
 			.map(Supplier::get)
+			.map(CachedN5Writer::cached)
 			.orElse(null), n5Supplier);
 
 	private final StringProperty dataset = new SimpleStringProperty();
 
-	private final ArrayList<Thread> discoveryThreads = new ArrayList<>();
+	private final ArrayList<DatasetDiscovery> discoveries = new ArrayList<>();
 
 	private final ArrayList<BooleanProperty> discoveryIsActive = new ArrayList<>();
 
@@ -230,32 +233,41 @@ public class GenericBackendDialogN5 implements Closeable
 			LOG.debug("Updating dataset choices!");
 			synchronized (discoveryIsActive)
 			{
-				this.isTraversingDirectories.set(false);
 				cancelDiscovery();
+				// show datasets of last discovery while refreshing
+				final List<String> cachedDatasets = DatasetDiscovery.cachedDatasets(newv);
+				InvokeOnJavaFXApplicationThread.invoke(() -> {
+					if (!newv.equals(oldv))
+						this.dataset.set(null);
+					datasetChoices.setAll(cachedDatasets);
+				});
+				this.isTraversingDirectories.set(true);
 				final BooleanProperty keepLooking = new SimpleBooleanProperty(true);
-				final Thread discoveryThread = new Thread(() -> {
-					this.isTraversingDirectories.set(true);
-					final AtomicBoolean discardDatasetList = new AtomicBoolean(false);
-					try
-					{
-						final List<String> datasets = N5Helpers.discoverDatasets(newv, keepLooking::get);
-						if (!Thread.currentThread().isInterrupted() && !discardDatasetList.get() && keepLooking.get())
-						{
-							LOG.debug("Found these datasets: {}", datasets);
-							InvokeOnJavaFXApplicationThread.invoke(() -> datasetChoices.setAll(datasets));
-							if (!newv.equals(oldv))
-							{
-								InvokeOnJavaFXApplicationThread.invoke(() -> this.dataset.set(null));
-							}
-						}
-					} finally
+				final DatasetDiscovery discovery = DatasetDiscovery.start(
+						newv,
+						keepLooking::get,
+						found -> InvokeOnJavaFXApplicationThread.invoke(() -> {
+							final int index = Collections.binarySearch(datasetChoices, found);
+							if (keepLooking.get() && index < 0)
+								datasetChoices.add(-index - 1, found);
+						}));
+				discovery.result().whenComplete((datasets, exception) -> {
+					if (exception == null && keepLooking.get())
 					{
+						LOG.debug("Found these datasets: {}", datasets);
+						DatasetDiscovery.cache(newv, datasets);
+						InvokeOnJavaFXApplicationThread.invoke(() -> {
+							if (!keepLooking.get())
+								return;
+							datasetChoices.setAll(datasets);
+							if (!datasets.contains(this.dataset.get()))
+								this.dataset.set(null);
+						});
 						this.isTraversingDirectories.set(false);
 					}
 				});
 				discoveryIsActive.add(keepLooking);
-				discoveryThread.setDaemon(true);
-				discoveryThread.start();
+				discoveries.add(discovery);
 			}
 		});
 		dataset.addListener((obs, oldv, newv) -> Optional.ofNullable(newv).filter(v -> v.length() > 0).ifPresent(v ->
@@ -271,10 +283,11 @@ public class GenericBackendDialogN5 implements Closeable
 	public void cancelDiscovery() {
 		LOG.debug("Canceling discovery.");
 		synchronized (discoveryIsActive) {
+			this.isTraversingDirectories.set(false);
 			discoveryIsActive.forEach(a -> a.set(false));
 			discoveryIsActive.clear();
-			discoveryThreads.forEach(Thread::interrupt);
-			discoveryThreads.clear();
+			discoveries.forEach(DatasetDiscovery::cancel);
+			discoveries.clear();
 
 		}
 	}
@@ -639,6 +652,7 @@ public class GenericBackendDialogN5 implements Closeable
 				commitCanvas(),
 				workers
 		                                                                );
+		Masks.journalCanvas(masked, projectDirectory);
 		final IdService                      idService      = idService();
 		final FragmentSegmentAssignmentState assignment     = assignments();
 		final SelectedIds                    selectedIds    = new SelectedIds();
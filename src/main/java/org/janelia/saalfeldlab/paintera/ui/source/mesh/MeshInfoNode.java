@@ -27,6 +27,7 @@ import org.controlsfx.control.StatusBar;
 import org.janelia.saalfeldlab.fx.ui.NumericSliderWithField;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.meshes.MeshGenerator;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfo;
 import org.janelia.saalfeldlab.paintera.ui.BindUnbindAndNodeSupplier;
 import org.slf4j.Logger;
@@ -169,13 +170,16 @@ public class MeshInfoNode<T> implements BindUnbindAndNodeSupplier
 			if (result.isPresent())
 			{
 				final ExportResult<T> parameters = result.get();
-				parameters.getMeshExporter().exportMesh(
+				final T id = meshInfo.meshManager().unmodifiableMeshMap().get(parameters.getSegmentId()[0]).getId();
+				// do not block the application thread while exporting
+				MeshExporter.EXPORT_THREADS.newThread(() -> parameters.getMeshExporter().exportMesh(
 						meshInfo.meshManager().blockListCache(),
 						meshInfo.meshManager().meshCache(),
-						meshInfo.meshManager().unmodifiableMeshMap().get(parameters.getSegmentId()[0]).getId(),
+						id,
 						parameters.getScale(),
-						parameters.getFilePaths()[0]
-				                                       );
+						parameters.getFilePaths()[0],
+						meshInfo.meshManager().workers()
+				                                                                                  )).start();
 			}
 		});
 
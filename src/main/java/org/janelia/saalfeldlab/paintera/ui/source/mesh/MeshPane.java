@@ -31,6 +31,7 @@ import net.imglib2.util.Pair;
 import org.janelia.saalfeldlab.fx.ui.NumericSliderWithField;
 import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
+import org.janelia.saalfeldlab.paintera.meshes.MeshExporter;
 import org.janelia.saalfeldlab.paintera.meshes.ManagedMeshSettings;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfo;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfos;
@@ -208,15 +209,18 @@ public class MeshPane implements BindUnbindAndNodeSupplier, ListChangeListener<M
 						.limit(meshInfos.readOnlyInfos().size())
 						.toArray(InterruptibleFunction[][]::new);
 
-				parameters.getMeshExporter().exportMesh(
+				final TLongHashSet[] ids = Arrays.stream(parameters.getSegmentId()).mapToObj(id -> manager.unmodifiableMeshMap().get(id)
+						.getId()).toArray(
+						TLongHashSet[]::new);
+				// do not block the application thread while exporting
+				MeshExporter.EXPORT_THREADS.newThread(() -> parameters.getMeshExporter().exportMesh(
 						blockListCaches,
 						meshCaches,
-						Arrays.stream(parameters.getSegmentId()).mapToObj(id -> manager.unmodifiableMeshMap().get(id)
-								.getId()).toArray(
-								TLongHashSet[]::new),
+						ids,
 						parameters.getScale(),
-						parameters.getFilePaths()
-				                                       );
+						parameters.getFilePaths(),
+						manager.workers()
+				                                                                                  )).start();
 			}
 		});
 		InvokeOnJavaFXApplicationThread.invoke(() -> {
@@ -4,6 +4,9 @@ import gnu.trove.set.hash.TLongHashSet;
 import javafx.beans.InvalidationListener;
 import javafx.beans.property.DoubleProperty;
 import javafx.scene.Node;
+import javafx.scene.chart.AreaChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
 import javafx.scene.control.ButtonType;
@@ -24,6 +27,7 @@ import org.janelia.saalfeldlab.fx.TitledPanes;
 import org.janelia.saalfeldlab.fx.ui.NumberField;
 import org.janelia.saalfeldlab.fx.ui.ObjectField;
 import org.janelia.saalfeldlab.fx.undo.UndoFromEvents;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentState;
 import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentStateWithActionTracker;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.AssignmentAction;
@@ -31,6 +35,7 @@ import org.janelia.saalfeldlab.paintera.control.assignment.action.Detach;
 import org.janelia.saalfeldlab.paintera.control.assignment.action.Merge;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
 import org.janelia.saalfeldlab.paintera.control.selection.SelectedSegments;
+import org.janelia.saalfeldlab.paintera.data.BlockStatistics;
 import org.janelia.saalfeldlab.paintera.data.mask.MaskedSource;
 import org.janelia.saalfeldlab.paintera.meshes.ManagedMeshSettings;
 import org.janelia.saalfeldlab.paintera.meshes.MeshInfos;
@@ -44,6 +49,7 @@ import org.janelia.saalfeldlab.paintera.ui.source.axisorder.AxisOrderPane;
 import org.janelia.saalfeldlab.paintera.ui.source.composite.CompositePane;
 import org.janelia.saalfeldlab.paintera.ui.source.converter.ConverterPane;
 import org.janelia.saalfeldlab.paintera.ui.source.mesh.MeshPane;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.janelia.saalfeldlab.util.SciJavaUtils;
 import org.scijava.InstantiableException;
 import org.scijava.plugin.Plugin;
@@ -58,6 +64,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.function.LongPredicate;
 import java.util.function.Supplier;
@@ -67,6 +76,8 @@ public class SourceStateUIElementsDefaultFactory implements SourceStateUIElement
 
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
+	private static final ExecutorService HISTOGRAM_EXECUTOR = Executors.newSingleThreadExecutor(new NamedThreadFactory("threshold-histogram-%d", true));
+
 	private static Map<Class<?>, BindUnbindForConverterFactory> CONVERTER_SUPPLIER_FACTORIES_MAP = null;
 
 	private static BindUnbindForConverterFactory getConverterSupplierFactory(Class<?> clazz)
@@ -171,11 +182,45 @@ public class SourceStateUIElementsDefaultFactory implements SourceStateUIElement
 				GridPane.setHgrow(max.textField(), Priority.ALWAYS);
 				GridPane.setHgrow(foreground, Priority.ALWAYS);
 				GridPane.setHgrow(background, Priority.ALWAYS);
-				return TitledPanes.createCollapsed("Threshold", new VBox(checkBox, minMax));
+				final VBox contents = new VBox(checkBox, minMax);
+				state.getHistogramStatistics().ifPresent(statistics -> contents.getChildren().add(histogramChart(statistics)));
+				return TitledPanes.createCollapsed("Threshold", contents);
 			};
 			return new BindUnbindAndNodeSupplier[] {BindUnbindAndNodeSupplier.noBind(converter)};
 		}
 
+		/**
+		 * Histogram is computed from block statistics in the background and added to the chart when ready.
+		 */
+		private static Node histogramChart(final BlockStatistics<?> statistics)
+		{
+			final NumberAxis values = new NumberAxis(
+					statistics.getHistogramMin(),
+					statistics.getHistogramMax(),
+					(statistics.getHistogramMax() - statistics.getHistogramMin()) / 4);
+			final NumberAxis counts = new NumberAxis();
+			counts.setTickLabelsVisible(false);
+			final AreaChart<Number, Number> chart = new AreaChart<>(values, counts);
+			chart.setCreateSymbols(false);
+			chart.setLegendVisible(false);
+			chart.setAnimated(false);
+			chart.setPrefHeight(120);
+
+			CompletableFuture
+					.supplyAsync(statistics::histogram, HISTOGRAM_EXECUTOR)
+					.thenAccept(histogram -> InvokeOnJavaFXApplicationThread.invoke(() -> {
+						final XYChart.Series<Number, Number> series = new XYChart.Series<>();
+						for (int bin = 0; bin < histogram.length; ++bin)
+							series.getData().add(new XYChart.Data<>(statistics.binMin(bin), histogram[bin]));
+						chart.getData().add(series);
+					}))
+					.exceptionally(e -> {
+						LOG.warn("Unable to compute histogram", e);
+						return null;
+					});
+			return chart;
+		}
+
 		@Override
 		public Class<ThresholdingSourceState<?, ?>> getTargetClass() {
 			return (Class<ThresholdingSourceState<?, ?>>) (Class) ThresholdingSourceState.class;
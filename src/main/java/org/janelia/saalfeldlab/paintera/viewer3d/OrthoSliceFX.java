@@ -3,20 +3,19 @@ package org.janelia.saalfeldlab.paintera.viewer3d;
 import bdv.fx.viewer.ViewerPanelFX;
 import bdv.fx.viewer.render.RenderUnit;
 import javafx.beans.property.BooleanProperty;
+import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleIntegerProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 import javafx.scene.Group;
-import javafx.scene.image.PixelReader;
-import javafx.scene.image.PixelWriter;
 import javafx.scene.image.WritableImage;
 import javafx.scene.paint.Color;
 import javafx.scene.paint.PhongMaterial;
 import javafx.scene.shape.CullFace;
 import javafx.scene.shape.MeshView;
 import javafx.scene.transform.Affine;
-import net.imglib2.FinalDimensions;
 import net.imglib2.FinalInterval;
 import net.imglib2.Interval;
 import net.imglib2.RealPoint;
@@ -41,7 +40,16 @@ public class OrthoSliceFX
 	
 	private final PriorityLatestTaskExecutor delayedTextureUpdateExecutor = new PriorityLatestTaskExecutor(textureUpdateDelayNanoSec, new NamedThreadFactory("texture-update-thread-%d", true));
 
-	private final List<WritableImage> textures = new ArrayList<>();
+	private final OrthoSliceTexturePool textures = new OrthoSliceTexturePool();
+
+	private final IntegerProperty textureDownsamplingFactor = new SimpleIntegerProperty(1);
+	{
+		this.textureDownsamplingFactor.addListener((obs, oldv, newv) -> {
+			delayedTextureUpdateExecutor.cancel();
+			textures.setDownsamplingFactor(newv.intValue());
+			this.viewer.requestRepaint();
+		});
+	}
 
 	private int currentTextureScreenScaleIndex = -1;
 
@@ -99,9 +107,7 @@ public class OrthoSliceFX
 		this.screenScales = screenScales.clone();
 		delayedTextureUpdateExecutor.cancel();
 
-		textures.clear();
-		for (int i = 0; i < screenScales.length; ++i)
-			textures.add(null);
+		textures.reset(screenScales.length);
 	}
 
 	private void updateTexture(final RenderUnit.RenderResult newv)
@@ -113,41 +119,31 @@ public class OrthoSliceFX
 		// Screen scales are first initialized with the default setting (see RenderUnit),
 		// then the project metadata is loaded, and the screen scales are changed to the saved configuration.
 		// If the project screen scales are [1.0], sometimes the renderer receives a request to re-render the screen at screen scale 1, which results in the exception.
-		if (newv.getScreenScaleIndex() >= textures.size())
-			return;
-
-		final int[] textureImageSize = {(int) newv.getImage().getWidth(), (int) newv.getImage().getHeight()};
-		final WritableImage textureImage = getTextureImage(newv.getScreenScaleIndex(), textureImageSize);
-
+		// OrthoSliceTexturePool.update returns null in that case.
 		final Interval roi = Intervals.intersect(
 			Intervals.smallestContainingInterval(newv.getRenderTargetRealInterval()),
-			new FinalInterval(new FinalDimensions(textureImageSize))
+			new FinalInterval((long) newv.getImage().getWidth(), (long) newv.getImage().getHeight())
 		);
 
-		// copy relevant part of the rendered image into the texture image
-		final PixelReader pixelReader = newv.getImage().getPixelReader();
-		final PixelWriter pixelWriter = textureImage.getPixelWriter();
-		pixelWriter.setPixels(
-			(int) roi.min(0), // dst x
-			(int) roi.min(1), // dst y
-			(int) roi.dimension(0), // w
-			(int) roi.dimension(1),	// h
-			pixelReader, // src
-			(int) roi.min(0), // src x
-			(int) roi.min(1)  // src y
-		);
+		// copy relevant part of the rendered image into the back buffer of the texture
+		final OrthoSliceTexturePool.Texture texture = textures.update(newv.getImage(), newv.getScreenScaleIndex(), roi);
+		if (texture == null)
+			return;
 
 		// setup a task for setting the texture of the mesh
 		final int newScreenScaleIndex = newv.getScreenScaleIndex();
 		final Runnable updateTextureTask = () -> InvokeOnJavaFXApplicationThread.invoke(
 			() -> {
-				// calculate new texture coordinates depending on the ratio between the screen size and the rendered image
+				// calculate new texture coordinates depending on the ratio between the screen size and the texture
+				final WritableImage textureImage = texture.getImage();
+				final double[] textureImageSize = {textureImage.getWidth(), textureImage.getHeight()};
 				final float[] texCoordMin = {0.0f, 0.0f}, texCoordMax = new float[2];
 				for (int d = 0; d < 2; ++d)
-					texCoordMax[d] = (float) (dimensions[d] / (textureImageSize[d] / screenScales[newScreenScaleIndex]));
+					texCoordMax[d] = (float) (dimensions[d] / (textureImageSize[d] * texture.getDownsamplingFactor() / screenScales[newScreenScaleIndex]));
 
 				((PhongMaterial) this.meshViews.get(0).getMaterial()).setSelfIlluminationMap(textureImage);
 				((OrthoSliceMeshFX) this.meshViews.get(0).getMesh()).setTexCoords(texCoordMin, texCoordMax);
+				textures.markDisplayed(texture);
 
 				this.currentTextureScreenScaleIndex = newScreenScaleIndex;
 			}
@@ -168,18 +164,6 @@ public class OrthoSliceFX
 		}
 	}
 
-	private WritableImage getTextureImage(final int screenScaleIndex, final int[] size)
-	{
-		WritableImage textureImage = textures.get(screenScaleIndex);
-		final boolean create = textureImage == null || (int) textureImage.getWidth() != size[0] || (int) textureImage.getHeight() != size[1];
-		if (create)
-		{
-			textureImage = new WritableImage(size[0], size[1]);
-			textures.set(screenScaleIndex, textureImage);
-		}
-		return textureImage;
-	}
-
 	private void initializeMeshes()
 	{
 		this.meshViews.clear();
@@ -230,4 +214,13 @@ public class OrthoSliceFX
 		return this.isVisible;
 	}
 
+	/**
+	 *
+	 * @return factor by which the texture of this slice is downsampled with respect to the rendered 2D image
+	 */
+	public IntegerProperty textureDownsamplingFactorProperty()
+	{
+		return this.textureDownsamplingFactor;
+	}
+
 }
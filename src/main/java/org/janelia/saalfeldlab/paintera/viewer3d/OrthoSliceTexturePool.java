@@ -0,0 +1,250 @@
+package org.janelia.saalfeldlab.paintera.viewer3d;
+
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Intervals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Double-buffered textures for {@link OrthoSliceFX}, one pair for each screen scale. Images are re-allocated only when
+ * the size of the rendered image at a screen scale changes. Rendered images are copied into the buffer that is not
+ * currently displayed, and only the region that changed since that buffer was last updated is copied.
+ * <p>
+ * Textures can be downsampled by an integer factor independently of the screen scale of the 2D viewer to reduce
+ * texture upload for the 3D viewer.
+ */
+public class OrthoSliceTexturePool
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final PixelFormat<IntBuffer> PIXEL_FORMAT = PixelFormat.getIntArgbPreInstance();
+
+	/**
+	 * A texture image and the information necessary to map it onto the ortho slice.
+	 */
+	public static class Texture
+	{
+
+		private final WritableImage image;
+
+		private final int screenScaleIndex;
+
+		private final int downsamplingFactor;
+
+		private final TexturePair pair;
+
+		private final int bufferIndex;
+
+		private Texture(
+				final WritableImage image,
+				final int screenScaleIndex,
+				final int downsamplingFactor,
+				final TexturePair pair,
+				final int bufferIndex)
+		{
+			this.image = image;
+			this.screenScaleIndex = screenScaleIndex;
+			this.downsamplingFactor = downsamplingFactor;
+			this.pair = pair;
+			this.bufferIndex = bufferIndex;
+		}
+
+		public WritableImage getImage()
+		{
+			return image;
+		}
+
+		public int getScreenScaleIndex()
+		{
+			return screenScaleIndex;
+		}
+
+		/**
+		 * @return factor by which the texture is downsampled with respect to the rendered image
+		 */
+		public int getDownsamplingFactor()
+		{
+			return downsamplingFactor;
+		}
+	}
+
+	private static class TexturePair
+	{
+
+		private final int width;
+
+		private final int height;
+
+		private final WritableImage[] buffers;
+
+		/**
+		 * Region of each buffer that is out of date, or {@code null} if the buffer is up to date.
+		 */
+		private final Interval[] stale;
+
+		private volatile int displayedIndex = -1;
+
+		private TexturePair(final int width, final int height)
+		{
+			this.width = width;
+			this.height = height;
+			this.buffers = new WritableImage[] {new WritableImage(width, height), new WritableImage(width, height)};
+			final Interval all = new FinalInterval(width, height);
+			this.stale = new Interval[] {all, all};
+		}
+
+		private boolean hasSize(final int width, final int height)
+		{
+			return this.width == width && this.height == height;
+		}
+	}
+
+	private final List<TexturePair> pairs = new ArrayList<>();
+
+	private int downsamplingFactor = 1;
+
+	private int[] rowBuffer = new int[0];
+
+	/**
+	 * Discard all textures and prepare for {@code numScreenScales} screen scales.
+	 *
+	 * @param numScreenScales number of screen scales
+	 */
+	public synchronized void reset(final int numScreenScales)
+	{
+		pairs.clear();
+		for (int i = 0; i < numScreenScales; ++i)
+			pairs.add(null);
+	}
+
+	public synchronized int numScreenScales()
+	{
+		return pairs.size();
+	}
+
+	/**
+	 * Set the downsampling factor for textures. All textures are discarded if the factor changes.
+	 *
+	 * @param downsamplingFactor positive integer
+	 */
+	public synchronized void setDownsamplingFactor(final int downsamplingFactor)
+	{
+		if (downsamplingFactor < 1)
+			throw new IllegalArgumentException("Downsampling factor must be positive but got " + downsamplingFactor);
+		if (downsamplingFactor != this.downsamplingFactor)
+		{
+			this.downsamplingFactor = downsamplingFactor;
+			reset(pairs.size());
+		}
+	}
+
+	public synchronized int getDownsamplingFactor()
+	{
+		return downsamplingFactor;
+	}
+
+	/**
+	 * Copy {@code roi} of {@code image} into the back buffer for {@code screenScaleIndex}.
+	 *
+	 * @param image rendered image
+	 * @param screenScaleIndex screen scale at which {@code image} was rendered
+	 * @param roi region of {@code image} that was updated
+	 * @return texture that holds the current contents of {@code image}, or {@code null} if {@code screenScaleIndex} is
+	 * out of range. Call {@link #markDisplayed(Texture)} on the JavaFX application thread once the texture is shown.
+	 */
+	public synchronized Texture update(final Image image, final int screenScaleIndex, final Interval roi)
+	{
+		if (screenScaleIndex < 0 || screenScaleIndex >= pairs.size())
+			return null;
+
+		final int f = downsamplingFactor;
+		final int imageWidth = (int) image.getWidth();
+		final int imageHeight = (int) image.getHeight();
+		final int width = (imageWidth + f - 1) / f;
+		final int height = (imageHeight + f - 1) / f;
+
+		TexturePair pair = pairs.get(screenScaleIndex);
+		if (pair == null || !pair.hasSize(width, height))
+		{
+			LOG.debug("Allocating textures of size {}x{} for screen scale index {}", width, height, screenScaleIndex);
+			pair = new TexturePair(width, height);
+			pairs.set(screenScaleIndex, pair);
+		}
+
+		// downsampled roi in texture coordinates
+		final Interval textureRoi = Intervals.intersect(
+				new FinalInterval(
+						new long[] {ceilDiv(roi.min(0), f), ceilDiv(roi.min(1), f)},
+						new long[] {Math.floorDiv(roi.max(0), f), Math.floorDiv(roi.max(1), f)}),
+				new FinalInterval(width, height));
+
+		final int back = pair.displayedIndex == 0 ? 1 : 0;
+		final int front = 1 - back;
+		final Interval copyRegion = union(pair.stale[back], textureRoi);
+		if (copyRegion != null && !Intervals.isEmpty(copyRegion))
+			copy(image, pair.buffers[back], copyRegion, f);
+		pair.stale[back] = null;
+		pair.stale[front] = union(pair.stale[front], textureRoi);
+
+		return new Texture(pair.buffers[back], screenScaleIndex, f, pair, back);
+	}
+
+	/**
+	 * Must be called on the JavaFX application thread after {@code texture} was set as texture image. Subsequent updates
+	 * for the same screen scale will be copied into the other buffer.
+	 */
+	public void markDisplayed(final Texture texture)
+	{
+		texture.pair.displayedIndex = texture.bufferIndex;
+	}
+
+	private void copy(final Image source, final WritableImage target, final Interval region, final int f)
+	{
+		final int x = (int) region.min(0);
+		final int y = (int) region.min(1);
+		final int w = (int) region.dimension(0);
+		final int h = (int) region.dimension(1);
+		if (f == 1)
+		{
+			target.getPixelWriter().setPixels(x, y, w, h, source.getPixelReader(), x, y);
+			return;
+		}
+
+		// read full resolution rows and subsample
+		final int sourceWidth = Math.min((x + w - 1) * f + 1, (int) source.getWidth()) - x * f;
+		if (rowBuffer.length < sourceWidth + w)
+			rowBuffer = new int[sourceWidth + w];
+		for (int row = 0; row < h; ++row)
+		{
+			source.getPixelReader().getPixels(x * f, (y + row) * f, sourceWidth, 1, PIXEL_FORMAT, rowBuffer, 0, sourceWidth);
+			for (int col = 0; col < w; ++col)
+				rowBuffer[sourceWidth + col] = rowBuffer[col * f];
+			target.getPixelWriter().setPixels(x, y + row, w, 1, PIXEL_FORMAT, rowBuffer, sourceWidth, w);
+		}
+	}
+
+	private static Interval union(final Interval a, final Interval b)
+	{
+		if (a == null || Intervals.isEmpty(a))
+			return b;
+		if (b == null || Intervals.isEmpty(b))
+			return a;
+		return Intervals.union(a, b);
+	}
+
+	private static long ceilDiv(final long numerator, final int denominator)
+	{
+		return -Math.floorDiv(-numerator, denominator);
+	}
+
+}
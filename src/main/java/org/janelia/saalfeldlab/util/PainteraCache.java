@@ -48,4 +48,15 @@ public class PainteraCache {
 		}
 	}
 
+	public static void writeLines(Class<?> clazz, String filename, List<String> lines) {
+		final Path p = getCacheFile(clazz, filename);
+		try {
+			LOG.debug("Writing {} lines to {}", lines.size(), p);
+			p.getParent().toFile().mkdirs();
+			Files.write(p, lines);
+		} catch (IOException e) {
+			LOG.debug("Caught exception when trying to write lines to file at {}: {}", p, lines, e);
+		}
+	}
+
 }
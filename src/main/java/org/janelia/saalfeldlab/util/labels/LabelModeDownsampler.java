@@ -0,0 +1,321 @@
+package org.janelia.saalfeldlab.util.labels;
+
+import java.util.Arrays;
+
+/**
+ * Winner-takes-all (mode) downsampling of label data stored in flat primitive arrays (first dimension varies fastest).
+ * Each target voxel is set to the most frequent label within its window of {@code steps} source voxels. Windows are
+ * clipped to the source dimensions at the upper border.
+ * <p>
+ * Labels are counted in a fixed-size open-addressing table that is allocated once and reset after every window. If
+ * all source voxels carry the same label, the target is filled without counting. Instances are not thread-safe: use
+ * one instance per thread.
+ */
+public class LabelModeDownsampler
+{
+
+	private static final int MAX_WINDOW_SIZE = 1 << 20;
+
+	private final int[] steps;
+
+	private final int windowSize;
+
+	private final long emptyWindowValue;
+
+	private final long[] keys;
+
+	private final int[] counts;
+
+	private final int[] occupiedSlots;
+
+	private final int slotMask;
+
+	private int numOccupiedSlots = 0;
+
+	private final int[] windowPosition;
+
+	private final int[] windowExtent;
+
+	/**
+	 * @param emptyWindowValue assigned to target voxels whose window does not contain any source voxel
+	 * @param steps downsampling factor for each dimension
+	 */
+	public LabelModeDownsampler(final long emptyWindowValue, final int... steps)
+	{
+		long windowSize = 1;
+		for (final int step : steps)
+		{
+			if (step < 1)
+				throw new IllegalArgumentException("Steps must be positive: " + Arrays.toString(steps));
+			windowSize *= step;
+		}
+		if (windowSize > MAX_WINDOW_SIZE)
+			throw new IllegalArgumentException("Window too large: " + Arrays.toString(steps));
+		this.steps = steps.clone();
+		this.windowSize = (int) windowSize;
+		this.emptyWindowValue = emptyWindowValue;
+		// at most half full
+		final int capacity = Integer.highestOneBit(this.windowSize) << 2;
+		this.keys = new long[capacity];
+		this.counts = new int[capacity];
+		this.occupiedSlots = new int[this.windowSize];
+		this.slotMask = capacity - 1;
+		this.windowPosition = new int[steps.length];
+		this.windowExtent = new int[steps.length];
+	}
+
+	public int[] getSteps()
+	{
+		return steps.clone();
+	}
+
+	/**
+	 * @return dimensions of the target for {@code sourceDimensions}, such that every source voxel contributes to
+	 * exactly one target voxel
+	 */
+	public int[] targetDimensions(final int[] sourceDimensions)
+	{
+		final int[] targetDimensions = new int[sourceDimensions.length];
+		Arrays.setAll(targetDimensions, d -> (sourceDimensions[d] + steps[d] - 1) / steps[d]);
+		return targetDimensions;
+	}
+
+	/**
+	 * @param source source labels with {@code sourceDimensions}
+	 * @param sourceDimensions dimensions of {@code source}
+	 * @param target target labels with {@code targetDimensions}
+	 * @param targetDimensions dimensions of {@code target}. Target voxels that are not covered by any source voxel
+	 *                         are set to {@code emptyWindowValue}.
+	 */
+	public void downsample(final long[] source, final int[] sourceDimensions, final long[] target, final int[] targetDimensions)
+	{
+		final int numTargetElements = checkDimensions(source.length, sourceDimensions, target.length, targetDimensions);
+		if (isUniform(source, numElements(sourceDimensions)) && coversTarget(sourceDimensions, targetDimensions))
+		{
+			Arrays.fill(target, 0, numTargetElements, source[0]);
+			return;
+		}
+
+		final int[] strides = strides(sourceDimensions);
+		final int[] targetPosition = new int[targetDimensions.length];
+		for (int t = 0; t < numTargetElements; ++t)
+		{
+			final int offset = windowOffset(targetPosition, sourceDimensions, strides);
+			target[t] = offset < 0 ? emptyWindowValue : modeOfWindow(source, offset, strides);
+			increment(targetPosition, targetDimensions);
+		}
+	}
+
+	/**
+	 * Same as {@link #downsample(long[], int[], long[], int[])} for labels stored as {@code int}. Labels are treated
+	 * as unsigned.
+	 */
+	public void downsample(final int[] source, final int[] sourceDimensions, final int[] target, final int[] targetDimensions)
+	{
+		final int numTargetElements = checkDimensions(source.length, sourceDimensions, target.length, targetDimensions);
+		if (isUniform(source, numElements(sourceDimensions)) && coversTarget(sourceDimensions, targetDimensions))
+		{
+			Arrays.fill(target, 0, numTargetElements, source[0]);
+			return;
+		}
+
+		final int[] strides = strides(sourceDimensions);
+		final int[] targetPosition = new int[targetDimensions.length];
+		for (int t = 0; t < numTargetElements; ++t)
+		{
+			final int offset = windowOffset(targetPosition, sourceDimensions, strides);
+			target[t] = offset < 0 ? (int) emptyWindowValue : (int) modeOfWindow(source, offset, strides);
+			increment(targetPosition, targetDimensions);
+		}
+	}
+
+	private long modeOfWindow(final long[] source, final int offset, final int[] strides)
+	{
+		final int n = windowPosition.length;
+		final int majority = windowSize / 2 + 1;
+		Arrays.fill(windowPosition, 0);
+		long mode = source[offset];
+		int modeCount = 0;
+		for (int index = offset; ; )
+		{
+			final long label = source[index];
+			final int count = incrementCount(label);
+			if (count > modeCount)
+			{
+				mode = label;
+				modeCount = count;
+				if (modeCount >= majority)
+					break;
+			}
+			int d = 0;
+			for (; d < n; ++d)
+			{
+				if (++windowPosition[d] < windowExtent[d])
+				{
+					index += strides[d];
+					break;
+				}
+				index -= (windowExtent[d] - 1) * strides[d];
+				windowPosition[d] = 0;
+			}
+			if (d == n)
+				break;
+		}
+		resetCounts();
+		return mode;
+	}
+
+	private long modeOfWindow(final int[] source, final int offset, final int[] strides)
+	{
+		final int n = windowPosition.length;
+		final int majority = windowSize / 2 + 1;
+		Arrays.fill(windowPosition, 0);
+		long mode = source[offset] & 0xffffffffL;
+		int modeCount = 0;
+		for (int index = offset; ; )
+		{
+			final long label = source[index] & 0xffffffffL;
+			final int count = incrementCount(label);
+			if (count > modeCount)
+			{
+				mode = label;
+				modeCount = count;
+				if (modeCount >= majority)
+					break;
+			}
+			int d = 0;
+			for (; d < n; ++d)
+			{
+				if (++windowPosition[d] < windowExtent[d])
+				{
+					index += strides[d];
+					break;
+				}
+				index -= (windowExtent[d] - 1) * strides[d];
+				windowPosition[d] = 0;
+			}
+			if (d == n)
+				break;
+		}
+		resetCounts();
+		return mode;
+	}
+
+	private int incrementCount(final long label)
+	{
+		for (int slot = hash(label) & slotMask; ; slot = (slot + 1) & slotMask)
+		{
+			if (counts[slot] == 0)
+			{
+				keys[slot] = label;
+				counts[slot] = 1;
+				occupiedSlots[numOccupiedSlots++] = slot;
+				return 1;
+			}
+			if (keys[slot] == label)
+				return ++counts[slot];
+		}
+	}
+
+	private void resetCounts()
+	{
+		for (int i = 0; i < numOccupiedSlots; ++i)
+			counts[occupiedSlots[i]] = 0;
+		numOccupiedSlots = 0;
+	}
+
+	/**
+	 * Set {@link #windowExtent} for the window of {@code targetPosition}.
+	 *
+	 * @return offset of the first source voxel in the window, or {@code -1} if the window is empty
+	 */
+	private int windowOffset(final int[] targetPosition, final int[] sourceDimensions, final int[] strides)
+	{
+		int offset = 0;
+		for (int d = 0; d < targetPosition.length; ++d)
+		{
+			final int min = targetPosition[d] * steps[d];
+			windowExtent[d] = Math.min(steps[d], sourceDimensions[d] - min);
+			if (windowExtent[d] <= 0)
+				return -1;
+			offset += min * strides[d];
+		}
+		return offset;
+	}
+
+	private int checkDimensions(
+			final int sourceLength,
+			final int[] sourceDimensions,
+			final int targetLength,
+			final int[] targetDimensions)
+	{
+		if (sourceDimensions.length != steps.length || targetDimensions.length != steps.length)
+			throw new IllegalArgumentException(String.format(
+					"Dimensionality mismatch: steps=%s source=%s target=%s",
+					Arrays.toString(steps),
+					Arrays.toString(sourceDimensions),
+					Arrays.toString(targetDimensions)));
+		final long numSourceElements = numElements(sourceDimensions);
+		final long numTargetElements = numElements(targetDimensions);
+		if (sourceLength < numSourceElements || targetLength < numTargetElements)
+			throw new IllegalArgumentException(String.format(
+					"Arrays too small for dimensions: source=%d %s target=%d %s",
+					sourceLength,
+					Arrays.toString(sourceDimensions),
+					targetLength,
+					Arrays.toString(targetDimensions)));
+		return (int) numTargetElements;
+	}
+
+	private boolean coversTarget(final int[] sourceDimensions, final int[] targetDimensions)
+	{
+		for (int d = 0; d < steps.length; ++d)
+			if ((long) (targetDimensions[d] - 1) * steps[d] >= sourceDimensions[d])
+				return false;
+		return true;
+	}
+
+	private static boolean isUniform(final long[] source, final long length)
+	{
+		for (int i = 1; i < length; ++i)
+			if (source[i] != source[0])
+				return false;
+		return length > 0;
+	}
+
+	private static boolean isUniform(final int[] source, final long length)
+	{
+		for (int i = 1; i < length; ++i)
+			if (source[i] != source[0])
+				return false;
+		return length > 0;
+	}
+
+	private static int[] strides(final int[] dimensions)
+	{
+		final int[] strides = new int[dimensions.length];
+		for (int d = 0, stride = 1; d < dimensions.length; stride *= dimensions[d], ++d)
+			strides[d] = stride;
+		return strides;
+	}
+
+	private static void increment(final int[] position, final int[] dimensions)
+	{
+		for (int d = 0; d < position.length && ++position[d] == dimensions[d]; ++d)
+			position[d] = 0;
+	}
+
+	private static long numElements(final int[] dimensions)
+	{
+		long numElements = 1;
+		for (final int dimension : dimensions)
+			numElements *= dimension;
+		return numElements;
+	}
+
+	private static int hash(final long label)
+	{
+		return (int) ((label * 0x9E3779B97F4A7C15L) >>> 32);
+	}
+
+}
@@ -0,0 +1,295 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import com.google.gson.JsonElement;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GsonAttributesParser;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import pl.touk.throwing.ThrowingSupplier;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+
+/**
+ * {@link N5Reader} that caches the meta data of a delegate: existence of groups, group listings, dataset attributes,
+ * and attributes. If the delegate is a {@link GsonAttributesParser}, e.g. {@link org.janelia.saalfeldlab.n5.N5FSReader},
+ * the attributes of a group are read and parsed only once and all attribute queries for that group are answered
+ * from the parsed json. Otherwise, attribute queries are passed through to the delegate. Blocks are never cached.
+ * <p>
+ * Cached meta data is not refreshed: modifications of the container through any other reader or writer are not
+ * visible. Use {@link CachedN5Writer} to invalidate the cache on local modifications.
+ */
+public class CachedN5Reader implements N5Reader
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final ExecutorService PREWARM_WORKERS = Executors.newFixedThreadPool(
+			8,
+			new NamedThreadFactory("n5-metadata-prewarm-%d", true));
+
+	private final N5Reader delegate;
+
+	private final Map<String, Boolean> exists = new ConcurrentHashMap<>();
+
+	private final Map<String, String[]> lists = new ConcurrentHashMap<>();
+
+	private final Map<String, Map<String, Class<?>>> attributeLists = new ConcurrentHashMap<>();
+
+	private final Map<String, Optional<DatasetAttributes>> datasetAttributes = new ConcurrentHashMap<>();
+
+	private final Map<String, Map<String, JsonElement>> attributes = new ConcurrentHashMap<>();
+
+	/**
+	 * Held while loading into the cache, held exclusively while modifying the container and invalidating the cache.
+	 */
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	public CachedN5Reader(final N5Reader delegate)
+	{
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return {@code reader} if it is a {@link CachedN5Reader} already, a new {@link CachedN5Reader} otherwise
+	 */
+	public static CachedN5Reader cached(final N5Reader reader)
+	{
+		return reader instanceof CachedN5Reader ? (CachedN5Reader) reader : new CachedN5Reader(reader);
+	}
+
+	/**
+	 * @return the reader underlying {@code reader} if it is a {@link CachedN5Reader}, {@code reader} otherwise
+	 */
+	public static N5Reader unwrap(final N5Reader reader)
+	{
+		return reader instanceof CachedN5Reader ? unwrap(((CachedN5Reader) reader).delegate()) : reader;
+	}
+
+	public N5Reader delegate()
+	{
+		return this.delegate;
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws IOException
+	{
+		if (!(delegate instanceof GsonAttributesParser))
+			return delegate.getAttribute(pathName, key, clazz);
+		final Map<String, JsonElement> attributes = cached(this.attributes, pathName, () -> ((GsonAttributesParser) delegate).getAttributes(pathName));
+		final JsonElement attribute = attributes == null ? null : attributes.get(key);
+		return attribute == null ? null : ((GsonAttributesParser) delegate).getGson().fromJson(attribute, clazz);
+	}
+
+	@Override
+	public DatasetAttributes getDatasetAttributes(final String pathName) throws IOException
+	{
+		return cached(datasetAttributes, pathName, () -> Optional.ofNullable(delegate.getDatasetAttributes(pathName))).orElse(null);
+	}
+
+	@Override
+	public DataBlock<?> readBlock(
+			final String pathName,
+			final DatasetAttributes datasetAttributes,
+			final long[] gridPosition) throws IOException
+	{
+		return delegate.readBlock(pathName, datasetAttributes, gridPosition);
+	}
+
+	@Override
+	public boolean exists(final String pathName)
+	{
+		try
+		{
+			return cached(exists, pathName, () -> delegate.exists(pathName));
+		} catch (final IOException e)
+		{
+			// delegate.exists does not throw
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException
+	{
+		final String[] list = cached(lists, pathName, () -> delegate.list(pathName));
+		return list == null ? null : list.clone();
+	}
+
+	@Override
+	public Map<String, Class<?>> listAttributes(final String pathName) throws IOException
+	{
+		final Map<String, Class<?>> attributes = cached(attributeLists, pathName, () -> delegate.listAttributes(pathName));
+		return attributes == null ? null : new HashMap<>(attributes);
+	}
+
+	/**
+	 * Prewarm the cache for {@code groups} and their descendants in parallel. Traversal stops at datasets.
+	 *
+	 * @param groups prewarm these groups and their descendants
+	 * @throws IOException if the delegate fails to read meta data
+	 * @throws InterruptedException if interrupted while waiting for the meta data
+	 */
+	public void prewarm(final String... groups) throws IOException, InterruptedException
+	{
+		prewarm(Arrays.asList(groups), PREWARM_WORKERS);
+	}
+
+	/**
+	 * Prewarm the cache for {@code groups} and their descendants in parallel. Traversal stops at datasets. Tasks
+	 * submitted to {@code es} do not wait for each other.
+	 *
+	 * @param groups prewarm these groups and their descendants
+	 * @param es read meta data of a group in parallel on {@code es}
+	 * @throws IOException if the delegate fails to read meta data
+	 * @throws InterruptedException if interrupted while waiting for the meta data
+	 */
+	public void prewarm(final Collection<String> groups, final ExecutorService es) throws IOException, InterruptedException
+	{
+		List<String> level = new ArrayList<>(groups);
+		while (level.size() > 0)
+		{
+			LOG.debug("Prewarming meta data for {}", level);
+			final List<Future<List<String>>> futures = new ArrayList<>();
+			for (final String group : level)
+				futures.add(es.submit(() -> prewarmGroup(group)));
+			final List<String> nextLevel = new ArrayList<>();
+			for (final Future<List<String>> future : futures)
+			{
+				try
+				{
+					nextLevel.addAll(future.get());
+				} catch (final ExecutionException e)
+				{
+					if (e.getCause() instanceof IOException)
+						throw (IOException) e.getCause();
+					throw new IOException(e.getCause());
+				}
+			}
+			level = nextLevel;
+		}
+	}
+
+	private List<String> prewarmGroup(final String group) throws IOException
+	{
+		if (!exists(group))
+			return new ArrayList<>();
+		listAttributes(group);
+		getAttribute(group, N5Helpers.MULTI_SCALE_KEY, Boolean.class);
+		if (datasetExists(group))
+			return new ArrayList<>();
+		return Arrays
+				.stream(list(group))
+				.map(child -> group + "/" + child)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * Remove cached meta data of {@code pathName} and all its descendants, and existence and listings of all its
+	 * ancestors.
+	 */
+	public void invalidate(final String pathName)
+	{
+		lock.writeLock().lock();
+		try
+		{
+			removeFromCache(normalize(pathName));
+		} finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void invalidateAll()
+	{
+		invalidate("");
+	}
+
+	/**
+	 * Run {@code modification} of the container at {@code pathName} exclusively, i.e. while no meta data is loaded
+	 * into the cache, and {@link #invalidate(String) invalidate} {@code pathName} afterwards.
+	 */
+	protected <T> T modify(final String pathName, final ThrowingSupplier<T, IOException> modification) throws IOException
+	{
+		lock.writeLock().lock();
+		try
+		{
+			return modification.get();
+		} finally
+		{
+			removeFromCache(normalize(pathName));
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void removeFromCache(final String path)
+	{
+		LOG.trace("Invalidating {}", path);
+		for (final Map<String, ?> cache : Arrays.asList(exists, lists, attributeLists, datasetAttributes, attributes))
+			cache.keySet().removeIf(p -> isSameOrDescendant(p, path));
+		exists.keySet().removeIf(p -> isSameOrDescendant(path, p));
+		lists.keySet().removeIf(p -> isSameOrDescendant(path, p));
+	}
+
+	private <T> T cached(
+			final Map<String, T> cache,
+			final String pathName,
+			final ThrowingSupplier<T, IOException> load) throws IOException
+	{
+		final String path = normalize(pathName);
+		final T cached = cache.get(path);
+		if (cached != null)
+			return cached;
+		lock.readLock().lock();
+		try
+		{
+			final T loaded = load.get();
+			// ConcurrentHashMap does not accept null values: do not cache
+			if (loaded == null)
+				return null;
+			final T previous = cache.putIfAbsent(path, loaded);
+			return previous == null ? loaded : previous;
+		} finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	private static String normalize(final String pathName)
+	{
+		return Arrays
+				.stream(pathName.split("/"))
+				.filter(s -> s.length() > 0)
+				.collect(Collectors.joining("/"));
+	}
+
+	private static boolean isSameOrDescendant(final String path, final String ancestor)
+	{
+		return ancestor.length() == 0 || path.equals(ancestor) || path.startsWith(ancestor + "/");
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("{Cached: %s}", delegate);
+	}
+
+}
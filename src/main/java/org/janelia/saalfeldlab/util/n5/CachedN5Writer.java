@@ -0,0 +1,80 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Writer;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * {@link CachedN5Reader} that writes through to a delegate {@link N5Writer}. Cached meta data of modified groups is
+ * invalidated. Writing blocks does not modify meta data and does not invalidate the cache.
+ */
+public class CachedN5Writer extends CachedN5Reader implements N5Writer
+{
+
+	private final N5Writer delegate;
+
+	public CachedN5Writer(final N5Writer delegate)
+	{
+		super(delegate);
+		this.delegate = delegate;
+	}
+
+	/**
+	 * @return {@code writer} if it is a {@link CachedN5Writer} already, a new {@link CachedN5Writer} otherwise
+	 */
+	public static CachedN5Writer cached(final N5Writer writer)
+	{
+		return writer instanceof CachedN5Writer ? (CachedN5Writer) writer : new CachedN5Writer(writer);
+	}
+
+	/**
+	 * @return the writer underlying {@code writer} if it is a {@link CachedN5Writer}, {@code writer} otherwise
+	 */
+	public static N5Writer unwrap(final N5Writer writer)
+	{
+		return writer instanceof CachedN5Writer ? unwrap(((CachedN5Writer) writer).delegate()) : writer;
+	}
+
+	@Override
+	public N5Writer delegate()
+	{
+		return this.delegate;
+	}
+
+	@Override
+	public void setAttributes(final String pathName, final Map<String, ?> attributes) throws IOException
+	{
+		modify(pathName, () -> {
+			delegate.setAttributes(pathName, attributes);
+			return null;
+		});
+	}
+
+	@Override
+	public void createGroup(final String pathName) throws IOException
+	{
+		modify(pathName, () -> {
+			delegate.createGroup(pathName);
+			return null;
+		});
+	}
+
+	@Override
+	public boolean remove(final String pathName) throws IOException
+	{
+		return modify(pathName, () -> delegate.remove(pathName));
+	}
+
+	@Override
+	public <T> void writeBlock(
+			final String pathName,
+			final DatasetAttributes datasetAttributes,
+			final DataBlock<T> dataBlock) throws IOException
+	{
+		delegate.writeBlock(pathName, datasetAttributes, dataBlock);
+	}
+
+}
@@ -0,0 +1,280 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.Arrays;
+
+/**
+ * {@link CacheLoader} that stores a selection of channels of an N5 dataset interleaved in a single primitive array per
+ * cell. The loaded image has the selected channels as its first (fastest varying) dimension, followed by all spatial
+ * dimensions of the dataset in their original order. Each cell spans all selected channels and one spatial block of
+ * the dataset, i.e. a cell is loaded with a single N5 read if the block size of the dataset along the channel
+ * dimension covers all selected channels, and with one read per block along the channel dimension otherwise.
+ * <p>
+ * Blocks that do not exist are loaded as zeros.
+ *
+ * @param <A> access type
+ */
+public class ChannelInterleavedN5CacheLoader<A extends ArrayDataAccess<A>> implements CacheLoader<Long, Cell<A>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final N5Reader reader;
+
+	private final String dataset;
+
+	private final DatasetAttributes attributes;
+
+	private final int channelDimension;
+
+	private final long[] channels;
+
+	private final CellGrid grid;
+
+	private final A accessTemplate;
+
+	/**
+	 * @param reader container
+	 * @param dataset dataset
+	 * @param attributes attributes of {@code dataset}
+	 * @param channelDimension channel dimension of {@code dataset}
+	 * @param channels load these channels in this order
+	 * @param accessTemplate create access for each cell from this template, must match data type of {@code dataset}
+	 */
+	public ChannelInterleavedN5CacheLoader(
+			final N5Reader reader,
+			final String dataset,
+			final DatasetAttributes attributes,
+			final int channelDimension,
+			final long[] channels,
+			final A accessTemplate)
+	{
+		if (!isSupported(attributes.getDataType()))
+			throw new IllegalArgumentException("Data type not supported: " + attributes.getDataType());
+		this.reader = reader;
+		this.dataset = dataset;
+		this.attributes = attributes;
+		this.channelDimension = channelDimension;
+		this.channels = channels.clone();
+		this.grid = grid(attributes, channelDimension, channels.length);
+		this.accessTemplate = accessTemplate;
+	}
+
+	/**
+	 * @param attributes attributes of dataset
+	 * @param channelDimension channel dimension of dataset
+	 * @param numChannels number of selected channels
+	 * @return grid of the channel-interleaved image: {@code numChannels} followed by the spatial dimensions and block
+	 * size of the dataset
+	 */
+	public static CellGrid grid(final DatasetAttributes attributes, final int channelDimension, final int numChannels)
+	{
+		final long[] dimensions = attributes.getDimensions();
+		final int[] blockSize = attributes.getBlockSize();
+		final long[] interleavedDimensions = new long[dimensions.length];
+		final int[] interleavedBlockSize = new int[dimensions.length];
+		interleavedDimensions[0] = numChannels;
+		interleavedBlockSize[0] = numChannels;
+		for (int d = 0, target = 1; d < dimensions.length; ++d)
+		{
+			if (d == channelDimension)
+				continue;
+			interleavedDimensions[target] = dimensions[d];
+			interleavedBlockSize[target] = blockSize[d];
+			++target;
+		}
+		return new CellGrid(interleavedDimensions, interleavedBlockSize);
+	}
+
+	public CellGrid getGrid()
+	{
+		return grid;
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception
+	{
+		final int n = grid.numDimensions();
+		final long[] cellMin = new long[n];
+		final int[] cellDims = new int[n];
+		grid.getCellDimensions(key, cellMin, cellDims);
+
+		final int numChannels = channels.length;
+		final int numSpatialElements = (int) Intervals.numElements(cellDims) / numChannels;
+		final A access = accessTemplate.createArray(numChannels * numSpatialElements);
+		final Object storage = access.getCurrentStorageArray();
+
+		final int[] datasetBlockSize = attributes.getBlockSize();
+		final long[] gridPosition = new long[n];
+		for (int d = 0, source = 1; d < n; ++d)
+		{
+			if (d != channelDimension)
+				gridPosition[d] = cellMin[source++] / datasetBlockSize[d];
+		}
+
+		// read each block along the channel dimension only once, even if it holds multiple selected channels
+		final boolean[] isCopied = new boolean[numChannels];
+		for (int channel = 0; channel < numChannels; ++channel)
+		{
+			if (isCopied[channel])
+				continue;
+			final long channelBlock = channels[channel] / datasetBlockSize[channelDimension];
+			gridPosition[channelDimension] = channelBlock;
+			final DataBlock<?> block = reader.readBlock(dataset, attributes, gridPosition);
+			for (int other = channel; other < numChannels; ++other)
+			{
+				if (channels[other] / datasetBlockSize[channelDimension] != channelBlock)
+					continue;
+				isCopied[other] = true;
+				if (block == null)
+					continue;
+				copyChannel(block, (int) (channels[other] - channelBlock * datasetBlockSize[channelDimension]), storage, other, numChannels, numSpatialElements);
+			}
+			if (block == null)
+				LOG.trace("Block {} of dataset {} does not exist, loading zeros", gridPosition, dataset);
+		}
+
+		return new Cell<>(cellDims, cellMin, access);
+	}
+
+	/**
+	 * Copy channel {@code sourceChannel} of {@code block} into {@code target} at every {@code numChannels}th position,
+	 * starting at {@code targetChannel}.
+	 */
+	private void copyChannel(
+			final DataBlock<?> block,
+			final int sourceChannel,
+			final Object target,
+			final int targetChannel,
+			final int numChannels,
+			final int numSpatialElements) throws IOException
+	{
+		final int[] blockSize = block.getSize();
+		final int[] steps = new int[blockSize.length];
+		for (int d = 0, step = 1; d < blockSize.length; ++d)
+		{
+			steps[d] = step;
+			step *= blockSize[d];
+		}
+		if (Intervals.numElements(blockSize) / blockSize[channelDimension] != numSpatialElements)
+			throw new IOException(String.format(
+					"Size of block %s in dataset %s does not match cell: %s",
+					Arrays.toString(block.getGridPosition()),
+					dataset,
+					Arrays.toString(blockSize)));
+
+		// walk the spatial positions of the block in flat order, skipping the channel dimension
+		final int[] sourceIndices = new int[numSpatialElements];
+		final int[] position = new int[blockSize.length];
+		final int channelOffset = sourceChannel * steps[channelDimension];
+		for (int i = 0, index = channelOffset; i < numSpatialElements; ++i)
+		{
+			sourceIndices[i] = index;
+			for (int d = 0; d < blockSize.length; ++d)
+			{
+				if (d == channelDimension)
+					continue;
+				if (++position[d] < blockSize[d])
+				{
+					index += steps[d];
+					break;
+				}
+				index -= (blockSize[d] - 1) * steps[d];
+				position[d] = 0;
+			}
+		}
+
+		final Object source = block.getData();
+		switch (attributes.getDataType())
+		{
+			case INT8:
+			case UINT8:
+			{
+				final byte[] s = (byte[]) source;
+				final byte[] t = (byte[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			case INT16:
+			case UINT16:
+			{
+				final short[] s = (short[]) source;
+				final short[] t = (short[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			case INT32:
+			case UINT32:
+			{
+				final int[] s = (int[]) source;
+				final int[] t = (int[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			case INT64:
+			case UINT64:
+			{
+				final long[] s = (long[]) source;
+				final long[] t = (long[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			case FLOAT32:
+			{
+				final float[] s = (float[]) source;
+				final float[] t = (float[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			case FLOAT64:
+			{
+				final double[] s = (double[]) source;
+				final double[] t = (double[]) target;
+				for (int i = 0, k = targetChannel; i < numSpatialElements; ++i, k += numChannels)
+					t[k] = s[sourceIndices[i]];
+				break;
+			}
+			default:
+				throw new IllegalArgumentException("Data type not supported: " + attributes.getDataType());
+		}
+	}
+
+	private static boolean isSupported(final DataType dataType)
+	{
+		switch (dataType)
+		{
+			case INT8:
+			case UINT8:
+			case INT16:
+			case UINT16:
+			case INT32:
+			case UINT32:
+			case INT64:
+			case UINT64:
+			case FLOAT32:
+			case FLOAT64:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+}
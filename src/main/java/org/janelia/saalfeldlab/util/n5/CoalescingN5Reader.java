@@ -0,0 +1,401 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * {@link N5Reader} that coalesces concurrent reads of the same block and reads ahead blocks along the direction of
+ * navigation. Meta data requests are passed through to the delegate.
+ * <ul>
+ *     <li>Concurrent {@link #readBlock(String, DatasetAttributes, long[]) reads} of the same block are served by a
+ *     single read from the delegate.</li>
+ *     <li>If a block is requested that is a unit step away from one of the recently requested blocks, and that block
+ *     was in turn requested a step in the same direction away from another recently requested block, e.g. the third
+ *     consecutive section along the viewer axis, up to {@code readAhead} further blocks in that direction are read in
+ *     parallel in the background. A single step, e.g. to the neighboring block within a section, does not trigger
+ *     read-ahead. A prefetched block is handed out to exactly one request and then discarded.</li>
+ *     <li>At most {@code maxConcurrentReads} requested reads are issued to the delegate at the same time. Read-ahead
+ *     has its own budget of {@code max(maxConcurrentReads / 2, 1)} concurrent reads and is skipped while that
+ *     budget is exhausted, i.e. it never waits for and never takes permits from requested reads.</li>
+ * </ul>
+ * {@link #clearPrefetched()} must be called when blocks are modified, e.g. on cache invalidation.
+ */
+public class CoalescingN5Reader implements N5Reader
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	public static final int DEFAULT_MAX_CONCURRENT_READS = 8;
+
+	public static final int DEFAULT_READ_AHEAD = 2;
+
+	private static final int NUM_RECENT_REQUESTS = 32;
+
+	private static final ExecutorService READ_AHEAD_WORKERS = Executors.newFixedThreadPool(
+			8,
+			new NamedThreadFactory("n5-read-ahead-%d", true));
+
+	/**
+	 * Prefetched block that is handed out to the first request only.
+	 */
+	private static final class PrefetchedBlock extends CompletableFuture<DataBlock<?>>
+	{
+
+	}
+
+	private static final class BlockKey
+	{
+		private final String pathName;
+
+		private final long[] gridPosition;
+
+		private final int hashCode;
+
+		private BlockKey(final String pathName, final long[] gridPosition)
+		{
+			this.pathName = pathName;
+			this.gridPosition = gridPosition;
+			this.hashCode = 31 * pathName.hashCode() + Arrays.hashCode(gridPosition);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(final Object other)
+		{
+			if (this == other)
+				return true;
+			if (!(other instanceof BlockKey))
+				return false;
+			final BlockKey that = (BlockKey) other;
+			return this.pathName.equals(that.pathName) && Arrays.equals(this.gridPosition, that.gridPosition);
+		}
+	}
+
+	private final N5Reader delegate;
+
+	private final int readAhead;
+
+	private final int maxNumPrefetched;
+
+	private final Semaphore permits;
+
+	private final Semaphore readAheadPermits;
+
+	private final ExecutorService readAheadWorkers;
+
+	/**
+	 * Blocks that are being read, and prefetched blocks that have not been requested yet.
+	 */
+	private final Map<BlockKey, CompletableFuture<DataBlock<?>>> blocks = new ConcurrentHashMap<>();
+
+	private final Deque<Pair<BlockKey, CompletableFuture<DataBlock<?>>>> prefetched = new ArrayDeque<>();
+
+	/**
+	 * Recently requested blocks and the unit step from their most recent neighbor, if any.
+	 */
+	private final Deque<Pair<BlockKey, long[]>> recentRequests = new ArrayDeque<>();
+
+	public CoalescingN5Reader(final N5Reader delegate)
+	{
+		this(delegate, DEFAULT_MAX_CONCURRENT_READS, DEFAULT_READ_AHEAD);
+	}
+
+	public CoalescingN5Reader(final N5Reader delegate, final int maxConcurrentReads, final int readAhead)
+	{
+		this(delegate, maxConcurrentReads, readAhead, READ_AHEAD_WORKERS);
+	}
+
+	/**
+	 * @param delegate read blocks and meta data from this reader
+	 * @param maxConcurrentReads maximum number of concurrent requested {@link N5Reader#readBlock} calls on
+	 * {@code delegate}, half of this for read-ahead
+	 * @param readAhead number of blocks to read ahead in the direction of navigation, {@code 0} disables read-ahead
+	 * @param readAheadWorkers read ahead blocks on this executor
+	 */
+	public CoalescingN5Reader(
+			final N5Reader delegate,
+			final int maxConcurrentReads,
+			final int readAhead,
+			final ExecutorService readAheadWorkers)
+	{
+		if (maxConcurrentReads < 1)
+			throw new IllegalArgumentException("Need at least one concurrent read: " + maxConcurrentReads);
+		this.delegate = delegate;
+		this.readAhead = Math.max(readAhead, 0);
+		this.maxNumPrefetched = 4 * Math.max(readAhead, 1) * maxConcurrentReads;
+		this.permits = new Semaphore(maxConcurrentReads);
+		this.readAheadPermits = new Semaphore(Math.max(maxConcurrentReads / 2, 1));
+		this.readAheadWorkers = readAheadWorkers;
+	}
+
+	public N5Reader delegate()
+	{
+		return this.delegate;
+	}
+
+	@Override
+	public DataBlock<?> readBlock(
+			final String pathName,
+			final DatasetAttributes datasetAttributes,
+			final long[] gridPosition) throws IOException
+	{
+		final BlockKey key = new BlockKey(pathName, gridPosition.clone());
+		if (readAhead > 0)
+			readAhead(key, datasetAttributes);
+
+		final CompletableFuture<DataBlock<?>> future = new CompletableFuture<>();
+		for (CompletableFuture<DataBlock<?>> existing; (existing = blocks.putIfAbsent(key, future)) != null; )
+		{
+			// requested reads in progress are shared
+			if (!(existing instanceof PrefetchedBlock))
+			{
+				LOG.trace("Coalescing read of block {} in {}", gridPosition, pathName);
+				return await(existing);
+			}
+			// prefetched blocks are handed out only once, try again if another request claimed it first
+			if (blocks.remove(key, existing))
+			{
+				LOG.trace("Handing out prefetched block {} in {}", gridPosition, pathName);
+				try
+				{
+					return await(existing);
+				} catch (final IOException e)
+				{
+					if (Thread.currentThread().isInterrupted())
+						throw e;
+					LOG.debug("Read-ahead of block {} in {} failed, reading it again: {}", gridPosition, pathName, e.getMessage());
+				}
+			}
+		}
+
+		try
+		{
+			future.complete(readFromDelegate(key, datasetAttributes));
+		} catch (final IOException | RuntimeException e)
+		{
+			future.completeExceptionally(e);
+			throw e;
+		} finally
+		{
+			blocks.remove(key, future);
+		}
+		return future.getNow(null);
+	}
+
+	/**
+	 * Discard all prefetched blocks that have not been requested yet.
+	 */
+	public void clearPrefetched()
+	{
+		synchronized (prefetched)
+		{
+			prefetched.forEach(p -> blocks.remove(p.getA(), p.getB()));
+			prefetched.clear();
+		}
+	}
+
+	private DataBlock<?> readFromDelegate(final BlockKey key, final DatasetAttributes datasetAttributes) throws IOException
+	{
+		permits.acquireUninterruptibly();
+		try
+		{
+			return delegate.readBlock(key.pathName, datasetAttributes, key.gridPosition);
+		} finally
+		{
+			permits.release();
+		}
+	}
+
+	private void readAhead(final BlockKey key, final DatasetAttributes datasetAttributes)
+	{
+		final long[] step = stepFromRecentRequests(key);
+		if (step == null)
+			return;
+
+		final long[] gridDimensions = N5Helpers.asCellGrid(datasetAttributes).getGridDimensions();
+		final long[] position = key.gridPosition.clone();
+		for (int k = 0; k < readAhead; ++k)
+		{
+			for (int d = 0; d < position.length; ++d)
+				position[d] += step[d];
+			if (!isInside(position, gridDimensions) || !prefetch(new BlockKey(key.pathName, position.clone()), datasetAttributes))
+				break;
+		}
+	}
+
+	/**
+	 * @return unit step from the most recent request that is a direct neighbor of {@code key}, if that request was
+	 * reached with the same step from its own most recent neighbor, {@code null} otherwise
+	 */
+	private long[] stepFromRecentRequests(final BlockKey key)
+	{
+		synchronized (recentRequests)
+		{
+			long[] step = null;
+			long[] previousStep = null;
+			for (final Iterator<Pair<BlockKey, long[]>> it = recentRequests.descendingIterator(); it.hasNext() && step == null; )
+			{
+				final Pair<BlockKey, long[]> recent = it.next();
+				if (recent.getA().pathName.equals(key.pathName))
+				{
+					step = unitStep(recent.getA().gridPosition, key.gridPosition);
+					previousStep = recent.getB();
+				}
+			}
+			recentRequests.addLast(new ValuePair<>(key, step));
+			if (recentRequests.size() > NUM_RECENT_REQUESTS)
+				recentRequests.removeFirst();
+			return step != null && Arrays.equals(step, previousStep) ? step : null;
+		}
+	}
+
+	/**
+	 * Read {@code key} in the background unless it is being read or prefetched already.
+	 *
+	 * @return {@code false} if the read-ahead budget is exhausted
+	 */
+	private boolean prefetch(final BlockKey key, final DatasetAttributes datasetAttributes)
+	{
+		if (!readAheadPermits.tryAcquire())
+			return false;
+
+		final PrefetchedBlock future = new PrefetchedBlock();
+		if (blocks.putIfAbsent(key, future) != null)
+		{
+			readAheadPermits.release();
+			return true;
+		}
+
+		synchronized (prefetched)
+		{
+			prefetched.addLast(new ValuePair<>(key, future));
+			while (prefetched.size() > maxNumPrefetched)
+			{
+				final Pair<BlockKey, CompletableFuture<DataBlock<?>>> evicted = prefetched.removeFirst();
+				blocks.remove(evicted.getA(), evicted.getB());
+			}
+		}
+
+		LOG.trace("Reading ahead block {} in {}", key.gridPosition, key.pathName);
+		try
+		{
+			readAheadWorkers.submit(() -> {
+				try
+				{
+					future.complete(delegate.readBlock(key.pathName, datasetAttributes, key.gridPosition));
+				} catch (final IOException | RuntimeException e)
+				{
+					blocks.remove(key, future);
+					future.completeExceptionally(e);
+				} finally
+				{
+					readAheadPermits.release();
+				}
+			});
+		} catch (final RejectedExecutionException e)
+		{
+			readAheadPermits.release();
+			blocks.remove(key, future);
+			future.completeExceptionally(e);
+		}
+		return true;
+	}
+
+	private static DataBlock<?> await(final CompletableFuture<DataBlock<?>> future) throws IOException
+	{
+		try
+		{
+			return future.get();
+		} catch (final InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		} catch (final ExecutionException e)
+		{
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		}
+	}
+
+	private static long[] unitStep(final long[] from, final long[] to)
+	{
+		final long[] step = new long[to.length];
+		long distance = 0;
+		for (int d = 0; d < to.length; ++d)
+		{
+			step[d] = to[d] - from[d];
+			distance += Math.abs(step[d]);
+		}
+		return distance == 1 ? step : null;
+	}
+
+	private static boolean isInside(final long[] position, final long[] gridDimensions)
+	{
+		for (int d = 0; d < position.length; ++d)
+			if (position[d] < 0 || position[d] >= gridDimensions[d])
+				return false;
+		return true;
+	}
+
+	@Override
+	public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws IOException
+	{
+		return delegate.getAttribute(pathName, key, clazz);
+	}
+
+	@Override
+	public DatasetAttributes getDatasetAttributes(final String pathName) throws IOException
+	{
+		return delegate.getDatasetAttributes(pathName);
+	}
+
+	@Override
+	public boolean exists(final String pathName)
+	{
+		return delegate.exists(pathName);
+	}
+
+	@Override
+	public String[] list(final String pathName) throws IOException
+	{
+		return delegate.list(pathName);
+	}
+
+	@Override
+	public Map<String, Class<?>> listAttributes(final String pathName) throws IOException
+	{
+		return delegate.listAttributes(pathName);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("{Coalescing: %s}", delegate);
+	}
+
+}
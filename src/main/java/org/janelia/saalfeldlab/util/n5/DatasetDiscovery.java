@@ -0,0 +1,234 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.janelia.saalfeldlab.paintera.data.n5.N5HDF5Meta;
+import org.janelia.saalfeldlab.paintera.data.n5.N5Meta;
+import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
+import org.janelia.saalfeldlab.util.NamedThreadFactory;
+import org.janelia.saalfeldlab.util.PainteraCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * Find all datasets inside an n5 container. A dataset is any one of:
+ * <ul>
+ *     <li>N5 dataset</li>
+ *     <li>multi-scale group</li>
+ *     <li>paintera dataset</li>
+ * </ul>
+ * Groups are traversed in parallel on an executor that is shared by all discoveries and datasets are reported as
+ * they are found. Meta data is read through a {@link CachedN5Reader}, i.e. attributes and listing of each group are
+ * requested only once per discovery. HDF5 containers are traversed sequentially.
+ * <p>
+ * Discovered datasets can be {@link #cache(N5Reader, List) cached} per container in {@link PainteraCache} to show
+ * the result of the last discovery while a new discovery is running.
+ */
+public class DatasetDiscovery
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final ExecutorService DISCOVERY_WORKERS = Executors.newFixedThreadPool(
+			12,
+			new NamedThreadFactory("dataset-discovery-%d", true));
+
+	private static final ExecutorService SEQUENTIAL_DISCOVERY_WORKER = Executors.newSingleThreadExecutor(
+			new NamedThreadFactory("dataset-discovery-sequential-%d", true));
+
+	private final N5Reader n5;
+
+	private final ExecutorService es;
+
+	private final BooleanSupplier keepLooking;
+
+	private final Consumer<String> onDatasetFound;
+
+	private final List<String> datasets = new ArrayList<>();
+
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+
+	private final CompletableFuture<List<String>> result = new CompletableFuture<>();
+
+	private volatile boolean isCanceled = false;
+
+	private DatasetDiscovery(
+			final N5Reader n5,
+			final ExecutorService es,
+			final BooleanSupplier keepLooking,
+			final Consumer<String> onDatasetFound)
+	{
+		this.n5 = n5;
+		this.es = es;
+		this.keepLooking = keepLooking;
+		this.onDatasetFound = onDatasetFound;
+	}
+
+	/**
+	 * Start discovery of all datasets in {@code n5}.
+	 *
+	 * @param n5 container
+	 * @param keepLooking discover datasets while {@code keepLooking.get() == true}
+	 * @param onDatasetFound called for each dataset (path wrt to the root of the container) as it is found, from the
+	 *                       discovery threads
+	 * @return running discovery
+	 */
+	public static DatasetDiscovery start(
+			final N5Reader n5,
+			final BooleanSupplier keepLooking,
+			final Consumer<String> onDatasetFound)
+	{
+		final ExecutorService es = CachedN5Reader.unwrap(n5) instanceof N5HDF5Reader
+				? SEQUENTIAL_DISCOVERY_WORKER
+				: DISCOVERY_WORKERS;
+		final DatasetDiscovery discovery = new DatasetDiscovery(CachedN5Reader.cached(n5), es, keepLooking, onDatasetFound);
+		discovery.submit("");
+		return discovery;
+	}
+
+	/**
+	 * @return sorted list of all datasets once discovery has finished or {@code keepLooking} has become {@code false}
+	 * (only datasets found up to that point). Is canceled if discovery is {@link #cancel() canceled}.
+	 */
+	public CompletableFuture<List<String>> result()
+	{
+		return this.result;
+	}
+
+	/**
+	 * @return sorted list of all datasets found so far
+	 */
+	public List<String> datasets()
+	{
+		synchronized (datasets)
+		{
+			final List<String> copy = new ArrayList<>(datasets);
+			Collections.sort(copy);
+			return copy;
+		}
+	}
+
+	/**
+	 * Stop discovery. Tasks that have not started yet do not access the container.
+	 */
+	public void cancel()
+	{
+		LOG.debug("Canceling discovery in {}", n5);
+		this.isCanceled = true;
+		this.result.cancel(false);
+	}
+
+	private void submit(final String pathName)
+	{
+		pendingTasks.incrementAndGet();
+		try
+		{
+			es.submit(() -> discover(pathName));
+		} catch (final RejectedExecutionException e)
+		{
+			LOG.error("Unable to submit discovery task for {}", pathName, e);
+			taskDone();
+		}
+	}
+
+	private void discover(final String pathName)
+	{
+		LOG.trace("Discovering subdirectory {}", pathName);
+		try
+		{
+			if (isCanceled || !keepLooking.getAsBoolean())
+				return;
+
+			if (N5Helpers.isPainteraDataset(n5, pathName) || n5.datasetExists(pathName) || N5Helpers.isMultiScale(n5, pathName))
+			{
+				LOG.debug("Found dataset {}", pathName);
+				synchronized (datasets)
+				{
+					datasets.add(pathName);
+				}
+				onDatasetFound.accept(pathName);
+			}
+			else if (n5.exists(pathName))
+			{
+				for (final String group : n5.list(pathName))
+					submit(pathName + "/" + group);
+			}
+		} catch (final IOException e)
+		{
+			LOG.debug(e.toString(), e);
+		} finally
+		{
+			taskDone();
+		}
+	}
+
+	private void taskDone()
+	{
+		final int pending = pendingTasks.decrementAndGet();
+		LOG.trace("{} discovery tasks remaining", pending);
+		if (pending == 0)
+		{
+			LOG.debug("Finished all discovery tasks.");
+			result.complete(datasets());
+		}
+	}
+
+	/**
+	 * @return datasets of the last discovery in {@code n5} that was {@link #cache(N5Reader, List) cached}, empty list
+	 * if there is none.
+	 */
+	public static List<String> cachedDatasets(final N5Reader n5)
+	{
+		return cacheFilename(n5)
+				.map(filename -> PainteraCache.readLines(DatasetDiscovery.class, filename))
+				.orElseGet(Collections::emptyList);
+	}
+
+	/**
+	 * Store {@code datasets} discovered in {@code n5} in {@link PainteraCache}.
+	 */
+	public static void cache(final N5Reader n5, final List<String> datasets)
+	{
+		cacheFilename(n5).ifPresent(filename -> PainteraCache.writeLines(DatasetDiscovery.class, filename, datasets));
+	}
+
+	private static Optional<String> cacheFilename(final N5Reader n5)
+	{
+		return containerUri(n5).map(uri -> UUID.nameUUIDFromBytes(uri.getBytes(StandardCharsets.UTF_8)).toString());
+	}
+
+	private static Optional<String> containerUri(final N5Reader n5)
+	{
+		try
+		{
+			final N5Meta meta = N5Meta.fromReader(n5, "");
+			if (meta instanceof N5FSMeta)
+				return Optional.of(Paths.get(((N5FSMeta) meta).basePath()).toAbsolutePath().toUri().toString());
+			if (meta instanceof N5HDF5Meta)
+				return Optional.of(Paths.get(((N5HDF5Meta) meta).file()).toAbsolutePath().toUri().toString());
+		} catch (final ReflectionException e)
+		{
+			LOG.debug("Unable to determine container of {}", n5, e);
+		}
+		return Optional.empty();
+	}
+
+}
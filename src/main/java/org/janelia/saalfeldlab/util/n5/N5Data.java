@@ -4,10 +4,14 @@ import bdv.viewer.Interpolation;
 import net.imglib2.RandomAccessible;
 import net.imglib2.RandomAccessibleInterval;
 import net.imglib2.Volatile;
+import net.imglib2.cache.CacheLoader;
 import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.LoadedCellCacheLoader;
 import net.imglib2.cache.volatiles.VolatileCache;
 import net.imglib2.img.NativeImg;
+import net.imglib2.img.basictypeaccess.AccessFlags;
+import net.imglib2.img.basictypeaccess.ArrayDataAccessFactory;
 import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
 import net.imglib2.img.cell.Cell;
 import net.imglib2.img.cell.CellGrid;
@@ -28,10 +32,13 @@ import net.imglib2.util.Triple;
 import org.janelia.saalfeldlab.n5.DataType;
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
 import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSReader;
 import org.janelia.saalfeldlab.n5.N5FSWriter;
 import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.hdf5.N5HDF5Reader;
 import org.janelia.saalfeldlab.n5.imglib2.N5CellLoader;
 import org.janelia.saalfeldlab.paintera.cache.Invalidate;
+import org.janelia.saalfeldlab.paintera.cache.global.FetchScheduler;
 import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
 import org.janelia.saalfeldlab.paintera.cache.global.InvalidAccessException;
 import org.janelia.saalfeldlab.paintera.data.DataSource;
@@ -51,13 +58,16 @@ import java.lang.invoke.MethodHandles;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class N5Data {
 
@@ -258,6 +268,29 @@ public class N5Data {
 	 * @return image data with cache invalidation
 	 * @throws IOException if any N5 operation throws {@link IOException}
 	 */
+	public static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>>
+	ImagesWithInvalidate<T, V> openRaw(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority) throws IOException {
+		return openRaw(reader, dataset, transform, globalCache, priority, fetchGroup(reader, dataset, globalCache));
+	}
+
+	/**
+	 *
+	 * @param reader container
+	 * @param dataset dataset
+	 * @param transform transforms voxel data into real world coordinates
+	 * @param globalCache {@link GlobalCache} to create sub-cache for this dataset
+	 * @param priority in fetching queue
+	 * @param fetchGroup schedule loading of blocks in this group
+	 * @param <T> data type
+	 * @param <V> viewer type
+	 * @return image data with cache invalidation
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
 	@SuppressWarnings("unchecked")
 	public static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>, A extends ArrayDataAccess<A>>
 	ImagesWithInvalidate<T, V> openRaw(
@@ -265,15 +298,40 @@ public class N5Data {
 			final String dataset,
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
-			final int priority) throws IOException {
+			final int priority,
+			final FetchScheduler.Group fetchGroup) throws IOException {
 
 		try {
 			final CellGrid grid = N5Helpers.getGrid(reader, dataset);
-			final CellLoader<T> loader = new N5CellLoader<>(reader, dataset, reader.getDatasetAttributes(dataset).getBlockSize());
-			final T type = N5Types.type(reader.getDatasetAttributes(dataset).getDataType());
+			final DatasetAttributes attributes = reader.getDatasetAttributes(dataset);
+			final T type = N5Types.type(attributes.getDataType());
+			if (RawN5CacheLoader.isApplicable(reader, attributes))
+			{
+				LOG.debug("Opening uncompressed dataset {} in {} with raw block loader", dataset, reader);
+				final CellLoader<T> fallbackLoader = new N5CellLoader<>(reader, dataset, attributes.getBlockSize());
+				final Set<AccessFlags> accessFlags = AccessFlags.setOf(AccessFlags.VOLATILE);
+				final A accessTemplate = (A) ArrayDataAccessFactory.get(type, accessFlags);
+				final CacheLoader<Long, Cell<A>> loader = new RawN5CacheLoader<>(
+						RawN5CacheLoader.datasetPath(reader, dataset),
+						grid,
+						attributes.getDataType(),
+						accessTemplate,
+						LoadedCellCacheLoader.get(grid, fallbackLoader, type, accessFlags));
+				final Pair<CachedCellImg<T, A>, Invalidate<Long>> raw = globalCache.createImg(grid, loader, type, AccessFlags.VOLATILE);
+				final Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> vraw = globalCache.wrapAsVolatile(raw.getA(), raw.getB(), priority, fetchGroup);
+				return new ImagesWithInvalidate<>(raw.getA(), vraw.getA(), transform, raw.getB(), vraw.getC());
+			}
+
+			final CoalescingN5Reader blockReader = new CoalescingN5Reader(reader);
+			final CellLoader<T> loader = new N5CellLoader<>(blockReader, dataset, attributes.getBlockSize());
 			final Pair<CachedCellImg<T, A>, Invalidate<Long>> raw = globalCache.createVolatileImg(grid, loader, type);
-			final Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> vraw = globalCache.wrapAsVolatile(raw.getA(), raw.getB(), priority);
-			return new ImagesWithInvalidate<>(raw.getA(), vraw.getA(), transform, raw.getB(), vraw.getC());
+			final Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> vraw = globalCache.wrapAsVolatile(raw.getA(), raw.getB(), priority, fetchGroup);
+			return new ImagesWithInvalidate<>(
+					raw.getA(),
+					vraw.getA(),
+					transform,
+					clearPrefetchedOnInvalidate(raw.getB(), blockReader),
+					clearPrefetchedOnInvalidate(vraw.getC(), blockReader));
 		}
 		catch (Exception e)
 		{
@@ -350,6 +408,32 @@ public class N5Data {
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
 			final int priority) throws IOException
+	{
+		return openRawMultiscale(reader, dataset, transform, globalCache, priority, fetchGroup(reader, dataset, globalCache));
+	}
+
+	/**
+	 *
+	 * @param reader container
+	 * @param dataset dataset
+	 * @param transform transforms voxel data into real world coordinates
+	 * @param globalCache {@link GlobalCache} to create sub-cache for this dataset
+	 * @param priority in fetching queue
+	 * @param fetchGroup schedule loading of blocks of all scale levels in this group
+	 * @param <T> data type
+	 * @param <V> viewer type
+	 * @return multi-scale image data with cache invalidation
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>>
+	ImagesWithInvalidate<T, V>[] openRawMultiscale(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final FetchScheduler.Group fetchGroup) throws IOException
 	{
 		final String[] scaleDatasets = N5Helpers.listAndSortScaleDatasets(reader, dataset);
 
@@ -372,7 +456,7 @@ public class N5Data {
 			futures.add(es.submit(ThrowingSupplier.unchecked(() -> {
 				LOG.debug("Populating scale level {}", fScale);
 				final String scaleDataset = Paths.get(dataset, scaleDatasets[fScale]).toString();
-				imagesWithInvalidate[fScale] = openRaw(reader, scaleDataset, transform.copy(), globalCache, priority);
+				imagesWithInvalidate[fScale] = openRaw(reader, scaleDataset, transform.copy(), globalCache, priority, fetchGroup);
 				final double[] downsamplingFactors = N5Helpers.getDownsamplingFactors(reader, scaleDataset);
 				LOG.debug("Read downsampling factors: {}", Arrays.toString(downsamplingFactors));
 				imagesWithInvalidate[fScale].transform.set(N5Helpers.considerDownsampling(
@@ -388,6 +472,120 @@ public class N5Data {
 		return imagesWithInvalidate;
 	}
 
+	/**
+	 * Open {@code channels} of a single scale level dataset as a channel-interleaved image: the channels are the first
+	 * dimension of the image, followed by the spatial dimensions of the dataset, and each cell holds all channels of a
+	 * spatial block in a single primitive array. See {@link ChannelInterleavedN5CacheLoader}.
+	 *
+	 * @param reader container
+	 * @param dataset dataset
+	 * @param transform transforms voxel data into real world coordinates
+	 * @param globalCache {@link GlobalCache} to create sub-cache for this dataset
+	 * @param priority in fetching queue
+	 * @param channelDimension channel dimension of {@code dataset}
+	 * @param channels load these channels in this order
+	 * @param <T> data type
+	 * @param <V> viewer type
+	 * @return channel-interleaved image data with cache invalidation
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	public static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>>
+	ImagesWithInvalidate<T, V> openRawChannelInterleaved(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final int channelDimension,
+			final long[] channels) throws IOException
+	{
+		return openRawChannelInterleaved(reader, dataset, transform, globalCache, priority, channelDimension, channels, fetchGroup(reader, dataset, globalCache));
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>, A extends ArrayDataAccess<A>>
+	ImagesWithInvalidate<T, V> openRawChannelInterleaved(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final int channelDimension,
+			final long[] channels,
+			final FetchScheduler.Group fetchGroup) throws IOException
+	{
+		try
+		{
+			final DatasetAttributes attributes = reader.getDatasetAttributes(dataset);
+			final T type = N5Types.type(attributes.getDataType());
+			final A accessTemplate = (A) ArrayDataAccessFactory.get(type, AccessFlags.setOf(AccessFlags.VOLATILE));
+			final ChannelInterleavedN5CacheLoader<A> loader = new ChannelInterleavedN5CacheLoader<>(
+					reader,
+					dataset,
+					attributes,
+					channelDimension,
+					channels,
+					accessTemplate);
+			LOG.debug("Opening {} channels of dataset {} channel-interleaved with grid {}", channels.length, dataset, loader.getGrid());
+			final Pair<CachedCellImg<T, A>, Invalidate<Long>> raw = globalCache.createImg(loader.getGrid(), loader, type, AccessFlags.VOLATILE);
+			final Triple<RandomAccessibleInterval<V>, VolatileCache<Long, Cell<A>>, Invalidate<Long>> vraw = globalCache.wrapAsVolatile(raw.getA(), raw.getB(), priority, fetchGroup);
+			return new ImagesWithInvalidate<>(raw.getA(), vraw.getA(), transform, raw.getB(), vraw.getC());
+		}
+		catch (Exception e)
+		{
+			throw e instanceof IOException ? (IOException) e : new IOException(e);
+		}
+	}
+
+	/**
+	 * Open {@code channels} of all scale levels of a multi-scale group as channel-interleaved images, see
+	 * {@link #openRawChannelInterleaved(N5Reader, String, AffineTransform3D, GlobalCache, int, int, long[])}.
+	 *
+	 * @param reader container
+	 * @param dataset multi-scale group
+	 * @param transform transforms voxel data of first scale level into real world coordinates
+	 * @param globalCache {@link GlobalCache} to create sub-cache for this dataset
+	 * @param priority in fetching queue
+	 * @param channelDimension channel dimension of all scale levels
+	 * @param channels load these channels in this order
+	 * @param <T> data type
+	 * @param <V> viewer type
+	 * @return channel-interleaved multi-scale image data with cache invalidation
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends NativeType<T>, V extends Volatile<T> & NativeType<V>>
+	ImagesWithInvalidate<T, V>[] openRawChannelInterleavedMultiscale(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final int channelDimension,
+			final long[] channels) throws IOException
+	{
+		final String[] scaleDatasets = N5Helpers.listAndSortScaleDatasets(reader, dataset);
+		LOG.debug("Opening directories {} as channel-interleaved multi-scale in {}: ", Arrays.toString(scaleDatasets), dataset);
+
+		final double[] initialDonwsamplingFactors = N5Helpers.getDownsamplingFactors(
+				reader,
+				Paths.get(dataset, scaleDatasets[0]).toString());
+		final FetchScheduler.Group fetchGroup = fetchGroup(reader, dataset, globalCache);
+		final ImagesWithInvalidate<T, V>[] imagesWithInvalidate = new ImagesWithInvalidate[scaleDatasets.length];
+		for (int scale = 0; scale < scaleDatasets.length; ++scale)
+		{
+			final String scaleDataset = Paths.get(dataset, scaleDatasets[scale]).toString();
+			imagesWithInvalidate[scale] = openRawChannelInterleaved(reader, scaleDataset, transform.copy(), globalCache, priority, channelDimension, channels, fetchGroup);
+			final double[] downsamplingFactors = N5Helpers.getDownsamplingFactors(reader, scaleDataset);
+			LOG.debug("Read downsampling factors: {}", Arrays.toString(downsamplingFactors));
+			imagesWithInvalidate[scale].transform.set(N5Helpers.considerDownsampling(
+					imagesWithInvalidate[scale].transform.copy(),
+					downsamplingFactors,
+					initialDonwsamplingFactors));
+		}
+		return imagesWithInvalidate;
+	}
+
 	/**
 	 *
 	 * @param reader container
@@ -478,11 +676,23 @@ public class N5Data {
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
 			final int priority) throws IOException
+	{
+		return openLabelMultiset(reader, dataset, transform, globalCache, priority, fetchGroup(reader, dataset, globalCache));
+	}
+
+	public static ImagesWithInvalidate<LabelMultisetType, VolatileLabelMultisetType> openLabelMultiset(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final FetchScheduler.Group fetchGroup) throws IOException
 	{
 		try {
 			final DatasetAttributes attrs = reader.getDatasetAttributes(dataset);
+			final CoalescingN5Reader blockReader = new CoalescingN5Reader(reader);
 			final N5CacheLoader loader = new N5CacheLoader(
-					reader,
+					blockReader,
 					dataset,
 					N5CacheLoader.constantNullReplacement(Label.BACKGROUND)
 			);
@@ -504,9 +714,15 @@ public class N5Data {
 					cachedImg.getB(),
 					linkedTypeFactory,
 					new VolatileHelpers.CreateInvalidVolatileLabelMultisetArray(cachedImg.getA().getCellGrid()),
-					priority);
+					priority,
+					fetchGroup);
 
-			return new ImagesWithInvalidate<>(cachedImg.getA(), vimg.getA(), transform, cachedImg.getB(), vimg.getC());
+			return new ImagesWithInvalidate<>(
+					cachedImg.getA(),
+					vimg.getA(),
+					transform,
+					clearPrefetchedOnInvalidate(cachedImg.getB(), blockReader),
+					clearPrefetchedOnInvalidate(vimg.getC(), blockReader));
 		}
 		catch (InvalidAccessException e)
 		{
@@ -592,6 +808,18 @@ public class N5Data {
 			final AffineTransform3D transform,
 			final GlobalCache globalCache,
 			final int priority) throws IOException
+	{
+		return openLabelMultisetMultiscale(reader, dataset, transform, globalCache, priority, fetchGroup(reader, dataset, globalCache));
+	}
+
+	@SuppressWarnings("unchecked")
+	public static ImagesWithInvalidate<LabelMultisetType, VolatileLabelMultisetType>[] openLabelMultisetMultiscale(
+			final N5Reader reader,
+			final String dataset,
+			final AffineTransform3D transform,
+			final GlobalCache globalCache,
+			final int priority,
+			final FetchScheduler.Group fetchGroup) throws IOException
 	{
 		final String[] scaleDatasets = N5Helpers.listAndSortScaleDatasets(reader, dataset);
 
@@ -618,7 +846,7 @@ public class N5Data {
 			futures.add(es.submit(ThrowingSupplier.unchecked(() -> {
 				LOG.debug("Populating scale level {}", fScale);
 				final String scaleDataset = Paths.get(dataset, scaleDatasets[fScale]).toString();
-				imagesWithInvalidate[fScale] = openLabelMultiset(reader, scaleDataset, transform.copy(), globalCache, priority);
+				imagesWithInvalidate[fScale] = openLabelMultiset(reader, scaleDataset, transform.copy(), globalCache, priority, fetchGroup);
 				final double[] downsamplingFactors = N5Helpers.getDownsamplingFactors(reader, scaleDataset);
 				LOG.debug("Read downsampling factors: {}", Arrays.toString(downsamplingFactors));
 				imagesWithInvalidate[fScale].transform.set(N5Helpers.considerDownsampling(
@@ -787,4 +1015,83 @@ public class N5Data {
 			}
 		}
 	}
+
+	/**
+	 * @param reader container
+	 * @param dataset dataset
+	 * @return key that identifies the {@link FetchScheduler.Group fetch group} of {@code dataset} in {@code reader}
+	 */
+	public static String fetchGroupKey(final N5Reader reader, final String dataset)
+	{
+		try
+		{
+			final N5Meta meta = N5Meta.fromReader(reader, dataset);
+			if (meta != null)
+				return meta.toString();
+		} catch (final ReflectionException e)
+		{
+			LOG.debug("Unable to create meta data for dataset {} in {}", dataset, reader, e);
+		}
+		return String.format("{%s: dataset=%s}", reader, dataset);
+	}
+
+	/**
+	 * @param reader container
+	 * @return storage backend of {@code reader} for limiting concurrent requests in {@link FetchScheduler}
+	 */
+	public static FetchScheduler.Backend fetchBackend(final N5Reader reader)
+	{
+		final N5Reader uncached = CachedN5Reader.unwrap(reader);
+		if (uncached instanceof N5HDF5Reader)
+			return FetchScheduler.Backend.HDF5;
+		if (uncached instanceof N5FSReader)
+			return FetchScheduler.Backend.FILE_SYSTEM;
+		final String className = uncached.getClass().getSimpleName();
+		if (className.contains("GoogleCloud") || className.contains("AmazonS3"))
+			return FetchScheduler.Backend.CLOUD;
+		return FetchScheduler.Backend.OTHER;
+	}
+
+	private static FetchScheduler.Group fetchGroup(
+			final N5Reader reader,
+			final String dataset,
+			final GlobalCache globalCache)
+	{
+		return globalCache.fetchGroup(fetchGroupKey(reader, dataset), fetchBackend(reader));
+	}
+
+	/**
+	 * Discard blocks that were read ahead by {@code blockReader} before invalidating cached blocks, e.g. after
+	 * blocks were written to the container.
+	 */
+	private static Invalidate<Long> clearPrefetchedOnInvalidate(
+			final Invalidate<Long> invalidate,
+			final CoalescingN5Reader blockReader)
+	{
+		return new Invalidate<Long>() {
+			@Override
+			public void invalidateAll() {
+				blockReader.clearPrefetched();
+				invalidate.invalidateAll();
+			}
+
+			@Override
+			public Collection<Long> invalidateMatching(final Predicate<Long> test) {
+				blockReader.clearPrefetched();
+				return invalidate.invalidateMatching(test);
+			}
+
+			@Override
+			public void invalidate(final Collection<Long> keys) {
+				blockReader.clearPrefetched();
+				invalidate.invalidate(keys);
+			}
+
+			@Override
+			public void invalidate(final Long key) {
+				blockReader.clearPrefetched();
+				invalidate.invalidate(key);
+			}
+		};
+	}
 }
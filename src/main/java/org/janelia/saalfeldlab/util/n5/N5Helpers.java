@@ -35,7 +35,6 @@ import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
 import org.janelia.saalfeldlab.paintera.exception.PainteraException;
 import org.janelia.saalfeldlab.paintera.id.IdService;
 import org.janelia.saalfeldlab.paintera.id.N5IdService;
-import org.janelia.saalfeldlab.util.NamedThreadFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import pl.touk.throwing.ThrowingSupplier;
@@ -43,17 +42,12 @@ import pl.touk.throwing.ThrowingSupplier;
 import java.io.IOException;
 import java.lang.invoke.MethodHandles;
 import java.nio.file.Paths;
-import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.function.BiFunction;
 import java.util.function.BooleanSupplier;
 import java.util.function.Supplier;
@@ -86,6 +80,8 @@ public class N5Helpers
 
 	public static final String LABEL_TO_BLOCK_MAPPING = "label-to-block-mapping";
 
+	public static final String PRECOMPUTED_MESHES = "precomputed-meshes";
+
 	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
 
 	/**
@@ -197,6 +193,23 @@ public class N5Helpers
 		return scaleDirs;
 	}
 
+	/**
+	 * List the datasets of all scale levels of a group, sorted from highest to lowest resolution.
+	 * @param n5 {@link N5Reader} container
+	 * @param group multi-scale group, dataset, or paintera dataset
+	 * @return full paths of the datasets of all scale levels, e.g. for a paintera dataset {@code "group"} with two
+	 * scale levels this would return {@code {"group/data/s0", "group/data/s1"}}, and {@code {"group"}} if
+	 * {@code group} is a single dataset.
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	public static String[] scaleLevelDatasets(final N5Reader n5, final String group) throws IOException
+	{
+		final String dataGroup = volumetricDataGroup(group, isPainteraDataset(n5, group));
+		return isMultiScale(n5, dataGroup)
+				? Arrays.stream(listAndSortScaleDatasets(n5, dataGroup)).map(s -> dataGroup + "/" + s).toArray(String[]::new)
+				: new String[] {dataGroup};
+	}
+
 	/**
 	 *
 	 * @param n5 {@link N5Reader} container
@@ -310,134 +323,20 @@ public class N5Helpers
 	 */
 	public static List<String> discoverDatasets(final N5Reader n5, final BooleanSupplier keepLooking)
 	{
-		final List<String> datasets = new ArrayList<>();
-		final ExecutorService exec = Executors.newFixedThreadPool(
-				n5 instanceof N5HDF5Reader ? 1 : 12,
-				new NamedThreadFactory("dataset-discovery-%d", true)
-		                                                         );
-		final AtomicInteger counter = new AtomicInteger(1);
-		Future<?> f = exec.submit(() -> discoverSubdirectories(n5, "", datasets, exec, counter, keepLooking));
-		while (true) {
-			try {
-				synchronized (counter) {
-					counter.wait();
-					final int count = counter.get();
-					LOG.debug("Current discovery task count is {}", count);
-					if (counter.get() <= 0) {
-						LOG.debug("Finished all discovery tasks.");
-						break;
-					}
-				}
-			} catch (InterruptedException e) {
-				LOG.debug("Was interrupted -- will stop dataset discovery.");
-				Thread.currentThread().interrupt();
-				break;
-			}
-		}
-		LOG.debug("Shutting down discovery ExecutorService.");
-		exec.shutdownNow();
-		Collections.sort(datasets);
-		return datasets;
-	}
-
-	private static void discoverSubdirectories(
-			final N5Reader n5,
-			final String pathName,
-			final Collection<String> datasets,
-			final ExecutorService exec,
-			final AtomicInteger counter,
-			final BooleanSupplier keepLooking)
-	{
-
-		LOG.trace("Discovering subdirectory {}", pathName);
-
+		final DatasetDiscovery discovery = DatasetDiscovery.start(n5, keepLooking, dataset -> {});
 		try
 		{
-			if (!keepLooking.getAsBoolean() || Thread.currentThread().isInterrupted())
-				return;
-
-			if (isPainteraDataset(n5, pathName))
-			{
-				synchronized (datasets)
-				{
-					datasets.add(pathName);
-				}
-			}
-			else if (n5.datasetExists(pathName))
-			{
-				synchronized (datasets)
-				{
-					datasets.add(pathName);
-				}
-			}
-			else
-			{
-
-				String[] groups = null;
-				/* based on attribute */
-
-				boolean isMipmapGroup = Optional.ofNullable(n5.getAttribute(
-						pathName,
-						MULTI_SCALE_KEY,
-						Boolean.class
-				                                                           )).orElse(false);
-
-				/* based on groupd content (the old way) */
-				if (!isMipmapGroup)
-				{
-					groups = n5.list(pathName);
-					isMipmapGroup = groups.length > 0;
-					for (final String group : groups)
-					{
-						if (!(group.matches("^s[0-9]+$") && n5.datasetExists(pathName + "/" + group)))
-						{
-							isMipmapGroup = false;
-							break;
-						}
-					}
-					if (isMipmapGroup)
-					{
-						LOG.warn(
-								"Found multi-scale group without {} tag. Implicit multi-scale detection will be " +
-										"removed in the future. Please add \"{}\":{} to attributes.json in group `{}'.",
-								MULTI_SCALE_KEY,
-								MULTI_SCALE_KEY,
-								true,
-								pathName
-						        );
-					}
-				}
-				if (isMipmapGroup)
-				{
-					synchronized (datasets)
-					{
-						LOG.debug("Adding dataset {}", pathName);
-						datasets.add(pathName);
-					}
-				}
-				else
-				{
-					if (keepLooking.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
-						for (final String group : groups) {
-							final String groupPathName = pathName + "/" + group;
-							final int numThreads = counter.incrementAndGet();
-							LOG.debug("Entering {}, {} tasks created", groupPathName, numThreads);
-							exec.submit(() -> discoverSubdirectories(n5, groupPathName, datasets, exec, counter, keepLooking));
-						}
-					}
-				}
-			}
-		} catch (final IOException e)
+			return discovery.result().get();
+		} catch (final InterruptedException e)
 		{
-			LOG.debug(e.toString(), e);
-		}
-		finally {
-			synchronized(counter) {
-				final int numThreads = counter.decrementAndGet();
-				counter.notifyAll();
-				LOG.debug("Leaving {}, {} tasks remaining", pathName, numThreads);
-			}
+			LOG.debug("Was interrupted -- will stop dataset discovery.");
+			discovery.cancel();
+			Thread.currentThread().interrupt();
+		} catch (final ExecutionException | CancellationException e)
+		{
+			LOG.debug("Dataset discovery did not finish.", e);
 		}
+		return discovery.datasets();
 	}
 
 
@@ -855,8 +754,8 @@ public class N5Helpers
 		// TODO fix this, we don't always want to return file-based lookup!!!
 		try {
 			LOG.debug("Getting label block lookup for {}", N5Meta.fromReader(reader, group));
-			if (reader instanceof N5FSReader && isPainteraDataset(reader, group)) {
-				N5FSMeta n5fs = new N5FSMeta((N5FSReader) reader, group);
+			if (CachedN5Reader.unwrap(reader) instanceof N5FSReader && isPainteraDataset(reader, group)) {
+				N5FSMeta n5fs = new N5FSMeta((N5FSReader) CachedN5Reader.unwrap(reader), group);
 				final GsonBuilder gsonBuilder = new GsonBuilder().registerTypeHierarchyAdapter(LabelBlockLookup.class, LabelBlockLookupAdapter.getJsonAdapter());
 				final Gson gson = gsonBuilder.create();
 				final JsonElement labelBlockLookupJson = reader.getAttribute(group, "labelBlockLookup", JsonElement.class);
@@ -0,0 +1,286 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import net.imglib2.cache.CacheLoader;
+import net.imglib2.img.basictypeaccess.array.ArrayDataAccess;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.util.Intervals;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5FSReader;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.paintera.data.n5.N5FSMeta;
+import org.janelia.saalfeldlab.paintera.data.n5.ReflectionException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * {@link CacheLoader} for uncompressed ({@link RawCompression raw}) N5 datasets on the local file system. Each block
+ * file is read into a direct buffer that is reused by the loading thread, and the block data is copied into the cell's
+ * primitive array with a single bulk {@link java.nio.Buffer} get, i.e. without reading the file into an intermediate
+ * byte array and without going through a {@link org.janelia.saalfeldlab.n5.DataBlock}. Files are not memory-mapped:
+ * Mappings are only released when their buffers are garbage collected and would accumulate for a large number of
+ * small blocks.
+ * <p>
+ * Blocks that do not exist are loaded as cells of zeros. Blocks with a size that does not match the size of the
+ * corresponding cell are loaded with {@code fallback}.
+ *
+ * @param <A> access type
+ */
+public class RawN5CacheLoader<A extends ArrayDataAccess<A>> implements CacheLoader<Long, Cell<A>>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final short DEFAULT_MODE = 0;
+
+	private static final short VARLENGTH_MODE = 1;
+
+	/**
+	 * Read buffer of each loading thread, grows to the size of the largest block read by the thread.
+	 */
+	private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(0));
+
+	private final Path datasetPath;
+
+	private final CellGrid grid;
+
+	private final DataType dataType;
+
+	private final A accessTemplate;
+
+	private final CacheLoader<Long, Cell<A>> fallback;
+
+	/**
+	 * @param datasetPath directory of the dataset on the local file system
+	 * @param grid cell grid of the dataset
+	 * @param dataType data type of the dataset, must not be {@link DataType#OBJECT}
+	 * @param accessTemplate create access for each cell from this template
+	 * @param fallback load blocks with unexpected size with this loader
+	 */
+	public RawN5CacheLoader(
+			final Path datasetPath,
+			final CellGrid grid,
+			final DataType dataType,
+			final A accessTemplate,
+			final CacheLoader<Long, Cell<A>> fallback)
+	{
+		if (bytesPerElement(dataType) < 0)
+			throw new IllegalArgumentException("Data type not supported: " + dataType);
+		this.datasetPath = datasetPath;
+		this.grid = grid;
+		this.dataType = dataType;
+		this.accessTemplate = accessTemplate;
+		this.fallback = fallback;
+	}
+
+	/**
+	 * @param reader container
+	 * @param attributes attributes of dataset
+	 * @return {@code true} if {@code reader} is a file system reader and the dataset is not compressed
+	 */
+	public static boolean isApplicable(final N5Reader reader, final DatasetAttributes attributes)
+	{
+		return CachedN5Reader.unwrap(reader) instanceof N5FSReader
+				&& attributes.getCompression() instanceof RawCompression
+				&& bytesPerElement(attributes.getDataType()) > 0;
+	}
+
+	/**
+	 * @param reader container, must be {@link #isApplicable(N5Reader, DatasetAttributes) applicable}
+	 * @param dataset dataset
+	 * @return directory of {@code dataset} on the local file system
+	 * @throws ReflectionException if the base path of {@code reader} cannot be determined
+	 */
+	public static Path datasetPath(final N5Reader reader, final String dataset) throws ReflectionException
+	{
+		return Paths.get(new N5FSMeta((N5FSReader) CachedN5Reader.unwrap(reader), dataset).basePath(), dataset);
+	}
+
+	@Override
+	public Cell<A> get(final Long key) throws Exception
+	{
+		final int n = grid.numDimensions();
+		final long[] cellPosition = new long[n];
+		final long[] cellMin = new long[n];
+		final int[] cellDims = new int[n];
+		grid.getCellGridPositionFlat(key, cellPosition);
+		grid.getCellDimensions(cellPosition, cellMin, cellDims);
+
+		final Path blockPath = blockPath(cellPosition);
+		final Cell<A> cell;
+		try (final FileChannel channel = FileChannel.open(blockPath, StandardOpenOption.READ))
+		{
+			// shared lock, like N5FSReader, so that concurrent writers cannot truncate or replace the block during copy
+			try (final FileLock lock = channel.lock(0, Long.MAX_VALUE, true))
+			{
+				cell = read(channel, blockPath, cellDims, cellMin);
+			}
+		} catch (final NoSuchFileException e)
+		{
+			LOG.trace("Block {} does not exist, loading empty cell", blockPath);
+			return new Cell<>(cellDims, cellMin, accessTemplate.createArray((int) Intervals.numElements(cellDims)));
+		}
+
+		// fallback locks the block itself, overlapping locks of the same JVM are not permitted
+		return cell == null ? fallback.get(key) : cell;
+	}
+
+	/**
+	 * Read block and copy its data into a new cell. Must be called while the channel is open and locked.
+	 *
+	 * @return {@code null} if the size of the block does not match {@code cellDims}
+	 * @throws IOException if the block is corrupt
+	 */
+	private Cell<A> read(
+			final FileChannel channel,
+			final Path blockPath,
+			final int[] cellDims,
+			final long[] cellMin) throws IOException
+	{
+		final ByteBuffer buffer = readFully(channel, blockPath);
+
+		if (buffer.remaining() < 2 * Short.BYTES)
+			throw new IOException(String.format("Block %s too short: %d bytes", blockPath, buffer.remaining()));
+		final short mode = buffer.getShort();
+		final short numDimensions = buffer.getShort();
+		if (mode != DEFAULT_MODE && mode != VARLENGTH_MODE)
+			throw new IOException(String.format("Unsupported block mode %d in %s", mode, blockPath));
+		final int headerBytes = (numDimensions + (mode == VARLENGTH_MODE ? 1 : 0)) * Integer.BYTES;
+		if (numDimensions < 0 || buffer.remaining() < headerBytes)
+			throw new IOException(String.format(
+					"Block %s has invalid header: %d dimensions but only %d bytes remaining",
+					blockPath,
+					numDimensions,
+					buffer.remaining()));
+
+		final int[] blockSize = new int[numDimensions];
+		for (int d = 0; d < blockSize.length; ++d)
+			blockSize[d] = buffer.getInt();
+		final int numElements = mode == VARLENGTH_MODE
+		                        ? buffer.getInt()
+		                        : (int) Intervals.numElements(blockSize);
+
+		if (!Arrays.equals(blockSize, cellDims) || numElements != Intervals.numElements(cellDims))
+		{
+			LOG.debug(
+					"Size of block {} ({}) does not match cell size {}, using fallback loader",
+					blockPath,
+					blockSize,
+					cellDims);
+			return null;
+		}
+
+		if (buffer.remaining() < (long) numElements * bytesPerElement(dataType))
+			throw new IOException(String.format(
+					"Block %s too short: expected %d elements but only %d bytes remaining",
+					blockPath,
+					numElements,
+					buffer.remaining()));
+
+		final A access = accessTemplate.createArray(numElements);
+		copy(buffer, access.getCurrentStorageArray(), dataType);
+		return new Cell<>(cellDims, cellMin, access);
+	}
+
+	/**
+	 * @return buffer of this thread that contains the contents of {@code channel} between position and limit, in big
+	 * endian byte order
+	 */
+	private static ByteBuffer readFully(final FileChannel channel, final Path blockPath) throws IOException
+	{
+		final long size = channel.size();
+		if (size > Integer.MAX_VALUE)
+			throw new IOException(String.format("Block %s too large: %d bytes", blockPath, size));
+		ByteBuffer buffer = BUFFERS.get();
+		if (buffer.capacity() < size)
+		{
+			buffer = ByteBuffer.allocateDirect((int) size);
+			BUFFERS.set(buffer);
+		}
+		buffer.clear().limit((int) size);
+		while (buffer.hasRemaining())
+			if (channel.read(buffer) < 0)
+				break;
+		buffer.flip();
+		return buffer.order(ByteOrder.BIG_ENDIAN);
+	}
+
+	private Path blockPath(final long[] cellPosition)
+	{
+		final String[] components = new String[cellPosition.length];
+		Arrays.setAll(components, d -> Long.toString(cellPosition[d]));
+		return Paths.get(datasetPath.toString(), components);
+	}
+
+	private static void copy(final ByteBuffer buffer, final Object storage, final DataType dataType)
+	{
+		switch (dataType)
+		{
+			case INT8:
+			case UINT8:
+				buffer.get((byte[]) storage);
+				break;
+			case INT16:
+			case UINT16:
+				buffer.asShortBuffer().get((short[]) storage);
+				break;
+			case INT32:
+			case UINT32:
+				buffer.asIntBuffer().get((int[]) storage);
+				break;
+			case INT64:
+			case UINT64:
+				buffer.asLongBuffer().get((long[]) storage);
+				break;
+			case FLOAT32:
+				buffer.asFloatBuffer().get((float[]) storage);
+				break;
+			case FLOAT64:
+				buffer.asDoubleBuffer().get((double[]) storage);
+				break;
+			default:
+				throw new IllegalArgumentException("Data type not supported: " + dataType);
+		}
+	}
+
+	/**
+	 * @return number of bytes per element of {@code dataType}, {@code -1} if not supported
+	 */
+	private static int bytesPerElement(final DataType dataType)
+	{
+		switch (dataType)
+		{
+			case INT8:
+			case UINT8:
+				return 1;
+			case INT16:
+			case UINT16:
+				return 2;
+			case INT32:
+			case UINT32:
+			case FLOAT32:
+				return 4;
+			case INT64:
+			case UINT64:
+			case FLOAT64:
+				return 8;
+			default:
+				return -1;
+		}
+	}
+
+}
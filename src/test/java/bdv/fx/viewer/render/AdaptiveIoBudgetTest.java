@@ -0,0 +1,54 @@
+package bdv.fx.viewer.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveIoBudgetTest
+{
+
+	@Test
+	public void testAdaptation()
+	{
+		final AdaptiveIoBudget budget = new AdaptiveIoBudget(new long[] {100, 10}, 20, 200, 2.0, 1.0);
+		Assert.assertArrayEquals(new long[] {100, 10}, budget.getBudget());
+		Assert.assertTrue(Double.isNaN(budget.getSmoothedIoNanos()));
+
+		// negative measurements are ignored
+		budget.update(-1);
+		Assert.assertArrayEquals(new long[] {100, 10}, budget.getBudget());
+
+		budget.update(30);
+		Assert.assertArrayEquals(new long[] {60, 6}, budget.getBudget());
+
+		// clamp to min
+		budget.update(0);
+		Assert.assertArrayEquals(new long[] {20, 2}, budget.getBudget());
+
+		// clamp to max
+		budget.update(1000);
+		Assert.assertArrayEquals(new long[] {200, 20}, budget.getBudget());
+
+		budget.setAdaptive(false);
+		budget.update(30);
+		Assert.assertArrayEquals(new long[] {200, 20}, budget.getBudget());
+		Assert.assertEquals(30.0, budget.getSmoothedIoNanos(), 0.0);
+	}
+
+	@Test
+	public void testSmoothing()
+	{
+		final AdaptiveIoBudget budget = new AdaptiveIoBudget(new long[] {100}, 0, 1000, 1.0, 0.5);
+		budget.update(100);
+		Assert.assertEquals(100.0, budget.getSmoothedIoNanos(), 0.0);
+		budget.update(200);
+		Assert.assertEquals(150.0, budget.getSmoothedIoNanos(), 0.0);
+		Assert.assertArrayEquals(new long[] {150}, budget.getBudget());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSmoothing()
+	{
+		new AdaptiveIoBudget(new long[] {100}, 0, 1000, 1.0, 0.0);
+	}
+
+}
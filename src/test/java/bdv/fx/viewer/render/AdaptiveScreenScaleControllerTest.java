@@ -0,0 +1,77 @@
+package bdv.fx.viewer.render;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AdaptiveScreenScaleControllerTest
+{
+
+	private static final double[] SCREEN_SCALES = {1.0, 0.5, 0.25, 0.125};
+
+	@Test
+	public void testStartIndex()
+	{
+		final AdaptiveScreenScaleController controller = new AdaptiveScreenScaleController(1000, 4.0, 1.0);
+
+		// start at coarsest screen scale without measurements
+		Assert.assertEquals(3, controller.startIndex(SCREEN_SCALES, 1000, 1));
+
+		// 1ns per pixel and source, no IO
+		controller.update(100, 0, 100, 1);
+		Assert.assertEquals(1.0, controller.getModel().getNanosPerSourcePixel(), 0.0);
+		Assert.assertEquals(0, controller.startIndex(SCREEN_SCALES, 1000, 1));
+		Assert.assertEquals(1, controller.startIndex(SCREEN_SCALES, 4000, 1));
+		Assert.assertEquals(2, controller.startIndex(SCREEN_SCALES, 4000, 4));
+
+		// fall back to coarsest screen scale if target cannot be met
+		Assert.assertEquals(3, controller.startIndex(SCREEN_SCALES, 1000000, 1));
+
+		// IO time counts towards the target
+		controller.update(100, 500, 100, 1);
+		Assert.assertEquals(1, controller.startIndex(SCREEN_SCALES, 1000, 1));
+
+		controller.setAdaptive(false);
+		Assert.assertEquals(3, controller.startIndex(SCREEN_SCALES, 1000, 1));
+	}
+
+	@Test
+	public void testNextIndex()
+	{
+		final AdaptiveScreenScaleController controller = new AdaptiveScreenScaleController(1000, 4.0, 1.0);
+
+		// refine one screen scale at a time without measurements
+		Assert.assertEquals(2, controller.nextIndex(SCREEN_SCALES, 3, 100000, 1));
+
+		controller.update(100, 0, 100, 1);
+		// full resolution within 4 * target
+		Assert.assertEquals(0, controller.nextIndex(SCREEN_SCALES, 3, 4000, 1));
+		// full resolution too slow, skip to screen scale 0.5
+		Assert.assertEquals(1, controller.nextIndex(SCREEN_SCALES, 3, 16000, 1));
+		// nothing within budget, refine one step
+		Assert.assertEquals(2, controller.nextIndex(SCREEN_SCALES, 3, 1000000, 1));
+		Assert.assertEquals(0, controller.nextIndex(SCREEN_SCALES, 1, 1000000, 1));
+	}
+
+	@Test
+	public void testSmoothing()
+	{
+		final AdaptiveScreenScaleController controller = new AdaptiveScreenScaleController(1000, 4.0, 0.5);
+		controller.update(100, 10, 100, 1);
+		controller.update(300, 30, 100, 1);
+		Assert.assertEquals(2.0, controller.getModel().getNanosPerSourcePixel(), 0.0);
+		Assert.assertEquals(20.0, controller.getModel().getIoNanos(), 0.0);
+
+		// invalid measurements are ignored
+		controller.update(100, 10, 0, 1);
+		Assert.assertEquals(2.0, controller.getModel().getNanosPerSourcePixel(), 0.0);
+
+		controller.setModel(null);
+		Assert.assertNull(controller.getModel());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidRefinementFactor()
+	{
+		new AdaptiveScreenScaleController(1000, 0.5, 0.5);
+	}
+}
@@ -0,0 +1,188 @@
+package org.janelia.saalfeldlab.paintera.benchmark;
+
+import net.imglib2.realtransform.AffineTransform3D;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A scripted navigation path for {@link RenderingBenchmark}. Each step modifies the global transform of a
+ * {@link org.janelia.saalfeldlab.paintera.state.GlobalTransformManager} relative to the center of the viewers.
+ * <p>
+ * Scripts are plain text with one command per line. Empty lines and lines starting with {@code #} are ignored.
+ * Every command can be repeated by appending {@code x N}:
+ * <pre>
+ * pan DX DY          translate within the viewer plane (in screen pixels)
+ * scroll DZ          translate along the viewer normal (in screen pixels)
+ * zoom FACTOR        scale around the viewer center
+ * rotate AXIS DEG    rotate around the viewer center, AXIS is one of x, y, z
+ * </pre>
+ * Example: {@code pan 10 0 x 20}
+ */
+public class NavigationScript
+{
+
+	public static final String DEFAULT_SCRIPT = String.join("\n",
+			"# pan across the data",
+			"pan 8 0 x 30",
+			"pan 0 8 x 30",
+			"# zoom in and out",
+			"zoom 1.05 x 20",
+			"zoom 0.95 x 20",
+			"# rotate",
+			"rotate z 2 x 20",
+			"rotate x 2 x 10",
+			"# scroll through the stack",
+			"scroll 1 x 40",
+			"scroll -1 x 40");
+
+	public enum Type
+	{
+		PAN, SCROLL, ZOOM, ROTATE
+	}
+
+	public static class Step
+	{
+
+		private final Type type;
+
+		private final double[] arguments;
+
+		public Step(final Type type, final double... arguments)
+		{
+			this.type = type;
+			this.arguments = arguments.clone();
+		}
+
+		public Type getType()
+		{
+			return type;
+		}
+
+		/**
+		 * Apply this step to {@code global} in place. The viewer center is assumed to be at the origin of the
+		 * global coordinate system.
+		 */
+		public void apply(final AffineTransform3D global)
+		{
+			switch (type)
+			{
+				case PAN:
+					global.translate(arguments[0], arguments[1], 0.0);
+					break;
+				case SCROLL:
+					global.translate(0.0, 0.0, arguments[0]);
+					break;
+				case ZOOM:
+					global.scale(arguments[0]);
+					break;
+				case ROTATE:
+					global.rotate((int) arguments[0], Math.toRadians(arguments[1]));
+					break;
+			}
+		}
+
+		@Override
+		public String toString()
+		{
+			switch (type)
+			{
+				case PAN: return String.format("pan %s %s", arguments[0], arguments[1]);
+				case SCROLL: return String.format("scroll %s", arguments[0]);
+				case ZOOM: return String.format("zoom %s", arguments[0]);
+				case ROTATE: return String.format("rotate %s %s", "xyz".charAt((int) arguments[0]), arguments[1]);
+				default: return type.toString();
+			}
+		}
+	}
+
+	private final List<Step> steps;
+
+	public NavigationScript(final List<Step> steps)
+	{
+		this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+	}
+
+	public List<Step> getSteps()
+	{
+		return steps;
+	}
+
+	public static NavigationScript defaultScript()
+	{
+		try
+		{
+			return parse(new StringReader(DEFAULT_SCRIPT));
+		} catch (final IOException e)
+		{
+			throw new RuntimeException(e);
+		}
+	}
+
+	public static NavigationScript parse(final Reader reader) throws IOException
+	{
+		final List<Step> steps = new ArrayList<>();
+		final BufferedReader br = new BufferedReader(reader);
+		int lineNumber = 0;
+		for (String line = br.readLine(); line != null; line = br.readLine())
+		{
+			++lineNumber;
+			final String trimmed = line.trim();
+			if (trimmed.isEmpty() || trimmed.startsWith("#"))
+				continue;
+			final String[] tokens = trimmed.split("\\s+");
+			int numTokens = tokens.length;
+			int repetitions = 1;
+			if (numTokens > 2 && tokens[numTokens - 2].equals("x"))
+			{
+				repetitions = Integer.parseInt(tokens[numTokens - 1]);
+				numTokens -= 2;
+			}
+			final Step step = parseStep(tokens, numTokens, lineNumber);
+			for (int r = 0; r < repetitions; ++r)
+				steps.add(step);
+		}
+		return new NavigationScript(steps);
+	}
+
+	private static Step parseStep(final String[] tokens, final int numTokens, final int lineNumber) throws IOException
+	{
+		try
+		{
+			switch (tokens[0].toLowerCase())
+			{
+				case "pan":
+					checkNumArguments(numTokens, 3, lineNumber);
+					return new Step(Type.PAN, Double.parseDouble(tokens[1]), Double.parseDouble(tokens[2]));
+				case "scroll":
+					checkNumArguments(numTokens, 2, lineNumber);
+					return new Step(Type.SCROLL, Double.parseDouble(tokens[1]));
+				case "zoom":
+					checkNumArguments(numTokens, 2, lineNumber);
+					return new Step(Type.ZOOM, Double.parseDouble(tokens[1]));
+				case "rotate":
+					checkNumArguments(numTokens, 3, lineNumber);
+					final int axis = "xyz".indexOf(tokens[1].toLowerCase());
+					if (axis < 0 || tokens[1].length() != 1)
+						throw new IOException(String.format("Line %d: invalid rotation axis `%s'", lineNumber, tokens[1]));
+					return new Step(Type.ROTATE, axis, Double.parseDouble(tokens[2]));
+				default:
+					throw new IOException(String.format("Line %d: unknown command `%s'", lineNumber, tokens[0]));
+			}
+		} catch (final NumberFormatException e)
+		{
+			throw new IOException(String.format("Line %d: %s", lineNumber, e.getMessage()), e);
+		}
+	}
+
+	private static void checkNumArguments(final int numTokens, final int expected, final int lineNumber) throws IOException
+	{
+		if (numTokens != expected)
+			throw new IOException(String.format("Line %d: expected %d arguments but got %d", lineNumber, expected - 1, numTokens - 1));
+	}
+}
@@ -0,0 +1,339 @@
+package org.janelia.saalfeldlab.paintera.benchmark;
+
+import bdv.viewer.ViewerOptions;
+import javafx.application.Platform;
+import javafx.scene.Scene;
+import javafx.stage.Stage;
+import net.imglib2.Interval;
+import net.imglib2.converter.ARGBColorConverter;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.IntegerType;
+import net.imglib2.type.numeric.RealType;
+import net.imglib2.type.volatiles.AbstractVolatileRealType;
+import net.imglib2.Volatile;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.fx.util.JFXUtil;
+import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookup;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5FSWriter;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.paintera.PainteraBaseView;
+import org.janelia.saalfeldlab.paintera.PainteraDefaultHandlers;
+import org.janelia.saalfeldlab.paintera.composition.ARGBCompositeAlphaYCbCr;
+import org.janelia.saalfeldlab.paintera.composition.CompositeCopy;
+import org.janelia.saalfeldlab.paintera.control.assignment.FragmentSegmentAssignmentOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.lock.LockedSegmentsOnlyLocal;
+import org.janelia.saalfeldlab.paintera.control.selection.SelectedIds;
+import org.janelia.saalfeldlab.paintera.data.DataSource;
+import org.janelia.saalfeldlab.paintera.id.LocalIdService;
+import org.janelia.saalfeldlab.paintera.meshes.InterruptibleFunction;
+import org.janelia.saalfeldlab.paintera.meshes.MeshManagerWithAssignmentForSegments;
+import org.janelia.saalfeldlab.paintera.state.LabelSourceState;
+import org.janelia.saalfeldlab.paintera.state.RawSourceState;
+import org.janelia.saalfeldlab.paintera.stream.HighlightingStreamConverter;
+import org.janelia.saalfeldlab.paintera.stream.ModalGoldenAngleSaturatedHighlightingARGBStream;
+import org.janelia.saalfeldlab.util.grids.LabelBlockLookupNoBlocks;
+import org.janelia.saalfeldlab.util.n5.N5Data;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import picocli.CommandLine;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.lang.invoke.MethodHandles;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+/**
+ * Command line entry point for {@link RenderingBenchmark}. Generates (or re-uses) a synthetic N5 container with a raw
+ * and a label dataset, opens both in a {@link PainteraBaseView} without any user interaction handlers and replays a
+ * {@link NavigationScript}. The {@link RenderingBenchmarkResult} is written as JSON to stdout or to {@code --output}.
+ * <p>
+ * Run with {@code --headless} to use the Monocle headless JavaFX platform, e.g. on CI machines without a display.
+ * Monocle is a test dependency of Paintera, so the benchmark is part of the test sources and must be run with the test
+ * class path, e.g.
+ * <pre>
+ * mvn test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=org.janelia.saalfeldlab.paintera.benchmark.PainteraRenderingBenchmark -Dexec.args=--headless
+ * </pre>
+ */
+@CommandLine.Command(name = "paintera-rendering-benchmark", mixinStandardHelpOptions = true)
+public class PainteraRenderingBenchmark implements Callable<RenderingBenchmarkResult>
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String RAW_DATASET = "raw";
+
+	private static final String LABEL_DATASET = "labels";
+
+	private static final String MONOCLE_PLATFORM_FACTORY = "com.sun.glass.ui.monocle.MonoclePlatformFactory";
+
+	@CommandLine.Option(names = {"--container"}, paramLabel = "CONTAINER", description = "" +
+			"N5 container for the synthetic data. Data sets are generated if not present. " +
+			"Defaults to a temporary directory.")
+	String container = null;
+
+	@CommandLine.Option(names = {"--dimensions"}, split = ",", description = "Dimensions of the synthetic data at scale level 0.")
+	long[] dimensions = {512, 512, 256};
+
+	@CommandLine.Option(names = {"--block-size"}, split = ",", description = "Block size of the synthetic data.")
+	int[] blockSize = {64, 64, 64};
+
+	@CommandLine.Option(names = {"--num-scales"}, description = "Number of scale levels of the synthetic data.")
+	Integer numScales = 3;
+
+	@CommandLine.Option(names = {"--segment-size"}, description = "Approximate edge length of synthetic label segments.")
+	Integer segmentSize = 24;
+
+	@CommandLine.Option(names = {"--script"}, paramLabel = "SCRIPT", description = "" +
+			"Navigation script (see NavigationScript). Uses a default script if not specified.")
+	String script = null;
+
+	@CommandLine.Option(names = {"--output"}, paramLabel = "OUTPUT", description = "Write JSON result to OUTPUT instead of stdout.")
+	String output = null;
+
+	@CommandLine.Option(names = {"--headless"}, description = "Use the headless Monocle platform.")
+	Boolean headless = false;
+
+	@CommandLine.Option(names = {"--step-interval-ms"}, description = "" +
+			"Time between navigation steps. Ignored if --wait-for-full-resolution is set.")
+	Long stepIntervalMillis = 16L;
+
+	@CommandLine.Option(names = {"--wait-for-full-resolution"}, description = "" +
+			"Wait for all viewers to render at full resolution after each navigation step.")
+	Boolean waitForFullResolution = false;
+
+	@CommandLine.Option(names = {"--timeout-ms"}, description = "Maximum time to wait for full resolution.")
+	Long timeoutMillis = 30000L;
+
+	@CommandLine.Option(names = {"--width"})
+	Integer width = 1600;
+
+	@CommandLine.Option(names = {"--height"})
+	Integer height = 900;
+
+	@CommandLine.Option(names = {"--screen-scales"}, split = ",", description = "Screen scales of the viewers.")
+	double[] screenScales = {1.0, 0.5, 0.25, 0.125};
+
+	public static void main(final String[] args)
+	{
+		final RenderingBenchmarkResult result = CommandLine.call(new PainteraRenderingBenchmark(), args);
+		System.exit(result == null ? 1 : 0);
+	}
+
+	@Override
+	public RenderingBenchmarkResult call() throws Exception
+	{
+		if (headless)
+		{
+			try
+			{
+				Class.forName(MONOCLE_PLATFORM_FACTORY);
+			} catch (final ClassNotFoundException e)
+			{
+				throw new IllegalStateException("--headless requires openjfx-monocle on the class path, run with the test class path.", e);
+			}
+			System.setProperty("glass.platform", "Monocle");
+			System.setProperty("monocle.platform", "Headless");
+			System.setProperty("prism.order", "sw");
+		}
+
+		final Path temporaryContainer = container == null ? Files.createTempDirectory("paintera-rendering-benchmark-") : null;
+		try
+		{
+			return run(new N5FSWriter(container == null ? temporaryContainer.toString() : container));
+		} finally
+		{
+			if (temporaryContainer != null)
+				deleteRecursively(temporaryContainer);
+		}
+	}
+
+	private RenderingBenchmarkResult run(final N5Writer n5) throws Exception
+	{
+		generateDataIfNecessary(n5);
+
+		final NavigationScript navigationScript = readScript();
+
+		JFXUtil.platformImplStartup();
+		Platform.setImplicitExit(false);
+
+		final PainteraBaseView[] baseView = {null};
+		final Stage[] stage = {null};
+		InvokeOnJavaFXApplicationThread.invokeAndWait(() -> {
+			baseView[0] = new PainteraBaseView(
+					PainteraBaseView.reasonableNumFetcherThreads(),
+					ViewerOptions.options().screenScales(screenScales));
+			PainteraDefaultHandlers.updateDisplayTransformOnResize(baseView[0].orthogonalViews(), baseView[0].manager());
+			stage[0] = new Stage();
+			stage[0].setScene(new Scene(baseView[0].pane(), width, height));
+			stage[0].show();
+		});
+
+		try
+		{
+			final Exception[] addSourceException = {null};
+			InvokeOnJavaFXApplicationThread.invokeAndWait(() -> {
+				try
+				{
+					addRawSource(baseView[0], n5);
+					addLabelSource(baseView[0], n5);
+				} catch (final Exception e)
+				{
+					addSourceException[0] = e;
+				}
+			});
+			if (addSourceException[0] != null)
+				throw addSourceException[0];
+
+			final RenderingBenchmark benchmark = new RenderingBenchmark(baseView[0], stepIntervalMillis, waitForFullResolution, timeoutMillis);
+			final RenderingBenchmarkResult result = benchmark.run(navigationScript, initialTransform());
+
+			final String json = result.toJson();
+			if (output == null)
+				System.out.println(json);
+			else
+				Files.write(Paths.get(output), json.getBytes(StandardCharsets.UTF_8));
+			return result;
+		} finally
+		{
+			baseView[0].stop();
+			InvokeOnJavaFXApplicationThread.invokeAndWait(stage[0]::close);
+			Platform.exit();
+		}
+	}
+
+	private static void deleteRecursively(final Path directory)
+	{
+		try (final Stream<Path> paths = Files.walk(directory))
+		{
+			// children before parents
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+				try
+				{
+					Files.delete(path);
+				} catch (final IOException e)
+				{
+					LOG.warn("Unable to delete {}", path, e);
+				}
+			});
+		} catch (final IOException e)
+		{
+			LOG.warn("Unable to delete temporary container {}", directory, e);
+		}
+	}
+
+	private void generateDataIfNecessary(final N5Writer n5) throws IOException
+	{
+		final GzipCompression compression = new GzipCompression();
+		if (!n5.exists(RAW_DATASET))
+		{
+			LOG.info("Generating raw data with dimensions {}", dimensions);
+			SyntheticN5Data.writeRaw(n5, RAW_DATASET, dimensions, blockSize, numScales, compression);
+		}
+		if (!n5.exists(LABEL_DATASET))
+		{
+			LOG.info("Generating label data with dimensions {}", dimensions);
+			SyntheticN5Data.writeLabels(n5, LABEL_DATASET, dimensions, blockSize, numScales, segmentSize, compression);
+		}
+	}
+
+	private NavigationScript readScript() throws IOException
+	{
+		if (script == null)
+			return NavigationScript.defaultScript();
+		try (final Reader reader = new FileReader(new File(script)))
+		{
+			return NavigationScript.parse(reader);
+		}
+	}
+
+	/**
+	 * Fit the data into the viewers (approximately, assuming the shorter side of the viewers is half of the window
+	 * height) and center it at the origin of the global coordinate system.
+	 */
+	private AffineTransform3D initialTransform()
+	{
+		final double maxExtent = Math.max(dimensions[0], Math.max(dimensions[1], dimensions[2]));
+		final AffineTransform3D transform = new AffineTransform3D();
+		transform.translate(-0.5 * dimensions[0], -0.5 * dimensions[1], -0.5 * dimensions[2]);
+		transform.scale(0.5 * height / maxExtent);
+		return transform;
+	}
+
+	private static <T extends RealType<T> & NativeType<T>, V extends AbstractVolatileRealType<T, V> & NativeType<V>> void addRawSource(
+			final PainteraBaseView viewer,
+			final N5Writer n5) throws Exception
+	{
+		final DataSource<T, V> source = N5Data.openRawAsSource(
+				n5,
+				RAW_DATASET,
+				N5Helpers.getTransform(n5, RAW_DATASET, false),
+				viewer.getGlobalCache(),
+				viewer.getGlobalCache().getNumPriorities() - 1,
+				RAW_DATASET);
+		final ARGBColorConverter.Imp0<V> conv = new ARGBColorConverter.Imp0<>(0.0, 255.0);
+		viewer.addState(new RawSourceState<>(source, conv, new CompositeCopy<>(), source.getName()));
+	}
+
+	private static <D extends IntegerType<D> & NativeType<D>, T extends Volatile<D> & NativeType<T> & IntegerType<T>> void addLabelSource(
+			final PainteraBaseView viewer,
+			final N5Writer n5) throws Exception
+	{
+		final DataSource<D, T> source = N5Data.openScalarAsSource(
+				n5,
+				LABEL_DATASET,
+				N5Helpers.getTransform(n5, LABEL_DATASET, false),
+				viewer.getGlobalCache(),
+				0,
+				LABEL_DATASET);
+
+		final long maxId = n5.getAttribute(LABEL_DATASET, N5Helpers.MAX_ID_KEY, long.class);
+		final SelectedIds selectedIds = new SelectedIds();
+		final FragmentSegmentAssignmentOnlyLocal assignment = new FragmentSegmentAssignmentOnlyLocal(new FragmentSegmentAssignmentOnlyLocal.DoesNotPersist());
+		final LockedSegmentsOnlyLocal lockedSegments = new LockedSegmentsOnlyLocal(seg -> {});
+		final ModalGoldenAngleSaturatedHighlightingARGBStream stream = new ModalGoldenAngleSaturatedHighlightingARGBStream(
+				selectedIds,
+				assignment,
+				lockedSegments);
+		final LabelBlockLookup lookup = new LabelBlockLookupNoBlocks();
+
+		@SuppressWarnings("unchecked")
+		final InterruptibleFunction<Long, Interval[]>[] blockLoaders = new InterruptibleFunction[source.getNumMipmapLevels()];
+		for (int level = 0; level < blockLoaders.length; ++level)
+			blockLoaders[level] = InterruptibleFunction.fromFunction(id -> new Interval[0]);
+
+		final MeshManagerWithAssignmentForSegments meshManager = MeshManagerWithAssignmentForSegments.fromBlockLookup(
+				source,
+				selectedIds,
+				assignment,
+				stream,
+				viewer.viewer3D().meshesGroup(),
+				blockLoaders,
+				viewer.getGlobalCache()::createNewCache,
+				viewer.getMeshManagerExecutorService(),
+				viewer.getMeshWorkerExecutorService());
+
+		viewer.addState(new LabelSourceState<>(
+				source,
+				HighlightingStreamConverter.forType(stream, source.getType()),
+				new ARGBCompositeAlphaYCbCr(),
+				source.getName(),
+				assignment,
+				lockedSegments,
+				new LocalIdService(maxId),
+				selectedIds,
+				meshManager,
+				lookup));
+	}
+}
@@ -0,0 +1,203 @@
+package org.janelia.saalfeldlab.paintera.benchmark;
+
+import bdv.fx.viewer.ViewerPanelFX;
+import bdv.fx.viewer.render.FrameStatistics;
+import bdv.fx.viewer.render.FrameStatisticsRecorder;
+import javafx.beans.value.ChangeListener;
+import net.imglib2.realtransform.AffineTransform3D;
+import org.janelia.saalfeldlab.fx.ortho.OrthogonalViews;
+import org.janelia.saalfeldlab.fx.util.InvokeOnJavaFXApplicationThread;
+import org.janelia.saalfeldlab.paintera.PainteraBaseView;
+import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ToLongFunction;
+import java.util.stream.LongStream;
+
+/**
+ * Replay a {@link NavigationScript} through the {@link org.janelia.saalfeldlab.paintera.state.GlobalTransformManager}
+ * of a {@link PainteraBaseView} and collect the {@link FrameStatistics} of all three orthogonal viewers.
+ * <p>
+ * Steps are either issued at a fixed interval, which resembles interactive navigation, or each step waits until all
+ * viewers have rendered a complete frame at full screen resolution.
+ */
+public class RenderingBenchmark
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private final PainteraBaseView viewer;
+
+	private final long stepIntervalMillis;
+
+	private final boolean waitForFullResolution;
+
+	private final long timeoutMillis;
+
+	/**
+	 * @param viewer base view with sources already added
+	 * @param stepIntervalMillis time between two navigation steps if not {@code waitForFullResolution}
+	 * @param waitForFullResolution wait until all viewers have rendered at full resolution after each step
+	 * @param timeoutMillis maximum time to wait for full resolution
+	 */
+	public RenderingBenchmark(
+			final PainteraBaseView viewer,
+			final long stepIntervalMillis,
+			final boolean waitForFullResolution,
+			final long timeoutMillis)
+	{
+		this.viewer = viewer;
+		this.stepIntervalMillis = stepIntervalMillis;
+		this.waitForFullResolution = waitForFullResolution;
+		this.timeoutMillis = timeoutMillis;
+	}
+
+	public RenderingBenchmarkResult run(
+			final NavigationScript script,
+			final AffineTransform3D initialTransform) throws InterruptedException
+	{
+		final List<ViewerPanelFX> viewers = viewers(viewer.orthogonalViews());
+		final List<FrameStatisticsRecorder> recorders = new ArrayList<>();
+		final List<ChangeListener<FrameStatistics>> listeners = new ArrayList<>();
+		for (final ViewerPanelFX v : viewers)
+		{
+			final FrameStatisticsRecorder recorder = new FrameStatisticsRecorder();
+			final ChangeListener<FrameStatistics> listener = (obs, oldv, newv) -> recorder.accept(newv);
+			v.getRenderUnit().frameStatisticsProperty().addListener(listener);
+			recorders.add(recorder);
+			listeners.add(listener);
+		}
+
+		try
+		{
+			LOG.info("Warming up: waiting for initial view to render at full resolution");
+			final long warmupStart = System.nanoTime();
+			setTransform(initialTransform);
+			final long initialNanosToFullResolution = waitForFullResolution(recorders, warmupStart);
+
+			recorders.forEach(FrameStatisticsRecorder::clear);
+			final MemoryBoundedSoftRefLoaderCache<?, ?, ?> cache = backingCache();
+			if (cache != null)
+				cache.resetStatistics();
+
+			final AffineTransform3D transform = initialTransform.copy();
+			final long[] stepStarts = new long[script.getSteps().size()];
+			final long[] stepNanosToFullResolution = new long[waitForFullResolution ? stepStarts.length : 0];
+			final long benchmarkStart = System.nanoTime();
+			for (int i = 0; i < stepStarts.length; ++i)
+			{
+				final NavigationScript.Step step = script.getSteps().get(i);
+				LOG.debug("Step {}: {}", i, step);
+				step.apply(transform);
+				stepStarts[i] = System.nanoTime();
+				setTransform(transform);
+				if (waitForFullResolution)
+					stepNanosToFullResolution[i] = waitForFullResolution(recorders, stepStarts[i]);
+				else
+					Thread.sleep(stepIntervalMillis);
+			}
+			final long finalStart = stepStarts.length > 0 ? stepStarts[stepStarts.length - 1] : benchmarkStart;
+			final long finalNanosToFullResolution = waitForFullResolution(recorders, finalStart);
+			final long totalNanos = System.nanoTime() - benchmarkStart;
+
+			final long[] stepLatencies = Arrays
+					.stream(stepStarts)
+					.map(start -> maxOverViewers(recorders, r -> r.nanosToFirstFrame(start)))
+					.filter(l -> l >= 0)
+					.toArray();
+
+			final RenderingBenchmarkResult result = new RenderingBenchmarkResult();
+			result.numSteps = stepStarts.length;
+			result.totalMillis = totalNanos * 1e-6;
+			result.initialMillisToFullResolution = initialNanosToFullResolution * 1e-6;
+			result.finalMillisToFullResolution = finalNanosToFullResolution * 1e-6;
+			result.stepLatencyMillis = RenderingBenchmarkResult.Percentiles.of(stepLatencies);
+			result.stepMillisToFullResolution = RenderingBenchmarkResult.Percentiles.of(LongStream.of(stepNanosToFullResolution).filter(l -> l >= 0).toArray());
+			result.renderMillis = RenderingBenchmarkResult.Percentiles.of(allFrames(recorders, FrameStatistics::getRenderNanos));
+			result.ioMillis = RenderingBenchmarkResult.Percentiles.of(allFrames(recorders, FrameStatistics::getIoNanos));
+			result.numFrames = recorders.stream().mapToInt(FrameStatisticsRecorder::getNumFrames).sum();
+			result.numDroppedFrames = recorders.stream().mapToLong(FrameStatisticsRecorder::getNumDroppedFrames).sum();
+			if (cache != null)
+			{
+				result.cacheHits = cache.getNumHits();
+				result.cacheLoads = cache.getNumLoads();
+				final long total = result.cacheHits + result.cacheLoads;
+				result.cacheHitRate = total > 0 ? result.cacheHits / (double) total : Double.NaN;
+			}
+			return result;
+		} finally
+		{
+			for (int i = 0; i < viewers.size(); ++i)
+				viewers.get(i).getRenderUnit().frameStatisticsProperty().removeListener(listeners.get(i));
+		}
+	}
+
+	/**
+	 * Set a copy of {@code transform} on the JavaFX application thread and wait until it is set.
+	 */
+	private void setTransform(final AffineTransform3D transform) throws InterruptedException
+	{
+		final AffineTransform3D copy = transform.copy();
+		InvokeOnJavaFXApplicationThread.invokeAndWait(() -> viewer.manager().setTransform(copy));
+	}
+
+	private long waitForFullResolution(final List<FrameStatisticsRecorder> recorders, final long startNanos) throws InterruptedException
+	{
+		final long deadline = startNanos + timeoutMillis * 1000000L;
+		while (System.nanoTime() < deadline)
+		{
+			final long nanos = maxOverViewers(recorders, r -> r.nanosToFullResolution(startNanos));
+			if (nanos >= 0)
+				return nanos;
+			Thread.sleep(1);
+		}
+		LOG.warn("Viewers did not render at full resolution within {}ms", timeoutMillis);
+		return -1;
+	}
+
+	/**
+	 * @return maximum over all recorders, or {@code -1} if any of the recorders returns a negative value
+	 */
+	private static long maxOverViewers(
+			final List<FrameStatisticsRecorder> recorders,
+			final ToLongFunction<FrameStatisticsRecorder> value)
+	{
+		long max = 0;
+		for (final FrameStatisticsRecorder recorder : recorders)
+		{
+			final long v = value.applyAsLong(recorder);
+			if (v < 0)
+				return -1;
+			max = Math.max(max, v);
+		}
+		return max;
+	}
+
+	private static long[] allFrames(
+			final List<FrameStatisticsRecorder> recorders,
+			final ToLongFunction<FrameStatistics> value)
+	{
+		return recorders
+				.stream()
+				.flatMap(r -> r.getFrames().stream())
+				.mapToLong(value)
+				.toArray();
+	}
+
+	private MemoryBoundedSoftRefLoaderCache<?, ?, ?> backingCache()
+	{
+		return viewer.getGlobalBackingCache() instanceof MemoryBoundedSoftRefLoaderCache<?, ?, ?>
+				? (MemoryBoundedSoftRefLoaderCache<?, ?, ?>) viewer.getGlobalBackingCache()
+				: null;
+	}
+
+	private static List<ViewerPanelFX> viewers(final OrthogonalViews<?> views)
+	{
+		return Arrays.asList(views.topLeft().viewer(), views.topRight().viewer(), views.bottomLeft().viewer());
+	}
+}
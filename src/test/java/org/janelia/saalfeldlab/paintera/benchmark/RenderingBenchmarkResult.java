@@ -0,0 +1,91 @@
+package org.janelia.saalfeldlab.paintera.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.util.Arrays;
+
+/**
+ * Summary of a {@link RenderingBenchmark} run. All times are in milliseconds. Serialized as JSON via {@link #toJson()}
+ * so that runs can be compared across commits.
+ */
+public class RenderingBenchmarkResult
+{
+
+	public static class Percentiles
+	{
+
+		public int count;
+
+		public double p50 = Double.NaN;
+
+		public double p90 = Double.NaN;
+
+		public double p99 = Double.NaN;
+
+		public double max = Double.NaN;
+
+		/**
+		 * @param nanos measurements in nanoseconds
+		 * @return nearest-rank percentiles in milliseconds
+		 */
+		public static Percentiles of(final long[] nanos)
+		{
+			final Percentiles percentiles = new Percentiles();
+			percentiles.count = nanos.length;
+			if (nanos.length == 0)
+				return percentiles;
+			final long[] sorted = nanos.clone();
+			Arrays.sort(sorted);
+			percentiles.p50 = percentile(sorted, 50) * 1e-6;
+			percentiles.p90 = percentile(sorted, 90) * 1e-6;
+			percentiles.p99 = percentile(sorted, 99) * 1e-6;
+			percentiles.max = sorted[sorted.length - 1] * 1e-6;
+			return percentiles;
+		}
+
+		private static long percentile(final long[] sorted, final double percentile)
+		{
+			final int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+			return sorted[Math.min(Math.max(rank - 1, 0), sorted.length - 1)];
+		}
+	}
+
+	public int numSteps;
+
+	public int numFrames;
+
+	public long numDroppedFrames;
+
+	public double totalMillis;
+
+	public double initialMillisToFullResolution;
+
+	public double finalMillisToFullResolution;
+
+	public Percentiles stepLatencyMillis;
+
+	public Percentiles stepMillisToFullResolution;
+
+	public Percentiles renderMillis;
+
+	public Percentiles ioMillis;
+
+	public long cacheHits;
+
+	public long cacheLoads;
+
+	public double cacheHitRate = Double.NaN;
+
+	public String toJson()
+	{
+		final Gson gson = new GsonBuilder().setPrettyPrinting().serializeSpecialFloatingPointValues().create();
+		return gson.toJson(this);
+	}
+
+	@Override
+	public String toString()
+	{
+		return toJson();
+	}
+}
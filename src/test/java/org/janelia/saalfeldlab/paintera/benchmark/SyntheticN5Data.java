@@ -0,0 +1,137 @@
+package org.janelia.saalfeldlab.paintera.benchmark;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.ByteArray;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.NativeType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.n5.Compression;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.util.n5.N5Helpers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+
+/**
+ * Generate reproducible, synthetic multi-scale raw and label datasets in an N5 container for benchmarking.
+ * Scale levels are created by subsampling by a factor of two along each dimension.
+ */
+public class SyntheticN5Data
+{
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	/**
+	 * Write a multi-scale raw ({@code uint8}) dataset with smoothly varying intensities and some deterministic noise.
+	 *
+	 * @param n5 container
+	 * @param group multi-scale group
+	 * @param dimensions dimensions at scale level 0
+	 * @param blockSize block size for all scale levels
+	 * @param numScales number of scale levels
+	 * @param compression compression for all scale levels
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	public static void writeRaw(
+			final N5Writer n5,
+			final String group,
+			final long[] dimensions,
+			final int[] blockSize,
+			final int numScales,
+			final Compression compression) throws IOException
+	{
+		final ArrayImg<UnsignedByteType, ByteArray> img = ArrayImgs.unsignedBytes(dimensions);
+		final Cursor<UnsignedByteType> c = img.localizingCursor();
+		while (c.hasNext())
+		{
+			c.fwd();
+			final long x = c.getLongPosition(0), y = c.getLongPosition(1), z = c.getLongPosition(2);
+			final double smooth = Math.sin(x / 7.0) * Math.cos(y / 11.0) * Math.sin(z / 13.0);
+			final int noise = (int) (hash(x, y, z) & 0x1f) - 16;
+			c.get().set(Math.min(Math.max((int) (127.5 * (1.0 + smooth)) + noise, 0), 255));
+		}
+		writeMultiScale(n5, group, img, blockSize, numScales, compression);
+	}
+
+	/**
+	 * Write a multi-scale label ({@code uint64}) dataset of jittered, roughly cubic segments.
+	 *
+	 * @param n5 container
+	 * @param group multi-scale group
+	 * @param dimensions dimensions at scale level 0
+	 * @param blockSize block size for all scale levels
+	 * @param numScales number of scale levels
+	 * @param segmentSize approximate edge length of a segment in voxels at scale level 0
+	 * @param compression compression for all scale levels
+	 * @throws IOException if any N5 operation throws {@link IOException}
+	 */
+	public static void writeLabels(
+			final N5Writer n5,
+			final String group,
+			final long[] dimensions,
+			final int[] blockSize,
+			final int numScales,
+			final int segmentSize,
+			final Compression compression) throws IOException
+	{
+		final long[] numSegments = new long[dimensions.length];
+		for (int d = 0; d < dimensions.length; ++d)
+			numSegments[d] = (dimensions[d] + segmentSize - 1) / segmentSize + 1;
+
+		final ArrayImg<UnsignedLongType, LongArray> img = ArrayImgs.unsignedLongs(dimensions);
+		final Cursor<UnsignedLongType> c = img.localizingCursor();
+		long maxId = 0;
+		while (c.hasNext())
+		{
+			c.fwd();
+			final long x = c.getLongPosition(0), y = c.getLongPosition(1), z = c.getLongPosition(2);
+			final long sx = (long) Math.floor((x + 0.25 * segmentSize * Math.sin(y * 2.0 / segmentSize)) / segmentSize) + 1;
+			final long sy = (long) Math.floor((y + 0.25 * segmentSize * Math.sin(z * 2.0 / segmentSize)) / segmentSize) + 1;
+			final long sz = (long) Math.floor((z + 0.25 * segmentSize * Math.sin(x * 2.0 / segmentSize)) / segmentSize) + 1;
+			final long id = 1 + Math.max(sx, 0) + numSegments[0] * (Math.max(sy, 0) + numSegments[1] * Math.max(sz, 0));
+			c.get().set(id);
+			maxId = Math.max(maxId, id);
+		}
+		writeMultiScale(n5, group, img, blockSize, numScales, compression);
+		n5.setAttribute(group, N5Helpers.MAX_ID_KEY, maxId);
+	}
+
+	private static <T extends NativeType<T>> void writeMultiScale(
+			final N5Writer n5,
+			final String group,
+			final RandomAccessibleInterval<T> img,
+			final int[] blockSize,
+			final int numScales,
+			final Compression compression) throws IOException
+	{
+		n5.createGroup(group);
+		n5.setAttribute(group, N5Helpers.MULTI_SCALE_KEY, true);
+		n5.setAttribute(group, N5Helpers.RESOLUTION_KEY, new double[] {1.0, 1.0, 1.0});
+		n5.setAttribute(group, N5Helpers.OFFSET_KEY, new double[] {0.0, 0.0, 0.0});
+		for (int level = 0; level < numScales; ++level)
+		{
+			final int factor = 1 << level;
+			final String dataset = group + "/s" + level;
+			final RandomAccessibleInterval<T> scaled = level == 0 ? img : Views.subsample(img, factor);
+			LOG.debug("Writing scale level {} with dimensions {} to {}", level, scaled.dimension(0), dataset);
+			N5Utils.save(scaled, n5, dataset, blockSize, compression);
+			n5.setAttribute(dataset, N5Helpers.DOWNSAMPLING_FACTORS_KEY, new double[] {factor, factor, factor});
+		}
+	}
+
+	private static long hash(final long x, final long y, final long z)
+	{
+		long h = x * 0x9E3779B97F4A7C15L ^ y * 0xC2B2AE3D27D4EB4FL ^ z * 0x165667B19E3779F9L;
+		h ^= h >>> 29;
+		h *= 0xBF58476D1CE4E5B9L;
+		return h ^ (h >>> 32);
+	}
+}
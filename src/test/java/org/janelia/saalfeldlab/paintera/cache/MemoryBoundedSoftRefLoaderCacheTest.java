@@ -0,0 +1,31 @@
+package org.janelia.saalfeldlab.paintera.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+
+public class MemoryBoundedSoftRefLoaderCacheTest {
+
+	@Test
+	public void testStatistics() throws ExecutionException {
+		final MemoryBoundedSoftRefLoaderCache<Long, long[], WeakRefLoaderCache<Long, long[]>> cache = MemoryBoundedSoftRefLoaderCache.withWeakRefs(1000, v -> 8 * v.length);
+
+		// miss in getIfPresent followed by load counts only the load
+		Assert.assertNull(cache.getIfPresent(1L));
+		final long[] value = cache.get(1L, k -> new long[] {k});
+		Assert.assertEquals(0, cache.getNumHits());
+		Assert.assertEquals(1, cache.getNumLoads());
+
+		// each call that finds the value counts a single hit
+		Assert.assertSame(value, cache.getIfPresent(1L));
+		Assert.assertSame(value, cache.get(1L, k -> new long[] {k}));
+		Assert.assertEquals(2, cache.getNumHits());
+		Assert.assertEquals(1, cache.getNumLoads());
+
+		cache.resetStatistics();
+		Assert.assertEquals(0, cache.getNumHits());
+		Assert.assertEquals(0, cache.getNumLoads());
+	}
+
+}
@@ -0,0 +1,121 @@
+package org.janelia.saalfeldlab.paintera.cache.global;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class FetchSchedulerTest {
+
+	@Test
+	public void testBoostedShare() throws InterruptedException {
+		final FetchScheduler scheduler = new FetchScheduler(1, 1, 1);
+		final FetchScheduler.Group blocker = scheduler.group("blocker", FetchScheduler.Backend.OTHER);
+		final FetchScheduler.Group a = scheduler.group("a", FetchScheduler.Backend.OTHER);
+		final FetchScheduler.Group b = scheduler.group("b", FetchScheduler.Backend.OTHER);
+		scheduler.setBoosted("a");
+
+		// occupy the single fetcher thread until all requests are enqueued
+		final CountDownLatch enqueued = new CountDownLatch(1);
+		blocker.queue().put(() -> { enqueued.await(); return null; }, 0, false);
+
+		final int numRequests = 40;
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(2 * numRequests);
+		for (int i = 0; i < numRequests; ++i) {
+			a.queue().put(() -> { Thread.sleep(1); order.add("a"); done.countDown(); return null; }, 0, false);
+			b.queue().put(() -> { Thread.sleep(1); order.add("b"); done.countDown(); return null; }, 0, false);
+		}
+		enqueued.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+
+		final long numA = order.subList(0, 20).stream().filter("a"::equals).count();
+		Assert.assertTrue("Boosted group received " + numA + " of 20 requests", numA >= 14);
+		Assert.assertEquals(3, scheduler.metrics().size());
+	}
+
+	@Test
+	public void testBackendConcurrencyLimit() throws InterruptedException {
+		final FetchScheduler scheduler = new FetchScheduler(1, 4, 4);
+		final FetchScheduler.Group hdf5 = scheduler.group("hdf5", FetchScheduler.Backend.HDF5);
+		final FetchScheduler.Group fs = scheduler.group("fs", FetchScheduler.Backend.FILE_SYSTEM);
+
+		final AtomicInteger numConcurrentHdf5 = new AtomicInteger();
+		final AtomicInteger maxConcurrentHdf5 = new AtomicInteger();
+		final AtomicInteger numConcurrentFs = new AtomicInteger();
+		final AtomicInteger maxConcurrentFs = new AtomicInteger();
+		final int numRequests = 12;
+		final CountDownLatch done = new CountDownLatch(2 * numRequests);
+		for (int i = 0; i < numRequests; ++i) {
+			hdf5.queue().put(() -> {
+				maxConcurrentHdf5.accumulateAndGet(numConcurrentHdf5.incrementAndGet(), Math::max);
+				Thread.sleep(10);
+				numConcurrentHdf5.decrementAndGet();
+				done.countDown();
+				return null;
+			}, 0, false);
+			fs.queue().put(() -> {
+				maxConcurrentFs.accumulateAndGet(numConcurrentFs.incrementAndGet(), Math::max);
+				Thread.sleep(10);
+				numConcurrentFs.decrementAndGet();
+				done.countDown();
+				return null;
+			}, 0, false);
+		}
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(1, maxConcurrentHdf5.get());
+		Assert.assertTrue(maxConcurrentFs.get() > 1);
+		Assert.assertEquals(4, scheduler.getNumFetcherThreads());
+	}
+
+	@Test
+	public void testPriorityWhileWaitingForSlot() throws InterruptedException {
+		final FetchScheduler scheduler = new FetchScheduler(2, 1, 1);
+		final FetchScheduler.Group group = scheduler.group("group", FetchScheduler.Backend.OTHER);
+
+		final CountDownLatch enqueued = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final List<String> order = Collections.synchronizedList(new ArrayList<>());
+		final CountDownLatch done = new CountDownLatch(3);
+		group.queue().put(() -> { started.countDown(); enqueued.await(); order.add("first"); done.countDown(); return null; }, 0, false);
+		Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+		group.queue().put(() -> { order.add("low"); done.countDown(); return null; }, 1, false);
+		group.queue().put(() -> { order.add("high"); done.countDown(); return null; }, 0, false);
+		enqueued.countDown();
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Arrays.asList("first", "high", "low"), order);
+	}
+
+	@Test
+	public void testRemoveStopsDispatcher() throws InterruptedException {
+		final FetchScheduler scheduler = new FetchScheduler(1, 1, 1);
+		final FetchScheduler.Group group = scheduler.group("removed", FetchScheduler.Backend.OTHER);
+		final CountDownLatch done = new CountDownLatch(1);
+		group.queue().put(() -> { done.countDown(); return null; }, 0, false);
+		Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+		Assert.assertTrue(isDispatcherAlive("removed"));
+
+		scheduler.remove("removed");
+		for (int i = 0; i < 100 && isDispatcherAlive("removed"); ++i)
+			Thread.sleep(10);
+		Assert.assertFalse(isDispatcherAlive("removed"));
+		Assert.assertTrue(scheduler.metrics().isEmpty());
+
+		// group is re-created on demand
+		final CountDownLatch recreated = new CountDownLatch(1);
+		scheduler.group("removed", FetchScheduler.Backend.OTHER).queue().put(() -> { recreated.countDown(); return null; }, 0, false);
+		Assert.assertTrue(recreated.await(10, TimeUnit.SECONDS));
+		scheduler.close();
+	}
+
+	private static boolean isDispatcherAlive(final String key) {
+		return Thread.getAllStackTraces().keySet().stream().anyMatch(t -> t.getName().equals("fetch-dispatcher-" + key) && t.isAlive());
+	}
+
+}
@@ -0,0 +1,148 @@
+package org.janelia.saalfeldlab.paintera.control;
+
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.RealRandomAccess;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.converter.Converters;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ShapeInterpolationTest
+{
+
+	private static final long SECTION_SIZE = 21;
+
+	private static final long CENTER = 10;
+
+	private static final int[] BLOCK_SIZE = {8, 8, 4};
+
+	@Test
+	public void testKeyframes() throws InterruptedException, ExecutionException
+	{
+		final ShapeInterpolation interpolation = interpolate(10, new ShapeInterpolation.Keyframe(0.0, square(2)), new ShapeInterpolation.Keyframe(10.0, square(6)));
+		assertSection(interpolation, 0, 2);
+		assertSection(interpolation, 10, 6);
+	}
+
+	@Test
+	public void testMidpoint() throws InterruptedException, ExecutionException
+	{
+		final ShapeInterpolation interpolation = interpolate(10, new ShapeInterpolation.Keyframe(0.0, square(2)), new ShapeInterpolation.Keyframe(10.0, square(6)));
+		// signed distances are averaged halfway between the keyframes, i.e. the square grows to half-size 4
+		assertSection(interpolation, 5, 4);
+
+		// the shape grows monotonically between the keyframes
+		for (int z = 1; z < 10; ++z)
+			Assert.assertTrue("z = " + z, area(interpolation, z - 1) <= area(interpolation, z));
+		Assert.assertTrue(area(interpolation, 1) > area(interpolation, 0));
+		Assert.assertTrue(area(interpolation, 9) < area(interpolation, 10));
+	}
+
+	@Test
+	public void testMoreThanTwoKeyframes() throws InterruptedException, ExecutionException
+	{
+		// keyframes are passed in any order, the interval of the source extends beyond the last keyframe
+		final ShapeInterpolation interpolation = interpolate(
+				12,
+				new ShapeInterpolation.Keyframe(8.0, square(2)),
+				new ShapeInterpolation.Keyframe(0.0, square(2)),
+				new ShapeInterpolation.Keyframe(4.0, square(6)));
+
+		assertSection(interpolation, 0, 2);
+		assertSection(interpolation, 4, 6);
+		assertSection(interpolation, 8, 2);
+		// halfway between consecutive keyframes
+		assertSection(interpolation, 2, 4);
+		assertSection(interpolation, 6, 4);
+		// beyond the last keyframe
+		Assert.assertEquals(0, area(interpolation, 9));
+		Assert.assertEquals(0, area(interpolation, 12));
+	}
+
+	private static ShapeInterpolation interpolate(final long maxDepth, final ShapeInterpolation.Keyframe... keyframes) throws InterruptedException, ExecutionException
+	{
+		final ExecutorService es = Executors.newFixedThreadPool(3);
+		try
+		{
+			// source coordinates are keyframe coordinates
+			return ShapeInterpolation.interpolate(
+					Arrays.asList(keyframes),
+					new AffineTransform3D(),
+					new FinalInterval(new long[] {0, 0, 0}, new long[] {SECTION_SIZE - 1, SECTION_SIZE - 1, maxDepth}),
+					BLOCK_SIZE,
+					globalCache(),
+					es);
+		} finally
+		{
+			es.shutdown();
+		}
+	}
+
+	/**
+	 * Assert that the interpolated shape at depth {@code z} is the centered square with half-size {@code halfSize}.
+	 */
+	private static void assertSection(final ShapeInterpolation interpolation, final long z, final long halfSize)
+	{
+		final RealRandomAccess<UnsignedLongType> access = interpolation.getMask().realRandomAccess();
+		for (long y = 0; y < SECTION_SIZE; ++y)
+			for (long x = 0; x < SECTION_SIZE; ++x)
+			{
+				access.setPosition(new long[] {x, y, z});
+				final long expected = isInSquare(x, y, halfSize) ? 1 : 0;
+				Assert.assertEquals("x = " + x + " y = " + y + " z = " + z, expected, access.get().getIntegerLong());
+			}
+	}
+
+	private static long area(final ShapeInterpolation interpolation, final long z)
+	{
+		final RealRandomAccess<UnsignedLongType> access = interpolation.getMask().realRandomAccess();
+		long area = 0;
+		for (long y = 0; y < SECTION_SIZE; ++y)
+			for (long x = 0; x < SECTION_SIZE; ++x)
+			{
+				access.setPosition(new long[] {x, y, z});
+				area += access.get().getIntegerLong();
+			}
+		return area;
+	}
+
+	private static RandomAccessibleInterval<BoolType> square(final long halfSize)
+	{
+		final ArrayImg<BitType, LongArray> section = ArrayImgs.bits(SECTION_SIZE, SECTION_SIZE);
+		final Cursor<BitType> cursor = section.localizingCursor();
+		while (cursor.hasNext())
+		{
+			cursor.fwd();
+			cursor.get().set(isInSquare(cursor.getLongPosition(0), cursor.getLongPosition(1), halfSize));
+		}
+		return Converters.convert((RandomAccessibleInterval<BitType>) section, (in, out) -> out.set(in.get()), new BoolType());
+	}
+
+	private static boolean isInSquare(final long x, final long y, final long halfSize)
+	{
+		return Math.abs(x - CENTER) <= halfSize && Math.abs(y - CENTER) <= halfSize;
+	}
+
+	private static GlobalCache globalCache()
+	{
+		final MemoryBoundedSoftRefLoaderCache<GlobalCache.Key<?>, ?, ?> backingCache = MemoryBoundedSoftRefLoaderCache.withWeakRefs(Runtime.getRuntime().maxMemory(), obj -> 0);
+		return new GlobalCache(new BlockingFetchQueues<>(1), backingCache, backingCache);
+	}
+
+}
@@ -0,0 +1,146 @@
+package org.janelia.saalfeldlab.paintera.control.paint;
+
+import net.imglib2.Cursor;
+import net.imglib2.Interval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.cell.CellGrid;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.AccessedBlocksRandomAccessible;
+import net.imglib2.util.IntervalIndexer;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+public class BrushStrokeTest
+{
+
+	private static final long[] DIMENSIONS = {40, 30, 20};
+
+	private static final int[] BLOCK_SIZE = {8, 7, 6};
+
+	private static final double RADIUS_X = 3.5;
+
+	private static final double RADIUS_Y = 2.5;
+
+	private static final double Z_RANGE = 1.5;
+
+	private static final double[][] POLYLINE = {{5.0, 6.0}, {20.3, 9.7}, {21.0, 24.2}, {21.0, 24.2}};
+
+	@Test
+	public void testAxisAligned()
+	{
+		final AffineTransform3D labelToViewer = new AffineTransform3D();
+		labelToViewer.translate(0.0, 0.0, -10.0);
+		testStroke(labelToViewer);
+	}
+
+	@Test
+	public void testRotated()
+	{
+		final AffineTransform3D labelToViewer = new AffineTransform3D();
+		labelToViewer.translate(-20.0, -15.0, -10.0);
+		labelToViewer.rotate(0, 0.3);
+		labelToViewer.rotate(1, -0.4);
+		labelToViewer.rotate(2, 0.5);
+		labelToViewer.translate(20.0, 15.0, 0.0);
+		testStroke(labelToViewer);
+	}
+
+	@Test
+	public void testSinglePosition()
+	{
+		final AffineTransform3D labelToViewer = new AffineTransform3D();
+		labelToViewer.translate(0.0, 0.0, -10.0);
+		final RandomAccessibleInterval<UnsignedLongType> labels = ArrayImgs.unsignedLongs(DIMENSIONS);
+		final Interval painted = new BrushStroke(labelToViewer, 1.0, 1.0, 0.5).paint(labels, 1, new double[] {10.0, 10.0});
+		Assert.assertArrayEquals(new long[] {9, 9, 10}, Intervals.minAsLongArray(painted));
+		Assert.assertArrayEquals(new long[] {11, 11, 10}, Intervals.maxAsLongArray(painted));
+		long count = 0;
+		for (final UnsignedLongType t : Views.iterable(labels))
+			count += t.get();
+		Assert.assertEquals(5, count);
+	}
+
+	private static void testStroke(final AffineTransform3D labelToViewer)
+	{
+		final BrushStroke stroke = new BrushStroke(labelToViewer, RADIUS_X, RADIUS_Y, Z_RANGE);
+
+		final RandomAccessibleInterval<UnsignedLongType> arrayLabels = ArrayImgs.unsignedLongs(DIMENSIONS);
+		final Interval arrayPainted = stroke.paint(arrayLabels, 1, POLYLINE);
+
+		final CellImg<UnsignedLongType, ?> cellLabels = new CellImgFactory<>(new UnsignedLongType(), BLOCK_SIZE).create(DIMENSIONS);
+		final CellGrid grid = cellLabels.getCellGrid();
+		final AccessedBlocksRandomAccessible<UnsignedLongType> tracker = new AccessedBlocksRandomAccessible<>(cellLabels, grid);
+		final Interval cellPainted = stroke.paint(tracker, 1, POLYLINE);
+
+		Assert.assertNotNull(arrayPainted);
+		Assert.assertTrue(Intervals.equals(arrayPainted, cellPainted));
+
+		final long[] expectedMin = {Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE};
+		final long[] expectedMax = {Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE};
+		final double[] position = new double[3];
+		final long[] cellPosition = new long[3];
+		final long[] expectedBlocks = new long[(int) Intervals.numElements(grid.getGridDimensions())];
+		final Cursor<UnsignedLongType> arrayCursor = Views.flatIterable(arrayLabels).localizingCursor();
+		final Cursor<UnsignedLongType> cellCursor = Views.flatIterable(cellLabels).cursor();
+		while (arrayCursor.hasNext())
+		{
+			final long arrayValue = arrayCursor.next().get();
+			final long cellValue = cellCursor.next().get();
+			arrayCursor.localize(position);
+			labelToViewer.apply(position, position);
+			final boolean isInside = isInside(position);
+			Assert.assertEquals(isInside ? 1 : 0, arrayValue);
+			Assert.assertEquals(arrayValue, cellValue);
+			if (isInside)
+			{
+				for (int d = 0; d < 3; ++d)
+				{
+					expectedMin[d] = Math.min(expectedMin[d], arrayCursor.getLongPosition(d));
+					expectedMax[d] = Math.max(expectedMax[d], arrayCursor.getLongPosition(d));
+					cellPosition[d] = arrayCursor.getLongPosition(d) / BLOCK_SIZE[d];
+				}
+				expectedBlocks[(int) IntervalIndexer.positionToIndex(cellPosition, grid.getGridDimensions())] = 1;
+			}
+		}
+		Assert.assertArrayEquals(expectedMin, Intervals.minAsLongArray(arrayPainted));
+		Assert.assertArrayEquals(expectedMax, Intervals.maxAsLongArray(arrayPainted));
+
+		final long[] blocks = tracker.listBlocks();
+		Arrays.sort(blocks);
+		Assert.assertArrayEquals(
+				IntStream.range(0, expectedBlocks.length).filter(i -> expectedBlocks[i] == 1).asLongStream().toArray(),
+				blocks);
+	}
+
+	private static boolean isInside(final double[] viewerPosition)
+	{
+		if (Math.abs(viewerPosition[2]) > Z_RANGE)
+			return false;
+		final double x = viewerPosition[0] / RADIUS_X;
+		final double y = viewerPosition[1] / RADIUS_Y;
+		for (int i = 1; i < POLYLINE.length; ++i)
+		{
+			final double ax = POLYLINE[i - 1][0] / RADIUS_X;
+			final double ay = POLYLINE[i - 1][1] / RADIUS_Y;
+			final double dx = POLYLINE[i][0] / RADIUS_X - ax;
+			final double dy = POLYLINE[i][1] / RADIUS_Y - ay;
+			final double lengthSquared = dx * dx + dy * dy;
+			final double t = lengthSquared == 0.0 ? 0.0 : Math.max(0.0, Math.min(1.0, ((x - ax) * dx + (y - ay) * dy) / lengthSquared));
+			final double ex = x - ax - t * dx;
+			final double ey = y - ay - t * dy;
+			if (ex * ex + ey * ey <= 1.0)
+				return true;
+		}
+		return false;
+	}
+
+}
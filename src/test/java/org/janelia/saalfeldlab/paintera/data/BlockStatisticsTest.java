@@ -0,0 +1,115 @@
+package org.janelia.saalfeldlab.paintera.data;
+
+import net.imglib2.Cursor;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BlockStatisticsTest {
+
+	private static class Range implements BlockStatistics.RangePredicate<DoubleType> {
+
+		private final double min;
+
+		private final double max;
+
+		private Range(final double min, final double max) {
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public boolean test(final DoubleType t) {
+			return t.get() >= min && t.get() <= max;
+		}
+
+		@Override
+		public boolean acceptsAll(final double min, final double max) {
+			return min >= this.min && max <= this.max;
+		}
+
+		@Override
+		public boolean rejectsAll(final double min, final double max) {
+			return max < this.min || min > this.max;
+		}
+	}
+
+	@Test
+	public void testSummaries() {
+		final BlockStatistics<DoubleType> statistics = new BlockStatistics<>(data(), 0.0, 8.0, 4, globalCache());
+		Assert.assertArrayEquals(new long[] {2, 1}, statistics.getGrid().getGridDimensions());
+		Assert.assertNull(statistics.getIfPresent(0));
+
+		// block 0 contains 0, 1, 4, 5
+		final BlockStatistics.Summary summary0 = statistics.get(0);
+		Assert.assertSame(summary0, statistics.getIfPresent(0));
+		Assert.assertEquals(0.0, summary0.min, 0.0);
+		Assert.assertEquals(5.0, summary0.max, 0.0);
+		Assert.assertFalse(summary0.hasNaN);
+		Assert.assertArrayEquals(new long[] {2, 0, 2, 0}, summary0.histogram());
+
+		// block 1 contains 2, 3, 6, NaN
+		final BlockStatistics.Summary summary1 = statistics.get(1);
+		Assert.assertEquals(2.0, summary1.min, 0.0);
+		Assert.assertEquals(6.0, summary1.max, 0.0);
+		Assert.assertTrue(summary1.hasNaN);
+		Assert.assertArrayEquals(new long[] {0, 2, 0, 1}, summary1.histogram());
+
+		Assert.assertArrayEquals(new long[] {2, 2, 2, 1}, statistics.histogram());
+		Assert.assertEquals(2.0, statistics.binMin(1), 0.0);
+	}
+
+	@Test
+	public void testSummaryTest() {
+		final BlockStatistics<DoubleType> statistics = new BlockStatistics<>(data(), 0.0, 8.0, 4, globalCache());
+		final BlockStatistics.Summary summary0 = statistics.get(0);
+		final BlockStatistics.Summary summary1 = statistics.get(1);
+
+		Assert.assertEquals(Boolean.TRUE, summary0.test(new Range(0.0, 5.0)));
+		Assert.assertEquals(Boolean.FALSE, summary0.test(new Range(5.5, 10.0)));
+		Assert.assertNull(summary0.test(new Range(1.0, 10.0)));
+
+		// NaN never satisfies a range predicate
+		Assert.assertNull(summary1.test(new Range(0.0, 10.0)));
+		Assert.assertEquals(Boolean.FALSE, summary1.test(new Range(7.0, 10.0)));
+	}
+
+	@Test
+	public void testRequest() throws InterruptedException {
+		final BlockStatistics<DoubleType> statistics = new BlockStatistics<>(data(), 0.0, 8.0, 4, globalCache());
+		statistics.request(1);
+		statistics.request(1);
+		for (int i = 0; i < 500 && statistics.getIfPresent(1) == null; ++i)
+			Thread.sleep(10);
+		Assert.assertNotNull(statistics.getIfPresent(1));
+		Assert.assertEquals(6.0, statistics.getIfPresent(1).max, 0.0);
+		Assert.assertNull(statistics.getIfPresent(0));
+	}
+
+	/**
+	 * @return 4x2 image with value {@code x + 4 * y} at {@code (x, y)}, and {@code NaN} at {@code (3, 1)}, split into
+	 * 2x2 cells
+	 */
+	private static CellImg<DoubleType, ?> data() {
+		final CellImg<DoubleType, ?> img = new CellImgFactory<>(new DoubleType(), 2).create(4, 2);
+		final Cursor<DoubleType> cursor = img.localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			final long x = cursor.getLongPosition(0);
+			final long y = cursor.getLongPosition(1);
+			cursor.get().set(x == 3 && y == 1 ? Double.NaN : x + 4 * y);
+		}
+		return img;
+	}
+
+	private static GlobalCache globalCache() {
+		final MemoryBoundedSoftRefLoaderCache<GlobalCache.Key<?>, ?, ?> backingCache = MemoryBoundedSoftRefLoaderCache.withWeakRefs(Runtime.getRuntime().maxMemory(), obj -> 0);
+		return new GlobalCache(new BlockingFetchQueues<>(1), backingCache, backingCache);
+	}
+
+}
@@ -0,0 +1,103 @@
+package org.janelia.saalfeldlab.paintera.data;
+
+import net.imglib2.RandomAccess;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.converter.Converters;
+import net.imglib2.converter.TypeVolatileConverter;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.realtransform.AffineTransform3D;
+import net.imglib2.type.logic.BoolType;
+import net.imglib2.type.numeric.real.DoubleType;
+import net.imglib2.type.volatiles.VolatileDoubleType;
+import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PredicateDataSourceTest {
+
+	private static class Range implements BlockStatistics.RangePredicate<DoubleType> {
+
+		private final double min;
+
+		private final double max;
+
+		private Range(final double min, final double max) {
+			this.min = min;
+			this.max = max;
+		}
+
+		@Override
+		public boolean test(final DoubleType t) {
+			return t.get() >= min && t.get() <= max;
+		}
+
+		@Override
+		public boolean acceptsAll(final double min, final double max) {
+			return min >= this.min && max <= this.max;
+		}
+
+		@Override
+		public boolean rejectsAll(final double min, final double max) {
+			return max < this.min || min > this.max;
+		}
+	}
+
+	@Test
+	public void testInvalidateAllInvalidatesStatistics() {
+		final CellImg<DoubleType, ?> data = new CellImgFactory<>(new DoubleType(), 2, 2, 1).create(4, 2, 1);
+		final RandomAccessibleInterval<VolatileDoubleType> viewData = Converters.convert(
+				(RandomAccessibleInterval<DoubleType>) data,
+				new TypeVolatileConverter<>(),
+				new VolatileDoubleType());
+		final AtomicInteger numSourceInvalidations = new AtomicInteger();
+		final DataSource<DoubleType, VolatileDoubleType> source = new RandomAccessibleIntervalDataSource<DoubleType, VolatileDoubleType>(
+				data,
+				viewData,
+				new AffineTransform3D(),
+				numSourceInvalidations::incrementAndGet,
+				Interpolations.nearestNeighbor(),
+				Interpolations.nearestNeighbor(),
+				"data");
+
+		final BlockStatistics<DoubleType>[] statistics = BlockStatistics.forSource(source, 0.0, 8.0, 4, globalCache());
+		final PredicateDataSource<DoubleType, VolatileDoubleType, Range> predicateSource = new PredicateDataSource<>(
+				source,
+				new Range(1.0, 2.0),
+				statistics,
+				"predicate");
+
+		// all blocks are rejected entirely
+		Assert.assertEquals(0.0, statistics[0].get(0).max, 0.0);
+		Assert.assertFalse(isSet(predicateSource));
+
+		data.forEach(t -> t.set(1.5));
+		// summary of block 0 is stale until invalidated
+		Assert.assertFalse(isSet(predicateSource));
+
+		predicateSource.invalidateAll();
+		Assert.assertEquals(1, numSourceInvalidations.get());
+		Assert.assertNull(statistics[0].getIfPresent(0));
+		Assert.assertTrue(isSet(predicateSource));
+
+		// block 0 is accepted entirely
+		Assert.assertEquals(1.5, statistics[0].get(0).max, 0.0);
+		Assert.assertTrue(isSet(predicateSource));
+	}
+
+	private static boolean isSet(final DataSource<BoolType, ?> source) {
+		final RandomAccess<BoolType> access = source.getDataSource(0, 0).randomAccess();
+		access.setPosition(new long[] {0, 0, 0});
+		return access.get().get();
+	}
+
+	private static GlobalCache globalCache() {
+		final MemoryBoundedSoftRefLoaderCache<GlobalCache.Key<?>, ?, ?> backingCache = MemoryBoundedSoftRefLoaderCache.withWeakRefs(Runtime.getRuntime().maxMemory(), obj -> 0);
+		return new GlobalCache(new BlockingFetchQueues<>(1), backingCache, backingCache);
+	}
+
+}
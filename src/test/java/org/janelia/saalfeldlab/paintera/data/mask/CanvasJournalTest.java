@@ -0,0 +1,118 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Random;
+
+public class CanvasJournalTest
+{
+
+	@Test
+	public void testAppendReplayTruncate() throws IOException
+	{
+		final Path path = Files.createTempDirectory("canvas-journal").resolve("journal.bin");
+
+		final FinalInterval interval1 = new FinalInterval(new long[] {-2, 3, 1}, new long[] {7, 5, 4});
+		final FinalInterval interval2 = new FinalInterval(new long[] {0, 0, 0}, new long[] {64, 1, 2});
+		final RandomAccessibleInterval<BitType> mask1 = randomMask(interval1, 1);
+		final RandomAccessibleInterval<BitType> mask2 = randomMask(interval2, 2);
+
+		try (final CanvasJournal journal = CanvasJournal.open(path))
+		{
+			journal.append(0, 3, interval1, mask1);
+			journal.append(2, 5, interval2, mask2);
+			journal.sync();
+		}
+
+		// simulate a crash while appending an entry
+		Files.write(path, new byte[] {0, 0, 0, 42, 1, 2}, StandardOpenOption.APPEND);
+
+		try (final CanvasJournal journal = CanvasJournal.open(path))
+		{
+			try (final CanvasJournal.Reader reader = journal.read())
+			{
+				assertEntryEquals(0, 3, mask1, reader.next());
+				assertEntryEquals(2, 5, mask2, reader.next());
+				Assert.assertNull(reader.next());
+			}
+
+			journal.truncate();
+			journal.append(1, 7, interval1, mask1);
+			try (final CanvasJournal.Reader reader = journal.read())
+			{
+				assertEntryEquals(1, 7, mask1, reader.next());
+				Assert.assertNull(reader.next());
+			}
+			journal.delete();
+		}
+		Assert.assertFalse(Files.exists(path));
+	}
+
+	@Test
+	public void testCorruptEntryLength() throws IOException
+	{
+		final Path path = Files.createTempDirectory("canvas-journal").resolve("journal.bin");
+		final FinalInterval interval = new FinalInterval(new long[] {0, 0, 0}, new long[] {3, 3, 3});
+		final RandomAccessibleInterval<BitType> mask = randomMask(interval, 3);
+		try (final CanvasJournal journal = CanvasJournal.open(path))
+		{
+			journal.append(0, 1, interval, mask);
+		}
+		final long size = Files.size(path);
+
+		// length that exceeds the journal must not be allocated
+		Files.write(path, new byte[] {0x7f, -1, -1, -1, 0, 0, 0, 0}, StandardOpenOption.APPEND);
+
+		try (final CanvasJournal journal = CanvasJournal.open(path))
+		{
+			Assert.assertEquals(size, Files.size(path));
+			try (final CanvasJournal.Reader reader = journal.read())
+			{
+				assertEntryEquals(0, 1, mask, reader.next());
+				Assert.assertNull(reader.next());
+			}
+			journal.delete();
+		}
+	}
+
+	private static RandomAccessibleInterval<BitType> randomMask(final FinalInterval interval, final long seed)
+	{
+		final ArrayImg<BitType, LongArray> mask = ArrayImgs.bits(Intervals.dimensionsAsLongArray(interval));
+		final Random rng = new Random(seed);
+		mask.forEach(b -> b.set(rng.nextBoolean()));
+		return Views.translate(mask, Intervals.minAsLongArray(interval));
+	}
+
+	private static void assertEntryEquals(
+			final int level,
+			final long value,
+			final RandomAccessibleInterval<BitType> mask,
+			final CanvasJournal.Entry entry)
+	{
+		Assert.assertNotNull(entry);
+		Assert.assertEquals(level, entry.level);
+		Assert.assertEquals(value, entry.value);
+		Assert.assertTrue(Intervals.equals(mask, entry.interval));
+		final RandomAccessibleInterval<UnsignedLongType> replayed = entry.mask();
+		Assert.assertTrue(Intervals.equals(mask, replayed));
+		final Iterator<UnsignedLongType> replayedIt = Views.flatIterable(replayed).iterator();
+		for (final BitType b : Views.flatIterable(mask))
+			Assert.assertEquals(b.get() ? 1 : 0, replayedIt.next().getIntegerLong());
+	}
+
+}
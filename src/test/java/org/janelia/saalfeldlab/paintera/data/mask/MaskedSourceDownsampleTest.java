@@ -0,0 +1,97 @@
+package org.janelia.saalfeldlab.paintera.data.mask;
+
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.set.TLongSet;
+import gnu.trove.set.hash.TLongHashSet;
+import net.imglib2.Cursor;
+import net.imglib2.FinalInterval;
+import net.imglib2.RandomAccessible;
+import net.imglib2.cache.img.CachedCellImg;
+import net.imglib2.cache.img.CellLoader;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
+import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.LongAccess;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.type.label.Label;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.util.Intervals;
+import net.imglib2.view.Views;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class MaskedSourceDownsampleTest
+{
+
+	private static final long[] TARGET_DIMENSIONS = {10, 7, 5};
+
+	private static final int[] STEPS = {2, 3, 2};
+
+	private static final int[] BLOCK_SIZE = {4, 4, 4};
+
+	@Test
+	public void testDownsampleBlocks() throws InterruptedException, ExecutionException
+	{
+		final ArrayImg<UnsignedLongType, LongArray> source = ArrayImgs.unsignedLongs(
+				TARGET_DIMENSIONS[0] * STEPS[0] - 1,
+				TARGET_DIMENSIONS[1] * STEPS[1],
+				TARGET_DIMENSIONS[2] * STEPS[2]);
+		final Random rng = new Random(100);
+		source.forEach(t -> t.set(1 + rng.nextInt(3)));
+		final RandomAccessible<UnsignedLongType> extended = Views.extendValue(source, new UnsignedLongType(Label.INVALID));
+
+		final CachedCellImg<UnsignedLongType, LongAccess> sequential = createCanvas();
+		final CachedCellImg<UnsignedLongType, LongAccess> parallel = createCanvas();
+		final TLongSet allBlocks = new TLongHashSet();
+		for (long i = 0, numBlocks = Intervals.numElements(sequential.getCellGrid().getGridDimensions()); i < numBlocks; ++i)
+			allBlocks.add(i);
+		final FinalInterval interval = new FinalInterval(TARGET_DIMENSIONS);
+
+		MaskedSource.downsampleBlocks(extended, sequential, allBlocks, STEPS, interval);
+		final ExecutorService es = Executors.newFixedThreadPool(3);
+		try
+		{
+			MaskedSource.downsampleBlocks(extended, parallel, allBlocks, STEPS, interval, es);
+		} finally
+		{
+			es.shutdown();
+		}
+
+		final long[] windowMin = new long[3];
+		final long[] windowMax = new long[3];
+		final TLongIntHashMap counts = new TLongIntHashMap();
+		for (final Cursor<UnsignedLongType> s = Views.flatIterable(sequential).cursor(), p = Views.flatIterable(parallel).cursor(); s.hasNext(); )
+		{
+			final long id = s.next().getIntegerLong();
+			Assert.assertEquals(id, p.next().getIntegerLong());
+
+			// result is a most frequent label within the window
+			for (int d = 0; d < 3; ++d)
+			{
+				windowMin[d] = s.getLongPosition(d) * STEPS[d];
+				windowMax[d] = windowMin[d] + STEPS[d] - 1;
+			}
+			counts.clear();
+			for (final UnsignedLongType t : Views.interval(extended, windowMin, windowMax))
+				counts.adjustOrPutValue(t.getIntegerLong(), 1, 1);
+			final int maxCount = Arrays.stream(counts.values()).max().getAsInt();
+			Assert.assertEquals(maxCount, counts.get(id));
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static CachedCellImg<UnsignedLongType, LongAccess> createCanvas()
+	{
+		final CellLoader<UnsignedLongType> loader = img -> img.forEach(UnsignedLongType::setZero);
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options().cellDimensions(BLOCK_SIZE));
+		return (CachedCellImg<UnsignedLongType, LongAccess>) factory.create(TARGET_DIMENSIONS, new UnsignedLongType(), loader);
+	}
+
+}
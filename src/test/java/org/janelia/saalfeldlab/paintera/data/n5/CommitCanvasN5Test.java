@@ -11,7 +11,9 @@ import net.imglib2.cache.img.CachedCellImg;
 import net.imglib2.cache.img.CellLoader;
 import net.imglib2.cache.img.ReadOnlyCachedCellImgFactory;
 import net.imglib2.cache.img.ReadOnlyCachedCellImgOptions;
+import net.imglib2.converter.Converter;
 import net.imglib2.img.cell.CellGrid;
+import net.imglib2.type.label.FromIntegerTypeConverter;
 import net.imglib2.type.label.Label;
 import net.imglib2.type.label.LabelMultisetType;
 import net.imglib2.type.label.LabelUtils;
@@ -21,6 +23,7 @@ import net.imglib2.util.Intervals;
 import net.imglib2.util.Pair;
 import net.imglib2.view.Views;
 import org.janelia.saalfeldlab.labels.blocks.LabelBlockLookupFromFile;
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
 import org.janelia.saalfeldlab.n5.DataBlock;
 import org.janelia.saalfeldlab.n5.DataType;
 import org.janelia.saalfeldlab.n5.DatasetAttributes;
@@ -30,6 +33,7 @@ import org.janelia.saalfeldlab.n5.N5FSWriter;
 import org.janelia.saalfeldlab.n5.N5Reader;
 import org.janelia.saalfeldlab.n5.N5Writer;
 import org.janelia.saalfeldlab.n5.imglib2.N5Utils;
+import org.janelia.saalfeldlab.paintera.data.mask.persist.ConcurrentCommitConflict;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.PersistCanvas;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToPersistCanvas;
 import org.janelia.saalfeldlab.paintera.data.mask.persist.UnableToUpdateLabelBlockLookup;
@@ -42,6 +46,7 @@ import org.slf4j.LoggerFactory;
 import pl.touk.throwing.ThrowingBiConsumer;
 import pl.touk.throwing.ThrowingBiFunction;
 import pl.touk.throwing.ThrowingConsumer;
+import pl.touk.throwing.ThrowingRunnable;
 
 import java.io.File;
 import java.io.IOException;
@@ -55,10 +60,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 public class CommitCanvasN5Test {
@@ -100,6 +111,184 @@ public class CommitCanvasN5Test {
 		testUnsignedLongTypePaintera(container, "paintera-uint64", canvas, scales);
 	}
 
+	@Test
+	public void testConcurrentCommits() throws Exception {
+		final long[] dims = new long[] {4, 4, 1};
+		final int[] blockSize = new int[] {4, 4, 1};
+		final long[] blockPosition = new long[3];
+		final DatasetAttributes attributes = new DatasetAttributes(dims, blockSize, DataType.UINT64, new GzipCompression());
+		final N5FSWriter container = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		final String dataset = "concurrent-uint64";
+		container.createDataset(dataset, attributes);
+		final CommitCanvasN5 commit = new CommitCanvasN5(container, dataset);
+		final BlockVersions versions = BlockVersions.of(container, dataset);
+		final ExecutorService es = Executors.newSingleThreadExecutor();
+
+		// concurrent modification of voxels that are not painted is merged
+		final long[] concurrentData = new long[16];
+		concurrentData[1] = 2;
+		final Future<?> merged = commitWhileLocked(es, commit, versions, blockPosition, canvasWithLabelAt(dims, blockSize, 0, 1), () -> container.writeBlock(dataset, attributes, new LongArrayDataBlock(blockSize, blockPosition, concurrentData)));
+		merged.get(10, TimeUnit.SECONDS);
+		final long[] expected = new long[16];
+		expected[0] = 1;
+		expected[1] = 2;
+		Assert.assertArrayEquals(expected, (long[]) container.readBlock(dataset, attributes, blockPosition).getData());
+
+		// concurrent modification of painted voxels is a conflict
+		expected[2] = 4;
+		final Future<?> conflict = commitWhileLocked(es, commit, versions, blockPosition, canvasWithLabelAt(dims, blockSize, 2, 3), () -> container.writeBlock(dataset, attributes, new LongArrayDataBlock(blockSize, blockPosition, expected)));
+		try {
+			conflict.get(10, TimeUnit.SECONDS);
+			Assert.fail("Expected conflict");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof UnableToPersistCanvas);
+			Assert.assertTrue(e.getCause().getCause() instanceof ConcurrentCommitConflict);
+		}
+		Assert.assertArrayEquals(expected, (long[]) container.readBlock(dataset, attributes, blockPosition).getData());
+		Assert.assertEquals(0, BlockVersions.numLockedBlocks());
+		es.shutdown();
+	}
+
+	@Test
+	public void testConflictWritesNoBlock() throws Exception {
+		final long[] dims = new long[] {8, 4, 1};
+		final int[] blockSize = new int[] {4, 4, 1};
+		final DatasetAttributes attributes = new DatasetAttributes(dims, blockSize, DataType.UINT64, new GzipCompression());
+		final N5FSWriter container = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		final String dataset = "conflict-uint64";
+		container.createDataset(dataset, attributes);
+		final CommitCanvasN5 commit = new CommitCanvasN5(container, dataset);
+		final BlockVersions versions = BlockVersions.of(container, dataset);
+		final ExecutorService es = Executors.newSingleThreadExecutor();
+
+		// paint voxel 0 of both blocks, a concurrent commit modifies voxel 0 of the second block only
+		final long[] concurrentData = new long[16];
+		concurrentData[0] = 2;
+		final long[] secondBlock = {1, 0, 0};
+		final Future<?> conflict = commitWhileLocked(es, commit, versions, secondBlock, new long[] {1, 0}, canvasWithLabelAt(dims, blockSize, 0, 1), () -> container.writeBlock(dataset, attributes, new LongArrayDataBlock(blockSize, secondBlock, concurrentData)));
+		try {
+			conflict.get(10, TimeUnit.SECONDS);
+			Assert.fail("Expected conflict");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause().getCause() instanceof ConcurrentCommitConflict);
+		}
+		// first block is not written even though it does not conflict
+		Assert.assertNull(container.readBlock(dataset, attributes, new long[] {0, 0, 0}));
+		Assert.assertEquals(0, versions.version(new long[] {0, 0, 0}));
+		Assert.assertArrayEquals(concurrentData, (long[]) container.readBlock(dataset, attributes, secondBlock).getData());
+		Assert.assertEquals(0, BlockVersions.numLockedBlocks());
+		es.shutdown();
+	}
+
+	@Test
+	public void testConcurrentCommitsLabelMultiset() throws Exception {
+		final long[] dims = new long[] {4, 4, 1};
+		final int[] blockSize = new int[] {4, 4, 1};
+		final long[] blockPosition = new long[3];
+		final DatasetAttributes attributes = new DatasetAttributes(dims, blockSize, DataType.UINT8, new GzipCompression());
+		final N5FSWriter container = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		final String dataset = "concurrent-label-multisets";
+		container.createDataset(dataset, attributes);
+		MULTISET_ATTRIBUTE.forEach(ThrowingBiConsumer.unchecked((k, v) -> container.setAttribute(dataset, k, v)));
+		container.writeBlock(dataset, attributes, labelMultisetBlock(blockSize, blockPosition, new long[16]));
+		final CommitCanvasN5 commit = new CommitCanvasN5(container, dataset);
+		final BlockVersions versions = BlockVersions.of(container, dataset);
+		final ExecutorService es = Executors.newSingleThreadExecutor();
+
+		// concurrent modification of voxels that are not painted is merged
+		final long[] concurrentData = new long[16];
+		concurrentData[1] = 2;
+		final Future<?> merged = commitWhileLocked(es, commit, versions, blockPosition, canvasWithLabelAt(dims, blockSize, 0, 1), () -> container.writeBlock(dataset, attributes, labelMultisetBlock(blockSize, blockPosition, concurrentData)));
+		merged.get(10, TimeUnit.SECONDS);
+		final long[] expected = new long[16];
+		expected[0] = 1;
+		expected[1] = 2;
+		Assert.assertArrayEquals(expected, labelMultisetIds(container, dataset));
+
+		// concurrent modification of painted voxels is a conflict
+		expected[2] = 4;
+		final Future<?> conflict = commitWhileLocked(es, commit, versions, blockPosition, canvasWithLabelAt(dims, blockSize, 2, 3), () -> container.writeBlock(dataset, attributes, labelMultisetBlock(blockSize, blockPosition, expected)));
+		try {
+			conflict.get(10, TimeUnit.SECONDS);
+			Assert.fail("Expected conflict");
+		} catch (final ExecutionException e) {
+			Assert.assertTrue(e.getCause().getCause() instanceof ConcurrentCommitConflict);
+		}
+		Assert.assertArrayEquals(expected, labelMultisetIds(container, dataset));
+		Assert.assertEquals(0, BlockVersions.numLockedBlocks());
+		es.shutdown();
+	}
+
+	private static ByteArrayDataBlock labelMultisetBlock(final int[] blockSize, final long[] blockPosition, final long[] labels) {
+		final Converter<UnsignedLongType, LabelMultisetType> converter = new FromIntegerTypeConverter<>();
+		final LabelMultisetType type = FromIntegerTypeConverter.geAppropriateType();
+		final UnsignedLongType label = new UnsignedLongType();
+		final Iterable<LabelMultisetType> labelMultisets = () -> LongStream.of(labels).mapToObj(l -> {
+			label.set(l);
+			converter.convert(label, type);
+			return type;
+		}).iterator();
+		return new ByteArrayDataBlock(blockSize, blockPosition, LabelUtils.serializeLabelMultisetTypes(labelMultisets, labels.length));
+	}
+
+	/**
+	 * @return id of the single entry of each voxel, in flat iteration order
+	 */
+	private static long[] labelMultisetIds(final N5Reader container, final String dataset) throws IOException {
+		final RandomAccessibleInterval<LabelMultisetType> labels = LabelUtils.openVolatile(container, dataset);
+		final long[] ids = new long[(int) Intervals.numElements(labels)];
+		int index = 0;
+		for (final LabelMultisetType l : Views.flatIterable(labels)) {
+			Assert.assertEquals(1, l.entrySet().size());
+			ids[index++] = l.entrySet().iterator().next().getElement().id();
+		}
+		return ids;
+	}
+
+	private static Future<?> commitWhileLocked(
+			final ExecutorService es,
+			final CommitCanvasN5 commit,
+			final BlockVersions versions,
+			final long[] blockPosition,
+			final CachedCellImg<UnsignedLongType, ?> canvas,
+			final ThrowingRunnable<IOException> concurrentWrite) throws IOException, InterruptedException {
+		return commitWhileLocked(es, commit, versions, blockPosition, new long[] {0}, canvas, concurrentWrite);
+	}
+
+	/**
+	 * Commit {@code blocks} of {@code canvas} while block {@code blockPosition} is locked and run {@code concurrentWrite}
+	 * once the commit waits for the lock.
+	 */
+	private static Future<?> commitWhileLocked(
+			final ExecutorService es,
+			final CommitCanvasN5 commit,
+			final BlockVersions versions,
+			final long[] blockPosition,
+			final long[] blocks,
+			final CachedCellImg<UnsignedLongType, ?> canvas,
+			final ThrowingRunnable<IOException> concurrentWrite) throws IOException, InterruptedException {
+		try (final BlockVersions.Lock lock = versions.lock(blockPosition)) {
+			final Future<?> future = es.submit(() -> commit.persistCanvas(canvas, blocks));
+			// wait until the commit has read the block and tries to write it
+			for (int i = 0; i < 10000 && !versions.hasQueuedWriters(blockPosition); ++i)
+				Thread.sleep(1);
+			Assert.assertTrue(versions.hasQueuedWriters(blockPosition));
+			concurrentWrite.run();
+			lock.increment();
+			return future;
+		}
+	}
+
+	private static CachedCellImg<UnsignedLongType, ?> canvasWithLabelAt(final long[] dims, final int[] blockSize, final int index, final long label) {
+		final CellLoader<UnsignedLongType> loader = img -> {
+			int i = 0;
+			for (final UnsignedLongType px : Views.flatIterable(img))
+				px.setInteger(i++ == index ? label : Label.INVALID);
+		};
+		final ReadOnlyCachedCellImgFactory factory = new ReadOnlyCachedCellImgFactory(ReadOnlyCachedCellImgOptions.options().cellDimensions(blockSize));
+		return factory.create(dims, new UnsignedLongType(), loader);
+	}
+
 	private static void assertMultisetType(final UnsignedLongType c, final LabelMultisetType l) {
 		Assert.assertEquals(1, l.entrySet().size());
 		final LabelMultisetType.Entry<Label> entry = l.entrySet().iterator().next();
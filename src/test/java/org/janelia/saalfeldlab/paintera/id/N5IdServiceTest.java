@@ -0,0 +1,83 @@
+package org.janelia.saalfeldlab.paintera.id;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.n5.N5TestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+public class N5IdServiceTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String DATASET = "labels";
+
+	@Test
+	public void testReservation() throws IOException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createGroup(DATASET);
+		writer.setAttribute(DATASET, "maxId", 5L);
+
+		final N5IdService idService = new N5IdService(writer, DATASET, 5L, 10);
+		Assert.assertFalse(idService.isInvalidated(6));
+		Assert.assertEquals(6, idService.next());
+		Assert.assertTrue(idService.isInvalidated(6));
+		Assert.assertEquals(15L, (long) writer.getAttribute(DATASET, "maxId", Long.class));
+
+		// served from reserved block
+		Assert.assertArrayEquals(new long[] {7, 8, 9}, idService.next(3));
+		writer.setAttribute(DATASET, "maxId", 0L);
+		Assert.assertEquals(10, idService.next());
+
+		// invalidate within and beyond reserved block
+		idService.invalidate(12);
+		Assert.assertEquals(13, idService.next());
+		idService.invalidate(100);
+		Assert.assertEquals(110L, (long) writer.getAttribute(DATASET, "maxId", Long.class));
+		Assert.assertEquals(101, idService.next());
+
+		// request more than reservation size
+		Assert.assertArrayEquals(LongStream.rangeClosed(111, 130).toArray(), idService.next(20));
+		Assert.assertEquals(130L, (long) writer.getAttribute(DATASET, "maxId", Long.class));
+	}
+
+	@Test
+	public void testSharedContainer() throws Exception {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createGroup(DATASET);
+		writer.setAttribute(DATASET, "maxId", 0L);
+
+		final N5IdService idService1 = new N5IdService(writer, DATASET, 0L, 7);
+		final N5IdService idService2 = new N5IdService(writer, DATASET, 0L, 7);
+		final ExecutorService es = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<long[]>> futures = new ArrayList<>();
+			for (int i = 0; i < 200; ++i) {
+				final N5IdService idService = i % 2 == 0 ? idService1 : idService2;
+				final boolean requestMultiple = i % 3 == 0;
+				futures.add(es.submit(() -> requestMultiple ? idService.next(2) : new long[] {idService.next()}));
+			}
+			final Set<Long> ids = new HashSet<>();
+			for (final Future<long[]> future : futures)
+				for (final long id : future.get())
+					Assert.assertTrue("Duplicate id " + id, ids.add(id));
+			final long maxId = writer.getAttribute(DATASET, "maxId", Long.class);
+			Assert.assertTrue(ids.stream().allMatch(id -> id > 0 && id <= maxId));
+		} finally {
+			es.shutdown();
+		}
+	}
+
+}
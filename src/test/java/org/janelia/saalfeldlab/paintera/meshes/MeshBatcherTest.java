@@ -0,0 +1,104 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import javafx.scene.shape.MeshView;
+import javafx.scene.shape.TriangleMesh;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class MeshBatcherTest {
+
+	private final List<Pair<Integer, MeshView>> emitted = new ArrayList<>();
+
+	private final List<MeshBatcher<Integer>> registered = new ArrayList<>();
+
+	private final MeshBatcher<Integer> batcher = new MeshBatcher<>((key, mv) -> emitted.add(new ValuePair<>(key, mv)), registered::add);
+
+	@Test
+	public void testMergeAndFlush() {
+		batcher.add(1, triangle(1.0f), triangle(0.0f));
+		batcher.add(2, new float[0], new float[0]);
+		batcher.add(3, triangle(3.0f), triangle(0.0f));
+		Assert.assertTrue(emitted.isEmpty());
+		Assert.assertEquals(1, registered.size());
+		Assert.assertTrue(batcher.hasPending());
+
+		batcher.flush();
+		Assert.assertFalse(batcher.hasPending());
+		Assert.assertEquals(1, emitted.size());
+		Assert.assertEquals(1, (int) emitted.get(0).getA());
+		final TriangleMesh mesh = (TriangleMesh) emitted.get(0).getB().getMesh();
+		Assert.assertEquals(18, mesh.getPoints().size());
+		Assert.assertEquals(18, mesh.getNormals().size());
+		Assert.assertEquals(18, mesh.getFaces().size());
+		Assert.assertEquals(3.0f, mesh.getPoints().get(17), 0.0f);
+
+		// nothing pending
+		batcher.flush();
+		Assert.assertEquals(1, emitted.size());
+	}
+
+	@Test
+	public void testFullBuffer() {
+		final int length = MeshBatcher.BUFFER_CAPACITY / 2 + 9 - (MeshBatcher.BUFFER_CAPACITY / 2) % 9;
+		batcher.add(1, new float[length], new float[length]);
+		batcher.add(2, new float[length], new float[length]);
+		Assert.assertEquals(1, emitted.size());
+		Assert.assertEquals(1, (int) emitted.get(0).getA());
+		Assert.assertEquals(2, registered.size());
+
+		// too large for the buffers, emitted unmerged
+		batcher.add(3, new float[MeshBatcher.BUFFER_CAPACITY + 9], new float[MeshBatcher.BUFFER_CAPACITY + 9]);
+		Assert.assertEquals(2, emitted.size());
+		Assert.assertEquals(3, (int) emitted.get(1).getA());
+
+		batcher.flush();
+		Assert.assertEquals(3, emitted.size());
+		Assert.assertEquals(2, (int) emitted.get(2).getA());
+	}
+
+	@Test
+	public void testFlushExpired() {
+		batcher.add(1, triangle(1.0f), triangle(0.0f));
+		Assert.assertTrue(batcher.isWaiting(System.nanoTime()));
+		Assert.assertFalse(batcher.isWaiting(System.nanoTime() + TimeUnit.SECONDS.toNanos(1)));
+		Assert.assertTrue(batcher.flushExpired(System.nanoTime()));
+		Assert.assertTrue(emitted.isEmpty());
+
+		Assert.assertFalse(batcher.flushExpired(System.nanoTime() + TimeUnit.SECONDS.toNanos(1)));
+		Assert.assertEquals(1, emitted.size());
+		Assert.assertFalse(batcher.hasPending());
+		Assert.assertFalse(batcher.isWaiting(System.nanoTime()));
+		Assert.assertFalse(batcher.flushExpired(System.nanoTime() + TimeUnit.SECONDS.toNanos(1)));
+		Assert.assertEquals(1, emitted.size());
+	}
+
+	@Test
+	public void testDiscard() {
+		batcher.add(1, triangle(1.0f), triangle(0.0f));
+		batcher.discard();
+		Assert.assertFalse(batcher.hasPending());
+		Assert.assertFalse(batcher.flushExpired(System.nanoTime() + TimeUnit.SECONDS.toNanos(1)));
+		batcher.flush();
+		Assert.assertTrue(emitted.isEmpty());
+
+		// blocks added after discard start a new batch
+		batcher.add(2, triangle(2.0f), triangle(0.0f));
+		batcher.flush();
+		Assert.assertEquals(1, emitted.size());
+		Assert.assertEquals(2, (int) emitted.get(0).getA());
+		Assert.assertEquals(2, registered.size());
+	}
+
+	private static float[] triangle(final float value) {
+		final float[] triangle = new float[9];
+		triangle[8] = value;
+		return triangle;
+	}
+
+}
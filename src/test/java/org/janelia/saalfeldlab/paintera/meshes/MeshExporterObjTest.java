@@ -0,0 +1,98 @@
+package org.janelia.saalfeldlab.paintera.meshes;
+
+import net.imglib2.FinalInterval;
+import net.imglib2.Interval;
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+public class MeshExporterObjTest {
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	// two blocks with one triangle each, the triangles share an edge at the seam x == 1
+	private static final Interval[] BLOCKS = {
+			new FinalInterval(new long[] {0, 0, 0}, new long[] {0, 1, 1}),
+			new FinalInterval(new long[] {1, 0, 0}, new long[] {1, 1, 1})
+	};
+
+	private static final float[][] TRIANGLES = {
+			{0, 0, 0, 1, 0, 0, 1, 1, 0},
+			{1, 0, 0, 2, 0, 0, 1, 1, 0}
+	};
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void testExportManyIds() throws Exception {
+		final int numIds = 20;
+		final Function<Long, Interval[]>[][] blockListCaches = new Function[numIds][];
+		final Function<ShapeKey<Long>, Pair<float[], float[]>>[][] meshCaches = new Function[numIds][];
+		final Long[] ids = new Long[numIds];
+		final String[] paths = new String[numIds];
+		for (int i = 0; i < numIds; ++i) {
+			ids[i] = (long) i;
+			paths[i] = tmp.getRoot().toPath().resolve("mesh-" + i).toString();
+			blockListCaches[i] = new Function[] {id -> BLOCKS};
+			meshCaches[i] = new Function[] {(Function<ShapeKey<Long>, Pair<float[], float[]>>) MeshExporterObjTest::mesh};
+		}
+
+		final ExecutorService workers = Executors.newFixedThreadPool(3);
+		try {
+			new MeshExporterObj<Long>().exportMesh(blockListCaches, meshCaches, ids, 0, paths, workers);
+		} finally {
+			workers.shutdown();
+		}
+
+		for (int i = 0; i < numIds; ++i) {
+			final Path file = tmp.getRoot().toPath().resolve("mesh-" + i + ".obj");
+			final List<String> lines = Files.readAllLines(file);
+			Assert.assertEquals("# id: " + i, lines.get(0));
+			final List<String> vertices = lines.stream().filter(l -> l.startsWith("v ")).collect(Collectors.toList());
+			final List<String> faces = lines.stream().filter(l -> l.startsWith("f ")).collect(Collectors.toList());
+			// seam vertices are written only once
+			Assert.assertEquals(4, vertices.size());
+			Assert.assertEquals(4, lines.stream().filter(l -> l.startsWith("vn ")).count());
+			Assert.assertEquals(2, faces.size());
+			for (final String face : faces) {
+				final String[] corners = face.substring(2).split(" ");
+				Assert.assertEquals(3, corners.length);
+				for (final String corner : corners) {
+					final int index = Integer.parseInt(corner.split("/")[0]);
+					Assert.assertTrue(index >= 1 && index <= 4);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testVertexIndex() {
+		final VertexIndex index = new VertexIndex();
+		for (int i = 0; i < 10000; ++i)
+			Assert.assertEquals(i, index.indexOf(i, -i, 0.5f * i));
+		for (int i = 0; i < 10000; ++i)
+			Assert.assertEquals(i, index.indexOf(i, -i, 0.5f * i));
+		Assert.assertEquals(10000, index.size());
+		Assert.assertEquals(10000, index.indexOf(0.0f, 0.0f, -0.0f));
+	}
+
+	private static Pair<float[], float[]> mesh(final ShapeKey<Long> key) {
+		final float[] vertices = TRIANGLES[(int) key.min()[0]].clone();
+		final float[] normals = new float[vertices.length];
+		for (int i = 2; i < normals.length; i += 3)
+			normals[i] = 1.0f;
+		return new ValuePair<>(vertices, normals);
+	}
+
+}
@@ -0,0 +1,91 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import net.imglib2.util.Pair;
+import net.imglib2.util.ValuePair;
+import org.janelia.saalfeldlab.paintera.meshes.ShapeKey;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class PersistentMeshCacheLoaderTest {
+
+	@Rule
+	public final TemporaryFolder tmp = new TemporaryFolder();
+
+	@Test
+	public void testStoreAndLoad() throws Exception {
+		final AtomicInteger numGenerated = new AtomicInteger();
+		final byte[][] fingerprint = {{1, 2, 3}};
+		final Path directory = tmp.getRoot().toPath();
+		final PersistentMeshCacheLoader<long[]> loader = new PersistentMeshCacheLoader<>(
+				key -> {
+					numGenerated.incrementAndGet();
+					return new ValuePair<>(new float[] {1, 2, 3, 4, 5, 6, 7, 8, 9}, new float[] {0, 0, 1, 0, 0, 1, 0, 0, numGenerated.get()});
+				},
+				directory,
+				ids -> ids,
+				key -> fingerprint[0]);
+
+		final ShapeKey<long[]> key = key(new long[] {3, 1, 2});
+		final Pair<float[], float[]> generated = loader.get(key);
+		Assert.assertEquals(1, numGenerated.get());
+		Assert.assertTrue(Files.isRegularFile(loader.file(key)));
+
+		// order of ids does not matter, stored mesh is loaded
+		final Pair<float[], float[]> loaded = loader.get(key(new long[] {1, 2, 3}));
+		Assert.assertEquals(1, numGenerated.get());
+		Assert.assertArrayEquals(generated.getA(), loaded.getA(), 0.0f);
+		Assert.assertArrayEquals(generated.getB(), loaded.getB(), 0.0f);
+
+		// changed data, mesh is generated again and replaces stored mesh
+		fingerprint[0] = new byte[] {1, 2, 4};
+		Assert.assertEquals(2.0f, loader.get(key).getB()[8], 0.0f);
+		Assert.assertEquals(2, numGenerated.get());
+		Assert.assertEquals(2.0f, loader.get(key).getB()[8], 0.0f);
+		Assert.assertEquals(2, numGenerated.get());
+
+		// no fingerprint, do not use stored mesh
+		fingerprint[0] = null;
+		loader.get(key);
+		Assert.assertEquals(3, numGenerated.get());
+	}
+
+	@Test
+	public void testDoNotStoreInterrupted() throws Exception {
+		final PersistentMeshCacheLoader<long[]> loader = new PersistentMeshCacheLoader<>(
+				key -> null,
+				tmp.getRoot().toPath(),
+				ids -> ids,
+				key -> new byte[] {1});
+		final ShapeKey<long[]> key = key(new long[] {1});
+		Assert.assertNull(loader.get(key));
+		Assert.assertFalse(Files.exists(loader.file(key)));
+	}
+
+	@Test
+	public void testDoNotStoreIfDataChanged() throws Exception {
+		final byte[][] fingerprint = {{1}};
+		final PersistentMeshCacheLoader<long[]> loader = new PersistentMeshCacheLoader<>(
+				key -> {
+					// data changes, e.g. by painting, while the mesh is generated
+					fingerprint[0] = null;
+					return new ValuePair<>(new float[] {1, 2, 3, 4, 5, 6, 7, 8, 9}, new float[9]);
+				},
+				tmp.getRoot().toPath(),
+				ids -> ids,
+				key -> fingerprint[0]);
+		final ShapeKey<long[]> key = key(new long[] {1});
+		Assert.assertNotNull(loader.get(key));
+		Assert.assertFalse(Files.exists(loader.file(key)));
+	}
+
+	private static ShapeKey<long[]> key(final long[] ids) {
+		return new ShapeKey<>(ids, 0, 0, 0.5, 1, new long[] {0, 0, 0}, new long[] {63, 63, 63});
+	}
+
+}
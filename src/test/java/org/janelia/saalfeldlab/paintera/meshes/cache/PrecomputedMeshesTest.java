@@ -0,0 +1,67 @@
+package org.janelia.saalfeldlab.paintera.meshes.cache;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+import org.janelia.saalfeldlab.n5.ByteArrayDataBlock;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.util.n5.N5TestUtil;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+public class PrecomputedMeshesTest {
+
+	private static final String GROUP = "meshes";
+
+	@Test
+	public void testWriteAndMerge() throws Exception {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir();
+		Assert.assertFalse(PrecomputedMeshes.exists(writer, GROUP));
+
+		PrecomputedMeshes.createLevel(writer, GROUP, 0, new long[] {10, 10, 10}, new int[] {8, 8, 8});
+		final TLongObjectMap<float[]> meshes = new TLongObjectHashMap<>();
+		meshes.put(5, new float[] {5, 5, 5, 5, 5, 5, 5, 5, 5});
+		meshes.put(1, new float[] {1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1});
+		meshes.put(3, new float[0]);
+		PrecomputedMeshes.write(writer, GROUP, 0, new long[] {1, 0, 1}, 2, meshes);
+		Assert.assertTrue(PrecomputedMeshes.exists(writer, GROUP));
+
+		final PrecomputedMeshes precomputed = new PrecomputedMeshes(writer, GROUP);
+		Assert.assertEquals(1, precomputed.numLevels());
+		Assert.assertNull(precomputed.read(0, new long[] {0, 0, 0}));
+
+		final PrecomputedMeshes.Block block = precomputed.read(0, new long[] {1, 0, 1});
+		Assert.assertEquals(2, block.sourceVersion());
+		Assert.assertArrayEquals(meshes.get(5), block.vertices(new TLongHashSet(new long[] {5})), 0.0f);
+		Assert.assertArrayEquals(new float[0], block.vertices(new TLongHashSet(new long[] {2, 4})), 0.0f);
+
+		final float[] merged = new float[27];
+		System.arraycopy(meshes.get(1), 0, merged, 0, 18);
+		System.arraycopy(meshes.get(5), 0, merged, 18, 9);
+		// few requested fragments are looked up in block, many requested fragments are matched against block
+		Assert.assertArrayEquals(merged, block.vertices(new TLongHashSet(new long[] {5, 1})), 0.0f);
+		Assert.assertArrayEquals(merged, block.vertices(new TLongHashSet(new long[] {1, 2, 3, 5, 7})), 0.0f);
+	}
+
+	@Test
+	public void testMalformedBlock() throws Exception {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir();
+		PrecomputedMeshes.createLevel(writer, GROUP, 0, new long[] {10, 10, 10}, new int[] {8, 8, 8});
+		final DatasetAttributes attributes = writer.getDatasetAttributes(GROUP + "/s0");
+		// version 1, source version 0, Integer.MAX_VALUE fragments and nothing else
+		final byte[] data = ByteBuffer.allocate(16).putInt(1).putLong(0).putInt(Integer.MAX_VALUE).array();
+		writer.writeBlock(GROUP + "/s0", attributes, new ByteArrayDataBlock(new int[] {8, 8, 8}, new long[] {0, 0, 0}, data));
+		final PrecomputedMeshes precomputed = new PrecomputedMeshes(writer, GROUP);
+		try {
+			precomputed.read(0, new long[] {0, 0, 0});
+			Assert.fail("Expected IOException for malformed block");
+		} catch (final IOException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed block"));
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import net.imglib2.Cursor;
+import net.imglib2.RandomAccessibleInterval;
+import net.imglib2.cache.queue.BlockingFetchQueues;
+import net.imglib2.img.array.ArrayImg;
+import net.imglib2.img.array.ArrayImgs;
+import net.imglib2.img.basictypeaccess.array.LongArray;
+import net.imglib2.img.cell.CellImg;
+import net.imglib2.img.cell.CellImgFactory;
+import net.imglib2.type.logic.BitType;
+import net.imglib2.type.numeric.integer.UnsignedByteType;
+import net.imglib2.type.numeric.integer.UnsignedLongType;
+import net.imglib2.view.Views;
+import org.janelia.saalfeldlab.paintera.cache.MemoryBoundedSoftRefLoaderCache;
+import org.janelia.saalfeldlab.paintera.cache.global.GlobalCache;
+import org.janelia.saalfeldlab.paintera.cache.global.InvalidAccessException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class IncrementalLabelIntersectionTest {
+
+	private static final long[] DIMENSIONS = {8, 4, 1};
+
+	/**
+	 * Cells of 4x2x1 voxels. Fragment 1 crosses the border between cells (0, 0) and (1, 0), fragment 2 the border
+	 * between cells (1, 0) and (1, 1), and fragment 3 the border between cells (0, 0) and (0, 1).
+	 */
+	private static final long[] LABELS = {
+			0, 0, 1, 1, 1, 1, 0, 0,
+			3, 0, 0, 0, 0, 2, 2, 0,
+			3, 0, 0, 0, 0, 0, 2, 0,
+			3, 3, 0, 0, 0, 0, 0, 0
+	};
+
+	@Test
+	public void testIncrementalUpdatesMatchRecomputation() throws InvalidAccessException {
+		final CellImg<UnsignedLongType, ?> labels = new CellImgFactory<>(new UnsignedLongType(), 4, 2, 1).create(DIMENSIONS);
+		final Cursor<UnsignedLongType> labelCursor = Views.flatIterable(labels).cursor();
+		for (int i = 0; labelCursor.hasNext(); ++i)
+			labelCursor.next().set(LABELS[i]);
+		final ArrayImg<BitType, LongArray> thresholded = ArrayImgs.bits(DIMENSIONS);
+		threshold(thresholded, 3);
+
+		final IncrementalLabelIntersection<UnsignedLongType, BitType> incremental = intersection(thresholded, labels, new long[] {1});
+		final long[] initial = read(incremental);
+		Assert.assertArrayEquals(read(intersection(thresholded, labels, new long[] {1})), initial);
+		Assert.assertTrue(count(initial) > 0);
+
+		// deselect fragment 1 and select fragments 2 and 3, all of which cross cell borders
+		incremental.selectionChanged(new long[] {2, 3});
+		final long[] afterSelectionChange = read(incremental);
+		Assert.assertArrayEquals(read(intersection(thresholded, labels, new long[] {2, 3})), afterSelectionChange);
+		Assert.assertFalse(Arrays.equals(initial, afterSelectionChange));
+
+		threshold(thresholded, 2);
+		incremental.thresholdChanged();
+		final long[] afterThresholdChange = read(incremental);
+		Assert.assertArrayEquals(read(intersection(thresholded, labels, new long[] {2, 3})), afterThresholdChange);
+		Assert.assertFalse(Arrays.equals(afterSelectionChange, afterThresholdChange));
+
+		incremental.selectionChanged(new long[] {1, 3});
+		Assert.assertArrayEquals(read(intersection(thresholded, labels, new long[] {1, 3})), read(incremental));
+	}
+
+	@Test
+	public void testConnectivityWithinCells() throws InvalidAccessException {
+		// cells [0, 3] and [4, 7] along x, fragment 1 only in the first cell, all voxels thresholded: the thresholded
+		// voxels of the second cell are connected to fragment 1 only across the cell border
+		final long[] dimensions = {8, 1, 1};
+		final CellImg<UnsignedLongType, ?> labels = new CellImgFactory<>(new UnsignedLongType(), 4, 1, 1).create(dimensions);
+		final Cursor<UnsignedLongType> labelCursor = Views.flatIterable(labels).cursor();
+		for (int x = 0; labelCursor.hasNext(); ++x)
+			labelCursor.next().set(x < 4 ? 1 : 0);
+		final ArrayImg<BitType, LongArray> thresholded = ArrayImgs.bits(dimensions);
+		thresholded.forEach(BitType::setOne);
+
+		final RandomAccessibleInterval<UnsignedByteType> data = intersection(thresholded, labels, new long[] {1}).getData(0);
+		final int[] expected = {1, 1, 1, 1, 0, 0, 0, 0};
+		final Cursor<UnsignedByteType> cursor = Views.flatIterable(data).cursor();
+		for (int x = 0; x < expected.length; ++x)
+			Assert.assertEquals("x = " + x, expected[x], cursor.next().get());
+	}
+
+	/**
+	 * Voxel {@code (x, y)} is thresholded if {@code x + y} is not a multiple of {@code modulus}.
+	 */
+	private static void threshold(final RandomAccessibleInterval<BitType> thresholded, final int modulus) {
+		final Cursor<BitType> cursor = Views.flatIterable(thresholded).localizingCursor();
+		while (cursor.hasNext()) {
+			cursor.fwd();
+			cursor.get().set((cursor.getLongPosition(0) + cursor.getLongPosition(1)) % modulus != 0);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static IncrementalLabelIntersection<UnsignedLongType, BitType> intersection(
+			final RandomAccessibleInterval<BitType> thresholded,
+			final RandomAccessibleInterval<UnsignedLongType> labels,
+			final long[] selection) throws InvalidAccessException {
+		final MemoryBoundedSoftRefLoaderCache<GlobalCache.Key<?>, ?, ?> backingCache = MemoryBoundedSoftRefLoaderCache.withWeakRefs(Runtime.getRuntime().maxMemory(), obj -> 0);
+		return new IncrementalLabelIntersection<>(
+				new RandomAccessibleInterval[] {thresholded},
+				new RandomAccessibleInterval[] {labels},
+				selection,
+				new GlobalCache(new BlockingFetchQueues<>(1), backingCache, backingCache),
+				0);
+	}
+
+	private static long[] read(final IncrementalLabelIntersection<?, ?> intersection) {
+		final RandomAccessibleInterval<UnsignedByteType> data = intersection.getData(0);
+		final long[] values = new long[(int) (DIMENSIONS[0] * DIMENSIONS[1] * DIMENSIONS[2])];
+		final Cursor<UnsignedByteType> cursor = Views.flatIterable(data).cursor();
+		for (int i = 0; cursor.hasNext(); ++i)
+			values[i] = cursor.next().get();
+		return values;
+	}
+
+	private static long count(final long[] values) {
+		return Arrays.stream(values).filter(v -> v != 0).count();
+	}
+
+}
@@ -0,0 +1,76 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import net.imglib2.util.IntervalIndexer;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class LabelIntersectionCellLoaderTest
+{
+
+	private static final int[] DIMENSIONS = {7, 5, 4};
+
+	@Test
+	public void testFillConnected()
+	{
+		final int size = DIMENSIONS[0] * DIMENSIONS[1] * DIMENSIONS[2];
+		final Random rng = new Random(1);
+		for (int trial = 0; trial < 100; ++trial)
+		{
+			final boolean[] mask = new boolean[size];
+			final boolean[] seeds = new boolean[size];
+			final long[] maskBits = new long[(size + 63) / 64];
+			final long[] seedBits = new long[maskBits.length];
+			final double maskProbability = rng.nextDouble();
+			for (int i = 0; i < size; ++i)
+			{
+				mask[i] = rng.nextDouble() < maskProbability;
+				seeds[i] = rng.nextDouble() < 0.03;
+				if (mask[i])
+					maskBits[i >>> 6] |= 1L << i;
+				if (seeds[i])
+					seedBits[i >>> 6] |= 1L << i;
+			}
+
+			final boolean[] expected = fillConnectedReference(mask, seeds);
+			final long[] filled = LabelIntersectionCellLoader.fillConnected(DIMENSIONS, maskBits, seedBits);
+			for (int i = 0; i < size; ++i)
+				Assert.assertEquals("Trial " + trial + " index " + i, expected[i], LabelIntersectionCellLoader.isSet(filled, i));
+		}
+	}
+
+	/**
+	 * Grow seeds into 6-neighborhood until nothing changes.
+	 */
+	private static boolean[] fillConnectedReference(final boolean[] mask, final boolean[] seeds)
+	{
+		final boolean[] filled = new boolean[mask.length];
+		for (int i = 0; i < mask.length; ++i)
+			filled[i] = mask[i] && seeds[i];
+		final long[] position = new long[DIMENSIONS.length];
+		final long[] dimensions = {DIMENSIONS[0], DIMENSIONS[1], DIMENSIONS[2]};
+		for (boolean changed = true; changed; )
+		{
+			changed = false;
+			for (int i = 0; i < mask.length; ++i)
+			{
+				if (!mask[i] || filled[i])
+					continue;
+				IntervalIndexer.indexToPosition(i, dimensions, position);
+				for (int d = 0; d < position.length && !filled[i]; ++d)
+				{
+					for (int step = -1; step <= 1 && !filled[i]; step += 2)
+					{
+						position[d] += step;
+						if (position[d] >= 0 && position[d] < dimensions[d] && filled[(int) IntervalIndexer.positionToIndex(position, dimensions)])
+							filled[i] = changed = true;
+						position[d] -= step;
+					}
+				}
+			}
+		}
+		return filled;
+	}
+
+}
@@ -0,0 +1,63 @@
+package org.janelia.saalfeldlab.paintera.state;
+
+import javafx.beans.property.DoubleProperty;
+import net.imglib2.type.numeric.real.DoubleType;
+import org.janelia.saalfeldlab.paintera.state.ThresholdingSourceState.Threshold;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ThresholdTest {
+
+	@Test
+	public void testRangeBoundaries() {
+		final Threshold<DoubleType> threshold = threshold(2.0, 5.0);
+
+		// values at the threshold are rejected
+		Assert.assertFalse(threshold.test(new DoubleType(2.0)));
+		Assert.assertFalse(threshold.test(new DoubleType(5.0)));
+		Assert.assertTrue(threshold.test(new DoubleType(3.0)));
+
+		// min == threshold.min
+		Assert.assertFalse(threshold.acceptsAll(2.0, 4.0));
+		Assert.assertFalse(threshold.rejectsAll(2.0, 4.0));
+		Assert.assertTrue(threshold.rejectsAll(1.0, 2.0));
+		Assert.assertTrue(threshold.rejectsAll(2.0, 2.0));
+
+		// max == threshold.max
+		Assert.assertFalse(threshold.acceptsAll(3.0, 5.0));
+		Assert.assertFalse(threshold.rejectsAll(3.0, 5.0));
+		Assert.assertTrue(threshold.rejectsAll(5.0, 6.0));
+		Assert.assertTrue(threshold.rejectsAll(5.0, 5.0));
+
+		// strictly within and strictly outside
+		Assert.assertTrue(threshold.acceptsAll(2.5, 4.5));
+		Assert.assertFalse(threshold.acceptsAll(2.0, 5.0));
+		Assert.assertFalse(threshold.rejectsAll(2.0, 5.0));
+		Assert.assertFalse(threshold.rejectsAll(1.0, 6.0));
+	}
+
+	@Test
+	public void testRangesAgreeWithValues() {
+		final Threshold<DoubleType> threshold = threshold(5.0, 2.0);
+		final double[] values = {1.0, 2.0, 2.5, 3.5, 5.0, 6.0};
+		for (final double min : values)
+			for (final double max : values) {
+				if (max < min)
+					continue;
+				final boolean minAccepted = threshold.test(new DoubleType(min));
+				final boolean maxAccepted = threshold.test(new DoubleType(max));
+				if (threshold.acceptsAll(min, max))
+					Assert.assertTrue(min + " " + max, minAccepted && maxAccepted);
+				if (threshold.rejectsAll(min, max))
+					Assert.assertFalse(min + " " + max, minAccepted || maxAccepted);
+			}
+	}
+
+	private static Threshold<DoubleType> threshold(final double min, final double max) {
+		final Threshold<DoubleType> threshold = new Threshold<>();
+		((DoubleProperty) threshold.minValue()).set(min);
+		((DoubleProperty) threshold.maxValue()).set(max);
+		return threshold;
+	}
+
+}
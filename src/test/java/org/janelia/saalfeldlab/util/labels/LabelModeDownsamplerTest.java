@@ -0,0 +1,54 @@
+package org.janelia.saalfeldlab.util.labels;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+public class LabelModeDownsamplerTest
+{
+
+	@Test
+	public void testDownsample()
+	{
+		final LabelModeDownsampler downsampler = new LabelModeDownsampler(-1, 2, 2);
+		final int[] sourceDimensions = {5, 2};
+		final long[] source = {
+				1, 2, 3, 3, 7,
+				1, 1, 4, 3, 8
+		};
+		final int[] targetDimensions = downsampler.targetDimensions(sourceDimensions);
+		Assert.assertArrayEquals(new int[] {3, 1}, targetDimensions);
+
+		final long[] target = new long[3];
+		downsampler.downsample(source, sourceDimensions, target, targetDimensions);
+		Assert.assertArrayEquals(new long[] {1, 3, 7}, target);
+
+		// windows outside of source
+		final long[] largerTarget = new long[8];
+		downsampler.downsample(source, sourceDimensions, largerTarget, new int[] {4, 2});
+		Assert.assertArrayEquals(new long[] {1, 3, 7, -1, -1, -1, -1, -1}, largerTarget);
+	}
+
+	@Test
+	public void testUniform()
+	{
+		final LabelModeDownsampler downsampler = new LabelModeDownsampler(-1, 3, 3, 3);
+		final int[] source = new int[6 * 6 * 5];
+		Arrays.fill(source, -2);
+		final int[] target = new int[2 * 2 * 2];
+		downsampler.downsample(source, new int[] {6, 6, 5}, target, new int[] {2, 2, 2});
+		Assert.assertArrayEquals(new int[] {-2, -2, -2, -2, -2, -2, -2, -2}, target);
+
+		// uniform fast path does not apply if windows are not covered by source
+		final int[] largerTarget = new int[2 * 2 * 3];
+		downsampler.downsample(source, new int[] {6, 6, 5}, largerTarget, new int[] {2, 2, 3});
+		Assert.assertArrayEquals(new int[] {-2, -2, -2, -2, -2, -2, -2, -2, -1, -1, -1, -1}, largerTarget);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDimensionalityMismatch()
+	{
+		new LabelModeDownsampler(-1, 2, 2).downsample(new long[8], new int[] {2, 2, 2}, new long[1], new int[] {1, 1, 1});
+	}
+}
@@ -0,0 +1,76 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+
+public class CachedN5WriterTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	@Test
+	public void testCacheAndInvalidate() throws IOException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		final CachedN5Writer cached = new CachedN5Writer(writer);
+		final String group = "group";
+
+		Assert.assertFalse(cached.exists(group));
+		cached.createGroup(group);
+		Assert.assertTrue(cached.exists(group));
+		Assert.assertArrayEquals(new String[] {group}, cached.list(""));
+
+		cached.setAttribute(group, N5Helpers.MULTI_SCALE_KEY, true);
+		cached.setAttribute(group, N5Helpers.RESOLUTION_KEY, new double[] {1.0, 2.0, 3.0});
+		Assert.assertTrue(N5Helpers.isMultiScale(cached, group));
+		Assert.assertArrayEquals(new double[] {1.0, 2.0, 3.0}, N5Helpers.getResolution(cached, group), 0.0);
+		Assert.assertEquals(0, cached.list(group).length);
+
+		// modifications through delegate are not visible
+		writer.setAttribute(group, N5Helpers.RESOLUTION_KEY, new double[] {4.0, 5.0, 6.0});
+		writer.createGroup(group + "/s0");
+		Assert.assertEquals(0, cached.list(group).length);
+		Assert.assertArrayEquals(new double[] {1.0, 2.0, 3.0}, N5Helpers.getResolution(cached, group), 0.0);
+
+		cached.invalidate(group);
+		Assert.assertArrayEquals(new double[] {4.0, 5.0, 6.0}, N5Helpers.getResolution(cached, group), 0.0);
+		Assert.assertArrayEquals(new String[] {"s0"}, cached.list(group));
+
+		// modifications through cached writer invalidate descendants and listings of ancestors
+		final DatasetAttributes attributes = N5TestUtil.defaultAttributes();
+		Assert.assertNull(cached.getDatasetAttributes(group + "/s0"));
+		cached.createDataset(group + "/s0", attributes);
+		Assert.assertEquals(attributes.getDataType(), cached.getDatasetAttributes(group + "/s0").getDataType());
+		cached.createGroup(group + "/s1/nested");
+		Assert.assertEquals(2, cached.list(group).length);
+		Assert.assertTrue(cached.remove(group));
+		Assert.assertFalse(cached.exists(group + "/s0"));
+		Assert.assertFalse(cached.exists(group));
+		Assert.assertEquals(0, cached.list("").length);
+	}
+
+	@Test
+	public void testPrewarm() throws IOException, InterruptedException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createGroup("a/b");
+		writer.createDataset("a/b/s0", N5TestUtil.defaultAttributes());
+		writer.setAttribute("a/b", N5Helpers.MULTI_SCALE_KEY, true);
+		writer.createGroup("c");
+
+		final CachedN5Writer cached = new CachedN5Writer(writer);
+		cached.prewarm("a", "c");
+
+		writer.remove("a");
+		writer.remove("c");
+		Assert.assertTrue(cached.exists("c"));
+		Assert.assertTrue(N5Helpers.isMultiScale(cached, "a/b"));
+		Assert.assertTrue(cached.datasetExists("a/b/s0"));
+		Assert.assertSame(writer, CachedN5Writer.unwrap(cached));
+	}
+
+}
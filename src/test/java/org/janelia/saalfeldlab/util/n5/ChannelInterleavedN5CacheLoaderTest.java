@@ -0,0 +1,90 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileIntArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.IntArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.invoke.MethodHandles;
+
+public class ChannelInterleavedN5CacheLoaderTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String DATASET = "dataset";
+
+	// x, channel, z
+	private static final DatasetAttributes ATTRIBUTES = new DatasetAttributes(
+			new long[] {3, 4, 2},
+			new int[] {2, 2, 2},
+			DataType.INT32,
+			new GzipCompression());
+
+	private static final long[] CHANNELS = {3, 0, 2};
+
+	@Test
+	public void testLoad() throws Exception {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createDataset(DATASET, ATTRIBUTES);
+		writeBlock(writer, 0, 0);
+		writeBlock(writer, 0, 1);
+		writeBlock(writer, 1, 0);
+		// block {1, 1, 0} is missing
+
+		final ChannelInterleavedN5CacheLoader<VolatileIntArray> loader = new ChannelInterleavedN5CacheLoader<>(
+				writer,
+				DATASET,
+				ATTRIBUTES,
+				1,
+				CHANNELS,
+				new VolatileIntArray(0, true));
+
+		final CellGrid grid = loader.getGrid();
+		Assert.assertArrayEquals(new long[] {3, 3, 2}, grid.getImgDimensions());
+		Assert.assertArrayEquals(new long[] {1, 2, 1}, grid.getGridDimensions());
+		Assert.assertEquals(3, grid.cellDimension(0));
+		Assert.assertEquals(2, grid.cellDimension(1));
+		Assert.assertEquals(2, grid.cellDimension(2));
+
+		final Cell<VolatileIntArray> full = loader.get(0L);
+		Assert.assertArrayEquals(new long[] {0, 0, 0}, new long[] {full.min(0), full.min(1), full.min(2)});
+		final int[] expectedFull = new int[3 * 2 * 2];
+		for (int z = 0, i = 0; z < 2; ++z)
+			for (int x = 0; x < 2; ++x)
+				for (int channel = 0; channel < CHANNELS.length; ++channel, ++i)
+					expectedFull[i] = value(x, (int) CHANNELS[channel], z);
+		Assert.assertArrayEquals(expectedFull, (int[]) full.getData().getCurrentStorageArray());
+		Assert.assertTrue(full.getData().isValid());
+
+		// cropped block at the boundary, channels 3 and 2 are in the missing block
+		final Cell<VolatileIntArray> cropped = loader.get(1L);
+		Assert.assertEquals(2, cropped.min(1));
+		Assert.assertEquals(1, cropped.dimension(1));
+		Assert.assertArrayEquals(
+				new int[] {0, value(2, 0, 0), 0, 0, value(2, 0, 1), 0},
+				(int[]) cropped.getData().getCurrentStorageArray());
+	}
+
+	private static void writeBlock(final N5Writer writer, final int blockX, final int blockChannel) throws Exception {
+		final int[] size = {blockX == 0 ? 2 : 1, 2, 2};
+		final int[] data = new int[size[0] * size[1] * size[2]];
+		for (int z = 0, i = 0; z < size[2]; ++z)
+			for (int channel = 0; channel < size[1]; ++channel)
+				for (int x = 0; x < size[0]; ++x, ++i)
+					data[i] = value(blockX * 2 + x, blockChannel * 2 + channel, z);
+		writer.writeBlock(DATASET, ATTRIBUTES, new IntArrayDataBlock(size, new long[] {blockX, blockChannel, 0}, data));
+	}
+
+	private static int value(final int x, final int channel, final int z) {
+		return 1 + x + 10 * channel + 100 * z;
+	}
+
+}
@@ -0,0 +1,217 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.DataBlock;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.LongArrayDataBlock;
+import org.janelia.saalfeldlab.n5.N5Reader;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CoalescingN5ReaderTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String DATASET = "dataset";
+
+	private static final DatasetAttributes ATTRIBUTES = new DatasetAttributes(
+			new long[] {4, 4, 8},
+			new int[] {2, 2, 2},
+			DataType.UINT64,
+			new RawCompression());
+
+	/**
+	 * Local stand-in for a high latency backend.
+	 */
+	private static class LatencyN5Reader implements N5Reader {
+
+		private final N5Reader delegate;
+
+		private final long latencyMillis;
+
+		private final AtomicInteger numReads = new AtomicInteger();
+
+		private final AtomicInteger numConcurrentReads = new AtomicInteger();
+
+		private final AtomicInteger maxConcurrentReads = new AtomicInteger();
+
+		private LatencyN5Reader(final N5Reader delegate, final long latencyMillis) {
+			this.delegate = delegate;
+			this.latencyMillis = latencyMillis;
+		}
+
+		@Override
+		public DataBlock<?> readBlock(final String pathName, final DatasetAttributes datasetAttributes, final long[] gridPosition) throws IOException {
+			numReads.incrementAndGet();
+			maxConcurrentReads.accumulateAndGet(numConcurrentReads.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(latencyMillis);
+				return delegate.readBlock(pathName, datasetAttributes, gridPosition);
+			} catch (final InterruptedException e) {
+				throw new IOException(e);
+			} finally {
+				numConcurrentReads.decrementAndGet();
+			}
+		}
+
+		@Override
+		public <T> T getAttribute(final String pathName, final String key, final Class<T> clazz) throws IOException {
+			return delegate.getAttribute(pathName, key, clazz);
+		}
+
+		@Override
+		public DatasetAttributes getDatasetAttributes(final String pathName) throws IOException {
+			return delegate.getDatasetAttributes(pathName);
+		}
+
+		@Override
+		public boolean exists(final String pathName) {
+			return delegate.exists(pathName);
+		}
+
+		@Override
+		public String[] list(final String pathName) throws IOException {
+			return delegate.list(pathName);
+		}
+
+		@Override
+		public Map<String, Class<?>> listAttributes(final String pathName) throws IOException {
+			return delegate.listAttributes(pathName);
+		}
+	}
+
+	@Test
+	public void testCoalesceConcurrentReads() throws Exception {
+		final LatencyN5Reader latencyReader = new LatencyN5Reader(writeDataset(), 200);
+		final CoalescingN5Reader reader = new CoalescingN5Reader(latencyReader, 2, 0);
+		final ExecutorService es = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<DataBlock<?>>> futures = new ArrayList<>();
+			for (int i = 0; i < 8; ++i) {
+				final long[] position = {1, 1, i % 2};
+				futures.add(es.submit(() -> reader.readBlock(DATASET, ATTRIBUTES, position)));
+			}
+			for (int i = 0; i < futures.size(); ++i)
+				Assert.assertArrayEquals(blockData(new long[] {1, 1, i % 2}), (long[]) futures.get(i).get().getData());
+		} finally {
+			es.shutdown();
+		}
+		Assert.assertTrue(latencyReader.numReads.get() < 8);
+		Assert.assertTrue(latencyReader.maxConcurrentReads.get() <= 2);
+	}
+
+	@Test
+	public void testReadAhead() throws Exception {
+		final LatencyN5Reader latencyReader = new LatencyN5Reader(writeDataset(), 10);
+		final CoalescingN5Reader reader = new CoalescingN5Reader(latencyReader, 4, 2);
+
+		// step along last dimension, a single step does not trigger read-ahead
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 1, 0});
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 1, 1});
+		waitForReads(latencyReader, 2);
+		Assert.assertEquals(2, latencyReader.numReads.get());
+
+		// repeated step
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 1, 2});
+		waitForReads(latencyReader, 4);
+		Assert.assertEquals(4, latencyReader.numReads.get());
+
+		// served from read-ahead
+		Assert.assertArrayEquals(blockData(new long[] {0, 1, 3}), (long[]) reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 1, 3}).getData());
+		// no read-ahead beyond grid
+		waitForReads(latencyReader, 4);
+		Assert.assertEquals(4, latencyReader.numReads.get());
+
+		// prefetched blocks are handed out only once
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 1, 3});
+		Assert.assertEquals(5, latencyReader.numReads.get());
+
+		// steps in different directions within a section do not trigger read-ahead
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 0, 0});
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {1, 0, 0});
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {1, 1, 0});
+		waitForReads(latencyReader, 8);
+		Assert.assertEquals(8, latencyReader.numReads.get());
+
+		// prefetched blocks are discarded
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {1, 1, 1});
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {1, 1, 2});
+		waitForReads(latencyReader, 11);
+		Assert.assertEquals(11, latencyReader.numReads.get());
+		reader.clearPrefetched();
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {1, 1, 3});
+		Assert.assertEquals(12, latencyReader.numReads.get());
+	}
+
+	@Test
+	public void testPrefetchedBlockIsHandedOutOnce() throws Exception {
+		final LatencyN5Reader latencyReader = new LatencyN5Reader(writeDataset(), 200);
+		final CoalescingN5Reader reader = new CoalescingN5Reader(latencyReader, 4, 1);
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 0, 0});
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 0, 1});
+		// prefetches {0, 0, 3}
+		reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 0, 2});
+
+		final ExecutorService es = Executors.newFixedThreadPool(4);
+		try {
+			final List<Future<DataBlock<?>>> futures = new ArrayList<>();
+			for (int i = 0; i < 4; ++i)
+				futures.add(es.submit(() -> reader.readBlock(DATASET, ATTRIBUTES, new long[] {0, 0, 3})));
+			final Set<DataBlock<?>> blocks = Collections.newSetFromMap(new IdentityHashMap<>());
+			for (final Future<DataBlock<?>> future : futures) {
+				final DataBlock<?> block = future.get();
+				Assert.assertArrayEquals(blockData(new long[] {0, 0, 3}), (long[]) block.getData());
+				blocks.add(block);
+			}
+			// the prefetched block and at least one block read for the remaining requests
+			Assert.assertTrue(blocks.size() >= 2);
+		} finally {
+			es.shutdown();
+		}
+	}
+
+	private static void waitForReads(final LatencyN5Reader reader, final int numReads) throws InterruptedException {
+		final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while ((reader.numReads.get() < numReads || reader.numConcurrentReads.get() > 0) && System.nanoTime() < deadline)
+			Thread.sleep(10);
+	}
+
+	private static N5Reader writeDataset() throws IOException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createDataset(DATASET, ATTRIBUTES);
+		final long[] gridDimensions = N5Helpers.asCellGrid(ATTRIBUTES).getGridDimensions();
+		for (long z = 0; z < gridDimensions[2]; ++z)
+			for (long y = 0; y < gridDimensions[1]; ++y)
+				for (long x = 0; x < gridDimensions[0]; ++x) {
+					final long[] position = {x, y, z};
+					writer.writeBlock(DATASET, ATTRIBUTES, new LongArrayDataBlock(ATTRIBUTES.getBlockSize(), position, blockData(position)));
+				}
+		return writer;
+	}
+
+	private static long[] blockData(final long[] position) {
+		final long[] data = new long[8];
+		for (int i = 0; i < data.length; ++i)
+			data[i] = 100 * position[0] + 10 * position[1] + position[2] + 1000 * i;
+		return data;
+	}
+
+}
@@ -0,0 +1,49 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+public class DatasetDiscoveryTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	@Test
+	public void testDiscovery() throws IOException, InterruptedException, ExecutionException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createDataset("a/b/s0", N5TestUtil.defaultAttributes());
+		writer.createDataset("a/b/s1", N5TestUtil.defaultAttributes());
+		writer.createGroup("a/paintera");
+		writer.setAttribute("a/paintera", N5Helpers.PAINTERA_DATA_KEY, Collections.singletonMap("type", "raw"));
+		writer.createDataset("a/paintera/data/s0", N5TestUtil.defaultAttributes());
+		writer.createDataset("c/d", N5TestUtil.defaultAttributes());
+		writer.createGroup("e/f/g");
+
+		final List<String> found = Collections.synchronizedList(new ArrayList<>());
+		final DatasetDiscovery discovery = DatasetDiscovery.start(writer, () -> true, found::add);
+		final List<String> datasets = discovery.result().get();
+
+		Assert.assertEquals(Arrays.asList("/a/b", "/a/paintera", "/c/d"), datasets);
+		Collections.sort(found);
+		Assert.assertEquals(datasets, found);
+		Assert.assertEquals(datasets, discovery.datasets());
+	}
+
+	@Test
+	public void testStopLooking() throws IOException, InterruptedException, ExecutionException {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createDataset("a", N5TestUtil.defaultAttributes());
+		Assert.assertEquals(Collections.emptyList(), DatasetDiscovery.start(writer, () -> false, dataset -> {}).result().get());
+	}
+
+}
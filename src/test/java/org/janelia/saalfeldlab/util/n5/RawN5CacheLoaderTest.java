@@ -0,0 +1,93 @@
+package org.janelia.saalfeldlab.util.n5;
+
+import net.imglib2.img.basictypeaccess.volatiles.array.VolatileShortArray;
+import net.imglib2.img.cell.Cell;
+import net.imglib2.img.cell.CellGrid;
+import org.janelia.saalfeldlab.n5.DataType;
+import org.janelia.saalfeldlab.n5.DatasetAttributes;
+import org.janelia.saalfeldlab.n5.GzipCompression;
+import org.janelia.saalfeldlab.n5.N5Writer;
+import org.janelia.saalfeldlab.n5.RawCompression;
+import org.janelia.saalfeldlab.n5.ShortArrayDataBlock;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RawN5CacheLoaderTest {
+
+	private static final Logger LOG = LoggerFactory.getLogger(MethodHandles.lookup().lookupClass());
+
+	private static final String DATASET = "dataset";
+
+	private static final DatasetAttributes ATTRIBUTES = new DatasetAttributes(
+			new long[] {5, 4},
+			new int[] {3, 2},
+			DataType.UINT16,
+			new RawCompression());
+
+	@Test
+	public void testLoad() throws Exception {
+		final N5Writer writer = N5TestUtil.fileSystemWriterAtTmpDir(!LOG.isDebugEnabled());
+		writer.createDataset(DATASET, ATTRIBUTES);
+		// cropped block at the boundary
+		writer.writeBlock(DATASET, ATTRIBUTES, new ShortArrayDataBlock(new int[] {2, 2}, new long[] {1, 0}, new short[] {1, 2, 3, 4}));
+		writer.writeBlock(DATASET, ATTRIBUTES, new ShortArrayDataBlock(new int[] {3, 2}, new long[] {0, 1}, new short[] {-1, 6, 7, 8, 9, 10}));
+		// block size does not match cell size
+		writer.writeBlock(DATASET, ATTRIBUTES, new ShortArrayDataBlock(new int[] {3, 2}, new long[] {1, 1}, new short[6]));
+
+		Assert.assertTrue(RawN5CacheLoader.isApplicable(CachedN5Reader.cached(writer), ATTRIBUTES));
+		Assert.assertFalse(RawN5CacheLoader.isApplicable(writer, new DatasetAttributes(
+				ATTRIBUTES.getDimensions(),
+				ATTRIBUTES.getBlockSize(),
+				ATTRIBUTES.getDataType(),
+				new GzipCompression())));
+
+		final CellGrid grid = N5Helpers.asCellGrid(ATTRIBUTES);
+		final AtomicInteger numFallbackLoads = new AtomicInteger();
+		final RawN5CacheLoader<VolatileShortArray> loader = new RawN5CacheLoader<>(
+				RawN5CacheLoader.datasetPath(writer, DATASET),
+				grid,
+				DataType.UINT16,
+				new VolatileShortArray(0, true),
+				key -> {
+					numFallbackLoads.incrementAndGet();
+					return null;
+				});
+
+		final Cell<VolatileShortArray> cropped = loader.get(1L);
+		Assert.assertEquals(3, cropped.min(0));
+		Assert.assertEquals(0, cropped.min(1));
+		Assert.assertEquals(2, cropped.dimension(0));
+		Assert.assertEquals(2, cropped.dimension(1));
+		Assert.assertArrayEquals(new short[] {1, 2, 3, 4}, (short[]) cropped.getData().getCurrentStorageArray());
+		Assert.assertTrue(cropped.getData().isValid());
+
+		Assert.assertArrayEquals(new short[] {-1, 6, 7, 8, 9, 10}, (short[]) loader.get(2L).getData().getCurrentStorageArray());
+		// read buffer of this thread is larger than the block now
+		Assert.assertArrayEquals(new short[] {1, 2, 3, 4}, (short[]) loader.get(1L).getData().getCurrentStorageArray());
+
+		// missing block
+		Assert.assertArrayEquals(new short[6], (short[]) loader.get(0L).getData().getCurrentStorageArray());
+
+		Assert.assertEquals(0, numFallbackLoads.get());
+		Assert.assertNull(loader.get(3L));
+		Assert.assertEquals(1, numFallbackLoads.get());
+
+		// truncated header
+		Files.write(RawN5CacheLoader.datasetPath(writer, DATASET).resolve(Paths.get("0", "0")), new byte[] {0, 0, 0});
+		try {
+			loader.get(0L);
+			Assert.fail("Expected IOException for truncated header");
+		} catch (final IOException e) {
+			LOG.debug("Caught expected exception", e);
+		}
+	}
+
+}